@@ -0,0 +1,122 @@
+package org.geoint.logging.splunk.harness;
+
+import java.util.Random;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.json.Json;
+
+/**
+ * Compares escaping field values a word at a time with the char by char
+ * implementations it replaced, and the in place native quote substitution
+ * (a byte at a time on Java 8) with String.replace.
+ *
+ * Usage:
+ * <pre>
+ * java -cp splunk-jul.jar:splunk-jul-harness.jar \
+ *     org.geoint.logging.splunk.harness.EscapeBenchmark
+ * </pre>
+ */
+public final class EscapeBenchmark {
+
+    private static final int VALUES = 1024;
+    private static final int ROUNDS = 10;
+    private static final int ITERATIONS = 2000;
+
+    private static volatile int sink;
+
+    private EscapeBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        for (int length : new int[]{8, 32, 256}) {
+            run("clean", values(length, 0), length);
+            run("1% escaped", values(length, 100), length);
+        }
+    }
+
+    private static void run(String name, String[] values, int length) {
+        final Utf8Buffer buffer = new Utf8Buffer(1 << 20);
+        long charJson = Long.MAX_VALUE;
+        long wordJson = Long.MAX_VALUE;
+        long replaceNative = Long.MAX_VALUE;
+        long inPlaceNative = Long.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                buffer.reset();
+                for (String v : values) {
+                    charEscape(v, buffer);
+                }
+            }
+            charJson = Math.min(charJson, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                buffer.reset();
+                for (String v : values) {
+                    Json.quote(v, buffer);
+                }
+            }
+            wordJson = Math.min(wordJson, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                buffer.reset();
+                for (String v : values) {
+                    buffer.append(v.replace('"', '\''));
+                }
+            }
+            replaceNative = Math.min(replaceNative, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                buffer.reset();
+                for (String v : values) {
+                    final int s = buffer.length();
+                    buffer.append(v);
+                    buffer.replace(s, buffer.length(), '"', '\'');
+                }
+            }
+            inPlaceNative = Math.min(inPlaceNative, System.nanoTime() - start);
+            sink += buffer.length();
+        }
+        final double n = (double) VALUES * ITERATIONS;
+        System.out.printf("%-10s %4d chars: json char %6.1f ns, word %6.1f ns;"
+                + " native replace %6.1f ns, in place %6.1f ns%n", name, length,
+                charJson / n, wordJson / n, replaceNative / n,
+                inPlaceNative / n);
+    }
+
+    /**
+     * Char by char JSON escaping, as Json.quote did before.
+     */
+    private static void charEscape(String string, Utf8Buffer out) {
+        out.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c == '/' && i > 0 && string.charAt(i - 1) == '<') {
+                out.append('\\').append(c);
+            } else if (c < ' ') {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    private static String[] values(int length, int escapeOneIn) {
+        final Random random = new Random(length);
+        final String[] values = new String[VALUES];
+        for (int v = 0; v < VALUES; v++) {
+            final StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                sb.append((escapeOneIn > 0 && random.nextInt(escapeOneIn) == 0)
+                        ? '"' : (char) ('a' + random.nextInt(26)));
+            }
+            values[v] = sb.toString();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,116 @@
+package org.geoint.logging.splunk.harness;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Records the duration of each garbage collection, by collector, from the
+ * HotSpot GC notifications.
+ *
+ * Collections of concurrent collectors (such as the G1 or ZGC concurrent
+ * cycles) are reported under their collector name but are not application
+ * pauses.
+ *
+ * Thread-safe.
+ */
+final class GcMonitor implements NotificationListener, AutoCloseable {
+
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final Map<String, Stats> collectors = new TreeMap<>();
+
+    GcMonitor() {
+        for (GarbageCollectorMXBean gc
+                : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(this,
+                        null, null);
+                emitters.add((NotificationEmitter) gc);
+            }
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification n, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                .equals(n.getType())) {
+            return;
+        }
+        final GarbageCollectionNotificationInfo info
+                = GarbageCollectionNotificationInfo.from(
+                        (CompositeData) n.getUserData());
+        final long millis = info.getGcInfo().getDuration();
+        synchronized (collectors) {
+            collectors.computeIfAbsent(info.getGcName(), (k) -> new Stats())
+                    .add(millis);
+        }
+    }
+
+    /**
+     *
+     * @return copy of the collections so far, by collector
+     */
+    Map<String, Stats> snapshot() {
+        final Map<String, Stats> copy = new TreeMap<>();
+        synchronized (collectors) {
+            collectors.forEach((k, v) -> copy.put(k, v.copy()));
+        }
+        return copy;
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter e : emitters) {
+            try {
+                e.removeNotificationListener(this);
+            } catch (ListenerNotFoundException ex) {
+                //already removed
+            }
+        }
+    }
+
+    /**
+     * Collections of a collector.
+     */
+    static final class Stats {
+
+        private long count;
+        private long totalMillis;
+        private long maxMillis;
+
+        private void add(long millis) {
+            count++;
+            totalMillis += millis;
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        private Stats copy() {
+            final Stats s = new Stats();
+            s.count = count;
+            s.totalMillis = totalMillis;
+            s.maxMillis = maxMillis;
+            return s;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getTotalMillis() {
+            return totalMillis;
+        }
+
+        long getMaxMillis() {
+            return maxMillis;
+        }
+    }
+}
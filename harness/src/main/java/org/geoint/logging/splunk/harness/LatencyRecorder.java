@@ -0,0 +1,93 @@
+package org.geoint.logging.splunk.harness;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of latencies recorded by a single thread and read by
+ * any thread.
+ *
+ * Values below 16 have their own bucket; larger values are counted in one of
+ * 16 linear buckets per power of two, so percentiles are within 1/16 (6.25%)
+ * of the recorded value. Counts are cumulative; readers take the difference
+ * of two snapshots for an interval. The recording thread only does ordered
+ * (lazySet) writes, so recording does not contend with readers.
+ */
+final class LatencyRecorder {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Record a value; only called by the owning thread.
+     *
+     * @param nanos
+     */
+    void record(long nanos) {
+        final int b = bucket(Math.max(nanos, 0));
+        counts.lazySet(b, counts.get(b) + 1);
+    }
+
+    /**
+     * Add the current counts to the snapshot.
+     *
+     * @param snapshot
+     */
+    void addTo(long[] snapshot) {
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] += counts.get(i);
+        }
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exp = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     *
+     * @param counts snapshot counts
+     * @return total count
+     */
+    static long count(long[] counts) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        return total;
+    }
+
+    /**
+     *
+     * @param counts snapshot counts
+     * @param percentile 0 to 100
+     * @return value at the percentile, or 0 if there are no values
+     */
+    static long percentile(long[] counts, double percentile) {
+        final long total = count(counts);
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,481 @@
+package org.geoint.logging.splunk.harness;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.geoint.logging.splunk.io.ParallelGzipCompressor;
+import org.geoint.logging.splunk.io.RollingSplunkFileChannel;
+import org.geoint.logging.splunk.jul.BatchingSplunkHandler;
+import org.geoint.logging.splunk.jul.RollingSplunkHandler;
+import org.geoint.logging.splunk.jul.SplunkChannelHandler;
+import org.geoint.logging.splunk.jul.SplunkEventTemplate;
+import org.geoint.logging.splunk.jul.SplunkLogRecord;
+
+/**
+ * Drives java.util.logging loggers, with the splunk handlers and
+ * {@link org.geoint.logging.splunk.jul.StandardSplunkFormatter}, through a
+ * configurable workload and reports throughput, caller-side log call latency,
+ * allocation rate and garbage collections.
+ *
+ * Each logging thread paces itself to its share of the rate, times each log
+ * call and records the time in its own histogram. With a rate, the time is
+ * measured from when the call was scheduled rather than when it was made, so
+ * a stalled call also counts against the calls queued behind it (no
+ * coordinated omission). A thread more than a second behind its schedule
+ * skips the calls it is behind by, rather than bursting to catch up; the
+ * skipped calls are reported. A report line is written
+ * every interval, and a summary at the end, to the report file (and
+ * standard out). Allocation rates are read from the HotSpot thread MXBean:
+ * caller allocation is that of the logging threads per event, process
+ * allocation is that of all live threads (including the handler writers).
+ *
+ * Usage:
+ * <pre>
+ * java -cp splunk-jul.jar:splunk-jul-harness.jar \
+ *     org.geoint.logging.splunk.harness.SoakHarness \
+ *     threads=200 rate=50000 duration=3600 handler=rolling dir=/tmp/soak
+ * </pre>
+ *
+ * @see Workload for the workload arguments
+ */
+public final class SoakHarness {
+
+    private static final String LOGGER_NAME = "org.geoint.logging.splunk.soak";
+    private static final long MAX_CATCH_UP_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long ROLL_BYTES = 64L * 1024 * 1024;
+    private static final int EXCEPTIONS = 16;
+    private static final int VALUES = 64;
+    private static final int TEMPLATE_FIELDS = 4;
+
+    private final Workload workload;
+    private final Logger logger;
+    private final SplunkEventTemplate template;
+    private final String[] fieldNames;
+    private final String[] values;
+    private final Throwable[] exceptions;
+    private final Workload.EventKind[] kinds;
+    private final int[] weights;
+    private final com.sun.management.ThreadMXBean threads;
+    private final CountDownLatch finished;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile long measureStart;
+    private volatile long end;
+
+    private SoakHarness(Workload workload) {
+        this.workload = workload;
+        this.logger = Logger.getLogger(LOGGER_NAME);
+        final Map<String, String> constants = new TreeMap<>();
+        for (int i = 0; i < TEMPLATE_FIELDS; i++) {
+            constants.put("constant" + i, "value " + i);
+        }
+        this.template = new SplunkEventTemplate(logger, Level.INFO,
+                SoakHarness.class, "template", constants);
+        this.fieldNames = new String[workload.getFields()];
+        for (int i = 0; i < fieldNames.length; i++) {
+            fieldNames[i] = "field" + i;
+        }
+        this.values = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            //varied lengths, some needing substitution or escaping
+            final StringBuilder sb = new StringBuilder("value-").append(i);
+            for (int j = 0; j < i % 8; j++) {
+                sb.append(" lorem ipsum");
+            }
+            if (i % 10 == 0) {
+                sb.append(" \"quoted\"");
+            }
+            values[i] = sb.toString();
+        }
+        this.exceptions = new Throwable[EXCEPTIONS];
+        for (int i = 0; i < EXCEPTIONS; i++) {
+            exceptions[i] = exception(i * 4, i);
+        }
+        this.kinds = workload.getMix().keySet()
+                .toArray(new Workload.EventKind[0]);
+        this.weights = new int[kinds.length];
+        int total = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            total += workload.getMix().get(kinds[i]);
+            weights[i] = total;
+        }
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        this.finished = new CountDownLatch(workload.getThreads());
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Workload workload;
+        try {
+            workload = Workload.parse(args);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println("Usage: SoakHarness [threads=n] [rate=n] "
+                    + "[duration=s] [warmup=s] [interval=s] "
+                    + "[mix=simple:n,params:n,fields:n,template:n] "
+                    + "[fields=n] [exceptionRate=f] "
+                    + "[handler=batching|rolling|channel|config] [dir=path] "
+                    + "[report=file]");
+            System.exit(2);
+            return;
+        }
+        new SoakHarness(workload).run();
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Files.createDirectories(workload.getDirectory());
+        if (workload.getReport().getParent() != null) {
+            Files.createDirectories(workload.getReport().getParent());
+        }
+        final Handler handler = handler();
+        if (handler != null) {
+            logger.setUseParentHandlers(false);
+            logger.addHandler(handler);
+        }
+        logger.setLevel(Level.ALL);
+
+        try (PrintWriter report = new PrintWriter(Files.newBufferedWriter(
+                workload.getReport(), StandardCharsets.UTF_8));
+                GcMonitor gc = new GcMonitor()) {
+            line(report, "# workload " + workload);
+            line(report, "# java " + System.getProperty("java.version") + " "
+                    + System.getProperty("java.vm.name") + ", "
+                    + Runtime.getRuntime().availableProcessors() + " cpus, "
+                    + Runtime.getRuntime().maxMemory() / (1024 * 1024)
+                    + "MB max heap");
+
+            final long start = System.nanoTime();
+            measureStart = start
+                    + TimeUnit.SECONDS.toNanos(workload.getWarmupSeconds());
+            end = measureStart
+                    + TimeUnit.SECONDS.toNanos(workload.getDurationSeconds());
+            final List<Worker> workers = new ArrayList<>();
+            for (int i = 0; i < workload.getThreads(); i++) {
+                final Worker w = new Worker();
+                w.thread.start();
+                workers.add(w);
+            }
+
+            sleepUntil(measureStart);
+            Sample last = sample(workers, gc, measureStart);
+            final Sample first = last;
+            final long interval = TimeUnit.SECONDS.toNanos(
+                    workload.getIntervalSeconds());
+            for (long next = measureStart + interval; next - end < 0;
+                    next += interval) {
+                sleepUntil(next);
+                final Sample s = sample(workers, gc, System.nanoTime());
+                line(report, "interval " + s.since(last, first));
+                last = s;
+            }
+            //sample before the workers exit, their allocation is gone after
+            finished.await();
+            final Sample done = sample(workers, gc, end);
+            release.countDown();
+            for (Worker w : workers) {
+                w.thread.join();
+            }
+            if (end - last.time > 0) {
+                line(report, "interval " + done.since(last, first));
+            }
+
+            final long flushStart = System.nanoTime();
+            for (Handler h : handlers()) {
+                h.flush();
+            }
+            final long flushMillis = TimeUnit.NANOSECONDS.toMillis(
+                    System.nanoTime() - flushStart);
+            line(report, "summary " + done.since(first, first)
+                    + " flushMs=" + flushMillis);
+            for (Map.Entry<String, GcMonitor.Stats> e
+                    : gc.snapshot().entrySet()) {
+                line(report, "gc collector=\"" + e.getKey() + "\" count="
+                        + e.getValue().getCount() + " totalMs="
+                        + e.getValue().getTotalMillis() + " maxMs="
+                        + e.getValue().getMaxMillis());
+            }
+        } finally {
+            if (handler != null) {
+                handler.close();
+            }
+        }
+    }
+
+    private Handler handler() throws IOException {
+        final Path dir = workload.getDirectory();
+        switch (workload.getHandler()) {
+            case "config":
+                return null;
+            case "batching":
+                return new BatchingSplunkHandler(open(dir.resolve("soak.log")));
+            case "channel":
+                return new SplunkChannelHandler(open(dir.resolve("soak.log")));
+            case "rolling":
+                return new RollingSplunkHandler(new RollingSplunkFileChannel(
+                        dir, "soak", ROLL_BYTES), new ParallelGzipCompressor(1));
+            default:
+                throw new IllegalArgumentException("Unknown handler "
+                        + workload.getHandler());
+        }
+    }
+
+    private Handler[] handlers() {
+        if (logger.getUseParentHandlers()) {
+            return Logger.getLogger("").getHandlers();
+        }
+        return logger.getHandlers();
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
+    private static void line(PrintWriter report, String line) {
+        report.println(line);
+        report.flush();
+        System.out.println(line);
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long wait;
+        while ((wait = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private static Throwable exception(int depth, int i) {
+        if (depth > 0) {
+            return exception(depth - 1, i);
+        }
+        return new IllegalStateException("Soak failure " + i,
+                new IOException("Soak cause " + i));
+    }
+
+    private Sample sample(List<Worker> workers, GcMonitor gc, long time) {
+        final long[] latencies = new long[LatencyRecorder.BUCKETS];
+        long events = 0;
+        long callerBytes = 0;
+        long skipped = 0;
+        for (Worker w : workers) {
+            w.latency.addTo(latencies);
+            events += w.events.get();
+            skipped += w.skipped.get();
+            callerBytes += Math.max(0,
+                    threads.getThreadAllocatedBytes(w.thread.getId()));
+        }
+        long processBytes = 0;
+        for (long b : threads.getThreadAllocatedBytes(
+                threads.getAllThreadIds())) {
+            processBytes += Math.max(0, b);
+        }
+        long gcCount = 0;
+        long gcMillis = 0;
+        for (GcMonitor.Stats s : gc.snapshot().values()) {
+            gcCount += s.getCount();
+            gcMillis += s.getTotalMillis();
+        }
+        return new Sample(time, events, skipped, latencies, callerBytes,
+                processBytes, gcCount, gcMillis);
+    }
+
+    /**
+     * Cumulative measurements at a time.
+     */
+    private static final class Sample {
+
+        private final long time;
+        private final long events;
+        private final long skipped;
+        private final long[] latencies;
+        private final long callerBytes;
+        private final long processBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        private Sample(long time, long events, long skipped, long[] latencies,
+                long callerBytes, long processBytes, long gcCount,
+                long gcMillis) {
+            this.time = time;
+            this.events = events;
+            this.skipped = skipped;
+            this.latencies = latencies;
+            this.callerBytes = callerBytes;
+            this.processBytes = processBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        /**
+         * Measurements between the samples, as name=value pairs.
+         */
+        private String since(Sample from, Sample first) {
+            final double seconds = Math.max(1, time - from.time) / 1e9;
+            final long[] interval = new long[latencies.length];
+            for (int i = 0; i < interval.length; i++) {
+                interval[i] = latencies[i] - from.latencies[i];
+            }
+            final long n = events - from.events;
+            final double mb = 1024 * 1024;
+            return String.format(Locale.ROOT, "elapsedS=%.1f events=%d "
+                    + "eventsPerS=%.0f skipped=%d p50Us=%.2f p99Us=%.2f "
+                    + "p999Us=%.2f maxUs=%.2f callerAllocBPerEvent=%.0f "
+                    + "allocMBPerS=%.1f gcCount=%d gcMs=%d",
+                    (time - first.time) / 1e9, n, n / seconds,
+                    skipped - from.skipped,
+                    micros(interval, 50), micros(interval, 99),
+                    micros(interval, 99.9), micros(interval, 100),
+                    (n == 0) ? 0.0 : (double) (callerBytes - from.callerBytes) / n,
+                    (processBytes - from.processBytes) / mb / seconds,
+                    gcCount - from.gcCount, gcMillis - from.gcMillis);
+        }
+
+        private static double micros(long[] latencies, double percentile) {
+            return LatencyRecorder.percentile(latencies, percentile) / 1000.0;
+        }
+    }
+
+    /**
+     * A logging thread.
+     */
+    private final class Worker implements Runnable {
+
+        private final LatencyRecorder latency = new LatencyRecorder();
+        private final AtomicLong events = new AtomicLong();
+        //calls not made to catch up with the rate
+        private final AtomicLong skipped = new AtomicLong();
+        private final Thread thread;
+
+        private Worker() {
+            this.thread = new Thread(this, "soak-" + System.identityHashCode(this));
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            final long period = (workload.getRate() == 0) ? 0
+                    : TimeUnit.SECONDS.toNanos(workload.getThreads())
+                    / workload.getRate();
+            long next = System.nanoTime();
+            while (true) {
+                final long now = System.nanoTime();
+                if (now - end >= 0) {
+                    finished.countDown();
+                    awaitRelease();
+                    return;
+                }
+                long scheduled = 0;
+                if (period > 0) {
+                    if (next - now > 0) {
+                        LockSupport.parkNanos(next - now);
+                        continue;
+                    }
+                    //don't burst to catch up after a long stall
+                    final long skip
+                            = (now - MAX_CATCH_UP_NANOS - next) / period;
+                    if (skip > 0) {
+                        next += skip * period;
+                        if (now - measureStart >= 0) {
+                            skipped.lazySet(skipped.get() + skip);
+                        }
+                    }
+                    scheduled = next;
+                    next += period;
+                }
+                final Throwable thrown
+                        = (random.nextDouble() < workload.getExceptionRate())
+                        ? exceptions[random.nextInt(EXCEPTIONS)] : null;
+                final Workload.EventKind kind = kind(random);
+
+                final long t0 = System.nanoTime();
+                log(kind, thrown, random);
+                final long t1 = System.nanoTime();
+                if (t0 - measureStart >= 0) {
+                    //from the schedule, time spent behind it is latency too
+                    latency.record(t1 - ((period > 0) ? scheduled : t0));
+                    events.lazySet(events.get() + 1);
+                }
+            }
+        }
+
+        private void awaitRelease() {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Workload.EventKind kind(ThreadLocalRandom random) {
+            final int w = random.nextInt(weights[weights.length - 1]);
+            for (int i = 0; i < weights.length; i++) {
+                if (w < weights[i]) {
+                    return kinds[i];
+                }
+            }
+            return kinds[kinds.length - 1];
+        }
+
+        private void log(Workload.EventKind kind, Throwable thrown,
+                ThreadLocalRandom random) {
+            final Level level = (thrown != null) ? Level.SEVERE
+                    : (random.nextInt(10) == 0) ? Level.WARNING : Level.INFO;
+            switch (kind) {
+                case SIMPLE:
+                    logger.log(level, values[random.nextInt(VALUES)], thrown);
+                    break;
+                case PARAMS:
+                    final LogRecord lr = new LogRecord(level,
+                            "Request {0} for {1} took {2}ms");
+                    lr.setLoggerName(LOGGER_NAME);
+                    lr.setParameters(new Object[]{random.nextInt(1000000),
+                        values[random.nextInt(VALUES)], random.nextInt(1000)});
+                    lr.setThrown(thrown);
+                    logger.log(lr);
+                    break;
+                case FIELDS:
+                    final SplunkLogRecord record = new SplunkLogRecord(level,
+                            values[random.nextInt(VALUES)]);
+                    record.setLoggerName(LOGGER_NAME);
+                    record.setThrown(thrown);
+                    logger.log(fields(record, random));
+                    break;
+                case TEMPLATE:
+                    final SplunkLogRecord templated = template.record(
+                            "Request {0} done", random.nextInt(1000000));
+                    templated.setThrown(thrown);
+                    logger.log(fields(templated, random));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event " + kind);
+            }
+        }
+
+        private SplunkLogRecord fields(SplunkLogRecord record,
+                ThreadLocalRandom random) {
+            for (String name : fieldNames) {
+                record.field(name, values[random.nextInt(VALUES)]);
+            }
+            return record;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.geoint.logging.splunk.harness;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Soak test workload, read from name=value arguments.
+ *
+ * <ul>
+ * <li>threads - logging threads, defaults to 8</li>
+ * <li>rate - total events per second, or 0 (default) for as fast as
+ * possible</li>
+ * <li>duration - measured seconds, defaults to 60</li>
+ * <li>warmup - seconds logged before measuring, defaults to 10</li>
+ * <li>interval - seconds between interval reports, defaults to 10</li>
+ * <li>mix - weights of each event kind, defaults to
+ * simple:50,params:20,fields:20,template:10</li>
+ * <li>fields - custom fields of fields and template events, defaults to
+ * 8</li>
+ * <li>exceptionRate - fraction of events with an exception, defaults to
+ * 0.01</li>
+ * <li>handler - batching, rolling, channel or config (the handlers of the
+ * LogManager configuration), defaults to batching</li>
+ * <li>dir - directory events are written to, defaults to
+ * target/soak</li>
+ * <li>report - report file, defaults to [dir]/report.txt</li>
+ * </ul>
+ *
+ * Immutable.
+ */
+final class Workload {
+
+    private final int threads;
+    private final long rate;
+    private final long durationSeconds;
+    private final long warmupSeconds;
+    private final long intervalSeconds;
+    private final Map<EventKind, Integer> mix;
+    private final int fields;
+    private final double exceptionRate;
+    private final String handler;
+    private final Path directory;
+    private final Path report;
+
+    private Workload(Properties p) {
+        this.threads = Integer.parseInt(p.getProperty("threads", "8"));
+        this.rate = Long.parseLong(p.getProperty("rate", "0"));
+        this.durationSeconds = Long.parseLong(p.getProperty("duration", "60"));
+        this.warmupSeconds = Long.parseLong(p.getProperty("warmup", "10"));
+        this.intervalSeconds = Long.parseLong(p.getProperty("interval", "10"));
+        this.mix = mix(p.getProperty("mix",
+                "simple:50,params:20,fields:20,template:10"));
+        this.fields = Integer.parseInt(p.getProperty("fields", "8"));
+        this.exceptionRate = Double.parseDouble(
+                p.getProperty("exceptionRate", "0.01"));
+        this.handler = p.getProperty("handler", "batching");
+        this.directory = Paths.get(p.getProperty("dir", "target/soak"));
+        this.report = Paths.get(p.getProperty("report",
+                directory.resolve("report.txt").toString()));
+        if (threads < 1 || rate < 0 || durationSeconds < 1
+                || warmupSeconds < 0 || intervalSeconds < 1 || fields < 0
+                || exceptionRate < 0 || exceptionRate > 1) {
+            throw new IllegalArgumentException("Invalid workload " + p);
+        }
+    }
+
+    /**
+     *
+     * @param args name=value arguments
+     * @return workload
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    static Workload parse(String... args) {
+        final Properties p = new Properties();
+        for (String arg : args) {
+            final int eq = arg.indexOf('=');
+            if (eq < 1) {
+                throw new IllegalArgumentException("Expected name=value, was "
+                        + arg);
+            }
+            p.setProperty(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return new Workload(p);
+    }
+
+    private static Map<EventKind, Integer> mix(String mix) {
+        final Map<EventKind, Integer> weights = new LinkedHashMap<>();
+        for (String w : mix.split(",")) {
+            final String[] kv = w.trim().split(":");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Invalid mix " + mix);
+            }
+            weights.put(EventKind.valueOf(kv[0].trim().toUpperCase()),
+                    Integer.parseInt(kv[1].trim()));
+        }
+        return weights;
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    long getRate() {
+        return rate;
+    }
+
+    long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    long getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    long getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    Map<EventKind, Integer> getMix() {
+        return mix;
+    }
+
+    int getFields() {
+        return fields;
+    }
+
+    double getExceptionRate() {
+        return exceptionRate;
+    }
+
+    String getHandler() {
+        return handler;
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    Path getReport() {
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + threads + " rate=" + rate + " duration="
+                + durationSeconds + " warmup=" + warmupSeconds + " mix="
+                + mix + " fields=" + fields + " exceptionRate="
+                + exceptionRate + " handler=" + handler;
+    }
+
+    /**
+     * How events are logged.
+     */
+    enum EventKind {
+        /**
+         * Logger.log(level, message)
+         */
+        SIMPLE,
+        /**
+         * Logger.log(level, pattern, params)
+         */
+        PARAMS,
+        /**
+         * SplunkLogRecord with custom fields
+         */
+        FIELDS,
+        /**
+         * SplunkEventTemplate record with custom fields
+         */
+        TEMPLATE
+    }
+}
@@ -0,0 +1,204 @@
+package org.geoint.logging.splunk;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Pool of reusable encoding buffers.
+ *
+ * Each thread first uses its own (thread-local) buffer; if that is already in
+ * use (nested formatting) a buffer is taken from a bounded pool shared by all
+ * threads, and only if that is empty is a new buffer created. Buffers which
+ * have grown beyond the max retained capacity are discarded on release, so
+ * one very large event does not pin a huge buffer for the life of the thread.
+ *
+ * The pool limits can be set with the JVM properties
+ * {@value #PROPERTY_MAX_RETAINED} (capacity in chars/bytes) and
+ * {@value #PROPERTY_SHARED_SIZE} (number of shared buffers).
+ *
+ * Usage:
+ * <pre>
+ * StringBuilder sb = BufferPool.STRING_BUILDERS.acquire();
+ * try {
+ *     ...
+ *     return sb.toString();
+ * } finally {
+ *     BufferPool.STRING_BUILDERS.release(sb);
+ * }
+ * </pre>
+ *
+ * @param <B> buffer type
+ */
+public final class BufferPool<B> {
+
+    public static final String PROPERTY_MAX_RETAINED
+            = "org.geoint.logging.splunk.pool.maxRetained";
+    public static final String PROPERTY_SHARED_SIZE
+            = "org.geoint.logging.splunk.pool.shared";
+    private static final int DEFAULT_MAX_RETAINED = 64 * 1024;
+    private static final int DEFAULT_SHARED_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 512;
+
+    /**
+     * Pool of StringBuilders used by String formatting and JSON.
+     */
+    public static final BufferPool<StringBuilder> STRING_BUILDERS
+            = new BufferPool<>(() -> new StringBuilder(INITIAL_CAPACITY),
+                    (sb) -> sb.setLength(0),
+                    StringBuilder::capacity,
+                    Integer.getInteger(PROPERTY_MAX_RETAINED,
+                            DEFAULT_MAX_RETAINED),
+                    Integer.getInteger(PROPERTY_SHARED_SIZE,
+                            DEFAULT_SHARED_SIZE));
+
+    /**
+     * Pool of UTF-8 buffers used by byte formatting and hashing.
+     */
+    public static final BufferPool<Utf8Buffer> UTF8
+            = new BufferPool<>(() -> new Utf8Buffer(INITIAL_CAPACITY),
+                    Utf8Buffer::reset,
+                    Utf8Buffer::capacity,
+                    Integer.getInteger(PROPERTY_MAX_RETAINED,
+                            DEFAULT_MAX_RETAINED),
+                    Integer.getInteger(PROPERTY_SHARED_SIZE,
+                            DEFAULT_SHARED_SIZE));
+
+    private final Supplier<B> factory;
+    private final Consumer<B> reset;
+    private final ToIntFunction<B> capacity;
+    private final int maxRetainedCapacity;
+    private final int maxShared;
+
+    private final ThreadLocal<Slot<B>> local = ThreadLocal.withInitial(Slot::new);
+    private final Queue<B> shared = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger sharedSize = new AtomicInteger();
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    /**
+     *
+     * @param factory creates a new buffer
+     * @param reset clears a buffer for reuse
+     * @param capacity current capacity of a buffer
+     * @param maxRetainedCapacity buffers larger than this are not pooled
+     * @param maxShared max buffers retained in the shared pool
+     */
+    public BufferPool(Supplier<B> factory, Consumer<B> reset,
+            ToIntFunction<B> capacity, int maxRetainedCapacity,
+            int maxShared) {
+        this.factory = factory;
+        this.reset = reset;
+        this.capacity = capacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+        this.maxShared = maxShared;
+    }
+
+    /**
+     * Acquire an empty buffer, which should be released when no longer used.
+     *
+     * @return empty buffer
+     */
+    public B acquire() {
+        final Slot<B> slot = local.get();
+        B buffer = slot.buffer;
+        if (buffer != null) {
+            slot.buffer = null;
+            localHits.increment();
+            return buffer;
+        }
+
+        buffer = shared.poll();
+        if (buffer != null) {
+            sharedSize.decrementAndGet();
+            sharedHits.increment();
+            return buffer;
+        }
+
+        misses.increment();
+        return factory.get();
+    }
+
+    /**
+     * Return a buffer to the pool; it must not be used by the caller after
+     * release.
+     *
+     * @param buffer
+     */
+    public void release(B buffer) {
+        if (buffer == null) {
+            return;
+        }
+        if (capacity.applyAsInt(buffer) > maxRetainedCapacity) {
+            discards.increment();
+            return;
+        }
+        reset.accept(buffer);
+
+        final Slot<B> slot = local.get();
+        if (slot.buffer == null) {
+            slot.buffer = buffer;
+            return;
+        }
+
+        if (sharedSize.incrementAndGet() <= maxShared) {
+            shared.offer(buffer);
+        } else {
+            sharedSize.decrementAndGet();
+            discards.increment();
+        }
+    }
+
+    /**
+     *
+     * @return number of acquisitions satisfied by the thread-local buffer
+     */
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+
+    /**
+     *
+     * @return number of acquisitions satisfied by the shared pool
+     */
+    public long getSharedHits() {
+        return sharedHits.sum();
+    }
+
+    /**
+     *
+     * @return number of acquisitions which required a new buffer
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     *
+     * @return number of released buffers which were not retained, because
+     * they were too large or the shared pool was full
+     */
+    public long getDiscards() {
+        return discards.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{localHits=" + getLocalHits()
+                + ", sharedHits=" + getSharedHits()
+                + ", misses=" + getMisses()
+                + ", discards=" + getDiscards() + '}';
+    }
+
+    private static final class Slot<B> {
+
+        private B buffer;
+    }
+}
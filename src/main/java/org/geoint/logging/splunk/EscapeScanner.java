@@ -0,0 +1,200 @@
+package org.geoint.logging.splunk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Finds the characters needing escape (or substitution) in UTF-8 encoded
+ * field values eight bytes at a time.
+ *
+ * Values are encoded to a {@link Utf8Buffer} as is and then scanned a word
+ * (long) at a time, testing all eight bytes at once with SWAR (SIMD within a
+ * register) bit tricks. Most values need no escaping, so are written with no
+ * more than the scan; otherwise the clean spans between the characters
+ * needing escape are bulk copied.
+ *
+ * The characters escaped are all ASCII, and ASCII bytes never occur within
+ * multi-byte UTF-8 sequences, so scanning the encoded bytes finds the same
+ * characters as scanning the chars.
+ *
+ * Words are read through a little-endian {@link ByteBuffer} view, which the
+ * JIT compiles to a single load on Java 9+. On Java 8 it does not, so the
+ * native quote substitution, a single byte compare, is done in place a byte
+ * at a time there instead (see {@link #WORD_LOADS}); either way no copy of
+ * the value is made.
+ */
+public final class EscapeScanner {
+
+    /**
+     * Word loads compile to a single load (Java 9+), so substituting a word
+     * at a time is faster than a byte (or char) at a time.
+     */
+    static final boolean WORD_LOADS = !System.getProperty(
+            "java.specification.version", "").startsWith("1.");
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long QUOTES = ONES * '"';
+    private static final long BACKSLASHES = ONES * '\\';
+    private static final long LESS_THANS = ONES * '<';
+    //bits set in each byte not below 0x20
+    private static final long CONTROL_BITS = ONES * 0xE0;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private EscapeScanner() {
+    }
+
+    /**
+     * Write the value as a quoted JSON string IAW RFC 4627, as
+     * {@link org.geoint.logging.splunk.json.Json#quote(CharSequence, Utf8Sink)}.
+     *
+     * @param value raw string, null is written as an empty string
+     * @param out
+     */
+    public static void appendJson(CharSequence value, Utf8Buffer out) {
+        out.write('"');
+        if (value != null) {
+            final int start = out.length();
+            out.append(value);
+            escapeJson(out, start);
+        }
+        out.write('"');
+    }
+
+    /**
+     * Escapes, in place, the raw encoded string at the end of the buffer.
+     *
+     * @param out
+     * @param start offset of the raw string
+     */
+    static void escapeJson(Utf8Buffer out, int start) {
+        final int end = out.length();
+        final int first = indexOfJson(out.words(), start, end);
+        if (first >= 0) {
+            //move the rest aside, writing it back escaped
+            final byte[] rest = Arrays.copyOfRange(out.array(), first, end);
+            out.truncate(first);
+            escapeJson(rest, out);
+        }
+    }
+
+    /**
+     * Find a byte.
+     *
+     * @param words little-endian view of the bytes
+     * @param from inclusive
+     * @param to exclusive
+     * @param target
+     * @return index of the first target byte, or -1
+     */
+    static int indexOf(ByteBuffer words, int from, int to, byte target) {
+        final long pattern = ONES * (target & 0xFF);
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            final long found = zeros(words.getLong(i) ^ pattern);
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        final byte[] bytes = words.array();
+        for (; i < to; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find a byte which needs escaping in a JSON string: quote, backslash,
+     * control characters and '&lt;' (which may start "&lt;/").
+     *
+     * @param words little-endian view of the bytes
+     * @param from inclusive
+     * @param to exclusive
+     * @return index of the first byte needing escape, or -1
+     */
+    static int indexOfJson(ByteBuffer words, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            final long w = words.getLong(i);
+            final long found = zeros(w ^ QUOTES) | zeros(w ^ BACKSLASHES)
+                    | zeros(w ^ LESS_THANS) | zeros(w & CONTROL_BITS);
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        final byte[] bytes = words.array();
+        for (; i < to; i++) {
+            if (isJsonEscape(bytes[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the high bit of each zero byte of the word, and no others.
+     *
+     * Unlike the common (x - 0x01..) &amp; ~x test this does not borrow
+     * across bytes, so there are no false positives above a zero byte.
+     */
+    private static long zeros(long x) {
+        final long t = (x & LOW_BITS) + LOW_BITS;
+        return ~(t | x | LOW_BITS);
+    }
+
+    private static boolean isJsonEscape(byte b) {
+        return b == '"' || b == '\\' || b == '<' || (b >= 0 && b < ' ');
+    }
+
+    private static void escapeJson(byte[] rest, Utf8Buffer out) {
+        final ByteBuffer words = ByteBuffer.wrap(rest)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int i = 0;
+        while (i < rest.length) {
+            int next = indexOfJson(words, i, rest.length);
+            if (next < 0) {
+                next = rest.length;
+            }
+            out.write(rest, i, next - i);
+            if (next == rest.length) {
+                return;
+            }
+            final byte b = rest[next];
+            i = next + 1;
+            switch (b) {
+                case '"':
+                case '\\':
+                    out.write('\\').write(b);
+                    break;
+                case '<':
+                    out.write(b);
+                    if (i < rest.length && rest[i] == '/') {
+                        out.write('\\').write('/');
+                        i++;
+                    }
+                    break;
+                case '\b':
+                    out.write('\\').write('b');
+                    break;
+                case '\t':
+                    out.write('\\').write('t');
+                    break;
+                case '\n':
+                    out.write('\\').write('n');
+                    break;
+                case '\f':
+                    out.write('\\').write('f');
+                    break;
+                case '\r':
+                    out.write('\\').write('r');
+                    break;
+                default:
+                    out.write('\\').write('u').write('0').write('0')
+                            .write(HEX[b >> 4])
+                            .write(HEX[b & 0xF]);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.geoint.logging.splunk;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.geoint.logging.splunk.crypto.EventDigester;
+import org.geoint.logging.splunk.crypto.Hex;
+import org.geoint.logging.splunk.crypto.MessageDigestRecordHasher;
+import org.geoint.logging.splunk.json.Json;
+import org.geoint.logging.splunk.json.JsonParseException;
+import org.geoint.logging.splunk.json.JsonReader;
+import org.geoint.logging.splunk.json.JsonToken;
+
+/**
+ * Formats a {@link SplunkEvent} as a compact JSON object on a single line,
+ * for the splunk {@code _json} source type and indexed extractions.
+ *
+ * The event time is written first, as the {@value #TIME_FIELD} member in ISO
+ * 8601 format with milliseconds, unless the event has a field of that name.
+ * Unlike the {@link NativeSplunkFormatter}, values are escaped rather than
+ * substituted, so they are not altered. Fields are written in the same
+ * (sorted) order as the native format, in a single forward pass. A null
+ * value is written as JSON null.
+ *
+ * Fields whose values are themselves JSON (such as an exception stack) may
+ * be named as JSON fields; an object or array value of a JSON field is
+ * written as a nested value rather than as a string, so it is neither
+ * escaped twice nor has to be parsed again at search time. The value is
+ * checked to be a single line of valid JSON first; any other value is
+ * written as a string, so a field value cannot add members to the event.
+ */
+public class JsonSplunkFormatter implements SplunkEventFormatter {
+
+    /**
+     * Name of the event time member.
+     */
+    public static final String TIME_FIELD = "time";
+    private static final DateTimeFormatter TIME_FORMATTER
+            = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+    private static final char OBJECT_START = '{';
+    private static final char OBJECT_END = '}';
+    private static final char ARRAY_START = '[';
+    private static final char ARRAY_END = ']';
+    private static final char NAME_SEPARATOR = ':';
+    private static final char FIELD_SEPARATOR = ',';
+    private static final char QUOTE = '"';
+    private static final String NULL = "null";
+
+    private final Set<String> jsonFields;
+
+    /**
+     * Formatter writing every value as a string.
+     */
+    public JsonSplunkFormatter() {
+        this(Collections.emptySet());
+    }
+
+    /**
+     *
+     * @param jsonFields names of the fields whose values are JSON
+     */
+    public JsonSplunkFormatter(Collection<String> jsonFields) {
+        this.jsonFields = Collections.unmodifiableSet(
+                new HashSet<>(jsonFields));
+    }
+
+    /**
+     *
+     * @return names of the fields whose values are written as nested JSON
+     */
+    public Set<String> getJsonFields() {
+        return jsonFields;
+    }
+
+    @Override
+    public String format(SplunkEvent event) {
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            format(event, buffer);
+            return buffer.toString();
+        } finally {
+            BufferPool.UTF8.release(buffer);
+        }
+    }
+
+    @Override
+    public void format(SplunkEvent event, Utf8Sink sink) {
+        final SortedMap<String, String> fields
+                = (event.getFields() instanceof SortedMap
+                && ((SortedMap<String, String>) event.getFields())
+                        .comparator() == null)
+                        ? (SortedMap<String, String>) event.getFields()
+                        : new TreeMap<>(event.getFields());
+        sink.append(OBJECT_START);
+        boolean first = !appendTime(event.getEventTime(), fields, sink);
+        for (Entry<String, String> e : fields.entrySet()) {
+            if (!first) {
+                sink.append(FIELD_SEPARATOR);
+            }
+            first = false;
+            Json.quote(e.getKey(), sink);
+            sink.append(NAME_SEPARATOR);
+            appendValue(sink, e.getKey(), e.getValue());
+        }
+        sink.append(OBJECT_END);
+        sink.append(System.lineSeparator());
+    }
+
+    /**
+     * Formats event fields, hashing them in the same pass, as
+     * {@link NativeSplunkFormatter#formatHashed(ZonedDateTime, SortedMap, String, EventDigester, Utf8Buffer)}.
+     *
+     * The canonical form of each field is fed to the digester from its raw
+     * encoded bytes, which are then escaped in place; the hash field is
+     * back-filled once all fields have been written.
+     *
+     * @param eventTime
+     * @param fields event fields, excluding the hash field
+     * @param hashField name of the hash field
+     * @param digest digester to hash the fields with, it is reset on return
+     * @param out buffer the event is written to
+     * @return hash of the event fields
+     */
+    public byte[] formatHashed(ZonedDateTime eventTime,
+            SortedMap<String, String> fields, String hashField,
+            EventDigester digest, Utf8Buffer out) {
+        out.append(OBJECT_START);
+        boolean first = !appendTime(eventTime, fields, out);
+        int hashOffset = -1;
+        for (Entry<String, String> e : fields.entrySet()) {
+            if (hashOffset < 0 && e.getKey().compareTo(hashField) > 0) {
+                hashOffset = reserveHash(hashField, digest, first, out);
+                first = false;
+            }
+            if (!first) {
+                out.append(FIELD_SEPARATOR);
+            }
+            first = false;
+            appendHashedKV(out, digest, e.getKey(), e.getValue());
+        }
+        if (hashOffset < 0) {
+            hashOffset = reserveHash(hashField, digest, first, out);
+        }
+
+        final byte[] hash = digest.digest();
+        Hex.encode(hash, out.array(), hashOffset);
+
+        out.append(OBJECT_END);
+        out.append(System.lineSeparator());
+        return hash;
+    }
+
+    /**
+     * Writes the event time member, unless the event has a field of the
+     * same name.
+     *
+     * @return true if the time was written
+     */
+    private static boolean appendTime(ZonedDateTime eventTime,
+            SortedMap<String, String> fields, Utf8Sink sink) {
+        if (eventTime == null || fields.containsKey(TIME_FIELD)) {
+            return false;
+        }
+        Json.quote(TIME_FIELD, sink);
+        sink.append(NAME_SEPARATOR).append(QUOTE);
+        TIME_FORMATTER.formatTo(eventTime, sink);
+        sink.append(QUOTE);
+        return true;
+    }
+
+    private void appendHashedKV(Utf8Buffer out, EventDigester digest,
+            String key, String value) {
+        appendHashedString(out, digest, key);
+        digest.update((byte) MessageDigestRecordHasher.FIELD_KV_GLUE);
+        out.append(NAME_SEPARATOR);
+        if (value == null || (jsonFields.contains(key) && isJson(value))) {
+            final int valueStart = out.length();
+            out.append((value == null) ? NULL : value);
+            digest.update(out.array(), valueStart, out.length() - valueStart);
+        } else {
+            appendHashedString(out, digest, value);
+        }
+    }
+
+    /**
+     * Digest the raw encoded string, then escape it in place.
+     */
+    private static void appendHashedString(Utf8Buffer out,
+            EventDigester digest, String string) {
+        out.append(QUOTE);
+        final int start = out.length();
+        out.append(string);
+        digest.update(out.array(), start, out.length() - start);
+        EscapeScanner.escapeJson(out, start);
+        out.append(QUOTE);
+    }
+
+    /**
+     * Write the hash field with a placeholder value.
+     *
+     * @return offset of the placeholder value
+     */
+    private static int reserveHash(String hashField, EventDigester digest,
+            boolean first, Utf8Buffer out) {
+        if (!first) {
+            out.append(FIELD_SEPARATOR);
+        }
+        Json.quote(hashField, out);
+        out.append(NAME_SEPARATOR).append(QUOTE);
+        final int offset = out.length();
+        for (int i = digest.getDigestLength() * 2; i > 0; i--) {
+            out.write('0');
+        }
+        out.append(QUOTE);
+        return offset;
+    }
+
+    private void appendValue(Utf8Sink sink, String key, String value) {
+        if (value == null) {
+            sink.append(NULL);
+        } else if (jsonFields.contains(key) && isJson(value)) {
+            sink.append(value);
+        } else {
+            Json.quote(value, sink);
+        }
+    }
+
+    /**
+     * Checks the value is a single JSON object or array, on one line, with
+     * nothing following it.
+     */
+    private static boolean isJson(String value) {
+        if (value.length() < 2) {
+            return false;
+        }
+        final char first = value.charAt(0);
+        if (first != OBJECT_START && first != ARRAY_START) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < ' ') {
+                return false; //line breaks, or control characters
+            }
+        }
+        try {
+            final JsonReader reader = JsonReader.of(value);
+            reader.skipValue();
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        } catch (JsonParseException ex) {
+            return false;
+        }
+    }
+}
@@ -1,6 +1,20 @@
 package org.geoint.logging.splunk;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.geoint.logging.splunk.crypto.EventDigester;
+import org.geoint.logging.splunk.crypto.Hex;
+import org.geoint.logging.splunk.crypto.MessageDigestRecordHasher;
+import org.geoint.logging.splunk.crypto.StreamingEventHasher;
 
 /**
  * Formats a {@link SplunkEvent} as a String which is natively readable by
@@ -14,39 +28,307 @@ public class NativeSplunkFormatter implements SplunkEventFormatter {
     private static final char KV_SEPARATOR = '=';
     private static final String FIELD_SEPARATOR = ", ";
     private static final char QUOTE = '"';
+    private static final char SUBSTITUTE_QUOTE = '\'';
+    private static final String NULL = "null";
     
     @Override
     public String format(SplunkEvent event) {
-        StringBuilder sb = new StringBuilder();
-        
-        sb.append(DATE_FORMATTER.format(event.getEventTime()));
-        
-        event.getFields().entrySet().stream()
-                .sorted((o1, o2) -> o1.getKey().compareTo(o2.getKey()))
-                .forEach((e) -> appendKV(sb, escape(e.getKey()), e.getValue()));
-        
-        sb.append(System.lineSeparator());
-        return sb.toString();
+        StringBuilder sb = BufferPool.STRING_BUILDERS.acquire();
+        try {
+            write(event, sb);
+            return sb.toString();
+        } finally {
+            BufferPool.STRING_BUILDERS.release(sb);
+        }
     }
-    
-    private void appendKV(StringBuilder sb, String key, String value) {
-        sb.append(FIELD_SEPARATOR)
-                .append(key) //normally don't need to normalize keys -- do this manually as needed
-                .append(KV_SEPARATOR)
-                .append(QUOTE)
-                .append(escape(value))
+
+    /**
+     * Formats the event directly as UTF-8 bytes, without creating the
+     * intermediate String.
+     *
+     * @param event
+     * @param sink
+     */
+    @Override
+    public void format(SplunkEvent event, Utf8Sink sink) {
+        write(event, sink);
+    }
+
+    /**
+     * Formats event fields, hashing them in the same pass.
+     *
+     * The canonical form of each field (see {@link StreamingEventHasher}) is
+     * fed to the digester from the same bytes as they are encoded into the
+     * buffer; room is reserved for the hash field at its sorted position and
+     * it is back-filled once all fields have been written. The result is
+     * identical to formatting an event hashed by the hasher providing the
+     * digester.
+     *
+     * @param eventTime
+     * @param fields event fields, excluding the hash field
+     * @param hashField name of the hash field
+     * @param digest digester to hash the fields with, it is reset on return
+     * @param out buffer the event is written to
+     * @return hash of the event fields
+     */
+    public byte[] formatHashed(ZonedDateTime eventTime,
+            SortedMap<String, String> fields, String hashField,
+            EventDigester digest, Utf8Buffer out) {
+        return formatHashed(eventTime, fields, new PreparedFields[0],
+                hashField, digest, out);
+    }
+
+    /**
+     * Formats event fields, hashing them in the same pass, with constant
+     * fields which were rendered and encoded ahead of time.
+     *
+     * The prepared fields are merged, in sorted order, with the event fields;
+     * only the event fields are encoded and substituted. An event field
+     * replaces a prepared field of the same name, as does a field of later
+     * prepared fields. Prepared hash fields are ignored.
+     *
+     * @param eventTime
+     * @param fields event fields, excluding the hash field
+     * @param constants fields prepared by {@link #prepare(SortedMap)}, in
+     * increasing precedence
+     * @param hashField name of the hash field
+     * @param digest digester to hash the fields with, it is reset on return
+     * @param out buffer the event is written to
+     * @return hash of the event fields
+     * @see #formatHashed(ZonedDateTime, SortedMap, String, EventDigester,
+     * Utf8Buffer)
+     */
+    public byte[] formatHashed(ZonedDateTime eventTime,
+            SortedMap<String, String> fields, PreparedFields[] constants,
+            String hashField, EventDigester digest, Utf8Buffer out) {
+        DATE_FORMATTER.formatTo(eventTime, out);
+
+        int hashOffset = -1;
+        final Iterator<Entry<String, String>> variables
+                = fields.entrySet().iterator();
+        Entry<String, String> v = variables.hasNext() ? variables.next() : null;
+        final int[] next = new int[constants.length];
+        while (true) {
+            //lowest key; on a tie the event field, then the later constants
+            String key = (v == null) ? null : v.getKey();
+            int source = -1;
+            for (int c = constants.length - 1; c >= 0; c--) {
+                if (next[c] < constants[c].keys.length) {
+                    final String k = constants[c].keys[next[c]];
+                    if (key == null || k.compareTo(key) < 0) {
+                        key = k;
+                        source = c;
+                    }
+                }
+            }
+            if (key == null) {
+                break;
+            }
+            for (int c = 0; c < constants.length; c++) {
+                if (c != source && next[c] < constants[c].keys.length
+                        && constants[c].keys[next[c]].equals(key)) {
+                    next[c]++; //replaced
+                }
+            }
+            if (source >= 0 && key.equals(hashField)) {
+                next[source]++;
+                continue;
+            }
+
+            if (hashOffset < 0 && key.compareTo(hashField) > 0) {
+                hashOffset = reserveHash(hashField, digest, out);
+            }
+            if (source < 0) {
+                appendHashedKV(out, digest, v.getKey(), v.getValue());
+                v = variables.hasNext() ? variables.next() : null;
+            } else {
+                final PreparedFields p = constants[source];
+                out.write(p.formatted[next[source]]);
+                digest.update(p.canonical[next[source]], 0,
+                        p.canonical[next[source]].length);
+                next[source]++;
+            }
+        }
+        if (hashOffset < 0) {
+            hashOffset = reserveHash(hashField, digest, out);
+        }
+
+        final byte[] hash = digest.digest();
+        Hex.encode(hash, out.array(), hashOffset);
+
+        out.append(System.lineSeparator());
+        return hash;
+    }
+
+    /**
+     * Renders constant fields, and their canonical hashed form, once so they
+     * can be reused by every event formatted with
+     * {@link #formatHashed(ZonedDateTime, SortedMap, PreparedFields[], String, EventDigester, Utf8Buffer)}.
+     *
+     * @param fields constant fields
+     * @return prepared fields
+     */
+    public PreparedFields prepare(SortedMap<String, String> fields) {
+        final String[] keys = new String[fields.size()];
+        final byte[][] formatted = new byte[keys.length][];
+        final byte[][] canonical = new byte[keys.length][];
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            int i = 0;
+            for (Entry<String, String> e : fields.entrySet()) {
+                keys[i] = e.getKey();
+                appendKV(buffer, e.getKey(), e.getValue());
+                formatted[i] = buffer.toByteArray();
+                buffer.reset();
+                buffer.append(e.getKey())
+                        .append(MessageDigestRecordHasher.FIELD_KV_GLUE)
+                        .append((e.getValue() == null) ? NULL : e.getValue());
+                canonical[i] = buffer.toByteArray();
+                buffer.reset();
+                i++;
+            }
+        } catch (IOException ex) {
+            //Utf8Buffer does not throw
+            throw new UncheckedIOException(ex);
+        } finally {
+            BufferPool.UTF8.release(buffer);
+        }
+        return new PreparedFields(keys, formatted, canonical);
+    }
+
+    private void appendHashedKV(Utf8Buffer out, EventDigester digest,
+            String key, String value) {
+        out.append(FIELD_SEPARATOR);
+
+        //digest the raw encoded bytes, then substitute in place
+        final int keyStart = out.length();
+        out.append(key);
+        final int keyEnd = out.length();
+        digest.update(out.array(), keyStart, keyEnd - keyStart);
+        digest.update((byte) MessageDigestRecordHasher.FIELD_KV_GLUE);
+
+        out.append(KV_SEPARATOR).append(QUOTE);
+
+        final int valueStart = out.length();
+        out.append((value == null) ? NULL : value);
+        final int valueEnd = out.length();
+        digest.update(out.array(), valueStart, valueEnd - valueStart);
+
+        out.replace(keyStart, keyEnd, QUOTE, SUBSTITUTE_QUOTE);
+        out.replace(valueStart, valueEnd, QUOTE, SUBSTITUTE_QUOTE);
+        out.append(QUOTE);
+    }
+
+    /**
+     * Write the hash field with a placeholder value.
+     *
+     * @return offset of the placeholder value
+     */
+    private int reserveHash(String hashField, EventDigester digest,
+            Utf8Buffer out) {
+        out.append(FIELD_SEPARATOR);
+        substitute(out, hashField);
+        out.append(KV_SEPARATOR)
                 .append(QUOTE);
+        final int offset = out.length();
+        for (int i = digest.getDigestLength() * 2; i > 0; i--) {
+            out.write('0');
+        }
+        out.append(QUOTE);
+        return offset;
+    }
+
+    /**
+     * Constant event fields, rendered in the native format and in their
+     * canonical hashed form.
+     *
+     * Immutable.
+     */
+    public static final class PreparedFields {
+
+        private final String[] keys;
+        private final byte[][] formatted;
+        private final byte[][] canonical;
+
+        private PreparedFields(String[] keys, byte[][] formatted,
+                byte[][] canonical) {
+            this.keys = keys;
+            this.formatted = formatted;
+            this.canonical = canonical;
+        }
+
+        /**
+         *
+         * @return names of the fields, sorted
+         */
+        public List<String> getFieldNames() {
+            return Collections.unmodifiableList(Arrays.asList(keys));
+        }
+    }
+
+    private void write(SplunkEvent event, Appendable out) {
+        try {
+            DATE_FORMATTER.formatTo(event.getEventTime(), out);
+
+            for (Entry<String, String> e
+                    : new TreeMap<>(event.getFields()).entrySet()) {
+                appendKV(out, e.getKey(), e.getValue());
+            }
+
+            out.append(System.lineSeparator());
+        } catch (IOException ex) {
+            //StringBuilder and Utf8Sink do not throw
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    private void appendKV(Appendable out, String key, String value)
+            throws IOException {
+        out.append(FIELD_SEPARATOR);
+        substitute(out, key);
+        out.append(KV_SEPARATOR).append(QUOTE);
+        substitute(out, value);
+        out.append(QUOTE);
     }
 
     /**
      * "Escapes" splunk field IAW their best practices.
      *
-     * Escaping, for splunk, is actually substitutions.
+     * Escaping, for splunk, is actually substitutions, made without creating
+     * a substituted copy of the value.
      *
+     * A null value is written as "null", the same as it is hashed.
+     *
+     * @param out
      * @param value
      */
-    private String escape(String value) {
-        return value.replace("\"", "'");
+    private void substitute(Appendable out, String value) throws IOException {
+        if (out instanceof Utf8Buffer) {
+            substitute((Utf8Buffer) out, value);
+            return;
+        }
+        if (value == null) {
+            out.append(NULL);
+            return;
+        }
+        int clean = 0;
+        for (int i = value.indexOf(QUOTE); i >= 0;
+                i = value.indexOf(QUOTE, i + 1)) {
+            out.append(value, clean, i).append(SUBSTITUTE_QUOTE);
+            clean = i + 1;
+        }
+        out.append(value, clean, value.length());
     }
-    
+
+    /**
+     * Substitutes in place once encoded, without copying the value; a word at
+     * a time on Java 9+, a byte at a time on Java 8 (see
+     * {@link Utf8Buffer#replace(int, int, char, char)}).
+     */
+    private void substitute(Utf8Buffer out, String value) {
+        final int start = out.length();
+        out.append((value == null) ? NULL : value);
+        out.replace(start, out.length(), QUOTE, SUBSTITUTE_QUOTE);
+    }
+
 }
@@ -0,0 +1,285 @@
+package org.geoint.logging.splunk;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import org.geoint.logging.splunk.NativeSplunkFormatter.PreparedFields;
+
+/**
+ * Fields (such as request id, user, tenant and trace id) added to every event
+ * logged within a scope.
+ *
+ * A context is immutable; adding a field creates a new context sharing the
+ * fields of its parent, so a context snapshot is taken (by events and tasks)
+ * by reference, without copying. The sorted fields, and their native format
+ * rendering, are built once per context when first needed and shared by
+ * every event logged with it.
+ *
+ * The current context is bound to the thread. Tasks run by other threads,
+ * including virtual threads, are given the context by reference with
+ * {@link #wrap(Runnable)} or {@link #propagating(Executor)}. Contexts are
+ * deliberately not inherited by new threads, as pooled threads would keep
+ * the context of whichever task started them.
+ *
+ * Usage:
+ * <pre>
+ * try (SplunkContext.Scope s = SplunkContext.current()
+ *         .with("requestId", id).with("user", user).attach()) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * Context fields are named as given (not prefixed) and are replaced by
+ * standard or record fields of the same name.
+ *
+ * Thread-safe.
+ */
+public final class SplunkContext {
+
+    //parent chains longer than this are flattened
+    private static final int MAX_DEPTH = 16;
+    private static final NativeSplunkFormatter FORMATTER
+            = new NativeSplunkFormatter();
+    private static final SplunkContext EMPTY
+            = new SplunkContext(Collections.emptySortedMap());
+    private static final ThreadLocal<SplunkContext> CURRENT
+            = ThreadLocal.withInitial(() -> EMPTY);
+
+    private final SplunkContext parent;
+    private final String key;
+    private final String value;
+    private final boolean removed;
+    private final int depth;
+    private volatile SortedMap<String, String> fields;
+    private volatile PreparedFields prepared;
+
+    private SplunkContext(SortedMap<String, String> fields) {
+        this.parent = null;
+        this.key = null;
+        this.value = null;
+        this.removed = false;
+        this.depth = 0;
+        this.fields = Collections.unmodifiableSortedMap(fields);
+    }
+
+    private SplunkContext(SplunkContext parent, String key, String value,
+            boolean removed) {
+        this.parent = parent;
+        this.key = key;
+        this.value = value;
+        this.removed = removed;
+        this.depth = parent.depth + 1;
+    }
+
+    /**
+     *
+     * @return context without fields
+     */
+    public static SplunkContext empty() {
+        return EMPTY;
+    }
+
+    /**
+     *
+     * @return context of the current thread
+     */
+    public static SplunkContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Add a field to the current context until the scope is closed.
+     *
+     * @param name
+     * @param value
+     * @return scope, to be closed
+     */
+    public static Scope put(String name, String value) {
+        return current().with(name, value).attach();
+    }
+
+    /**
+     * Executor running each task with the context current when the task was
+     * submitted.
+     *
+     * @param executor
+     * @return context propagating executor
+     */
+    public static Executor propagating(Executor executor) {
+        return (task) -> executor.execute(current().wrap(task));
+    }
+
+    /**
+     * A context with the field added (or replaced); this context is not
+     * changed.
+     *
+     * @param name
+     * @param value
+     * @return new context
+     */
+    public SplunkContext with(String name, String value) {
+        if (name == null) {
+            throw new IllegalArgumentException("Context field name is "
+                    + "required");
+        }
+        return child(name, value, false);
+    }
+
+    /**
+     * A context without the field; this context is not changed.
+     *
+     * @param name
+     * @return new context
+     */
+    public SplunkContext without(String name) {
+        return (getFields().containsKey(name))
+                ? child(name, null, true) : this;
+    }
+
+    /**
+     *
+     * @param name
+     * @return value of the field, or null if not set
+     */
+    public String get(String name) {
+        for (SplunkContext c = this; c != null; c = c.parent) {
+            if (c.parent == null) {
+                return c.fields.get(name);
+            }
+            if (c.key.equals(name)) {
+                return c.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @return true if the context has no fields
+     */
+    public boolean isEmpty() {
+        return getFields().isEmpty();
+    }
+
+    /**
+     *
+     * @return context fields, sorted by name
+     */
+    public SortedMap<String, String> getFields() {
+        SortedMap<String, String> f = fields;
+        if (f == null) {
+            //collect from the nearest node, which replaces its parents
+            final TreeMap<String, String> collected = new TreeMap<>();
+            final Set<String> seen = new HashSet<>();
+            SplunkContext c = this;
+            for (; c.parent != null; c = c.parent) {
+                if (seen.add(c.key) && !c.removed) {
+                    collected.put(c.key, c.value);
+                }
+            }
+            for (Map.Entry<String, String> e : c.fields.entrySet()) {
+                if (!seen.contains(e.getKey())) {
+                    collected.put(e.getKey(), e.getValue());
+                }
+            }
+            f = Collections.unmodifiableSortedMap(collected);
+            fields = f;
+        }
+        return f;
+    }
+
+    /**
+     * The context fields rendered by the {@link NativeSplunkFormatter}, built
+     * once for the context.
+     *
+     * @return prepared fields
+     */
+    public PreparedFields getPreparedFields() {
+        PreparedFields p = prepared;
+        if (p == null) {
+            p = FORMATTER.prepare(getFields());
+            prepared = p;
+        }
+        return p;
+    }
+
+    /**
+     * Make this the context of the current thread until the scope is closed.
+     *
+     * @return scope, to be closed
+     */
+    public Scope attach() {
+        final SplunkContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /**
+     *
+     * @param task
+     * @return task run with this context
+     */
+    @SuppressWarnings("try")
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            try (Scope s = attach()) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     *
+     * @param <V>
+     * @param task
+     * @return task called with this context
+     */
+    @SuppressWarnings("try")
+    public <V> Callable<V> wrap(Callable<V> task) {
+        return () -> {
+            try (Scope s = attach()) {
+                return task.call();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return getFields().toString();
+    }
+
+    private SplunkContext child(String name, String value, boolean remove) {
+        if (depth >= MAX_DEPTH) {
+            final TreeMap<String, String> flat = new TreeMap<>(getFields());
+            if (remove) {
+                flat.remove(name);
+            } else {
+                flat.put(name, value);
+            }
+            return new SplunkContext(flat);
+        }
+        return new SplunkContext(this, name, value, remove);
+    }
+
+    /**
+     * Restores the previous context of the thread when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final SplunkContext previous;
+
+        private Scope(SplunkContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            CURRENT.set(previous);
+        }
+    }
+}
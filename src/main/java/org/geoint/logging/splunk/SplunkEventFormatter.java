@@ -7,4 +7,17 @@ package org.geoint.logging.splunk;
 public interface SplunkEventFormatter {
 
     String format(SplunkEvent event);
+
+    /**
+     * Formats the event as UTF-8 bytes written to the sink.
+     *
+     * Formatters which can write directly to the sink should override this
+     * method to avoid creating the intermediate String.
+     *
+     * @param event
+     * @param sink
+     */
+    default void format(SplunkEvent event, Utf8Sink sink) {
+        sink.append(format(event));
+    }
 }
@@ -0,0 +1,300 @@
+package org.geoint.logging.splunk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Growable in-memory {@link Utf8Sink}.
+ *
+ * Characters are encoded as they are appended, with a fast path for ASCII.
+ * Unpaired surrogates are encoded as '?', the same as
+ * {@link String#getBytes(java.nio.charset.Charset)}, so the encoded bytes are
+ * identical to encoding the equivalent String.
+ *
+ * Utf8Buffer instances are not thread-safe.
+ */
+public class Utf8Buffer implements Utf8Sink {
+
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int MAX_BYTES_PER_CHAR = 3;
+    private static final String NULL = "null";
+
+    private byte[] bytes;
+    private int length;
+    //little-endian view of bytes, for word at a time scanning
+    private ByteBuffer words;
+
+    public Utf8Buffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Utf8Buffer(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    @Override
+    public Utf8Buffer write(int b) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) b;
+        return this;
+    }
+
+    @Override
+    public Utf8Buffer write(byte[] src, int offset, int len) {
+        ensureCapacity(len);
+        System.arraycopy(src, offset, bytes, length, len);
+        length += len;
+        return this;
+    }
+
+    public Utf8Buffer write(byte[] src) {
+        return write(src, 0, src.length);
+    }
+
+    /**
+     * Write the remaining bytes of the source, advancing its position.
+     *
+     * @param src
+     * @return this buffer
+     */
+    public Utf8Buffer write(ByteBuffer src) {
+        final int len = src.remaining();
+        ensureCapacity(len);
+        src.get(bytes, length, len);
+        length += len;
+        return this;
+    }
+
+    @Override
+    public Utf8Buffer append(CharSequence csq) {
+        if (csq == null) {
+            csq = NULL;
+        }
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Utf8Buffer append(CharSequence csq, int start, int end) {
+        if (csq == null) {
+            csq = NULL;
+        }
+        ensureCapacity(end - start);
+
+        //ASCII fast path, one byte per char
+        int i = start;
+        int l = length;
+        final byte[] b = bytes;
+        for (; i < end; i++) {
+            final char c = csq.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            b[l++] = (byte) c;
+        }
+        length = l;
+
+        if (i < end) {
+            appendEncoded(csq, i, end);
+        }
+        return this;
+    }
+
+    @Override
+    public Utf8Buffer append(char c) {
+        if (c < 0x80) {
+            return write(c);
+        }
+        ensureCapacity(MAX_BYTES_PER_CHAR);
+        if (Character.isSurrogate(c)) {
+            bytes[length++] = '?';
+        } else {
+            encode(c);
+        }
+        return this;
+    }
+
+    /**
+     * Substitute an ASCII character for another within a range of the
+     * written bytes.
+     *
+     * ASCII bytes never occur within multi-byte UTF-8 sequences, so this is
+     * the same as substituting the characters before encoding. The range is
+     * scanned a word at a time by the {@link EscapeScanner} where that is
+     * faster (Java 9+).
+     *
+     * @param start inclusive
+     * @param end exclusive
+     * @param target ASCII character to replace
+     * @param replacement ASCII replacement
+     */
+    public void replace(int start, int end, char target, char replacement) {
+        final byte t = (byte) target;
+        if (!EscapeScanner.WORD_LOADS) {
+            for (int i = start; i < end; i++) {
+                if (bytes[i] == t) {
+                    bytes[i] = (byte) replacement;
+                }
+            }
+            return;
+        }
+        final ByteBuffer w = words();
+        for (int i = EscapeScanner.indexOf(w, start, end, t); i >= 0;
+                i = EscapeScanner.indexOf(w, i + 1, end, t)) {
+            bytes[i] = (byte) replacement;
+        }
+    }
+
+    /**
+     *
+     * @return number of bytes written to the buffer
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Backing array, valid from 0 to {@link #length()}.
+     *
+     * @return backing array
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * Discard the contents of the buffer, retaining its capacity.
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    public int capacity() {
+        return bytes.length;
+    }
+
+    /**
+     *
+     * @return copy of the written bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * Wraps the written bytes without copying.
+     *
+     * @return buffer view of the written bytes, valid until this buffer is
+     * modified
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes, 0, length);
+    }
+
+    /**
+     * Update the digest with the written bytes.
+     *
+     * @param digest
+     */
+    public void digest(MessageDigest digest) {
+        digest.update(bytes, 0, length);
+    }
+
+    /**
+     * Write all of the buffer to the channel.
+     *
+     * @param channel blocking channel
+     * @throws IOException
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        final ByteBuffer bb = asByteBuffer();
+        while (bb.hasRemaining()) {
+            channel.write(bb);
+        }
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     *
+     * @return written bytes decoded as a String
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Discard the bytes written after the length.
+     *
+     * @param newLength
+     * @throws IllegalArgumentException if newLength is negative or greater
+     * than the current length
+     */
+    public void truncate(int newLength) {
+        if (newLength < 0 || newLength > length) {
+            throw new IllegalArgumentException("Invalid length " + newLength
+                    + " for buffer of " + length + " bytes");
+        }
+        length = newLength;
+    }
+
+    /**
+     *
+     * @return little-endian view of the backing array, valid until the
+     * buffer grows
+     */
+    ByteBuffer words() {
+        if (words == null || words.array() != bytes) {
+            words = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return words;
+    }
+
+    private void appendEncoded(CharSequence csq, int start, int end) {
+        ensureCapacity((end - start) * MAX_BYTES_PER_CHAR);
+        for (int i = start; i < end; i++) {
+            final char c = csq.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (!Character.isSurrogate(c)) {
+                encode(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end
+                    && Character.isLowSurrogate(csq.charAt(i + 1))) {
+                //4 bytes for the pair, which was already accounted 2*3 bytes
+                final int cp = Character.toCodePoint(c, csq.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (cp >> 18));
+                bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                bytes[length++] = '?'; //unpaired surrogate
+            }
+        }
+    }
+
+    private void encode(char c) {
+        if (c < 0x800) {
+            bytes[length++] = (byte) (0xC0 | (c >> 6));
+        } else {
+            bytes[length++] = (byte) (0xE0 | (c >> 12));
+            bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        }
+        bytes[length++] = (byte) (0x80 | (c & 0x3F));
+    }
+
+    private void ensureCapacity(int additional) {
+        final int required = length + additional;
+        if (required > bytes.length) {
+            bytes = Arrays.copyOf(bytes,
+                    Math.max(required, bytes.length * 2));
+        }
+    }
+}
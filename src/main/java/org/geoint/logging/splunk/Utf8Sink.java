@@ -0,0 +1,48 @@
+package org.geoint.logging.splunk;
+
+/**
+ * Destination for UTF-8 encoded event bytes.
+ *
+ * Characters appended to the sink are encoded to UTF-8 as they are written, so
+ * formatted events do not need to be built as a String and encoded again
+ * later.
+ *
+ * Unlike the general {@link Appendable} contract, sinks do not throw
+ * IOException.
+ */
+public interface Utf8Sink extends Appendable {
+
+    /**
+     * Write a single (already encoded) byte.
+     *
+     * @param b
+     * @return fluid interface
+     */
+    Utf8Sink write(int b);
+
+    /**
+     * Write (already encoded) bytes.
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return fluid interface
+     */
+    Utf8Sink write(byte[] bytes, int offset, int length);
+
+    /**
+     * Encode the characters as UTF-8.
+     *
+     * @param csq characters, "null" is written if null
+     * @return fluid interface
+     */
+    @Override
+    Utf8Sink append(CharSequence csq);
+
+    @Override
+    Utf8Sink append(CharSequence csq, int start, int end);
+
+    @Override
+    Utf8Sink append(char c);
+
+}
@@ -0,0 +1,31 @@
+package org.geoint.logging.splunk.crypto;
+
+/**
+ * EventHash of already computed hash bytes.
+ */
+public final class ByteArrayEventHash implements EventHash {
+
+    private final String algorithmName;
+    private final byte[] bytes;
+
+    public ByteArrayEventHash(String algorithmName, byte[] bytes) {
+        this.algorithmName = algorithmName;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    @Override
+    public String asHex() {
+        return Hex.encode(bytes);
+    }
+
+    @Override
+    public byte[] asBytes() {
+        return bytes;
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.geoint.logging.splunk.crypto;
+
+/**
+ * CRC-32C (Castagnoli) checksum of the event, detecting accidental
+ * corruption only; it offers no protection against deliberate edits.
+ *
+ * Table driven, eight bytes at a time (slicing-by-8), so it runs on Java 8
+ * without java.util.zip.CRC32C.
+ *
+ * NOT THREAD SAFE.
+ */
+final class Crc32cDigester implements EventDigester {
+
+    private static final int POLY = 0x82F63B78; //reflected
+    private static final int[][] TABLES = new int[8][256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++) {
+                crc = ((crc & 1) != 0) ? (crc >>> 1) ^ POLY : crc >>> 1;
+            }
+            TABLES[0][n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            int crc = TABLES[0][n];
+            for (int t = 1; t < 8; t++) {
+                crc = TABLES[0][crc & 0xff] ^ (crc >>> 8);
+                TABLES[t][n] = crc;
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+    @Override
+    public void update(byte b) {
+        crc = TABLES[0][(crc ^ b) & 0xff] ^ (crc >>> 8);
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        final int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2],
+                t3 = TABLES[3], t4 = TABLES[4], t5 = TABLES[5],
+                t6 = TABLES[6], t7 = TABLES[7];
+        int c = crc;
+        int i = off;
+        final int end = off + len;
+        for (; end - i >= 8; i += 8) {
+            final int lo = c ^ ((b[i] & 0xff) | (b[i + 1] & 0xff) << 8
+                    | (b[i + 2] & 0xff) << 16 | (b[i + 3] & 0xff) << 24);
+            c = t7[lo & 0xff] ^ t6[(lo >>> 8) & 0xff]
+                    ^ t5[(lo >>> 16) & 0xff] ^ t4[lo >>> 24]
+                    ^ t3[b[i + 4] & 0xff] ^ t2[b[i + 5] & 0xff]
+                    ^ t1[b[i + 6] & 0xff] ^ t0[b[i + 7] & 0xff];
+        }
+        for (; i < end; i++) {
+            c = t0[(c ^ b[i]) & 0xff] ^ (c >>> 8);
+        }
+        crc = c;
+    }
+
+    @Override
+    public byte[] digest() {
+        final int value = ~crc;
+        crc = 0xFFFFFFFF;
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16),
+            (byte) (value >>> 8), (byte) value};
+    }
+
+    @Override
+    public int getDigestLength() {
+        return 4;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return EventHashers.CRC32C;
+    }
+}
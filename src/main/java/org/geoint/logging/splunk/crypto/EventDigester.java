@@ -0,0 +1,79 @@
+package org.geoint.logging.splunk.crypto;
+
+import java.security.MessageDigest;
+
+/**
+ * Incrementally digests the canonical (hashed) form of a single event.
+ *
+ * NOT THREAD SAFE.
+ */
+public interface EventDigester {
+
+    void update(byte b);
+
+    void update(byte[] b, int off, int len);
+
+    /**
+     * Completes the digest, resetting the digester for another event.
+     *
+     * @return digest bytes
+     */
+    byte[] digest();
+
+    /**
+     *
+     * @return length of the digest in bytes
+     */
+    int getDigestLength();
+
+    /**
+     *
+     * @return name of the hash algorithm
+     */
+    String getAlgorithm();
+
+    /**
+     * The id of the key used by a keyed digest, recorded on the event so the
+     * hash can be verified.
+     *
+     * @return key id, or null if the digest is not keyed
+     */
+    default String getKeyId() {
+        return null;
+    }
+
+    /**
+     * Digester using the message digest.
+     *
+     * @param digest
+     * @return digester
+     */
+    static EventDigester of(MessageDigest digest) {
+        return new EventDigester() {
+            @Override
+            public void update(byte b) {
+                digest.update(b);
+            }
+
+            @Override
+            public void update(byte[] b, int off, int len) {
+                digest.update(b, off, len);
+            }
+
+            @Override
+            public byte[] digest() {
+                return digest.digest();
+            }
+
+            @Override
+            public int getDigestLength() {
+                return digest.getDigestLength();
+            }
+
+            @Override
+            public String getAlgorithm() {
+                return digest.getAlgorithm();
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package org.geoint.logging.splunk.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of event hashers by algorithm name, the name recorded on hashed
+ * events, so a verifier can find the hasher used for an event.
+ *
+ * Registered by default:
+ * <ul>
+ * <li>{@value #SHA_256} - the default event hash</li>
+ * <li>{@value #SHA_512_256} - cryptographic, faster than SHA-256 on 64-bit
+ * JVMs; a standard digest on Java 9+, registered on Java 8 only if a
+ * security provider supplies it</li>
+ * <li>{@value #SHA_1}, {@value #MD5} - legacy digests</li>
+ * <li>{@value #CRC32C} - 32-bit checksum, integrity only</li>
+ * <li>{@value #FNV1A_64} - 64-bit non-cryptographic hash, integrity
+ * only</li>
+ * </ul>
+ *
+ * Keyed hashers, such as the {@link HmacEventHasher}, must be registered by
+ * the application.
+ */
+public final class EventHashers {
+
+    public static final String SHA_256 = MessageDigestRecordHasher.STANDARD_SHA_256;
+    public static final String SHA_512_256 = "SHA-512/256";
+    public static final String SHA_1 = MessageDigestRecordHasher.STANDARD_SHA_1;
+    public static final String MD5 = MessageDigestRecordHasher.STANDARD_MD5;
+    public static final String CRC32C = "CRC32C";
+    public static final String FNV1A_64 = "FNV-1a-64";
+
+    private static final ConcurrentMap<String, StreamingEventHasher> HASHERS
+            = new ConcurrentHashMap<>();
+
+    static {
+        register(SHA_256, messageDigest(SHA_256));
+        if (isAvailable(SHA_512_256)) {
+            register(SHA_512_256, messageDigest(SHA_512_256));
+        }
+        register(SHA_1, messageDigest(SHA_1));
+        register(MD5, messageDigest(MD5));
+        register(CRC32C, Crc32cDigester::new);
+        register(FNV1A_64, Fnv1a64Digester::new);
+    }
+
+    private EventHashers() {
+    }
+
+    /**
+     * Registers (or replaces) the hasher for the algorithm name.
+     *
+     * @param algorithm algorithm name, as returned by the digesters of the
+     * hasher
+     * @param hasher thread-safe hasher
+     */
+    public static void register(String algorithm, StreamingEventHasher hasher) {
+        HASHERS.put(algorithm, hasher);
+    }
+
+    /**
+     *
+     * @param algorithm algorithm name
+     * @return hasher for the algorithm
+     * @throws IllegalArgumentException if no hasher is registered for the
+     * algorithm
+     */
+    public static StreamingEventHasher get(String algorithm) {
+        final StreamingEventHasher hasher = HASHERS.get(algorithm);
+        if (hasher == null) {
+            throw new IllegalArgumentException("No event hasher is "
+                    + "registered for algorithm '" + algorithm + "'");
+        }
+        return hasher;
+    }
+
+    /**
+     *
+     * @param algorithm algorithm name
+     * @return true if a hasher is registered for the algorithm
+     */
+    public static boolean isRegistered(String algorithm) {
+        return HASHERS.containsKey(algorithm);
+    }
+
+    /**
+     *
+     * @return registered algorithm names
+     */
+    public static Set<String> getAlgorithms() {
+        return Collections.unmodifiableSet(HASHERS.keySet());
+    }
+
+    /**
+     *
+     * @param algorithm message digest algorithm name
+     * @return true if a security provider supplies the digest
+     */
+    private static boolean isAvailable(String algorithm) {
+        try {
+            MessageDigest.getInstance(algorithm);
+            return true;
+        } catch (NoSuchAlgorithmException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Thread-safe hasher using a message digest per thread.
+     *
+     * @param algorithm standard JVM message digest algorithm name
+     * @return hasher
+     */
+    public static StreamingEventHasher messageDigest(String algorithm) {
+        final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(
+                () -> MessageDigestRecordHasher.standardDigest(algorithm));
+        return () -> EventDigester.of(digests.get());
+    }
+}
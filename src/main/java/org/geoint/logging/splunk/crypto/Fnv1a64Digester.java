@@ -0,0 +1,50 @@
+package org.geoint.logging.splunk.crypto;
+
+/**
+ * 64-bit FNV-1a hash of the event; a fast non-cryptographic hash for
+ * integrity checks only.
+ *
+ * NOT THREAD SAFE.
+ */
+final class Fnv1a64Digester implements EventDigester {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    @Override
+    public void update(byte b) {
+        hash = (hash ^ (b & 0xff)) * PRIME;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        long h = hash;
+        for (int i = off; i < off + len; i++) {
+            h = (h ^ (b[i] & 0xff)) * PRIME;
+        }
+        hash = h;
+    }
+
+    @Override
+    public byte[] digest() {
+        final long value = hash;
+        hash = OFFSET_BASIS;
+        final byte[] digest = new byte[8];
+        for (int i = 0; i < 8; i++) {
+            digest[i] = (byte) (value >>> (56 - 8 * i));
+        }
+        return digest;
+    }
+
+    @Override
+    public int getDigestLength() {
+        return 8;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return EventHashers.FNV1A_64;
+    }
+}
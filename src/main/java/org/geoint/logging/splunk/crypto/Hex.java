@@ -0,0 +1,35 @@
+package org.geoint.logging.splunk.crypto;
+
+/**
+ * Upper-case hexadecimal encoding of hash bytes.
+ */
+public final class Hex {
+
+    private static final byte[] DIGITS = "0123456789ABCDEF".getBytes();
+
+    private Hex() {
+    }
+
+    public static String encode(byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = (char) DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = (char) DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Encode the bytes as ASCII hex digits into the destination array.
+     *
+     * @param bytes
+     * @param dest destination, must have room for twice the bytes length
+     * @param offset destination offset
+     */
+    public static void encode(byte[] bytes, byte[] dest, int offset) {
+        for (int i = 0; i < bytes.length; i++) {
+            dest[offset++] = DIGITS[(bytes[i] >> 4) & 0xF];
+            dest[offset++] = DIGITS[bytes[i] & 0xF];
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.geoint.logging.splunk.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keyed (HMAC, RFC 2104) event hasher, so event hashes can't be recomputed
+ * by someone without the key after editing a log.
+ *
+ * The digest states after absorbing the keyed inner and outer pads are
+ * computed once per key; each event clones them rather than re-keying, so
+ * an event costs one extra compression of the (short) inner hash compared to
+ * the unkeyed digest.
+ *
+ * The key id is recorded on each event so the hash can be verified with the
+ * right key. Keys may be rotated at any time without pausing logging; events
+ * being hashed during a rotation complete with the key they started with.
+ *
+ * Thread-safe.
+ */
+public final class HmacEventHasher implements StreamingEventHasher {
+
+    private static final byte IPAD = 0x36;
+    private static final byte OPAD = 0x5c;
+    private static final Map<String, Integer> BLOCK_SIZES = new HashMap<>();
+
+    static {
+        BLOCK_SIZES.put("MD5", 64);
+        BLOCK_SIZES.put("SHA-1", 64);
+        BLOCK_SIZES.put("SHA-224", 64);
+        BLOCK_SIZES.put("SHA-256", 64);
+        BLOCK_SIZES.put("SHA-384", 128);
+        BLOCK_SIZES.put("SHA-512", 128);
+        BLOCK_SIZES.put("SHA-512/224", 128);
+        BLOCK_SIZES.put("SHA-512/256", 128);
+    }
+
+    private final String digestAlgorithm;
+    private final AtomicReference<KeyState> key = new AtomicReference<>();
+
+    /**
+     *
+     * @param digestAlgorithm underlying message digest algorithm, such as
+     * SHA-256
+     * @param keyId id of the key, recorded on events
+     * @param key secret key bytes
+     * @throws NoSuchAlgorithmException if the digest is not available or
+     * its block size is not known
+     */
+    public HmacEventHasher(String digestAlgorithm, String keyId, byte[] key)
+            throws NoSuchAlgorithmException {
+        this.digestAlgorithm = digestAlgorithm;
+        this.key.set(keyState(keyId, key));
+    }
+
+    /**
+     * Use a new key for events hashed from now on.
+     *
+     * @param keyId id of the new key, recorded on events
+     * @param key secret key bytes
+     */
+    public void rotate(String keyId, byte[] key) {
+        try {
+            this.key.set(keyState(keyId, key));
+        } catch (NoSuchAlgorithmException ex) {
+            //algorithm was available when constructed
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     *
+     * @return id of the key currently used
+     */
+    public String getKeyId() {
+        return key.get().keyId;
+    }
+
+    @Override
+    public EventDigester newDigester() {
+        return new HmacDigester(key.get());
+    }
+
+    private KeyState keyState(String keyId, byte[] key)
+            throws NoSuchAlgorithmException {
+        final Integer blockSize = BLOCK_SIZES.get(digestAlgorithm);
+        if (blockSize == null) {
+            throw new NoSuchAlgorithmException("HMAC block size for "
+                    + digestAlgorithm + " is not known");
+        }
+        if (keyId == null || key == null || key.length == 0) {
+            throw new IllegalArgumentException("A key id and key are "
+                    + "required");
+        }
+
+        final MessageDigest inner = MessageDigest.getInstance(digestAlgorithm);
+        final MessageDigest outer = MessageDigest.getInstance(digestAlgorithm);
+        final byte[] block = Arrays.copyOf((key.length > blockSize)
+                ? inner.digest(key) : key, blockSize);
+        final byte[] pad = new byte[blockSize];
+        for (int i = 0; i < blockSize; i++) {
+            pad[i] = (byte) (block[i] ^ IPAD);
+        }
+        inner.update(pad);
+        for (int i = 0; i < blockSize; i++) {
+            pad[i] = (byte) (block[i] ^ OPAD);
+        }
+        outer.update(pad);
+        Arrays.fill(block, (byte) 0);
+        Arrays.fill(pad, (byte) 0);
+
+        final KeyState state = new KeyState(keyId, "Hmac"
+                + digestAlgorithm.replace("-", ""), inner, outer);
+        state.inner(); //fail now if the digest can't be cloned
+        return state;
+    }
+
+    /**
+     * Pre-keyed digest states; never updated, only cloned.
+     */
+    private static final class KeyState {
+
+        private final String keyId;
+        private final String algorithm;
+        private final MessageDigest innerPadded;
+        private final MessageDigest outerPadded;
+
+        private KeyState(String keyId, String algorithm,
+                MessageDigest innerPadded, MessageDigest outerPadded) {
+            this.keyId = keyId;
+            this.algorithm = algorithm;
+            this.innerPadded = innerPadded;
+            this.outerPadded = outerPadded;
+        }
+
+        private MessageDigest inner() {
+            return copy(innerPadded);
+        }
+
+        private MessageDigest outer() {
+            return copy(outerPadded);
+        }
+
+        private static MessageDigest copy(MessageDigest digest) {
+            try {
+                return (MessageDigest) digest.clone();
+            } catch (CloneNotSupportedException ex) {
+                throw new IllegalArgumentException("Message digest "
+                        + digest.getAlgorithm() + " can not be cloned", ex);
+            }
+        }
+    }
+
+    private static final class HmacDigester implements EventDigester {
+
+        private final KeyState key;
+        private MessageDigest inner;
+
+        private HmacDigester(KeyState key) {
+            this.key = key;
+            this.inner = key.inner();
+        }
+
+        @Override
+        public void update(byte b) {
+            inner().update(b);
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            inner().update(b, off, len);
+        }
+
+        @Override
+        public byte[] digest() {
+            final MessageDigest outer = key.outer();
+            outer.update(inner().digest());
+            inner = null; //re-cloned if reused
+            return outer.digest();
+        }
+
+        @Override
+        public int getDigestLength() {
+            return key.innerPadded.getDigestLength();
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return key.algorithm;
+        }
+
+        @Override
+        public String getKeyId() {
+            return key.keyId;
+        }
+
+        private MessageDigest inner() {
+            if (inner == null) {
+                inner = key.inner();
+            }
+            return inner;
+        }
+    }
+}
@@ -1,10 +1,7 @@
 package org.geoint.logging.splunk.crypto;
 
-import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.TreeMap;
-import javax.xml.bind.DatatypeConverter;
 import org.geoint.logging.splunk.SplunkEvent;
 import org.geoint.logging.splunk.jul.SplunkLogRecord;
 
@@ -14,14 +11,18 @@ import org.geoint.logging.splunk.jul.SplunkLogRecord;
  *
  * NOT THREAD SAFE.
  */
-public final class MessageDigestRecordHasher implements SplunkEventHasher {
+public final class MessageDigestRecordHasher implements StreamingEventHasher {
 
     private final MessageDigest digest;
     //some JVM-default algorithms available
     public static final String STANDARD_MD5 = "MD5";
     public static final String STANDARD_SHA_1 = "SHA-1";
     public static final String STANDARD_SHA_256 = "SHA-256";
-    private static final String FIELD_KV_GLUE = "-";
+    /**
+     * Separates the name and value of each field in the hashed (canonical)
+     * form of the event.
+     */
+    public static final char FIELD_KV_GLUE = '-';
 
     public MessageDigestRecordHasher(MessageDigest digestor) {
         this.digest = digestor;
@@ -40,14 +41,15 @@ public final class MessageDigestRecordHasher implements SplunkEventHasher {
         return usingStandardAlgorithm(STANDARD_SHA_1, event);
     }
 
-    public static EventHash md5(SplunkEvent event) {
-        return usingStandardAlgorithm(STANDARD_MD5, event);
-    }
-
-    private static EventHash usingStandardAlgorithm(String algorithmName,
-            SplunkEvent event) {
+    /**
+     * Creates a new instance of a JVM standard MessageDigest algorithm.
+     *
+     * @param algorithmName standard algorithm name
+     * @return new message digest
+     */
+    public static MessageDigest standardDigest(String algorithmName) {
         try {
-            return new MessageDigestRecordHasher(algorithmName).hash(event);
+            return MessageDigest.getInstance(algorithmName);
         } catch (NoSuchAlgorithmException ex) {
             assert false : "JVM standard message digest algorithm '"
                     + algorithmName + "' was not found";
@@ -57,40 +59,18 @@ public final class MessageDigestRecordHasher implements SplunkEventHasher {
         }
     }
 
-    @Override
-    public EventHash hash(SplunkEvent event) {
-        TreeMap<String, String> fields = new TreeMap<>(event.getFields());
-
-        fields.entrySet().stream()
-                .map((e) -> String.join(FIELD_KV_GLUE, e.getKey(), e.getValue()))
-                .forEach((kv) -> digest.update(kv.getBytes(StandardCharsets.UTF_8)));
-        return new MessageDigestEventHash(digest);
+    public static EventHash md5(SplunkEvent event) {
+        return usingStandardAlgorithm(STANDARD_MD5, event);
     }
 
-    private final class MessageDigestEventHash implements EventHash {
-
-        private final String algorithmName;
-        private final byte[] bytes;
-
-        private MessageDigestEventHash(MessageDigest digest) {
-            this.algorithmName = digest.getAlgorithm();
-            this.bytes = digest.digest();
-        }
-
-        @Override
-        public String getAlgorithmName() {
-            return algorithmName;
-        }
-
-        @Override
-        public String asHex() {
-            return DatatypeConverter.printHexBinary(bytes);
-        }
-
-        @Override
-        public byte[] asBytes() {
-            return bytes;
-        }
+    private static EventHash usingStandardAlgorithm(String algorithmName,
+            SplunkEvent event) {
+        return new MessageDigestRecordHasher(standardDigest(algorithmName))
+                .hash(event);
+    }
 
+    @Override
+    public EventDigester newDigester() {
+        return EventDigester.of(digest);
     }
 }
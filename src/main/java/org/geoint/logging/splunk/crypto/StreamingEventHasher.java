@@ -0,0 +1,57 @@
+package org.geoint.logging.splunk.crypto;
+
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.Utf8Buffer;
+
+/**
+ * Hasher which can digest the canonical form of an event incrementally, as
+ * it is formatted, rather than from a completed event.
+ *
+ * The canonical form is each field, sorted by name, as the UTF-8 bytes of
+ * name, {@link MessageDigestRecordHasher#FIELD_KV_GLUE}, value.
+ */
+@FunctionalInterface
+public interface StreamingEventHasher extends SplunkEventHasher {
+
+    /**
+     * Digester for one event; may be called from any thread, each digester
+     * must only be used by one thread at a time.
+     *
+     * @return digester ready for an event
+     */
+    EventDigester newDigester();
+
+    @Override
+    default EventHash hash(SplunkEvent event) {
+        final EventDigester digester = newDigester();
+        return new ByteArrayEventHash(digester.getAlgorithm(),
+                digest(new TreeMap<>(event.getFields()), digester));
+    }
+
+    /**
+     * Digest the canonical form of the fields.
+     *
+     * @param fields fields sorted by name
+     * @param digester
+     * @return digest
+     */
+    static byte[] digest(TreeMap<String, String> fields,
+            EventDigester digester) {
+        //encode all fields once and digest the encoded bytes in one update
+        final Utf8Buffer canonical = BufferPool.UTF8.acquire();
+        try {
+            for (Entry<String, String> e : fields.entrySet()) {
+                canonical.append(e.getKey())
+                        .append(MessageDigestRecordHasher.FIELD_KV_GLUE)
+                        .append(e.getValue());
+            }
+            digester.update(canonical.array(), 0, canonical.length());
+        } finally {
+            BufferPool.UTF8.release(canonical);
+        }
+        return digester.digest();
+    }
+}
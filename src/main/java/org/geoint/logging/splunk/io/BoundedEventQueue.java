@@ -0,0 +1,215 @@
+package org.geoint.logging.splunk.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free bounded queue of formatted events waiting for a single delivery
+ * thread, applying an {@link OverflowPolicy} when full.
+ *
+ * Events count against the capacity until the delivery thread reports them
+ * {@link #delivered(int) delivered}, so events taken for an in-progress write
+ * still occupy the queue.
+ *
+ * A lossless queue only rejects events offered after it was closed:
+ * producers blocked waiting for room when it is closed keep waiting, and the
+ * delivery thread can wait for them with {@link #isDrained()}.
+ */
+final class BoundedEventQueue {
+
+    private static final long BLOCK_WAIT_NANOS
+            = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    //enqueued events dropped before delivery
+    private final AtomicLong removed = new AtomicLong();
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Runnable wakeConsumer;
+    private final boolean lossless;
+    //producers in offer, only counted for a lossless queue
+    private final AtomicInteger producers = new AtomicInteger();
+    private volatile long delivered;
+    private volatile boolean closed;
+
+    /**
+     *
+     * @param capacity max events queued
+     * @param policy applied when the queue is full
+     * @param wakeConsumer wakes the delivery thread when the queue is no
+     * longer empty
+     */
+    BoundedEventQueue(int capacity, OverflowPolicy policy,
+            Runnable wakeConsumer) {
+        this(capacity, policy, wakeConsumer, false);
+    }
+
+    /**
+     *
+     * @param capacity max events queued
+     * @param policy applied when the queue is full
+     * @param wakeConsumer wakes the delivery thread when the queue is no
+     * longer empty
+     * @param lossless if producers waiting for room are not released by
+     * {@link #close()}
+     */
+    BoundedEventQueue(int capacity, OverflowPolicy policy,
+            Runnable wakeConsumer, boolean lossless) {
+        this.capacity = capacity;
+        this.policy = policy;
+        this.wakeConsumer = wakeConsumer;
+        this.lossless = lossless;
+    }
+
+    /**
+     * Enqueue an event, applying the overflow policy if full.
+     *
+     * @param event
+     * @return false if the event was dropped
+     */
+    boolean offer(ByteBuffer event) {
+        if (!lossless) {
+            return enqueue(event);
+        }
+        //counted before checking closed, so a draining consumer waits for it
+        producers.incrementAndGet();
+        try {
+            return enqueue(event);
+        } finally {
+            producers.decrementAndGet();
+        }
+    }
+
+    private boolean enqueue(ByteBuffer event) {
+        if (lossless && closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        while ((lossless || !closed) && pending.get() >= capacity) {
+            switch (policy) {
+                case DROP_OLDEST:
+                    if (queue.poll() != null) {
+                        pending.decrementAndGet();
+                        removed.incrementAndGet();
+                        dropped.incrementAndGet();
+                        continue;
+                    }
+                    //everything pending is being written
+                    dropped.incrementAndGet();
+                    return false;
+                case BLOCK:
+                    wakeConsumer.run();
+                    LockSupport.parkNanos(this, BLOCK_WAIT_NANOS);
+                    continue;
+                default:
+                    dropped.incrementAndGet();
+                    return false;
+            }
+        }
+        if (closed && !lossless) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        enqueued.incrementAndGet();
+        queue.offer(event);
+        //only an idle consumer needs waking; counted after the offer so a
+        //busy consumer always sees the event when it next polls
+        if (pending.incrementAndGet() == 1) {
+            wakeConsumer.run();
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @return next event, or null if none are queued
+     */
+    ByteBuffer poll() {
+        return queue.poll();
+    }
+
+    /**
+     * Called by the delivery thread once polled events have been delivered.
+     *
+     * @param count
+     */
+    void delivered(int count) {
+        pending.addAndGet(-count);
+        delivered += count;
+    }
+
+    /**
+     * Called by the delivery thread if polled events could not be delivered.
+     *
+     * @param count
+     */
+    void failed(int count) {
+        //counted as dropped before flush waiters see them removed
+        dropped.addAndGet(count);
+        pending.addAndGet(-count);
+        removed.addAndGet(count);
+    }
+
+    /**
+     * Wait for events enqueued before this call to be delivered (or
+     * dropped).
+     *
+     * @param timeout
+     * @param unit
+     * @param consumer delivery thread
+     * @return true if the events were delivered within the timeout
+     */
+    boolean awaitDelivery(long timeout, TimeUnit unit, Thread consumer) {
+        final long target = enqueued.get();
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (delivered + removed.get() < target) {
+            if (!consumer.isAlive() || deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(this, BLOCK_WAIT_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Stop accepting events; blocked producers are released, unless the
+     * queue is lossless.
+     */
+    void close() {
+        closed = true;
+    }
+
+    boolean isEmpty() {
+        return pending.get() == 0;
+    }
+
+    /**
+     *
+     * @return true if a closed lossless queue has no events pending and no
+     * producers waiting to enqueue
+     */
+    boolean isDrained() {
+        //producers first: a producer not yet counted will see the close
+        return producers.get() == 0 && pending.get() == 0;
+    }
+
+    int getPending() {
+        return pending.get();
+    }
+
+    long getDelivered() {
+        return delivered;
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+}
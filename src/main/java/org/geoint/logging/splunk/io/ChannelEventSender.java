@@ -0,0 +1,182 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends events to a {@link GatheringByteChannel}, such as a file or
+ * {@link RollingSplunkFileChannel}, from a dedicated writer thread.
+ *
+ * Events are queued on a lock-free bounded queue; the writer drains the
+ * queue in batches of up to the max batch size and writes each batch with one
+ * gathering write. When the queue is full the overflow policy is applied.
+ *
+ * A batch which fails to write is counted as dropped, and the sender reports
+ * itself unavailable until a write succeeds.
+ */
+public class ChannelEventSender implements EventSender {
+
+    public static final int DEFAULT_CAPACITY = 65536;
+    public static final int DEFAULT_MAX_BATCH = 256;
+
+    private final GatheringByteChannel channel;
+    private final BoundedEventQueue queue;
+    private final ByteBuffer[] batch;
+    private final Thread writer;
+    private volatile IOException lastError;
+    private volatile boolean closed;
+
+    /**
+     * Sender with the default capacity and batch size, which drops new
+     * events when full.
+     *
+     * @param channel
+     */
+    public ChannelEventSender(GatheringByteChannel channel) {
+        this(channel, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH,
+                OverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     *
+     * @param channel channel to write events to, closed with the sender
+     * @param capacity max events queued
+     * @param maxBatch max events written with one write
+     * @param overflow applied when the queue is full
+     */
+    public ChannelEventSender(GatheringByteChannel channel, int capacity,
+            int maxBatch, OverflowPolicy overflow) {
+        if (maxBatch < 1 || capacity < maxBatch) {
+            throw new IllegalArgumentException("Invalid sender "
+                    + "configuration; batch " + maxBatch + ", capacity "
+                    + capacity);
+        }
+        this.channel = channel;
+        this.batch = new ByteBuffer[maxBatch];
+        this.writer = new Thread(this::drain,
+                "splunk-channel-sender-" + System.identityHashCode(this));
+        this.queue = new BoundedEventQueue(capacity, overflow,
+                () -> LockSupport.unpark(writer));
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public boolean send(ByteBuffer event) {
+        return queue.offer(event);
+    }
+
+    /**
+     * Waits for queued events to be written, then forces a file channel to
+     * storage.
+     */
+    @Override
+    public boolean flush(long timeout, TimeUnit unit) {
+        if (!queue.awaitDelivery(timeout, unit, writer)) {
+            return false;
+        }
+        try {
+            if (channel instanceof FileChannel) {
+                ((FileChannel) channel).force(false);
+            } else if (channel instanceof RollingSplunkFileChannel) {
+                ((RollingSplunkFileChannel) channel).force();
+            }
+            return true;
+        } catch (IOException ex) {
+            lastError = ex;
+            return false;
+        }
+    }
+
+    /**
+     * Stops the writer, discarding queued events, and closes the channel.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.close();
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            lastError = ex;
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return !closed && lastError == null;
+    }
+
+    /**
+     *
+     * @return the error from the last failed write, or null if the last
+     * write succeeded
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public int getPending() {
+        return queue.getPending();
+    }
+
+    @Override
+    public long getSent() {
+        return queue.getDelivered();
+    }
+
+    @Override
+    public long getDropped() {
+        return queue.getDropped();
+    }
+
+    /**
+     * Writer thread loop.
+     */
+    private void drain() {
+        while (!closed) {
+            int size = 0;
+            ByteBuffer event;
+            while (size < batch.length && (event = queue.poll()) != null) {
+                batch[size++] = event;
+            }
+            if (size == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                int offset = 0;
+                while (offset < size) {
+                    channel.write(batch, offset, size - offset);
+                    //skip completely written buffers (handles partial writes)
+                    while (offset < size && !batch[offset].hasRemaining()) {
+                        offset++;
+                    }
+                }
+                lastError = null;
+                queue.delivered(size);
+            } catch (IOException ex) {
+                lastError = ex;
+                queue.failed(size);
+            }
+            for (int i = 0; i < size; i++) {
+                batch[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.geoint.logging.splunk.io;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.crypto.EventHash;
+
+/**
+ * Immutable event read back from its serialized form; the hash is not
+ * recomputed.
+ */
+final class DecodedSplunkEvent implements SplunkEvent {
+
+    private final ZonedDateTime eventTime;
+    private final EventHash hash;
+    private final Map<String, String> fields;
+
+    DecodedSplunkEvent(ZonedDateTime eventTime, EventHash hash,
+            Map<String, String> fields) {
+        this.eventTime = eventTime;
+        this.hash = hash;
+        this.fields = Collections.unmodifiableMap(fields);
+    }
+
+    @Override
+    public ZonedDateTime getEventTime() {
+        return eventTime;
+    }
+
+    @Override
+    public EventHash getHash() {
+        return hash;
+    }
+
+    @Override
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    @Override
+    public String getFieldValue(String field) {
+        return fields.get(field);
+    }
+
+    @Override
+    public Set<String> getFieldNames() {
+        return fields.keySet();
+    }
+
+    @Override
+    public String asString() {
+        return new NativeSplunkFormatter().format(this);
+    }
+}
@@ -0,0 +1,62 @@
+package org.geoint.logging.splunk.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronously delivers formatted splunk events to a destination.
+ *
+ * Implementations must be thread-safe and must only block the calling thread
+ * in {@link #send(ByteBuffer)} if configured with the
+ * {@link OverflowPolicy#BLOCK} policy.
+ */
+public interface EventSender extends AutoCloseable {
+
+    /**
+     * Queue a formatted event for delivery.
+     *
+     * @param event event bytes, must not be modified after being sent
+     * @return false if the event could not be queued (and was dropped)
+     */
+    boolean send(ByteBuffer event);
+
+    /**
+     * Wait for events sent before this call to be delivered.
+     *
+     * @param timeout
+     * @param unit
+     * @return true if the events were delivered within the timeout
+     */
+    boolean flush(long timeout, TimeUnit unit);
+
+    /**
+     *
+     * @return true if the destination is currently accepting writes
+     */
+    boolean isAvailable();
+
+    /**
+     *
+     * @return number of events queued but not yet delivered
+     */
+    int getPending();
+
+    /**
+     *
+     * @return number of events delivered
+     */
+    long getSent();
+
+    /**
+     *
+     * @return number of events dropped, by the overflow policy or because
+     * they could not be delivered
+     */
+    long getDropped();
+
+    /**
+     * Stop delivering events; events not yet delivered are discarded.
+     */
+    @Override
+    void close();
+}
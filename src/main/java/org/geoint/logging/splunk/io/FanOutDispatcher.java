@@ -0,0 +1,122 @@
+package org.geoint.logging.splunk.io;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.SplunkEventFormatter;
+import org.geoint.logging.splunk.Utf8Buffer;
+
+/**
+ * Publishes each event to several destinations.
+ *
+ * An event is formatted once; every destination is given a view of the same
+ * read-only bytes. Each destination is an {@link EventSender} with its own
+ * queue and {@link OverflowPolicy}, so a slow or unavailable destination
+ * fills (and overflows) only its own queue rather than stalling the others.
+ *
+ * Thread-safe.
+ */
+public class FanOutDispatcher implements AutoCloseable {
+
+    private final Map<String, EventSender> destinations;
+    private final SplunkEventFormatter formatter;
+
+    /**
+     * Dispatcher formatting events with the {@link NativeSplunkFormatter}.
+     *
+     * @param destinations named destinations
+     */
+    public FanOutDispatcher(Map<String, ? extends EventSender> destinations) {
+        this(destinations, new NativeSplunkFormatter());
+    }
+
+    /**
+     *
+     * @param destinations named destinations
+     * @param formatter formats events dispatched as {@link SplunkEvent}
+     */
+    public FanOutDispatcher(Map<String, ? extends EventSender> destinations,
+            SplunkEventFormatter formatter) {
+        if (destinations.isEmpty()) {
+            throw new IllegalArgumentException("At least one destination is "
+                    + "required");
+        }
+        this.destinations = Collections.unmodifiableMap(
+                new LinkedHashMap<>(destinations));
+        this.formatter = formatter;
+    }
+
+    /**
+     * Format the event once and publish it to all destinations.
+     *
+     * @param event
+     * @return number of destinations which accepted the event
+     */
+    public int dispatch(SplunkEvent event) {
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            formatter.format(event, buffer);
+            return dispatch(ByteBuffer.wrap(buffer.toByteArray()));
+        } finally {
+            BufferPool.UTF8.release(buffer);
+        }
+    }
+
+    /**
+     * Publish formatted event bytes to all destinations.
+     *
+     * @param event formatted event, must not be modified after dispatch
+     * @return number of destinations which accepted the event
+     */
+    public int dispatch(ByteBuffer event) {
+        final ByteBuffer shared = event.asReadOnlyBuffer();
+        int accepted = 0;
+        for (EventSender destination : destinations.values()) {
+            //each destination gets its own position over the same bytes
+            if (destination.send(shared.duplicate())) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Wait for dispatched events to be delivered by all destinations.
+     *
+     * @param timeout timeout for each destination
+     * @param unit
+     * @return true if all destinations delivered their events in time
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        boolean flushed = true;
+        for (EventSender destination : destinations.values()) {
+            flushed &= destination.flush(timeout, unit);
+        }
+        return flushed;
+    }
+
+    /**
+     * The destinations, by name, in dispatch order; each destination exposes
+     * its own health metrics.
+     *
+     * @return unmodifiable destinations
+     */
+    public Map<String, EventSender> getDestinations() {
+        return destinations;
+    }
+
+    /**
+     * Closes all destinations.
+     */
+    @Override
+    public void close() {
+        for (EventSender destination : destinations.values()) {
+            destination.close();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.geoint.logging.splunk.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the fields of events written in the native splunk format
+ * ({@code time, key="value", key="value"}) directly from their UTF-8 bytes,
+ * without decoding the event.
+ *
+ * Field values never contain a double quote (the native format substitutes
+ * them), so a value always ends at the next quote. Values may contain
+ * newlines (such as multi-line messages), so an event ends at the newline
+ * before the time prefix ({@code yyyy-MM-dd hh:mm:ss.SSS +0000, }) of the
+ * next event, rather than at the first newline.
+ */
+final class NativeEventParser {
+
+    /**
+     * Receives the byte ranges of each field of an event.
+     */
+    interface FieldVisitor {
+
+        void field(ByteBuffer event, int keyStart, int keyEnd, int valueStart,
+                int valueEnd);
+    }
+
+    private static final byte NEWLINE = '\n';
+    private static final byte QUOTE = '"';
+    private static final byte KV_SEPARATOR = '=';
+    private static final byte SPACE = ' ';
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+    //yyyy-MM-dd hh:mm:ss.SSS +0000,
+    private static final byte[] TIME_PREFIX
+            = "0000-00-00 00:00:00.000 +0000, ".getBytes(StandardCharsets.US_ASCII);
+    static final int TIME_PREFIX_LENGTH = TIME_PREFIX.length;
+
+    private NativeEventParser() {
+    }
+
+    /**
+     *
+     * @param b
+     * @param from
+     * @param limit
+     * @return index of the end of the line starting at from (its newline, or
+     * the limit)
+     */
+    static int lineEnd(ByteBuffer b, int from, int limit) {
+        for (int i = from; i < limit; i++) {
+            if (b.get(i) == NEWLINE) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     *
+     * @param b
+     * @param from start of an event
+     * @param limit
+     * @return index of the newline ending the event (the newline before the
+     * next event, or a trailing newline), or the limit
+     */
+    static int eventEnd(ByteBuffer b, int from, int limit) {
+        for (int i = lineEnd(b, from, limit); i < limit;
+                i = lineEnd(b, i + 1, limit)) {
+            if (i + 1 == limit || isEventStart(b, i + 1, limit)) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     *
+     * @param b
+     * @param at
+     * @param limit
+     * @return true if the bytes at the index are the time prefix of an event
+     */
+    static boolean isEventStart(ByteBuffer b, int at, int limit) {
+        if (limit - at < TIME_PREFIX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < TIME_PREFIX_LENGTH; i++) {
+            final byte c = b.get(at + i);
+            final boolean matches;
+            switch (TIME_PREFIX[i]) {
+                case '0':
+                    matches = c >= '0' && c <= '9';
+                    break;
+                case '+':
+                    matches = c == '+' || c == '-';
+                    break;
+                default:
+                    matches = c == TIME_PREFIX[i];
+            }
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visit each key="value" field of the event.
+     *
+     * @param b
+     * @param start start of the event
+     * @param end end of the event
+     * @param visitor
+     */
+    static void fields(ByteBuffer b, int start, int end, FieldVisitor visitor) {
+        int i = start;
+        while (true) {
+            //key="value" pairs follow ", "
+            int keyStart = -1;
+            for (; i < end - 1; i++) {
+                if (b.get(i) == ',' && b.get(i + 1) == SPACE) {
+                    keyStart = i + 2;
+                    break;
+                }
+            }
+            if (keyStart < 0) {
+                return;
+            }
+            int eq = keyStart;
+            while (eq < end && b.get(eq) != KV_SEPARATOR) {
+                eq++;
+            }
+            if (eq + 1 >= end || b.get(eq + 1) != QUOTE) {
+                i = keyStart;
+                continue;
+            }
+            final int valueStart = eq + 2;
+            int valueEnd = valueStart;
+            while (valueEnd < end && b.get(valueEnd) != QUOTE) {
+                valueEnd++;
+            }
+            if (valueEnd >= end) {
+                return; //truncated
+            }
+            visitor.field(b, keyStart, eq, valueStart, valueEnd);
+            i = valueEnd + 1;
+        }
+    }
+
+    /**
+     *
+     * @param b
+     * @param start
+     * @param end
+     * @param expected
+     * @return true if the bytes in the range are the expected bytes
+     */
+    static boolean equals(ByteBuffer b, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (b.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse an ISO-8601 event time, such as 2017-03-01T10:15:30.123Z.
+     *
+     * UTC times (as written by the splunk formatters) are parsed from the
+     * bytes; other offsets are decoded and parsed with java.time.
+     *
+     * @param b
+     * @param start
+     * @param end
+     * @return epoch millis, or Long.MIN_VALUE if not a valid time
+     */
+    static long epochMillis(ByteBuffer b, int start, int end) {
+        try {
+            //yyyy-MM-ddTHH:mm[:ss[.fff]]Z
+            if (end - start >= 17 && b.get(end - 1) == 'Z'
+                    && b.get(start + 4) == '-' && b.get(start + 7) == '-'
+                    && b.get(start + 10) == 'T' && b.get(start + 13) == ':') {
+                final long day = LocalDate.of(digits(b, start, 4),
+                        digits(b, start + 5, 2), digits(b, start + 8, 2))
+                        .toEpochDay();
+                long millis = day * MILLIS_PER_DAY
+                        + digits(b, start + 11, 2) * 3600000L
+                        + digits(b, start + 14, 2) * 60000L;
+                int i = start + 16;
+                if (i < end - 1 && b.get(i) == ':') {
+                    millis += digits(b, i + 1, 2) * 1000L;
+                    i += 3;
+                }
+                if (i < end - 1 && b.get(i) == '.') {
+                    int scale = 100;
+                    for (i++; i < end - 1; i++) {
+                        millis += digit(b.get(i)) * scale;
+                        scale /= 10;
+                    }
+                }
+                if (i == end - 1) {
+                    return millis;
+                }
+            }
+            final byte[] text = new byte[end - start];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = b.get(start + i);
+            }
+            return OffsetDateTime.parse(new String(text,
+                    StandardCharsets.UTF_8)).toInstant().toEpochMilli();
+        } catch (NumberFormatException | DateTimeException ex) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static int digits(ByteBuffer b, int start, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            value = value * 10 + digit(b.get(start + i));
+        }
+        return value;
+    }
+
+    private static int digit(byte c) {
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not a digit: " + (char) c);
+        }
+        return c - '0';
+    }
+}
@@ -0,0 +1,82 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads native splunk format events from a stream, such as a decompressed
+ * segment.
+ *
+ * Events may span lines; each ends at the newline before the next event's
+ * time prefix.
+ *
+ * @see NativeEventParser#eventEnd(ByteBuffer, int, int)
+ */
+final class NativeEventReader {
+
+    private static final byte NEWLINE = '\n';
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private ByteBuffer view = ByteBuffer.wrap(buffer);
+    private int start;
+    private int end;
+    private boolean eof;
+
+    NativeEventReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     *
+     * @return next event, including its newline, or null at the end of the
+     * stream
+     * @throws IOException
+     */
+    ByteBuffer next() throws IOException {
+        int scanned = start;
+        while (true) {
+            for (; scanned < end; scanned++) {
+                if (buffer[scanned] != NEWLINE) {
+                    continue;
+                }
+                if (!eof && end - scanned - 1
+                        < NativeEventParser.TIME_PREFIX_LENGTH) {
+                    break; //read more to check the next line
+                }
+                if (scanned + 1 == end || NativeEventParser.isEventStart(view,
+                        scanned + 1, end)) {
+                    return take(scanned + 1);
+                }
+            }
+            if (eof) {
+                return (start < end) ? take(end) : null;
+            }
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                scanned -= start;
+                end -= start;
+                start = 0;
+            } else if (end == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                view = ByteBuffer.wrap(buffer);
+            }
+            final int read = in.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                eof = true;
+            } else {
+                end += read;
+            }
+        }
+    }
+
+    private ByteBuffer take(int to) {
+        final ByteBuffer event = ByteBuffer.wrap(
+                Arrays.copyOfRange(buffer, start, to));
+        start = to;
+        return event;
+    }
+}
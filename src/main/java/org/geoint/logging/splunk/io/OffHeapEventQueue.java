@@ -0,0 +1,217 @@
+package org.geoint.logging.splunk.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.Utf8Buffer;
+
+/**
+ * Bounded multi-producer, single-consumer queue of length-prefixed records
+ * stored in a pre-allocated direct (off-heap) memory ring.
+ *
+ * The ring is divided into fixed size slots; each record occupies one or more
+ * contiguous slots. Producers claim slots by CAS on the tail sequence, so each
+ * claimed region is written by exactly one producer, then publish the record
+ * by recording its sequence for the first slot. The consumer reads records in
+ * sequence order directly from the ring.
+ *
+ * Since queued records are bytes outside of the java heap, the number of
+ * records waiting for a slow consumer does not affect garbage collection.
+ *
+ * Producer methods are thread-safe; consumer methods must only be called by a
+ * single thread at a time.
+ */
+public class OffHeapEventQueue {
+
+    private static final int HEADER_SIZE = Integer.BYTES;
+    private static final int PADDING = -1;
+    private static final long UNPUBLISHED = -1;
+
+    private final ByteBuffer ring;
+    private final int slotSize;
+    private final int slotShift;
+    private final int slotCount;
+    private final int slotMask;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLongArray published;
+
+    /**
+     *
+     * @param slotSize size of each slot in bytes, power of two
+     * @param slotCount number of slots, power of two
+     */
+    public OffHeapEventQueue(int slotSize, int slotCount) {
+        if (Integer.bitCount(slotSize) != 1 || slotSize < HEADER_SIZE
+                || Integer.bitCount(slotCount) != 1
+                || (long) slotSize * slotCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Slot size and count must be "
+                    + "powers of two less than 2GB in total, was "
+                    + slotSize + "x" + slotCount);
+        }
+        this.slotSize = slotSize;
+        this.slotShift = Integer.numberOfTrailingZeros(slotSize);
+        this.slotCount = slotCount;
+        this.slotMask = slotCount - 1;
+        this.ring = ByteBuffer.allocateDirect(slotSize * slotCount);
+        this.published = new AtomicLongArray(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            published.set(i, UNPUBLISHED);
+        }
+    }
+
+    /**
+     * Serialize and enqueue the event.
+     *
+     * @param event
+     * @return false if the queue does not currently have room for the event
+     */
+    public boolean offer(SplunkEvent event) {
+        final Utf8Buffer buffer = SplunkEventCodec.encode(event);
+        try {
+            return offer(buffer.array(), 0, buffer.length());
+        } finally {
+            SplunkEventCodec.release(buffer);
+        }
+    }
+
+    /**
+     * Enqueue a record.
+     *
+     * @param record
+     * @param offset
+     * @param length
+     * @return false if the queue does not currently have room for the record
+     * @throws IllegalArgumentException if the record is larger than the queue
+     */
+    public boolean offer(byte[] record, int offset, int length) {
+        final int needed = slots(length);
+        if (needed > slotCount) {
+            throw new IllegalArgumentException("Record of " + length
+                    + " bytes is larger than the queue");
+        }
+
+        while (true) {
+            final long claimed = tail.get();
+            final int index = (int) (claimed & slotMask);
+            //records are contiguous; pad to the end of the ring if needed
+            final int padding = (needed > slotCount - index)
+                    ? slotCount - index : 0;
+            //if the padding and record together are larger than the ring,
+            //claim the padding alone to wrap, then the record from slot 0
+            final int claim = (padding + needed > slotCount)
+                    ? padding : padding + needed;
+            if (claimed + claim - head.get() > slotCount) {
+                return false;
+            }
+            if (!tail.compareAndSet(claimed, claimed + claim)) {
+                continue;
+            }
+
+            long sequence = claimed;
+            int position = index << slotShift;
+            if (padding > 0) {
+                ring.putInt(position, PADDING);
+                published.set(index, claimed);
+                if (claim == padding) {
+                    continue;
+                }
+                sequence += padding;
+                position = 0;
+            }
+
+            ring.putInt(position, length);
+            final ByteBuffer view = ring.duplicate();
+            view.position(position + HEADER_SIZE);
+            view.put(record, offset, length);
+            //volatile write publishes the record
+            published.set((int) (sequence & slotMask), sequence);
+            return true;
+        }
+    }
+
+    /**
+     * Pass up to max records to the consumer, in the order they were
+     * enqueued.
+     *
+     * The record buffer is a read-only view into the ring, which is only
+     * valid until the consumer returns.
+     *
+     * @param consumer
+     * @param max max records to consume
+     * @return number of records consumed
+     */
+    public int drain(Consumer<ByteBuffer> consumer, int max) {
+        int consumed = 0;
+        long h = head.get();
+        while (consumed < max) {
+            final int index = (int) (h & slotMask);
+            if (published.get(index) != h) {
+                break; //nothing (more) published
+            }
+
+            final int position = index << slotShift;
+            final int length = ring.getInt(position);
+            if (length == PADDING) {
+                h += slotCount - index;
+                head.set(h);
+                continue;
+            }
+
+            final ByteBuffer view = ring.duplicate();
+            view.limit(position + HEADER_SIZE + length)
+                    .position(position + HEADER_SIZE);
+            try {
+                consumer.accept(view.slice().asReadOnlyBuffer());
+            } finally {
+                h += slots(length);
+                head.set(h); //release the slots to producers
+            }
+            consumed++;
+        }
+        return consumed;
+    }
+
+    /**
+     * Decode and pass up to max events to the consumer.
+     *
+     * @param consumer
+     * @param max max events to consume
+     * @return number of events consumed
+     */
+    public int drainEvents(Consumer<SplunkEvent> consumer, int max) {
+        return drain((record) -> consumer.accept(SplunkEventCodec.decode(record)),
+                max);
+    }
+
+    /**
+     *
+     * @return true if no records are currently queued
+     */
+    public boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    /**
+     *
+     * @return number of slots currently in use
+     */
+    public int usedSlots() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     *
+     * @return total bytes of the off-heap ring
+     */
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    private int slots(int recordLength) {
+        return (recordLength + HEADER_SIZE + slotSize - 1) >>> slotShift;
+    }
+}
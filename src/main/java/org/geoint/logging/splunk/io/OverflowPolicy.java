@@ -0,0 +1,20 @@
+package org.geoint.logging.splunk.io;
+
+/**
+ * What a bounded event queue does with a new event when it is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Discard the new event.
+     */
+    DROP_NEWEST,
+    /**
+     * Discard the oldest queued event to make room for the new event.
+     */
+    DROP_OLDEST,
+    /**
+     * Wait for room in the queue; the producing thread is blocked.
+     */
+    BLOCK;
+}
@@ -0,0 +1,290 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Background compactor which gzip compresses closed log segments.
+ *
+ * Each segment is split into fixed size blocks which are raw-deflated
+ * independently and in parallel (in the manner of pigz), then written in
+ * order as a single standard gzip member: every block but the last is ended
+ * with a sync flush so the blocks concatenate into one deflate stream, and
+ * each block is primed with the last 32K of the previous block as its
+ * dictionary so compression ratio is close to a serial deflate.
+ *
+ * Block compression runs on a fixed pool of low priority daemon threads; the
+ * number of threads caps how many cores compaction can take from the logging
+ * threads. Segments are compressed one at a time, in the order submitted, to
+ * [segment].gz (written to a temporary file then moved into place) after which
+ * the segment is deleted.
+ *
+ * May be used directly as a segment listener of a
+ * {@link RollingSplunkFileChannel}.
+ */
+public class ParallelGzipCompressor implements Consumer<Path>, AutoCloseable {
+
+    public static final String GZIP_SUFFIX = ".gz";
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final byte[] GZIP_HEADER = {
+        0x1f, (byte) 0x8b, //magic
+        Deflater.DEFLATED, //compression method
+        0, //flags
+        0, 0, 0, 0, //mtime
+        0, //extra flags
+        (byte) 0xff //OS unknown
+    };
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+
+    private final int threads;
+    private final int blockSize;
+    private final int level;
+    private final ExecutorService segments;
+    private final ExecutorService blocks;
+
+    /**
+     * Compressor using the default block size and compression level.
+     *
+     * @param threads max threads (cores) used to compress blocks
+     */
+    public ParallelGzipCompressor(int threads) {
+        this(threads, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     *
+     * @param threads max threads (cores) used to compress blocks
+     * @param blockSize uncompressed size of each independently compressed
+     * block
+     * @param level deflate compression level
+     */
+    public ParallelGzipCompressor(int threads, int blockSize, int level) {
+        if (threads < 1 || blockSize < 1) {
+            throw new IllegalArgumentException("Invalid compressor "
+                    + "configuration; threads " + threads + ", block size "
+                    + blockSize);
+        }
+        this.threads = threads;
+        this.blockSize = blockSize;
+        this.level = level;
+        final int pool = POOL_SEQUENCE.incrementAndGet();
+        this.segments = Executors.newSingleThreadExecutor(
+                lowPriority("splunk-gzip-" + pool));
+        this.blocks = Executors.newFixedThreadPool(threads,
+                lowPriority("splunk-gzip-" + pool + "-block"));
+    }
+
+    /**
+     * Queue the segment for compression; failures are ignored.
+     *
+     * @param segment
+     */
+    @Override
+    public void accept(Path segment) {
+        compress(segment);
+    }
+
+    /**
+     * Queue the segment for compression.
+     *
+     * @param segment closed segment
+     * @return future providing the compressed file
+     */
+    public Future<Path> compress(Path segment) {
+        return segments.submit(() -> compressNow(segment));
+    }
+
+    /**
+     * Compress the segment on the calling thread (using the block pool) and
+     * delete it.
+     *
+     * @param segment
+     * @return path of the compressed file
+     * @throws IOException
+     */
+    public Path compressNow(Path segment) throws IOException {
+        final Path target = segment.resolveSibling(
+                segment.getFileName() + GZIP_SUFFIX);
+        final Path temp = segment.resolveSibling(
+                segment.getFileName() + GZIP_SUFFIX + TEMP_SUFFIX);
+
+        try (FileChannel in = FileChannel.open(segment,
+                StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(temp,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE)) {
+            compress(in, out);
+            out.force(false);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.delete(segment);
+        return target;
+    }
+
+    /**
+     * Stop accepting segments, waiting for queued segments to complete.
+     *
+     * @param timeout
+     * @param unit
+     * @return true if all queued segments were compressed in time
+     * @throws InterruptedException
+     */
+    public boolean shutdown(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        segments.shutdown();
+        final boolean done = segments.awaitTermination(timeout, unit);
+        blocks.shutdown();
+        return done;
+    }
+
+    /**
+     * Stop immediately; queued segments remain uncompressed.
+     */
+    @Override
+    public void close() {
+        segments.shutdownNow();
+        blocks.shutdownNow();
+    }
+
+    private void compress(FileChannel in, FileChannel out) throws IOException {
+        final CRC32 crc = new CRC32();
+        final long size = in.size();
+        writeFully(out, ByteBuffer.wrap(GZIP_HEADER));
+
+        //bound the blocks in memory to those being compressed
+        final Deque<CompletableFuture<byte[]>> inFlight = new ArrayDeque<>();
+        byte[] dictionary = null;
+        long position = 0;
+        do {
+            final byte[] block = new byte[(int) Math.min(blockSize,
+                    size - position)];
+            readFully(in, ByteBuffer.wrap(block), position);
+            position += block.length;
+            crc.update(block, 0, block.length);
+
+            final boolean last = position >= size;
+            final byte[] blockDictionary = dictionary;
+            inFlight.add(CompletableFuture.supplyAsync(
+                    () -> deflate(block, blockDictionary, last), blocks));
+            dictionary = block;
+
+            if (inFlight.size() > threads) {
+                writeFully(out, ByteBuffer.wrap(join(inFlight.poll())));
+            }
+        } while (position < size);
+
+        while (!inFlight.isEmpty()) {
+            writeFully(out, ByteBuffer.wrap(join(inFlight.poll())));
+        }
+
+        final ByteBuffer trailer = ByteBuffer.allocate(8);
+        putIntLE(trailer, (int) crc.getValue());
+        putIntLE(trailer, (int) size); //ISIZE is the size modulo 2^32
+        trailer.flip();
+        writeFully(out, trailer);
+    }
+
+    private byte[] deflate(byte[] block, byte[] dictionary, boolean last) {
+        final Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                final int length = Math.min(DICTIONARY_SIZE, dictionary.length);
+                deflater.setDictionary(dictionary, dictionary.length - length,
+                        length);
+            }
+            deflater.setInput(block);
+
+            byte[] out = new byte[block.length / 2 + 64];
+            int length = 0;
+            if (last) {
+                deflater.finish();
+            }
+            while (true) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                final int available = out.length - length;
+                length += deflater.deflate(out, length, available,
+                        last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                //a sync flush is complete once it doesn't fill the output
+                if (last ? deflater.finished() : length < out.length) {
+                    return Arrays.copyOf(out, length);
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] join(Future<byte[]> block) throws IOException {
+        try {
+            return block.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted compressing segment", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("Unable to compress segment",
+                    ex.getCause());
+        }
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = in.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Segment truncated during compression");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void putIntLE(ByteBuffer buffer, int value) {
+        buffer.put((byte) value)
+                .put((byte) (value >>> 8))
+                .put((byte) (value >>> 16))
+                .put((byte) (value >>> 24));
+    }
+
+    static ThreadFactory lowPriority(String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return (r) -> {
+            final Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        };
+    }
+}
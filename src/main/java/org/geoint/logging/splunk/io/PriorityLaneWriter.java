@@ -0,0 +1,425 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes events queued in separate priority lanes to a channel.
+ *
+ * Each lane has its own bounded queue, so a flood of events in one lane
+ * can't delay events in another lane beyond its share of the writer. The
+ * single writer thread fills each batch first from the priority lane (the
+ * first lane), then takes up to each remaining lane's weight of events in
+ * turn, round-robin, until the batch is full or the lanes are empty.
+ *
+ * The priority lane is lossless: when its queue is full producers wait
+ * rather than drop events, and events which fail to be written are retried,
+ * with backoff, until they are written. Closing the writer blocks until the
+ * priority lane is drained, or the close timeout passes; priority events
+ * still not written are then dropped, counted and reported as the last
+ * error. The other lanes apply their own overflow policy, and their events
+ * are dropped if a write fails.
+ *
+ * Thread-safe.
+ */
+public class PriorityLaneWriter implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final long DEFAULT_CLOSE_TIMEOUT_SECONDS = 30;
+    private static final long MIN_BACKOFF_NANOS
+            = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Lane configuration.
+     */
+    public static final class Lane {
+
+        private final String name;
+        private final int capacity;
+        private final int weight;
+        private final OverflowPolicy overflow;
+
+        /**
+         *
+         * @param name lane name
+         * @param capacity max events queued in the lane
+         * @param weight max events taken from the lane each round
+         * @param overflow applied when the lane is full; ignored for the
+         * priority lane
+         */
+        public Lane(String name, int capacity, int weight,
+                OverflowPolicy overflow) {
+            if (capacity < 1 || weight < 1) {
+                throw new IllegalArgumentException("Invalid lane " + name
+                        + "; capacity " + capacity + ", weight " + weight);
+            }
+            this.name = name;
+            this.capacity = capacity;
+            this.weight = weight;
+            this.overflow = overflow;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public OverflowPolicy getOverflow() {
+            return overflow;
+        }
+    }
+
+    private final GatheringByteChannel channel;
+    private final Map<String, Integer> laneIndex;
+    private final Lane[] lanes;
+    private final BoundedEventQueue[] queues;
+    private final ByteBuffer[] batch;
+    private final int[] taken;
+    private final Thread writer;
+    private volatile IOException lastError;
+    private volatile boolean closed;
+    //close timed out, the priority lane is dropped rather than retried
+    private volatile boolean abandoned;
+
+    /**
+     *
+     * @param channel channel to write events to, closed with the writer
+     * @param lanes lanes, the first being the lossless priority lane
+     * @param maxBatch max events written with one write
+     */
+    public PriorityLaneWriter(GatheringByteChannel channel, List<Lane> lanes,
+            int maxBatch) {
+        if (lanes.isEmpty() || maxBatch < 1) {
+            throw new IllegalArgumentException("At least one lane and a "
+                    + "positive batch size are required");
+        }
+        this.channel = channel;
+        this.lanes = lanes.toArray(new Lane[lanes.size()]);
+        this.queues = new BoundedEventQueue[this.lanes.length];
+        this.taken = new int[this.lanes.length];
+        this.batch = new ByteBuffer[maxBatch];
+        this.writer = new Thread(this::drain,
+                "splunk-lane-writer-" + System.identityHashCode(this));
+
+        final Map<String, Integer> index = new LinkedHashMap<>();
+        for (int i = 0; i < this.lanes.length; i++) {
+            final Lane lane = this.lanes[i];
+            if (index.put(lane.getName(), i) != null) {
+                throw new IllegalArgumentException("Duplicate lane "
+                        + lane.getName());
+            }
+            queues[i] = new BoundedEventQueue(lane.getCapacity(),
+                    (i == 0) ? OverflowPolicy.BLOCK : lane.getOverflow(),
+                    () -> LockSupport.unpark(writer), i == 0);
+        }
+        this.laneIndex = Collections.unmodifiableMap(index);
+
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a formatted event in a lane.
+     *
+     * @param lane lane name
+     * @param event event bytes, must not be modified after being sent
+     * @return false if the event was dropped by the lane overflow policy, or
+     * the writer is closed
+     * @throws IllegalArgumentException if the lane is unknown
+     */
+    public boolean send(String lane, ByteBuffer event) {
+        return queue(lane).offer(event);
+    }
+
+    /**
+     * Wait for events queued before this call to be written.
+     *
+     * @param timeout
+     * @param unit
+     * @return true if all lanes were written within the timeout
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (BoundedEventQueue q : queues) {
+            if (!q.awaitDelivery(Math.max(0, deadline - System.nanoTime()),
+                    TimeUnit.NANOSECONDS, writer)) {
+                return false;
+            }
+        }
+        try {
+            if (channel instanceof FileChannel) {
+                ((FileChannel) channel).force(false);
+            } else if (channel instanceof RollingSplunkFileChannel) {
+                ((RollingSplunkFileChannel) channel).force();
+            }
+            return true;
+        } catch (IOException ex) {
+            lastError = ex;
+            return false;
+        }
+    }
+
+    /**
+     * Stops the writer and closes the channel, waiting up to
+     * {@value #DEFAULT_CLOSE_TIMEOUT_SECONDS} seconds for the priority lane.
+     *
+     * @see #close(long, TimeUnit)
+     */
+    @Override
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the writer and closes the channel.
+     *
+     * Blocks until the events queued in the priority lane, including those of
+     * producers waiting for room, are written, or the timeout passes; events
+     * queued in the other lanes are discarded. Priority events not written in
+     * time are dropped (see {@link #getDropped(String)} and
+     * {@link #getLastError()}).
+     *
+     * @param timeout
+     * @param unit
+     * @return true if the priority lane was drained
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+        if (closed) {
+            return !abandoned;
+        }
+        closed = true;
+        for (BoundedEventQueue q : queues) {
+            q.close();
+        }
+        LockSupport.unpark(writer);
+        try {
+            writer.join(Math.max(1, unit.toMillis(timeout)));
+            if (writer.isAlive()) {
+                abandoned = true;
+                LockSupport.unpark(writer);
+                writer.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            lastError = ex;
+        }
+        return !abandoned;
+    }
+
+    /**
+     *
+     * @return lane names, in priority order
+     */
+    public List<String> getLaneNames() {
+        return Collections.unmodifiableList(
+                new ArrayList<>(laneIndex.keySet()));
+    }
+
+    /**
+     *
+     * @param lane
+     * @return true if the writer has the lane
+     */
+    public boolean hasLane(String lane) {
+        return laneIndex.containsKey(lane);
+    }
+
+    /**
+     *
+     * @param lane
+     * @return number of events queued in the lane but not yet written
+     */
+    public int getPending(String lane) {
+        return queue(lane).getPending();
+    }
+
+    /**
+     *
+     * @param lane
+     * @return number of events written from the lane
+     */
+    public long getSent(String lane) {
+        return queue(lane).getDelivered();
+    }
+
+    /**
+     *
+     * @param lane
+     * @return number of events dropped from the lane
+     */
+    public long getDropped(String lane) {
+        return queue(lane).getDropped();
+    }
+
+    /**
+     *
+     * @return the error from the last failed write, or null if the last
+     * write succeeded
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    private BoundedEventQueue queue(String lane) {
+        final Integer i = laneIndex.get(lane);
+        if (i == null) {
+            throw new IllegalArgumentException("Unknown lane " + lane);
+        }
+        return queues[i];
+    }
+
+    /**
+     * Writer thread loop.
+     */
+    private void drain() {
+        //priority events kept at the start of the batch after a failed write
+        int retained = 0;
+        long backoff = 0;
+        while (!closed || retained > 0 || !queues[0].isDrained()) {
+            if (abandoned) {
+                abandon(retained);
+                return;
+            }
+            int size = take(0, batch.length, retained);
+            boolean more = !closed;
+            while (size < batch.length && more) {
+                more = false;
+                for (int i = 1; i < queues.length && size < batch.length; i++) {
+                    final int before = size;
+                    size = take(i, lanes[i].getWeight(), size);
+                    more |= size > before;
+                }
+            }
+            if (size == 0) {
+                if (closed) {
+                    //producers still to enqueue wake the writer
+                    LockSupport.parkNanos(this, MIN_BACKOFF_NANOS);
+                } else {
+                    LockSupport.park(this);
+                }
+                continue;
+            }
+
+            try {
+                write(size);
+                lastError = null;
+                backoff = 0;
+                for (int i = 0; i < queues.length; i++) {
+                    queues[i].delivered(taken[i]);
+                }
+                retained = 0;
+            } catch (IOException | RuntimeException ex) {
+                lastError = (ex instanceof IOException) ? (IOException) ex
+                        : new IOException("Unable to write log events", ex);
+                retained = retain();
+                for (int i = 1; i < queues.length; i++) {
+                    queues[i].failed(taken[i]);
+                }
+                backoff = (backoff == 0) ? MIN_BACKOFF_NANOS
+                        : Math.min(backoff * 2, MAX_BACKOFF_NANOS);
+            }
+            for (int i = retained; i < size; i++) {
+                batch[i] = null;
+            }
+            taken[0] = retained;
+            for (int i = 1; i < taken.length; i++) {
+                taken[i] = 0;
+            }
+            if (retained > 0) {
+                LockSupport.parkNanos(this, backoff);
+            }
+        }
+    }
+
+    /**
+     * Drops the retained priority events and those still queued, or being
+     * queued by waiting producers.
+     *
+     * @param retained
+     */
+    private void abandon(int retained) {
+        long undrained = retained;
+        queues[0].failed(retained);
+        for (int i = 0; i < retained; i++) {
+            batch[i] = null;
+        }
+        while (!queues[0].isDrained()) {
+            int polled = 0;
+            while (queues[0].poll() != null) {
+                polled++;
+            }
+            queues[0].failed(polled);
+            undrained += polled;
+            if (polled == 0) {
+                LockSupport.parkNanos(this, MIN_BACKOFF_NANOS);
+            }
+        }
+        lastError = new IOException(undrained + " events of the "
+                + lanes[0].getName() + " lane were not written before the "
+                + "close timeout", lastError);
+    }
+
+    private void write(int size) throws IOException {
+        int offset = 0;
+        while (offset < size) {
+            channel.write(batch, offset, size - offset);
+            //skip completely written buffers (handles partial writes)
+            while (offset < size && !batch[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+    }
+
+    /**
+     * After a failed write, move the priority events not completely written
+     * to the start of the batch, to be retried.
+     *
+     * @return number of priority events retained
+     */
+    private int retain() {
+        int kept = 0;
+        for (int i = 0; i < taken[0]; i++) {
+            if (batch[i].hasRemaining()) {
+                batch[kept++] = batch[i];
+            }
+        }
+        queues[0].delivered(taken[0] - kept);
+        return kept;
+    }
+
+    /**
+     * Move up to max events from the lane to the batch.
+     *
+     * @return new batch size
+     */
+    private int take(int lane, int max, int size) {
+        final int limit = Math.min(batch.length, size + max);
+        ByteBuffer event;
+        while (size < limit && (event = queues[lane].poll()) != null) {
+            batch[size++] = event;
+            taken[lane]++;
+        }
+        return size;
+    }
+}
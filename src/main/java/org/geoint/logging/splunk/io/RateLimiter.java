@@ -0,0 +1,65 @@
+package org.geoint.logging.splunk.io;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces out permits (events or bytes) so no more than the rate are taken
+ * each second.
+ *
+ * Each caller reserves the next free time for its permits and waits until
+ * it; permits unused while idle are not saved up, so there are no bursts
+ * above the rate after an idle period.
+ *
+ * Thread-safe.
+ */
+final class RateLimiter {
+
+    private final double nanosPerPermit;
+    private long next = System.nanoTime();
+
+    /**
+     *
+     * @param permitsPerSecond
+     */
+    RateLimiter(long permitsPerSecond) {
+        if (permitsPerSecond < 1) {
+            throw new IllegalArgumentException("Invalid rate "
+                    + permitsPerSecond + "/s");
+        }
+        this.nanosPerPermit = (double) TimeUnit.SECONDS.toNanos(1)
+                / permitsPerSecond;
+    }
+
+    /**
+     * Wait until the permits may be taken.
+     *
+     * @param permits
+     * @throws InterruptedException
+     */
+    void acquire(long permits) throws InterruptedException {
+        final long start = reserve(permits);
+        long wait;
+        while ((wait = start - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, wait);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     *
+     * @param permits
+     * @return time the permits may be taken
+     */
+    private synchronized long reserve(long permits) {
+        final long now = System.nanoTime();
+        if (next - now < 0) {
+            next = now;
+        }
+        final long start = next;
+        next += (long) (permits * nanosPerPermit);
+        return start;
+    }
+}
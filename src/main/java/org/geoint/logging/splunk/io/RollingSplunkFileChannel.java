@@ -0,0 +1,223 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Channel which writes splunk events to a sequence of size-limited segment
+ * files in a directory.
+ *
+ * Segments are named [prefix]-[sequence].log; a new segment (with the next
+ * sequence number) is started whenever the current segment has reached the
+ * max segment size. The size is checked before each write, so as long as each
+ * write contains complete events (as the splunk handlers do) segments always
+ * end on an event boundary.
+ *
+ * Segment listeners are notified, on the writing thread, with the path of
+ * each segment once it has been closed and will not be written to again.
+ *
+ * Thread-safe.
+ */
+public class RollingSplunkFileChannel implements GatheringByteChannel {
+
+    public static final String SEGMENT_SUFFIX = ".log";
+    private static final String SEQUENCE_FORMAT = "%s-%06d" + SEGMENT_SUFFIX;
+
+    private final Path directory;
+    private final String prefix;
+    private final long maxSegmentBytes;
+    private final Pattern segmentPattern;
+    private final List<Consumer<Path>> listeners = new CopyOnWriteArrayList<>();
+
+    private long sequence;
+    private Path segment;
+    private FileChannel channel;
+    private boolean open = true;
+
+    /**
+     *
+     * @param directory directory segments are written to, created if needed
+     * @param prefix segment file name prefix
+     * @param maxSegmentBytes segments are rolled after reaching this size
+     * @throws IOException
+     */
+    public RollingSplunkFileChannel(Path directory, String prefix,
+            long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.segmentPattern = Pattern.compile(Pattern.quote(prefix)
+                + "-(\\d+)" + Pattern.quote(SEGMENT_SUFFIX) + ".*");
+        Files.createDirectories(directory);
+        this.sequence = lastSequence();
+        open();
+    }
+
+    /**
+     * Add a listener notified with the path of each closed segment.
+     *
+     * @param listener
+     */
+    public void addSegmentListener(Consumer<Path> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     *
+     * @return path of the segment currently being written
+     */
+    public synchronized Path getCurrentSegment() {
+        return segment;
+    }
+
+    /**
+     * Finds closed segments which are still in their original (uncompressed)
+     * form, for example left from a previous run.
+     *
+     * @param suffixes suffixes of files (such as compressed copies) that
+     * indicate the segment has already been processed
+     * @return closed segment files
+     * @throws IOException
+     */
+    public synchronized List<Path> closedSegments(String... suffixes)
+            throws IOException {
+        final List<Path> closed = new CopyOnWriteArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                prefix + "-*" + SEGMENT_SUFFIX)) {
+            nextFile:
+            for (Path file : files) {
+                if (file.equals(segment)) {
+                    continue;
+                }
+                for (String suffix : suffixes) {
+                    if (Files.exists(file.resolveSibling(
+                            file.getFileName() + suffix))) {
+                        continue nextFile;
+                    }
+                }
+                closed.add(file);
+            }
+        }
+        closed.sort(null);
+        return closed;
+    }
+
+    /**
+     * Close the current segment and start a new one.
+     *
+     * @throws IOException
+     */
+    public synchronized void roll() throws IOException {
+        final Path closed = segment;
+        channel.close();
+        open();
+        notifyListeners(closed);
+    }
+
+    @Override
+    public synchronized int write(ByteBuffer src) throws IOException {
+        rollIfFull();
+        int written = 0;
+        while (src.hasRemaining()) {
+            written += channel.write(src);
+        }
+        return written;
+    }
+
+    @Override
+    public synchronized long write(ByteBuffer[] srcs, int offset, int length)
+            throws IOException {
+        rollIfFull();
+        long written = 0;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            while (srcs[i].hasRemaining()) {
+                written += channel.write(srcs, i, end - i);
+            }
+        }
+        return written;
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    /**
+     * Forces written events to storage.
+     *
+     * @throws IOException
+     */
+    public synchronized void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Closes the current segment, notifying listeners.
+     *
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        channel.close();
+        notifyListeners(segment);
+    }
+
+    private void rollIfFull() throws IOException {
+        if (!open) {
+            throw new IOException("Rolling splunk channel is closed");
+        }
+        if (channel.position() >= maxSegmentBytes) {
+            roll();
+        }
+    }
+
+    private void open() throws IOException {
+        sequence++;
+        segment = directory.resolve(String.format(SEQUENCE_FORMAT, prefix,
+                sequence));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+    }
+
+    private void notifyListeners(Path closed) {
+        for (Consumer<Path> l : listeners) {
+            l.accept(closed);
+        }
+    }
+
+    private long lastSequence() throws IOException {
+        long last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                prefix + "-*")) {
+            for (Path file : files) {
+                final Matcher m = segmentPattern.matcher(
+                        file.getFileName().toString());
+                if (m.matches()) {
+                    last = Math.max(last, Long.parseLong(m.group(1)));
+                }
+            }
+        }
+        return last;
+    }
+}
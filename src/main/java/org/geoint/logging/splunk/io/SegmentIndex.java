@@ -0,0 +1,467 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sidecar index of a closed segment of events written in the native splunk
+ * format, used to search local segments (for example while splunk is
+ * unavailable) without reading all of them.
+ *
+ * The segment is divided into blocks of about the block size, each starting
+ * on an event boundary. For each block the index records its offset, the
+ * min and max event time, and a bloom filter over the values of the indexed
+ * fields (such as logger, level, exception class and request id). A search
+ * reads only the blocks which may hold matching events.
+ *
+ * Field values are indexed as written, with double quotes substituted by
+ * single quotes as the native format does; search values are substituted the
+ * same way.
+ *
+ * Immutable.
+ */
+public final class SegmentIndex {
+
+    public static final String INDEX_SUFFIX = ".idx";
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    private static final int MAGIC = 0x53504958; //SPIX
+    private static final int VERSION = 2;
+    private static final int BITS_PER_VALUE = 10;
+    private static final int HASHES = 7;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long segmentLength;
+    private final String timeField;
+    private final List<String> fields;
+    private final Block[] blocks;
+
+    private SegmentIndex(long segmentLength, String timeField,
+            List<String> fields, Block[] blocks) {
+        this.segmentLength = segmentLength;
+        this.timeField = timeField;
+        this.fields = Collections.unmodifiableList(fields);
+        this.blocks = blocks;
+    }
+
+    /**
+     * Index a segment, reading it with a memory mapped buffer.
+     *
+     * @param segment segment file
+     * @param timeField name of the event time field
+     * @param fields names of the fields to index
+     * @param blockSize approximate size of each indexed block
+     * @return index
+     * @throws IOException
+     */
+    public static SegmentIndex build(Path segment, String timeField,
+            Collection<String> fields, int blockSize) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid index block size "
+                    + blockSize);
+        }
+        try (FileChannel in = FileChannel.open(segment,
+                StandardOpenOption.READ)) {
+            final long size = in.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segment " + segment + " is too large "
+                        + "to index");
+            }
+            final MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY,
+                    0, size);
+            final Builder builder = new Builder(timeField, fields);
+            final int limit = (int) size;
+            int blockStart = 0;
+            int event = 0;
+            while (event < limit) {
+                final int end = NativeEventParser.eventEnd(mapped, event, limit);
+                builder.event(mapped, event, end);
+                event = end + 1;
+                if (event - blockStart >= blockSize || event >= limit) {
+                    builder.block(blockStart,
+                            Math.min(event, limit) - blockStart);
+                    blockStart = event;
+                }
+            }
+            return new SegmentIndex(size, timeField,
+                    new ArrayList<>(fields), builder.blocks());
+        }
+    }
+
+    /**
+     * Read the index written for a segment.
+     *
+     * @param index index file
+     * @return index
+     * @throws IOException if the file is not a segment index
+     */
+    public static SegmentIndex read(Path index) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(index)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(index + " is not a segment index");
+            }
+            final long segmentLength = in.readLong();
+            final String timeField = in.readUTF();
+            final int fieldCount = in.readInt();
+            final List<String> fields = new ArrayList<>(fieldCount);
+            for (int i = 0; i < fieldCount; i++) {
+                fields.add(in.readUTF());
+            }
+            final Block[] blocks = new Block[in.readInt()];
+            for (int i = 0; i < blocks.length; i++) {
+                final long offset = in.readLong();
+                final int length = in.readInt();
+                final int events = in.readInt();
+                final long minTime = in.readLong();
+                final long maxTime = in.readLong();
+                final long[] bloom = new long[in.readInt()];
+                for (int w = 0; w < bloom.length; w++) {
+                    bloom[w] = in.readLong();
+                }
+                blocks[i] = new Block(offset, length, events, minTime, maxTime,
+                        bloom);
+            }
+            return new SegmentIndex(segmentLength, timeField, fields, blocks);
+        }
+    }
+
+    /**
+     * Write the index.
+     *
+     * @param index index file
+     * @throws IOException
+     */
+    public void write(Path index) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(index)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(segmentLength);
+            out.writeUTF(timeField);
+            out.writeInt(fields.size());
+            for (String f : fields) {
+                out.writeUTF(f);
+            }
+            out.writeInt(blocks.length);
+            for (Block b : blocks) {
+                out.writeLong(b.offset);
+                out.writeInt(b.length);
+                out.writeInt(b.events);
+                out.writeLong(b.minTime);
+                out.writeLong(b.maxTime);
+                out.writeInt(b.bloom.length);
+                for (long w : b.bloom) {
+                    out.writeLong(w);
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @return length of the indexed segment
+     */
+    public long getSegmentLength() {
+        return segmentLength;
+    }
+
+    /**
+     *
+     * @return name of the event time field
+     */
+    public String getTimeField() {
+        return timeField;
+    }
+
+    /**
+     *
+     * @return names of the indexed fields
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     *
+     * @return number of events in the segment
+     */
+    public long getEventCount() {
+        long count = 0;
+        for (Block b : blocks) {
+            count += b.events;
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @return time of the earliest event, or null if no event times were
+     * read
+     */
+    public Instant getMinTime() {
+        long min = Long.MAX_VALUE;
+        for (Block b : blocks) {
+            min = Math.min(min, b.minTime);
+        }
+        return (min == Long.MAX_VALUE) ? null : Instant.ofEpochMilli(min);
+    }
+
+    /**
+     *
+     * @return time of the latest event, or null if no event times were read
+     */
+    public Instant getMaxTime() {
+        long max = Long.MIN_VALUE;
+        for (Block b : blocks) {
+            max = Math.max(max, b.maxTime);
+        }
+        return (max == Long.MIN_VALUE) ? null : Instant.ofEpochMilli(max);
+    }
+
+    /**
+     * Find the regions of the segment which may hold events within the time
+     * range having all the field values. Adjacent candidate blocks are
+     * merged.
+     *
+     * Field values of fields which are not indexed do not exclude any
+     * region; events read from the regions must still be checked.
+     *
+     * @param from inclusive, or null for no lower bound
+     * @param to inclusive, or null for no upper bound
+     * @param values field names and values which must match
+     * @return candidate regions, in segment order
+     */
+    public List<Region> candidates(Instant from, Instant to,
+            Map<String, String> values) {
+        final long min = (from == null) ? Long.MIN_VALUE : from.toEpochMilli();
+        final long max = (to == null) ? Long.MAX_VALUE : to.toEpochMilli();
+        final List<long[]> hashes = new ArrayList<>();
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            if (fields.contains(e.getKey())) {
+                hashes.add(hashes(hash(e.getKey(), e.getValue())));
+            }
+        }
+
+        final List<Region> regions = new ArrayList<>();
+        Region last = null;
+        nextBlock:
+        for (Block b : blocks) {
+            //blocks without event times can't be excluded by time
+            if (b.minTime <= b.maxTime
+                    && (b.maxTime < min || b.minTime > max)) {
+                continue;
+            }
+            for (long[] h : hashes) {
+                if (!b.mightContain(h)) {
+                    continue nextBlock;
+                }
+            }
+            if (last != null && last.offset + last.length == b.offset) {
+                last = new Region(last.offset, last.length + b.length);
+                regions.set(regions.size() - 1, last);
+            } else {
+                last = new Region(b.offset, b.length);
+                regions.add(last);
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Hash of a field value, as indexed.
+     */
+    static long hash(String field, String value) {
+        final byte[] key = field.getBytes(StandardCharsets.UTF_8);
+        final byte[] v = value.replace('"', '\'')
+                .getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer b = ByteBuffer.allocate(key.length + v.length);
+        b.put(key).put(v);
+        return hash(b, 0, key.length, key.length, b.capacity());
+    }
+
+    static long hash(ByteBuffer b, int keyStart, int keyEnd, int valueStart,
+            int valueEnd) {
+        long h = FNV_OFFSET;
+        for (int i = keyStart; i < keyEnd; i++) {
+            h = (h ^ (b.get(i) & 0xFF)) * FNV_PRIME;
+        }
+        h = (h ^ '=') * FNV_PRIME;
+        for (int i = valueStart; i < valueEnd; i++) {
+            h = (h ^ (b.get(i) & 0xFF)) * FNV_PRIME;
+        }
+        //spread the bits (murmur3 finalizer)
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Bloom filter probe positions, before reducing by the filter size.
+     */
+    private static long[] hashes(long hash) {
+        final long[] probes = new long[HASHES];
+        final long h1 = hash & 0xFFFFFFFFL;
+        final long h2 = hash >>> 32;
+        for (int i = 0; i < HASHES; i++) {
+            probes[i] = (h1 + i * h2) & Long.MAX_VALUE;
+        }
+        return probes;
+    }
+
+    /**
+     * A range of a segment.
+     */
+    public static final class Region {
+
+        private final long offset;
+        private final long length;
+
+        Region(long offset, long length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return offset + "+" + length;
+        }
+    }
+
+    private static final class Block {
+
+        private final long offset;
+        private final int length;
+        private final int events;
+        private final long minTime;
+        private final long maxTime;
+        private final long[] bloom;
+
+        private Block(long offset, int length, int events, long minTime,
+                long maxTime, long[] bloom) {
+            this.offset = offset;
+            this.length = length;
+            this.events = events;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+            this.bloom = bloom;
+        }
+
+        private boolean mightContain(long[] probes) {
+            final long bits = (long) bloom.length * Long.SIZE;
+            for (long p : probes) {
+                final long bit = p % bits;
+                if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Collects the blocks of a segment as its events are read.
+     */
+    private static final class Builder
+            implements NativeEventParser.FieldVisitor {
+
+        private final byte[] timeField;
+        private final byte[][] fields;
+        private final List<Block> blocks = new ArrayList<>();
+        private long[] values = new long[256];
+        private int valueCount;
+        private int events;
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+
+        private Builder(String timeField, Collection<String> fields) {
+            this.timeField = timeField.getBytes(StandardCharsets.UTF_8);
+            this.fields = new byte[fields.size()][];
+            int i = 0;
+            for (String f : fields) {
+                this.fields[i++] = f.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+
+        private void event(ByteBuffer b, int start, int end) {
+            if (end > start) {
+                events++;
+                NativeEventParser.fields(b, start, end, this);
+            }
+        }
+
+        @Override
+        public void field(ByteBuffer b, int keyStart, int keyEnd,
+                int valueStart, int valueEnd) {
+            if (NativeEventParser.equals(b, keyStart, keyEnd, timeField)) {
+                final long time = NativeEventParser.epochMillis(b, valueStart,
+                        valueEnd);
+                if (time != Long.MIN_VALUE) {
+                    minTime = Math.min(minTime, time);
+                    maxTime = Math.max(maxTime, time);
+                }
+                return;
+            }
+            for (byte[] f : fields) {
+                if (NativeEventParser.equals(b, keyStart, keyEnd, f)) {
+                    if (valueCount == values.length) {
+                        values = Arrays.copyOf(values, valueCount * 2);
+                    }
+                    values[valueCount++] = hash(b, keyStart, keyEnd,
+                            valueStart, valueEnd);
+                    return;
+                }
+            }
+        }
+
+        private void block(long offset, int length) {
+            final int words = Math.max(1,
+                    (valueCount * BITS_PER_VALUE + Long.SIZE - 1) / Long.SIZE);
+            final long[] bloom = new long[words];
+            final long bits = (long) words * Long.SIZE;
+            for (int i = 0; i < valueCount; i++) {
+                for (long p : hashes(values[i])) {
+                    final long bit = p % bits;
+                    bloom[(int) (bit >>> 6)] |= 1L << bit;
+                }
+            }
+            blocks.add(new Block(offset, length, events, minTime, maxTime,
+                    bloom));
+            valueCount = 0;
+            events = 0;
+            minTime = Long.MAX_VALUE;
+            maxTime = Long.MIN_VALUE;
+        }
+
+        private Block[] blocks() {
+            return blocks.toArray(new Block[blocks.size()]);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Background indexer which writes a {@link SegmentIndex} beside each closed
+ * log segment, as [segment].idx.
+ *
+ * Segments are indexed one at a time, in the order submitted, on a low
+ * priority daemon thread. Once a segment is indexed (or fails to be) it is
+ * passed on to the next segment listener, if any, so a compressor chained
+ * after the indexer only compresses segments once they have been indexed.
+ * Indexing failures are passed to the failure listener, if one is set.
+ *
+ * May be used directly as a segment listener of a
+ * {@link RollingSplunkFileChannel}.
+ */
+public class SegmentIndexer implements Consumer<Path>, AutoCloseable {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+
+    private final String timeField;
+    private final List<String> fields;
+    private final int blockSize;
+    private final Consumer<Path> next;
+    private final ExecutorService segments;
+    private volatile BiConsumer<Path, Exception> failureListener;
+
+    /**
+     *
+     * @param timeField name of the event time field
+     * @param fields names of the fields to index
+     * @param next listener passed each segment once indexed, or null
+     */
+    public SegmentIndexer(String timeField, Collection<String> fields,
+            Consumer<Path> next) {
+        this(timeField, fields, SegmentIndex.DEFAULT_BLOCK_SIZE, next);
+    }
+
+    /**
+     *
+     * @param timeField name of the event time field
+     * @param fields names of the fields to index
+     * @param blockSize approximate size of each indexed block
+     * @param next listener passed each segment once indexed, or null
+     */
+    public SegmentIndexer(String timeField, Collection<String> fields,
+            int blockSize, Consumer<Path> next) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid index block size "
+                    + blockSize);
+        }
+        this.timeField = timeField;
+        this.fields = new ArrayList<>(fields);
+        this.blockSize = blockSize;
+        this.next = next;
+        this.segments = Executors.newSingleThreadExecutor(
+                ParallelGzipCompressor.lowPriority("splunk-index-"
+                        + POOL_SEQUENCE.incrementAndGet()));
+    }
+
+    /**
+     * Set the listener passed each segment which could not be indexed, with
+     * the failure; called on the indexing thread.
+     *
+     * @param listener failure listener, or null to ignore failures
+     */
+    public void setFailureListener(BiConsumer<Path, Exception> listener) {
+        this.failureListener = listener;
+    }
+
+    /**
+     * Queue the segment for indexing; failures are passed to the failure
+     * listener.
+     *
+     * @param segment
+     */
+    @Override
+    public void accept(Path segment) {
+        index(segment);
+    }
+
+    /**
+     * Queue the segment for indexing.
+     *
+     * @param segment closed segment
+     * @return future providing the index file, or the failure (which is also
+     * passed to the failure listener)
+     */
+    public Future<Path> index(Path segment) {
+        return segments.submit(() -> {
+            try {
+                return indexNow(segment);
+            } catch (IOException | RuntimeException ex) {
+                final BiConsumer<Path, Exception> listener = failureListener;
+                if (listener != null) {
+                    listener.accept(segment, ex);
+                }
+                throw ex;
+            } finally {
+                if (next != null) {
+                    next.accept(segment);
+                }
+            }
+        });
+    }
+
+    /**
+     * Index the segment on the calling thread.
+     *
+     * @param segment
+     * @return path of the index file
+     * @throws IOException
+     */
+    public Path indexNow(Path segment) throws IOException {
+        final Path target = indexPath(segment);
+        final Path temp = segment.resolveSibling(
+                target.getFileName() + TEMP_SUFFIX);
+        try {
+            SegmentIndex.build(segment, timeField, fields, blockSize)
+                    .write(temp);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     *
+     * @param segment
+     * @return path of the index of the segment
+     */
+    public static Path indexPath(Path segment) {
+        return segment.resolveSibling(
+                segment.getFileName() + SegmentIndex.INDEX_SUFFIX);
+    }
+
+    /**
+     * Stop accepting segments, waiting for queued segments to complete.
+     *
+     * @param timeout
+     * @param unit
+     * @return true if all queued segments were indexed in time
+     * @throws InterruptedException
+     */
+    public boolean shutdown(long timeout, TimeUnit unit)
+            throws InterruptedException {
+        segments.shutdown();
+        return segments.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Stop immediately; queued segments remain unindexed.
+     */
+    @Override
+    public void close() {
+        segments.shutdownNow();
+    }
+}
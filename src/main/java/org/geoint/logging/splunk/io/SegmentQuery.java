@@ -0,0 +1,304 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Searches the segments written by a {@link RollingSplunkFileChannel} for
+ * events within a time range having the given field values.
+ *
+ * Uncompressed segments with a {@link SegmentIndex} are read only in the
+ * regions the index finds may hold matching events, each memory mapped.
+ * Compressed segments can't be read from an offset, so their index is only
+ * used to skip whole segments; segments without an index are read entirely.
+ * Every event read is checked, so indexes only change how much is read, not
+ * the events found.
+ *
+ * Usage:
+ * <pre>
+ * java org.geoint.logging.splunk.io.SegmentQuery directory
+ *     [--from 2017-03-01T10:00:00Z] [--to 2017-03-01T11:00:00Z]
+ *     [--timeField fld_eventTime] [field=value ...]
+ * </pre>
+ */
+public class SegmentQuery {
+
+    public static final String DEFAULT_TIME_FIELD = "fld_eventTime";
+
+    private final Instant from;
+    private final Instant to;
+    private final Map<String, String> values;
+    private final String timeField;
+
+    /**
+     *
+     * @param from inclusive, or null for no lower bound
+     * @param to inclusive, or null for no upper bound
+     * @param values field names and values events must have
+     * @param timeField name of the event time field
+     */
+    public SegmentQuery(Instant from, Instant to, Map<String, String> values,
+            String timeField) {
+        this.from = from;
+        this.to = to;
+        this.values = Collections.unmodifiableMap(
+                new LinkedHashMap<>(values));
+        this.timeField = timeField;
+    }
+
+    /**
+     * Search the segments of a directory, in name order.
+     *
+     * @param directory segment directory
+     * @param matches receives each matching event
+     * @return number of matching events
+     * @throws IOException
+     */
+    public long search(Path directory, Consumer<String> matches)
+            throws IOException {
+        final List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "*{" + RollingSplunkFileChannel.SEGMENT_SUFFIX + ","
+                + RollingSplunkFileChannel.SEGMENT_SUFFIX
+                + ParallelGzipCompressor.GZIP_SUFFIX + "}")) {
+            files.forEach(segments::add);
+        }
+        segments.sort(null);
+        long count = 0;
+        for (Path s : segments) {
+            count += searchSegment(s, matches);
+        }
+        return count;
+    }
+
+    /**
+     * Search a single (uncompressed or compressed) segment.
+     *
+     * @param segment
+     * @param matches receives each matching event
+     * @return number of matching events
+     * @throws IOException
+     */
+    public long searchSegment(Path segment, Consumer<String> matches)
+            throws IOException {
+        final String name = segment.getFileName().toString();
+        if (name.endsWith(ParallelGzipCompressor.GZIP_SUFFIX)) {
+            final SegmentIndex index = index(segment.resolveSibling(
+                    name.substring(0, name.length()
+                            - ParallelGzipCompressor.GZIP_SUFFIX.length())),
+                    -1);
+            if (index != null
+                    && index.candidates(from, to, values).isEmpty()) {
+                return 0;
+            }
+            return searchCompressed(segment, matches);
+        }
+
+        try (FileChannel in = FileChannel.open(segment,
+                StandardOpenOption.READ)) {
+            final long size = in.size();
+            final SegmentIndex index = index(segment, size);
+            final List<SegmentIndex.Region> regions = (index == null)
+                    ? Collections.singletonList(
+                            new SegmentIndex.Region(0, size))
+                    : index.candidates(from, to, values);
+            final Matcher matcher = new Matcher();
+            long count = 0;
+            for (SegmentIndex.Region r : regions) {
+                if (r.getLength() > Integer.MAX_VALUE) {
+                    throw new IOException("Segment " + segment
+                            + " region is too large to map");
+                }
+                final MappedByteBuffer mapped = in.map(
+                        FileChannel.MapMode.READ_ONLY, r.getOffset(),
+                        r.getLength());
+                count += matcher.search(mapped, (int) r.getLength(), matches);
+            }
+            return count;
+        }
+    }
+
+    private long searchCompressed(Path segment, Consumer<String> matches)
+            throws IOException {
+        final Matcher matcher = new Matcher();
+        long count = 0;
+        try (InputStream in = new GZIPInputStream(
+                Files.newInputStream(segment))) {
+            final NativeEventReader events = new NativeEventReader(in);
+            ByteBuffer b;
+            while ((b = events.next()) != null) {
+                int end = b.limit();
+                if (end > 0 && b.get(end - 1) == '\n') {
+                    end--;
+                }
+                if (matcher.matches(b, 0, end)) {
+                    matches.accept(new String(b.array(), 0, end,
+                            StandardCharsets.UTF_8));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Read the index of a segment, if it has a usable one.
+     *
+     * @param segment
+     * @param size size of the segment, or -1 if not to be checked
+     * @return index, or null if the segment has to be read entirely
+     */
+    private SegmentIndex index(Path segment, long size) {
+        final Path path = SegmentIndexer.indexPath(segment);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            final SegmentIndex index = SegmentIndex.read(path);
+            if ((size >= 0 && index.getSegmentLength() != size)
+                    || !index.getTimeField().equals(timeField)) {
+                return null;
+            }
+            return index;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the time and fields of events.
+     */
+    private final class Matcher implements NativeEventParser.FieldVisitor {
+
+        private final byte[] time = timeField.getBytes(StandardCharsets.UTF_8);
+        private final byte[][] keys = new byte[values.size()][];
+        private final byte[][] expected = new byte[values.size()][];
+        private final boolean[] matched = new boolean[values.size()];
+        private final long min = (from == null)
+                ? Long.MIN_VALUE : from.toEpochMilli();
+        private final long max = (to == null)
+                ? Long.MAX_VALUE : to.toEpochMilli();
+        private boolean inRange;
+
+        private Matcher() {
+            int i = 0;
+            for (Map.Entry<String, String> e : values.entrySet()) {
+                keys[i] = e.getKey().getBytes(StandardCharsets.UTF_8);
+                expected[i] = e.getValue().replace('"', '\'')
+                        .getBytes(StandardCharsets.UTF_8);
+                i++;
+            }
+        }
+
+        private long search(ByteBuffer b, int limit,
+                Consumer<String> matches) {
+            long count = 0;
+            int start = 0;
+            while (start < limit) {
+                final int end = NativeEventParser.eventEnd(b, start, limit);
+                if (matches(b, start, end)) {
+                    final byte[] event = new byte[end - start];
+                    for (int i = 0; i < event.length; i++) {
+                        event[i] = b.get(start + i);
+                    }
+                    matches.accept(new String(event, StandardCharsets.UTF_8));
+                    count++;
+                }
+                start = end + 1;
+            }
+            return count;
+        }
+
+        private boolean matches(ByteBuffer b, int start, int end) {
+            if (end <= start) {
+                return false;
+            }
+            //without a time range events need not have a time
+            inRange = from == null && to == null;
+            for (int i = 0; i < matched.length; i++) {
+                matched[i] = false;
+            }
+            NativeEventParser.fields(b, start, end, this);
+            if (!inRange) {
+                return false;
+            }
+            for (boolean m : matched) {
+                if (!m) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void field(ByteBuffer b, int keyStart, int keyEnd,
+                int valueStart, int valueEnd) {
+            if (NativeEventParser.equals(b, keyStart, keyEnd, time)) {
+                final long t = NativeEventParser.epochMillis(b, valueStart,
+                        valueEnd);
+                inRange = t != Long.MIN_VALUE && t >= min && t <= max;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (NativeEventParser.equals(b, keyStart, keyEnd, keys[i])
+                        && NativeEventParser.equals(b, valueStart, valueEnd,
+                                expected[i])) {
+                    matched[i] = true;
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = null;
+        Instant from = null;
+        Instant to = null;
+        String timeField = DEFAULT_TIME_FIELD;
+        final Map<String, String> values = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if (arg.equals("--from") && i + 1 < args.length) {
+                    from = Instant.parse(args[++i]);
+                } else if (arg.equals("--to") && i + 1 < args.length) {
+                    to = Instant.parse(args[++i]);
+                } else if (arg.equals("--timeField") && i + 1 < args.length) {
+                    timeField = args[++i];
+                } else if (arg.indexOf('=') > 0) {
+                    values.put(arg.substring(0, arg.indexOf('=')),
+                            arg.substring(arg.indexOf('=') + 1));
+                } else if (directory == null && !arg.startsWith("--")) {
+                    directory = Paths.get(arg);
+                } else {
+                    throw new IllegalArgumentException(arg);
+                }
+            }
+        } catch (DateTimeParseException | IllegalArgumentException ex) {
+            directory = null;
+        }
+        if (directory == null) {
+            System.err.println("Usage: SegmentQuery directory [--from time] "
+                    + "[--to time] [--timeField name] [field=value ...]");
+            System.exit(2);
+        }
+        new SegmentQuery(from, to, values, timeField)
+                .search(directory, System.out::println);
+    }
+}
@@ -0,0 +1,499 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Re-sends events stored in native splunk format segments (such as those
+ * written by a {@link RollingSplunkFileChannel}, uncompressed or gzip
+ * compressed) to an {@link EventSender}, for example after an ingestion
+ * outage.
+ *
+ * Events are sent as stored, so their original event time and hash fields
+ * are kept. Events may span lines (such as multi-line messages); each ends
+ * at the newline before the next event's time prefix. Uncompressed segments
+ * are split into chunks on event boundaries which are read (memory mapped)
+ * and sent in parallel; compressed segments are each one chunk. Sending is
+ * limited to a ceiling of events and/or bytes per second across all chunks.
+ *
+ * Sent events are acknowledged by flushing the sender every batch of events
+ * and at the end of each chunk. Acknowledged event hashes and completed
+ * chunks are appended to a checkpoint file, so a replay restarted with the
+ * same checkpoint (for example after a crash) skips completed chunks and
+ * events which were already acknowledged. Events without a hash in a chunk
+ * which was not completed may be sent again. Events with the same hash as
+ * an event already sent, by this or a previous replay, are skipped.
+ *
+ * To skip them, the hash of every event replayed, and of every event in the
+ * checkpoint file, is held in memory for the life of the replayer: roughly
+ * 150 bytes per event for a hex SHA-256 hash (more on Java 8, which stores
+ * strings as UTF-16), so about 1.5GB of heap per 10 million events. Very
+ * large backlogs may be replayed in parts, each with its own replayer and
+ * checkpoint, at the cost of not skipping duplicates across parts.
+ *
+ * The sender should use the {@link OverflowPolicy#BLOCK} policy; an event
+ * rejected or dropped by the sender fails the replay, without checkpointing
+ * the events not yet acknowledged.
+ *
+ * A replayer may be used for one replay at a time; after a failed replay a
+ * new replayer should be created to resume from the checkpoint.
+ */
+public class SegmentReplayer implements AutoCloseable {
+
+    public static final String DEFAULT_HASH_FIELD = "fld_hash";
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int ACK_BATCH = 1024;
+    private static final long ACK_TIMEOUT_SECONDS = 60;
+    private static final byte NEWLINE = '\n';
+    private static final char NEWLINE_CHAR = '\n';
+    private static final int SCAN_SIZE = 8192;
+    private static final AtomicInteger POOL_SEQUENCE = new AtomicInteger();
+
+    private final EventSender sender;
+    private final Checkpoint checkpoint;
+    private final byte[] hashField;
+    private final int chunkSize;
+    private final RateLimiter events;
+    private final RateLimiter bytes;
+    private final ExecutorService readers;
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private volatile boolean failed;
+    private long droppedAtStart;
+
+    /**
+     * Replayer using the default hash field and chunk size.
+     *
+     * @param sender
+     * @param checkpoint checkpoint file, or null to not checkpoint
+     * @param threads number of chunks read in parallel
+     * @param eventsPerSecond max events sent per second, or 0 for no limit
+     * @param bytesPerSecond max bytes sent per second, or 0 for no limit
+     * @throws IOException if the checkpoint could not be read
+     */
+    public SegmentReplayer(EventSender sender, Path checkpoint, int threads,
+            long eventsPerSecond, long bytesPerSecond) throws IOException {
+        this(sender, checkpoint, DEFAULT_HASH_FIELD, threads,
+                DEFAULT_CHUNK_SIZE, eventsPerSecond, bytesPerSecond);
+    }
+
+    /**
+     *
+     * @param sender sender events are replayed to, not closed by the
+     * replayer
+     * @param checkpoint checkpoint file, or null to not checkpoint
+     * @param hashField name of the event hash field
+     * @param threads number of chunks read in parallel
+     * @param chunkSize approximate size of the chunks of uncompressed
+     * segments
+     * @param eventsPerSecond max events sent per second, or 0 for no limit
+     * @param bytesPerSecond max bytes sent per second, or 0 for no limit
+     * @throws IOException if the checkpoint could not be read
+     */
+    public SegmentReplayer(EventSender sender, Path checkpoint,
+            String hashField, int threads, int chunkSize, long eventsPerSecond,
+            long bytesPerSecond) throws IOException {
+        if (threads < 1 || chunkSize < 1 || eventsPerSecond < 0
+                || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid replay "
+                    + "configuration; threads " + threads + ", chunk size "
+                    + chunkSize + ", " + eventsPerSecond + " events/s, "
+                    + bytesPerSecond + " bytes/s");
+        }
+        this.sender = sender;
+        this.checkpoint = new Checkpoint(checkpoint);
+        this.hashField = hashField.getBytes(StandardCharsets.UTF_8);
+        this.chunkSize = chunkSize;
+        this.events = (eventsPerSecond == 0)
+                ? null : new RateLimiter(eventsPerSecond);
+        this.bytes = (bytesPerSecond == 0)
+                ? null : new RateLimiter(bytesPerSecond);
+        this.readers = Executors.newFixedThreadPool(threads,
+                ParallelGzipCompressor.lowPriority("splunk-replay-"
+                        + POOL_SEQUENCE.incrementAndGet()));
+    }
+
+    /**
+     * Replay the segments, returning once every event has been sent and
+     * acknowledged.
+     *
+     * @param segments segment files, uncompressed or gzip compressed
+     * @return number of events sent
+     * @throws IOException if a segment could not be read, or events were not
+     * acknowledged by the sender
+     */
+    public long replay(Collection<Path> segments) throws IOException {
+        failed = false;
+        droppedAtStart = sender.getDropped();
+        final long sentAtStart = sent.sum();
+        final CompletionService<Void> completion
+                = new ExecutorCompletionService<>(readers);
+        final List<Future<Void>> chunks = new ArrayList<>();
+        try {
+            for (Path segment : segments) {
+                for (Chunk c : chunks(segment)) {
+                    if (!checkpoint.isComplete(c.id())) {
+                        chunks.add(completion.submit(() -> {
+                            replay(c);
+                            return null;
+                        }));
+                    }
+                }
+            }
+            //in order of completion, so the first failure ends the replay
+            for (int i = 0; i < chunks.size(); i++) {
+                completion.take().get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted replaying events");
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Unable to replay events", cause);
+        } finally {
+            failed = true;
+            chunks.forEach((c) -> c.cancel(true));
+        }
+        return sent.sum() - sentAtStart;
+    }
+
+    /**
+     *
+     * @return number of events sent
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     *
+     * @return number of events skipped as already sent
+     */
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    /**
+     * Stop replaying; events not acknowledged are not checkpointed.
+     */
+    @Override
+    public void close() {
+        failed = true;
+        readers.shutdownNow();
+        checkpoint.close();
+    }
+
+    /**
+     * Split a segment into chunks ending on event boundaries.
+     */
+    private List<Chunk> chunks(Path segment) throws IOException {
+        if (segment.getFileName().toString()
+                .endsWith(ParallelGzipCompressor.GZIP_SUFFIX)) {
+            return Arrays.asList(new Chunk(segment, 0, -1));
+        }
+        final List<Chunk> chunks = new ArrayList<>();
+        try (FileChannel in = FileChannel.open(segment,
+                StandardOpenOption.READ)) {
+            final long size = in.size();
+            final ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+            long start = 0;
+            while (start < size) {
+                //extend the chunk to the end of the event it ends within
+                final long end = nextEvent(in,
+                        Math.min(start + chunkSize, size) - 1, size, scan);
+                chunks.add(new Chunk(segment, start, end - start));
+                start = end;
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     *
+     * @return start of the first event after the position (just after a
+     * newline followed by an event time prefix), or the size if there is none
+     */
+    private static long nextEvent(FileChannel in, long position, long size,
+            ByteBuffer scan) throws IOException {
+        final ByteBuffer prefix = ByteBuffer.allocate(
+                NativeEventParser.TIME_PREFIX_LENGTH);
+        long p = position;
+        while (p < size) {
+            scan.clear();
+            final int read = in.read(scan, p);
+            if (read < 1) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == NEWLINE) {
+                    final long next = p + i + 1;
+                    if (next == size || isEventStart(in, next, prefix)) {
+                        return next;
+                    }
+                }
+            }
+            p += read;
+        }
+        return size;
+    }
+
+    private static boolean isEventStart(FileChannel in, long position,
+            ByteBuffer prefix) throws IOException {
+        prefix.clear();
+        int read;
+        do {
+            read = in.read(prefix, position + prefix.position());
+        } while (read > 0 && prefix.hasRemaining());
+        return NativeEventParser.isEventStart(prefix, 0, prefix.position());
+    }
+
+    private void replay(Chunk chunk) throws IOException, InterruptedException {
+        final Acknowledger ack = new Acknowledger();
+        if (chunk.length < 0) {
+            try (InputStream in = new GZIPInputStream(
+                    Files.newInputStream(chunk.segment))) {
+                final NativeEventReader events = new NativeEventReader(in);
+                ByteBuffer event;
+                while ((event = events.next()) != null) {
+                    event(event, ack);
+                }
+            }
+        } else if (chunk.length > 0) {
+            try (FileChannel in = FileChannel.open(chunk.segment,
+                    StandardOpenOption.READ)) {
+                final MappedByteBuffer mapped = in.map(
+                        FileChannel.MapMode.READ_ONLY, chunk.offset,
+                        chunk.length);
+                final int limit = (int) chunk.length;
+                int start = 0;
+                while (start < limit) {
+                    final int end = Math.min(NativeEventParser.eventEnd(
+                            mapped, start, limit) + 1, limit);
+                    final ByteBuffer event = mapped.duplicate();
+                    event.position(start);
+                    event.limit(end);
+                    event(event.slice(), ack);
+                    start = end;
+                }
+            }
+        }
+        ack.acknowledge(chunk.id());
+    }
+
+    private void event(ByteBuffer event, Acknowledger ack)
+            throws IOException, InterruptedException {
+        if (failed) {
+            throw new InterruptedException();
+        }
+        if (event.remaining() == 0 || (event.remaining() == 1
+                && event.get(0) == NEWLINE)) {
+            return;
+        }
+        final String hash = hash(event);
+        if (hash != null && !checkpoint.seen.add(hash)) {
+            skipped.increment();
+            return;
+        }
+        if (events != null) {
+            events.acquire(1);
+        }
+        if (bytes != null) {
+            bytes.acquire(event.remaining());
+        }
+        if (!sender.send(event)) {
+            throw new IOException("Replayed event was rejected by the sender");
+        }
+        sent.increment();
+        ack.sent(hash);
+    }
+
+    private String hash(ByteBuffer event) {
+        final String[] hash = new String[1];
+        NativeEventParser.fields(event, 0, event.limit(),
+                (b, keyStart, keyEnd, valueStart, valueEnd) -> {
+                    if (hash[0] == null && NativeEventParser.equals(b,
+                            keyStart, keyEnd, hashField)) {
+                        final byte[] value = new byte[valueEnd - valueStart];
+                        for (int i = 0; i < value.length; i++) {
+                            value[i] = b.get(valueStart + i);
+                        }
+                        hash[0] = new String(value, StandardCharsets.UTF_8);
+                    }
+                });
+        return hash[0];
+    }
+
+    /**
+     * Acknowledges the events sent from a chunk in batches.
+     */
+    private final class Acknowledger {
+
+        private final List<String> hashes = new ArrayList<>();
+        private int unacknowledged;
+
+        private void sent(String hash) throws IOException {
+            if (hash != null) {
+                hashes.add(hash);
+            }
+            if (++unacknowledged >= ACK_BATCH) {
+                acknowledge(null);
+            }
+        }
+
+        /**
+         *
+         * @param completed id of the chunk if all its events have been sent
+         */
+        private void acknowledge(String completed) throws IOException {
+            if (unacknowledged > 0) {
+                if (!sender.flush(ACK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IOException("Replayed events were not "
+                            + "acknowledged by the sender");
+                }
+                if (sender.getDropped() != droppedAtStart) {
+                    throw new IOException("Replayed events were dropped by "
+                            + "the sender");
+                }
+            }
+            checkpoint.append(hashes, completed);
+            hashes.clear();
+            unacknowledged = 0;
+        }
+    }
+
+    /**
+     * A region of a segment, or a whole compressed segment (length -1).
+     */
+    private static final class Chunk {
+
+        private final Path segment;
+        private final long offset;
+        private final long length;
+
+        private Chunk(Path segment, long offset, long length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Identifies the chunk across replays, if split the same way.
+         */
+        private String id() {
+            return segment.getFileName() + "@" + offset + "+" + length;
+        }
+    }
+
+    /**
+     * Append-only file of acknowledged event hashes (H hash) and completed
+     * chunks (C chunk), one per line. A partially written last line (from a
+     * crash) is ignored.
+     */
+    private static final class Checkpoint {
+
+        private static final String HASH = "H ";
+        private static final String COMPLETE = "C ";
+
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+        private final Set<String> complete = ConcurrentHashMap.newKeySet();
+        private final FileChannel out;
+
+        private Checkpoint(Path file) throws IOException {
+            if (file == null) {
+                this.out = null;
+                return;
+            }
+            if (Files.exists(file)) {
+                try (BufferedReader in = Files.newBufferedReader(file,
+                        StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.startsWith(HASH)) {
+                            seen.add(line.substring(HASH.length()));
+                        } else if (line.startsWith(COMPLETE)) {
+                            complete.add(line.substring(COMPLETE.length()));
+                        }
+                    }
+                }
+            }
+            this.out = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            final long size = out.size();
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            if (size > 0 && out.read(last, size - 1) == 1
+                    && last.get(0) != NEWLINE) {
+                //terminate the partial line left by a crash
+                write(String.valueOf(NEWLINE_CHAR));
+            }
+        }
+
+        private boolean isComplete(String chunk) {
+            return complete.contains(chunk);
+        }
+
+        private synchronized void append(List<String> hashes, String chunk)
+                throws IOException {
+            if (chunk != null) {
+                complete.add(chunk);
+            }
+            if (out == null) {
+                return;
+            }
+            final StringBuilder sb = new StringBuilder();
+            for (String h : hashes) {
+                sb.append(HASH).append(h).append(NEWLINE_CHAR);
+            }
+            if (chunk != null) {
+                sb.append(COMPLETE).append(chunk).append(NEWLINE_CHAR);
+            }
+            write(sb.toString());
+        }
+
+        private void write(String lines) throws IOException {
+            final ByteBuffer b = ByteBuffer.wrap(
+                    lines.getBytes(StandardCharsets.UTF_8));
+            while (b.hasRemaining()) {
+                out.write(b, out.size());
+            }
+            out.force(false);
+        }
+
+        private void close() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ex) {
+                    //nothing left to checkpoint
+                }
+            }
+        }
+    }
+}
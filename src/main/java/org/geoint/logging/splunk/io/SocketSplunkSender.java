@@ -0,0 +1,371 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends events over a socket stream, such as to a splunk raw TCP input or a
+ * forwarder listening on a unix domain socket (see {@link UnixDomainSockets}).
+ *
+ * Events are queued on a lock-free bounded queue; a single selector thread
+ * owns a non-blocking {@link SocketChannel} and writes queued events in
+ * batches with gathering writes, continuing partial writes when the socket is
+ * next writable. When the queue is full the overflow policy is applied; by
+ * default the event is dropped and counted, so producers never block.
+ *
+ * If the connection fails (or is closed by the remote end) the sender
+ * reconnects with exponential backoff. An event that was only partially
+ * written when the connection failed is resent in full; events already
+ * written to the socket are not resent.
+ *
+ * Thread-safe.
+ */
+public class SocketSplunkSender implements EventSender {
+
+    public static final int DEFAULT_CAPACITY = 65536;
+    public static final int DEFAULT_MAX_BATCH = 256;
+    public static final long DEFAULT_MIN_BACKOFF_MILLIS = 100;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 30000;
+    private static final long RATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final SocketAddress address;
+    private final long minBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Selector selector;
+    private final Thread thread;
+
+    private final BoundedEventQueue queue;
+    private volatile long bytesSent;
+    private volatile long bytesPerSecond;
+    private volatile long reconnects;
+    private volatile boolean connected;
+    private volatile boolean closed;
+
+    //selector thread state
+    private final ByteBuffer[] batch;
+    private final ByteBuffer readScratch = ByteBuffer.allocate(1024);
+    private int batchOffset;
+    private int batchSize;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private long backoffNanos;
+    private long nextConnect;
+    private boolean everConnected;
+
+    /**
+     * Sender with the default capacity, batch size and backoff.
+     *
+     * @param address
+     * @throws IOException if a selector could not be opened
+     */
+    public SocketSplunkSender(SocketAddress address) throws IOException {
+        this(address, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH,
+                DEFAULT_MIN_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Sender which drops new events when full.
+     *
+     * @param address destination address
+     * @param capacity max events queued before events are dropped
+     * @param maxBatch max events written with one write
+     * @param minBackoffMillis delay before the first reconnect attempt
+     * @param maxBackoffMillis max delay between reconnect attempts
+     * @throws IOException if a selector could not be opened
+     */
+    public SocketSplunkSender(SocketAddress address, int capacity,
+            int maxBatch, long minBackoffMillis, long maxBackoffMillis)
+            throws IOException {
+        this(address, capacity, maxBatch, minBackoffMillis, maxBackoffMillis,
+                OverflowPolicy.DROP_NEWEST);
+    }
+
+    /**
+     *
+     * @param address destination address
+     * @param capacity max events queued before events are dropped
+     * @param maxBatch max events written with one write
+     * @param minBackoffMillis delay before the first reconnect attempt
+     * @param maxBackoffMillis max delay between reconnect attempts
+     * @param overflow applied when the queue is full
+     * @throws IOException if a selector could not be opened
+     */
+    public SocketSplunkSender(SocketAddress address, int capacity,
+            int maxBatch, long minBackoffMillis, long maxBackoffMillis,
+            OverflowPolicy overflow) throws IOException {
+        if (maxBatch < 1 || capacity < maxBatch || minBackoffMillis < 0
+                || maxBackoffMillis < minBackoffMillis) {
+            throw new IllegalArgumentException("Invalid sender "
+                    + "configuration; batch " + maxBatch + ", capacity "
+                    + capacity + ", backoff " + minBackoffMillis + "-"
+                    + maxBackoffMillis + "ms");
+        }
+        this.address = address;
+        this.batch = new ByteBuffer[maxBatch];
+        this.minBackoffNanos = TimeUnit.MILLISECONDS.toNanos(minBackoffMillis);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+        this.backoffNanos = minBackoffNanos;
+        this.selector = Selector.open();
+        this.queue = new BoundedEventQueue(capacity, overflow,
+                selector::wakeup);
+        this.nextConnect = System.nanoTime();
+
+        this.thread = new Thread(this::run,
+                "splunk-socket-sender-" + System.identityHashCode(this));
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public boolean send(ByteBuffer event) {
+        return queue.offer(event);
+    }
+
+    @Override
+    public boolean flush(long timeout, TimeUnit unit) {
+        return queue.awaitDelivery(timeout, unit, thread);
+    }
+
+    /**
+     * Stops the selector thread; undelivered events are discarded.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.close();
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     *
+     * @return true if currently connected
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     *
+     * @return true if currently connected
+     */
+    @Override
+    public boolean isAvailable() {
+        return connected;
+    }
+
+    @Override
+    public long getSent() {
+        return queue.getDelivered();
+    }
+
+    @Override
+    public long getDropped() {
+        return queue.getDropped();
+    }
+
+    @Override
+    public int getPending() {
+        return queue.getPending();
+    }
+
+    /**
+     *
+     * @return total bytes written to the socket
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     *
+     * @return bytes written during the last second
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     *
+     * @return number of connection attempts after a connection was lost
+     */
+    public long getReconnects() {
+        return reconnects;
+    }
+
+    /**
+     * Open an unconnected channel for the address; a unix domain socket
+     * channel for a unix domain address, otherwise TCP.
+     *
+     * @param address
+     * @return unconnected channel
+     * @throws IOException
+     */
+    protected SocketChannel openChannel(SocketAddress address)
+            throws IOException {
+        return UnixDomainSockets.isUnixAddress(address)
+                ? UnixDomainSockets.openChannel()
+                : SocketChannel.open();
+    }
+
+    /**
+     * Selector thread loop.
+     */
+    private void run() {
+        long rateStart = System.nanoTime();
+        long rateBytes = 0;
+        try {
+            while (!closed) {
+                final long now = System.nanoTime();
+                if (channel == null && now - nextConnect >= 0) {
+                    connect();
+                }
+                if (connected && batchSize == 0) {
+                    fillBatch();
+                }
+                if (key != null) {
+                    key.interestOps(connected
+                            ? SelectionKey.OP_READ
+                            | (batchSize > 0 ? SelectionKey.OP_WRITE : 0)
+                            : SelectionKey.OP_CONNECT);
+                }
+
+                long waitNanos = RATE_INTERVAL_NANOS;
+                if (channel == null) {
+                    waitNanos = Math.min(waitNanos, nextConnect - now);
+                }
+                selector.select(Math.max(1,
+                        TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+
+                for (SelectionKey k : selector.selectedKeys()) {
+                    if (k.isValid()) {
+                        process(k);
+                    }
+                }
+                selector.selectedKeys().clear();
+
+                final long elapsed = System.nanoTime() - rateStart;
+                if (elapsed >= RATE_INTERVAL_NANOS) {
+                    final long b = bytesSent;
+                    bytesPerSecond = (b - rateBytes) * RATE_INTERVAL_NANOS
+                            / elapsed;
+                    rateBytes = b;
+                    rateStart += elapsed;
+                }
+            }
+        } catch (IOException | ClosedSelectorException ex) {
+            //selector failure; nothing more can be sent
+        } finally {
+            disconnect();
+            try {
+                selector.close();
+            } catch (IOException ex) {
+                //ignore
+            }
+        }
+    }
+
+    private void process(SelectionKey k) {
+        try {
+            if (k.isConnectable()) {
+                if (channel.finishConnect()) {
+                    connected = true;
+                    everConnected = true;
+                    backoffNanos = minBackoffNanos;
+                }
+                return;
+            }
+            if (k.isReadable()) {
+                //splunk doesn't reply; read to detect the remote closing
+                readScratch.clear();
+                if (channel.read(readScratch) < 0) {
+                    throw new IOException("Connection closed by remote");
+                }
+            }
+            if (k.isValid() && k.isWritable()) {
+                writeBatch();
+            }
+        } catch (IOException ex) {
+            disconnect();
+        }
+    }
+
+    private void connect() {
+        try {
+            if (everConnected) {
+                reconnects++;
+            }
+            channel = openChannel(address);
+            channel.configureBlocking(false);
+            connected = channel.connect(address);
+            key = channel.register(selector, connected
+                    ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT);
+            if (connected) {
+                everConnected = true;
+                backoffNanos = minBackoffNanos;
+            }
+        } catch (IOException ex) {
+            disconnect();
+        }
+    }
+
+    private void disconnect() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                //ignore
+            }
+        }
+        channel = null;
+        key = null;
+        connected = false;
+        if (batchSize > batchOffset) {
+            //resend any partially written event in full
+            batch[batchOffset].reset();
+        }
+        nextConnect = System.nanoTime() + backoffNanos;
+        backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+    }
+
+    private void fillBatch() {
+        ByteBuffer event;
+        while (batchSize < batch.length && (event = queue.poll()) != null) {
+            event.mark();
+            batch[batchSize++] = event;
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        final long written = channel.write(batch, batchOffset,
+                batchSize - batchOffset);
+        bytesSent += written;
+
+        int completed = 0;
+        while (batchOffset < batchSize && !batch[batchOffset].hasRemaining()) {
+            batch[batchOffset++] = null;
+            completed++;
+        }
+        if (completed > 0) {
+            queue.delivered(completed);
+        }
+        if (batchOffset == batchSize) {
+            batchOffset = 0;
+            batchSize = 0;
+            fillBatch();
+        }
+    }
+}
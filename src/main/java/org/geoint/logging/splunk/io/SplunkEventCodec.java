@@ -0,0 +1,162 @@
+package org.geoint.logging.splunk.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.crypto.ByteArrayEventHash;
+import org.geoint.logging.splunk.crypto.EventHash;
+
+/**
+ * Compact binary serialization of a {@link SplunkEvent}, used to store events
+ * outside of the java heap.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * long   epoch seconds
+ * int    nanos
+ * string zone id
+ * string hash algorithm
+ * bytes  hash
+ * int    field count
+ * (string name, string value)*
+ * </pre>
+ * where strings are an int UTF-8 byte length (-1 for null) followed by the
+ * bytes.
+ */
+public final class SplunkEventCodec {
+
+    private static final int NULL_LENGTH = -1;
+
+    private SplunkEventCodec() {
+    }
+
+    /**
+     * Serialize the event into a pooled buffer, which should be returned with
+     * {@link #release(Utf8Buffer)}.
+     *
+     * @param event
+     * @return buffer containing the serialized event
+     */
+    public static Utf8Buffer encode(SplunkEvent event) {
+        final Utf8Buffer out = BufferPool.UTF8.acquire();
+        encode(event, out);
+        return out;
+    }
+
+    /**
+     * Serialize the event, appending it to the buffer.
+     *
+     * @param event
+     * @param out
+     */
+    public static void encode(SplunkEvent event, Utf8Buffer out) {
+        final ZonedDateTime time = event.getEventTime();
+        final Instant instant = time.toInstant();
+        writeLong(out, instant.getEpochSecond());
+        writeInt(out, instant.getNano());
+        writeString(out, time.getZone().getId());
+
+        final EventHash hash = event.getHash();
+        writeString(out, (hash == null) ? null : hash.getAlgorithmName());
+        final byte[] hashBytes = (hash == null) ? new byte[0] : hash.asBytes();
+        writeInt(out, hashBytes.length);
+        out.write(hashBytes);
+
+        final Map<String, String> fields = event.getFields();
+        writeInt(out, fields.size());
+        for (Entry<String, String> e : fields.entrySet()) {
+            writeString(out, e.getKey());
+            writeString(out, e.getValue());
+        }
+    }
+
+    /**
+     * Return a buffer from {@link #encode(SplunkEvent)}.
+     *
+     * @param buffer
+     */
+    public static void release(Utf8Buffer buffer) {
+        BufferPool.UTF8.release(buffer);
+    }
+
+    /**
+     * Deserialize an event.
+     *
+     * @param record serialized event, read from its position to its limit
+     * @return immutable event
+     */
+    public static SplunkEvent decode(ByteBuffer record) {
+        final long seconds = record.getLong();
+        final int nanos = record.getInt();
+        final ZonedDateTime time = ZonedDateTime.ofInstant(
+                Instant.ofEpochSecond(seconds, nanos),
+                ZoneId.of(readString(record)));
+
+        final String algorithm = readString(record);
+        final byte[] hashBytes = new byte[record.getInt()];
+        record.get(hashBytes);
+        final EventHash hash = (algorithm == null) ? null
+                : new ByteArrayEventHash(algorithm, hashBytes);
+
+        final int count = record.getInt();
+        final Map<String, String> fields = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            fields.put(readString(record), readString(record));
+        }
+        return new DecodedSplunkEvent(time, hash, fields);
+    }
+
+    private static void writeString(Utf8Buffer out, String value) {
+        if (value == null) {
+            writeInt(out, NULL_LENGTH);
+            return;
+        }
+        //reserve the length, then back-fill it once encoded
+        final int lengthOffset = out.length();
+        writeInt(out, 0);
+        out.append(value);
+        final int length = out.length() - lengthOffset - Integer.BYTES;
+        final byte[] b = out.array();
+        b[lengthOffset] = (byte) (length >>> 24);
+        b[lengthOffset + 1] = (byte) (length >>> 16);
+        b[lengthOffset + 2] = (byte) (length >>> 8);
+        b[lengthOffset + 3] = (byte) length;
+    }
+
+    private static String readString(ByteBuffer in) {
+        final int length = in.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (in.hasArray()) {
+            final String value = new String(in.array(),
+                    in.arrayOffset() + in.position(), length,
+                    StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInt(Utf8Buffer out, int value) {
+        out.write(value >>> 24)
+                .write(value >>> 16)
+                .write(value >>> 8)
+                .write(value);
+    }
+
+    private static void writeLong(Utf8Buffer out, long value) {
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+    }
+}
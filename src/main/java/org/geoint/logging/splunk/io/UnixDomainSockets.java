@@ -0,0 +1,142 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Unix domain socket channel support, available when running on Java 16+.
+ *
+ * The unix domain socket API is looked up reflectively so this library still
+ * runs on Java 8; check {@link #isSupported()} before using the other
+ * methods.
+ */
+public final class UnixDomainSockets {
+
+    private static final ProtocolFamily UNIX;
+    private static final Method ADDRESS_OF;
+    private static final Method ADDRESS_PATH;
+    private static final Method OPEN_CHANNEL;
+    private static final Method OPEN_SERVER;
+
+    static {
+        ProtocolFamily family = null;
+        Method addressOf = null;
+        Method addressPath = null;
+        Method openChannel = null;
+        Method openServer = null;
+        try {
+            family = StandardProtocolFamily.valueOf("UNIX");
+            final Class<?> addressClass
+                    = Class.forName("java.net.UnixDomainSocketAddress");
+            addressOf = addressClass.getMethod("of", Path.class);
+            addressPath = addressClass.getMethod("getPath");
+            openChannel = SocketChannel.class.getMethod("open",
+                    ProtocolFamily.class);
+            openServer = ServerSocketChannel.class.getMethod("open",
+                    ProtocolFamily.class);
+        } catch (IllegalArgumentException | ReflectiveOperationException ex) {
+            family = null;
+        }
+        UNIX = family;
+        ADDRESS_OF = addressOf;
+        ADDRESS_PATH = addressPath;
+        OPEN_CHANNEL = openChannel;
+        OPEN_SERVER = openServer;
+    }
+
+    private UnixDomainSockets() {
+    }
+
+    /**
+     *
+     * @return true if the runtime supports unix domain socket channels
+     */
+    public static boolean isSupported() {
+        return UNIX != null;
+    }
+
+    /**
+     *
+     * @param address
+     * @return true if the address is a unix domain socket address
+     */
+    public static boolean isUnixAddress(SocketAddress address) {
+        return isSupported()
+                && ADDRESS_OF.getDeclaringClass().isInstance(address);
+    }
+
+    /**
+     *
+     * @param path socket file
+     * @return unix domain socket address
+     * @throws UnsupportedOperationException if not supported by the runtime
+     */
+    public static SocketAddress address(Path path) {
+        return (SocketAddress) invoke(ADDRESS_OF, null, path);
+    }
+
+    /**
+     *
+     * @param address unix domain socket address
+     * @return socket file
+     */
+    public static Path path(SocketAddress address) {
+        return (Path) invoke(ADDRESS_PATH, address);
+    }
+
+    /**
+     *
+     * @return unconnected unix domain socket channel
+     * @throws IOException
+     * @throws UnsupportedOperationException if not supported by the runtime
+     */
+    public static SocketChannel openChannel() throws IOException {
+        return (SocketChannel) invokeIO(OPEN_CHANNEL);
+    }
+
+    /**
+     *
+     * @return unbound unix domain server socket channel
+     * @throws IOException
+     * @throws UnsupportedOperationException if not supported by the runtime
+     */
+    public static ServerSocketChannel openServer() throws IOException {
+        return (ServerSocketChannel) invokeIO(OPEN_SERVER);
+    }
+
+    private static Object invokeIO(Method open) throws IOException {
+        try {
+            return invoke(open, null, UNIX);
+        } catch (IllegalStateException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private static Object invoke(Method method, Object target,
+            Object... args) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Unix domain sockets "
+                    + "require Java 16 or later");
+        }
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package org.geoint.logging.splunk.json;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Objects;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.EscapeScanner;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.Utf8Sink;
 
 /*
  * yes, there are 1k JSON libraries for Java, but that would require 
@@ -21,7 +27,7 @@ import java.util.Objects;
  *
  * TODO add checks/exceptions if user attempts to create invalid JSON.
  *
- * TODO add read/parsing capabilities (with invalid JSON detection).
+ * @see JsonReader to read JSON
  */
 public class Json implements Serializable, CharSequence, Comparable<Json> {
 
@@ -57,6 +63,7 @@ public class Json implements Serializable, CharSequence, Comparable<Json> {
     private static final String JSON_ARRAY_WRAPPER = "[{}]";
     private static final String JSON_KV_SEPARATOR = ":";
     private static final String JSON_ELEMENT_SEPARATOR = ",";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
     private Json(JsonContainer containerType) {
         this.containerFirst = true;
@@ -166,7 +173,9 @@ public class Json implements Serializable, CharSequence, Comparable<Json> {
                 JSON_KV_SEPARATOR,
                 JSON_ARRAY_WRAPPER);
         container = JsonContainer.OBJECT;
-        position--; //move position inside the array
+        //move position inside the first array element
+        position -= JsonContainer.ARRAY.offset();
+        containerFirst = true;
         return this;
     }
 
@@ -191,6 +200,7 @@ public class Json implements Serializable, CharSequence, Comparable<Json> {
         appendJson(JSON_OBJ_WRAPPER);
         position--;
         containerFirst = true;
+        container = JsonContainer.OBJECT; //now within the new element
 
         return this;
     }
@@ -243,6 +253,15 @@ public class Json implements Serializable, CharSequence, Comparable<Json> {
         return json.subSequence(start, end);
     }
 
+    /**
+     * Write the JSON, encoded as UTF-8, to the sink.
+     *
+     * @param sink
+     */
+    public void writeTo(Utf8Sink sink) {
+        sink.append(json);
+    }
+
     @Override
     public int compareTo(Json o) {
         return this.json.toString().compareTo(o.json.toString());
@@ -322,59 +341,92 @@ public class Json implements Serializable, CharSequence, Comparable<Json> {
      * @return escaped string IAW RFC 4627
      */
     private String escape(String string) {
-        //shamelessly copied from Jettison v1.3.7 (Apachev2).  props!
-
         if (string == null || string.length() == 0) {
             return "\"\"";
         }
+        StringBuilder sb = BufferPool.STRING_BUILDERS.acquire();
+        try {
+            escape(string, sb);
+            return sb.toString();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); //StringBuilder does not throw
+        } finally {
+            BufferPool.STRING_BUILDERS.release(sb);
+        }
+    }
 
-        char c = 0;
-        int i;
-        int len = string.length();
-        StringBuilder sb = new StringBuilder(len + 4);
-        String t;
+    /**
+     * Writes the provided raw string as a quoted JSON string IAW RFC 4627,
+     * encoding directly to the sink.
+     *
+     * @param string raw string, null is written as an empty string
+     * @param sink
+     */
+    public static void quote(CharSequence string, Utf8Sink sink) {
+        if (sink instanceof Utf8Buffer) {
+            //scan the encoded bytes a word at a time
+            EscapeScanner.appendJson(string, (Utf8Buffer) sink);
+            return;
+        }
+        try {
+            escape(string, sink);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); //sinks do not throw
+        }
+    }
+
+    private static void escape(CharSequence string, Appendable out)
+            throws IOException {
+        //shamelessly copied from Jettison v1.3.7 (Apachev2).  props!
 
-        sb.append('"');
-        for (i = 0; i < len; i += 1) {
-            c = string.charAt(i);
+        out.append('"');
+        if (string == null) {
+            out.append('"');
+            return;
+        }
+
+        //copy the spans between escaped characters in bulk
+        final int len = string.length();
+        int clean = 0;
+        for (int i = 0; i < len; i++) {
+            final char c = string.charAt(i);
+            if (c >= ' ' && c != '"' && c != '\\' && c != '/') {
+                continue;
+            }
+            if (c == '/' && (i == 0 || string.charAt(i - 1) != '<')) {
+                continue;
+            }
+            out.append(string, clean, i);
+            clean = i + 1;
             switch (c) {
                 case '\\':
                 case '"':
-                    sb.append('\\');
-                    sb.append(c);
-                    break;
                 case '/':
-                    if (i > 0 && string.charAt(i - 1) == '<') {
-                        sb.append('\\');
-                    }
-                    sb.append(c);
+                    out.append('\\');
+                    out.append(c);
                     break;
                 case '\b':
-                    sb.append("\\b");
+                    out.append("\\b");
                     break;
                 case '\t':
-                    sb.append("\\t");
+                    out.append("\\t");
                     break;
                 case '\n':
-                    sb.append("\\n");
+                    out.append("\\n");
                     break;
                 case '\f':
-                    sb.append("\\f");
+                    out.append("\\f");
                     break;
                 case '\r':
-                    sb.append("\\r");
+                    out.append("\\r");
                     break;
                 default:
-                    if (c < ' ') {
-                        t = "000" + Integer.toHexString(c);
-                        sb.append("\\u")
-                                .append(t.substring(t.length() - 4));
-                    } else {
-                        sb.append(c);
-                    }
+                    out.append("\\u00")
+                            .append(HEX[c >> 4])
+                            .append(HEX[c & 0xF]);
             }
         }
-        sb.append('"');
-        return sb.toString();
+        out.append(string, clean, len);
+        out.append('"');
     }
 }
@@ -0,0 +1,22 @@
+package org.geoint.logging.splunk.json;
+
+/**
+ * Creates an object from the JSON value at the current position of a
+ * {@link JsonReader}; the reverse of a {@link JsonObjectConverter}.
+ *
+ * @param <T> object type
+ */
+@FunctionalInterface
+public interface JsonObjectParser<T> {
+
+    /**
+     * Read exactly one JSON value (usually an object) from the reader and
+     * return it as an object.
+     *
+     * @param json reader positioned before the value
+     * @return object read from the JSON value
+     * @throws JsonParseException if the JSON is not as expected
+     */
+    T parse(JsonReader json);
+
+}
@@ -0,0 +1,26 @@
+package org.geoint.logging.splunk.json;
+
+/**
+ * Thrown when the JSON being read is not valid (or not what the caller
+ * expected at the current position).
+ */
+public class JsonParseException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long position;
+
+    public JsonParseException(String message, long position) {
+        super(message + " at character " + position);
+        this.position = position;
+    }
+
+    /**
+     *
+     * @return character offset within the source where the problem was found
+     */
+    public long getPosition() {
+        return position;
+    }
+
+}
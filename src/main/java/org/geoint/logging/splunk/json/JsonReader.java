@@ -0,0 +1,541 @@
+package org.geoint.logging.splunk.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads JSON as a stream of tokens (pull parser).
+ *
+ * No document model is built; tokens are only read from the source as they
+ * are requested, so callers may stop reading (for example, after the first few
+ * elements of a large array) without paying to parse the rest.
+ *
+ * A lenient reader additionally accepts single-quoted strings, which is what
+ * JSON field values look like after the {@code "} to {@code '} substitution
+ * done by the native splunk format.
+ *
+ * JsonReader instances are not thread-safe.
+ */
+public class JsonReader implements Closeable {
+
+    //scope of the current nesting level
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private static final int EOF = -1;
+    private static final int READ_BUFFER_SIZE = 1024;
+
+    //exactly one of these sources are set
+    private final CharSequence chars;
+    private final Reader reader;
+    private final char[] buffer;
+    private int bufferLimit;
+    private int bufferPos;
+    private long consumed; //chars consumed from a reader before the buffer
+
+    private int pos; //position within a CharSequence source
+    private final boolean lenient;
+
+    private int[] stack = new int[16];
+    private int depth = 1;
+
+    private JsonToken peeked;
+    private String peekedValue;
+    private final StringBuilder scratch = new StringBuilder();
+
+    private JsonReader(CharSequence chars, Reader reader, boolean lenient) {
+        this.chars = chars;
+        this.reader = reader;
+        this.buffer = (reader == null) ? null : new char[READ_BUFFER_SIZE];
+        this.lenient = lenient;
+        this.stack[0] = EMPTY_DOCUMENT;
+    }
+
+    public static JsonReader of(CharSequence json) {
+        return new JsonReader(json, null, false);
+    }
+
+    public static JsonReader of(Reader json) {
+        return new JsonReader(null, json, false);
+    }
+
+    /**
+     * Creates a reader which also accepts single-quoted strings.
+     *
+     * @param json
+     * @return lenient reader
+     */
+    public static JsonReader lenient(CharSequence json) {
+        return new JsonReader(json, null, true);
+    }
+
+    public static JsonReader lenient(Reader json) {
+        return new JsonReader(null, json, true);
+    }
+
+    /**
+     * Lazily reads the elements of the provided JSON array using the
+     * {@link JsonObjectParser} to deserialize each element; the reverse of
+     * {@link Json#asArray(JsonObjectConverter, Object...)}.
+     *
+     * Each element is only parsed when requested from the iterator.
+     *
+     * @param <T>
+     * @param parser
+     * @param json JSON array, single or double quoted
+     * @return iterator over the array elements
+     */
+    public static <T> Iterator<T> fromArray(JsonObjectParser<T> parser,
+            CharSequence json) {
+        if (json == null || json.length() == 0) {
+            return Arrays.<T>asList().iterator();
+        }
+        return JsonReader.lenient(json).elements(parser);
+    }
+
+    /**
+     * Lazily reads the elements of the array at the current position.
+     *
+     * The array is opened on the first call to the iterator and closed once
+     * the last element has been read.
+     *
+     * @param <T>
+     * @param parser
+     * @return iterator over the array elements
+     */
+    public <T> Iterator<T> elements(JsonObjectParser<T> parser) {
+        return new Iterator<T>() {
+            private boolean opened;
+            private boolean closed;
+
+            @Override
+            public boolean hasNext() {
+                if (closed) {
+                    return false;
+                }
+                if (!opened) {
+                    beginArray();
+                    opened = true;
+                }
+                if (JsonReader.this.hasNext()) {
+                    return true;
+                }
+                endArray();
+                closed = true;
+                return false;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return parser.parse(JsonReader.this);
+            }
+        };
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     *
+     * @return next token
+     * @throws JsonParseException if the source is not valid JSON
+     */
+    public JsonToken peek() {
+        if (peeked != null) {
+            return peeked;
+        }
+
+        final int scope = stack[depth - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                if (peekNonWhitespace() == ']') {
+                    read();
+                    return peeked = JsonToken.END_ARRAY;
+                }
+                break;
+            case NONEMPTY_ARRAY:
+                c = readNonWhitespace();
+                if (c == ']') {
+                    return peeked = JsonToken.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                stack[depth - 1] = DANGLING_NAME;
+                if (scope == NONEMPTY_OBJECT) {
+                    c = readNonWhitespace();
+                    if (c == '}') {
+                        return peeked = JsonToken.END_OBJECT;
+                    } else if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                } else if (peekNonWhitespace() == '}') {
+                    read();
+                    return peeked = JsonToken.END_OBJECT;
+                }
+                c = readNonWhitespace();
+                if (!isQuote(c)) {
+                    throw syntaxError("Expected name");
+                }
+                peekedValue = readString((char) c);
+                return peeked = JsonToken.NAME;
+            case DANGLING_NAME:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                if (readNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case NONEMPTY_DOCUMENT:
+                if (peekNonWhitespace() == EOF) {
+                    return peeked = JsonToken.END_DOCUMENT;
+                }
+                throw syntaxError("Unexpected content after the root value");
+            default:
+                throw new IllegalStateException("Unknown JSON reader scope "
+                        + scope);
+        }
+
+        return peeked = readValueToken();
+    }
+
+    /**
+     *
+     * @return true if the current array or object has another element
+     */
+    public boolean hasNext() {
+        final JsonToken t = peek();
+        return t != JsonToken.END_OBJECT
+                && t != JsonToken.END_ARRAY
+                && t != JsonToken.END_DOCUMENT;
+    }
+
+    public void beginObject() {
+        expect(JsonToken.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() {
+        expect(JsonToken.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() {
+        expect(JsonToken.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() {
+        expect(JsonToken.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     *
+     * @return name of the next object member
+     */
+    public String nextName() {
+        expect(JsonToken.NAME);
+        return peekedValue;
+    }
+
+    /**
+     * Returns the next value as a string, converting numbers and booleans to
+     * their literal string value.
+     *
+     * @return string value, or null if the value is a JSON null
+     */
+    public String nextString() {
+        final JsonToken t = peek();
+        switch (t) {
+            case STRING:
+            case NUMBER:
+            case BOOLEAN:
+                peeked = null;
+                return peekedValue;
+            case NULL:
+                peeked = null;
+                return null;
+            default:
+                throw syntaxError("Expected a string but was " + t);
+        }
+    }
+
+    /**
+     * Returns the next value as an int, converting quoted numbers as needed.
+     *
+     * @return int value
+     */
+    public int nextInt() {
+        final String value = nextString();
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            throw syntaxError("Expected an int but was '" + value + "'");
+        }
+    }
+
+    public boolean nextBoolean() {
+        expect(JsonToken.BOOLEAN);
+        return Boolean.parseBoolean(peekedValue);
+    }
+
+    public void nextNull() {
+        expect(JsonToken.NULL);
+    }
+
+    /**
+     * Skips the next value, including any nested arrays or objects.
+     */
+    public void skipValue() {
+        int nested = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    nested++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    nested++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    nested--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    nested--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of JSON");
+                default:
+                    peeked = null;
+            }
+        } while (nested != 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        peeked = JsonToken.END_DOCUMENT;
+        depth = 1;
+        stack[0] = NONEMPTY_DOCUMENT;
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    private void expect(JsonToken expected) {
+        final JsonToken t = peek();
+        if (t != expected) {
+            throw syntaxError("Expected " + expected + " but was " + t);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+
+    private JsonToken readValueToken() {
+        final int c = readNonWhitespace();
+        switch (c) {
+            case '{':
+                return JsonToken.BEGIN_OBJECT;
+            case '[':
+                return JsonToken.BEGIN_ARRAY;
+            case '"':
+            case '\'':
+                if (!isQuote(c)) {
+                    break;
+                }
+                peekedValue = readString((char) c);
+                return JsonToken.STRING;
+            case 't':
+                readLiteral("rue");
+                peekedValue = "true";
+                return JsonToken.BOOLEAN;
+            case 'f':
+                readLiteral("alse");
+                peekedValue = "false";
+                return JsonToken.BOOLEAN;
+            case 'n':
+                readLiteral("ull");
+                peekedValue = null;
+                return JsonToken.NULL;
+            case EOF:
+                throw syntaxError("Unexpected end of JSON");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    peekedValue = readNumber((char) c);
+                    return JsonToken.NUMBER;
+                }
+        }
+        throw syntaxError("Unexpected character '" + (char) c + "'");
+    }
+
+    private void readLiteral(String remaining) {
+        for (int i = 0; i < remaining.length(); i++) {
+            if (read() != remaining.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    private String readNumber(char first) {
+        scratch.setLength(0);
+        scratch.append(first);
+        for (int c = peekChar(); isNumberChar(c); c = peekChar()) {
+            scratch.append((char) read());
+        }
+        return scratch.toString();
+    }
+
+    private static boolean isNumberChar(int c) {
+        return (c >= '0' && c <= '9')
+                || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-';
+    }
+
+    private boolean isQuote(int c) {
+        return c == '"' || (lenient && c == '\'');
+    }
+
+    /**
+     * Reads the remainder of a string, the opening quote has already been
+     * consumed.
+     */
+    private String readString(char quote) {
+        scratch.setLength(0);
+        while (true) {
+            final int c = read();
+            if (c == quote) {
+                return scratch.toString();
+            } else if (c == EOF) {
+                throw syntaxError("Unterminated string");
+            } else if (c == '\\') {
+                scratch.append(readEscape());
+            } else if (c < ' ') {
+                throw syntaxError("Unescaped control character in string");
+            } else {
+                scratch.append((char) c);
+            }
+        }
+    }
+
+    private char readEscape() {
+        final int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case '\'':
+                if (!lenient) {
+                    break;
+                }
+                return '\'';
+            case 'b':
+                return '\b';
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'f':
+                return '\f';
+            case 'r':
+                return '\r';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+        }
+        throw syntaxError("Invalid escape sequence");
+    }
+
+    private int readNonWhitespace() {
+        final int c = peekNonWhitespace();
+        if (c != EOF) {
+            read();
+        }
+        return c;
+    }
+
+    private int peekNonWhitespace() {
+        int c = peekChar();
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            read();
+            c = peekChar();
+        }
+        return c;
+    }
+
+    private int peekChar() {
+        if (chars != null) {
+            return (pos < chars.length()) ? chars.charAt(pos) : EOF;
+        }
+        if (bufferPos == bufferLimit && !fill()) {
+            return EOF;
+        }
+        return buffer[bufferPos];
+    }
+
+    private int read() {
+        final int c = peekChar();
+        if (c != EOF) {
+            if (chars != null) {
+                pos++;
+            } else {
+                bufferPos++;
+            }
+        }
+        return c;
+    }
+
+    private boolean fill() {
+        try {
+            consumed += bufferLimit;
+            bufferPos = 0;
+            bufferLimit = 0;
+            final int read = reader.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                return false;
+            }
+            bufferLimit = read;
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Unable to read JSON source", ex);
+        }
+    }
+
+    private JsonParseException syntaxError(String message) {
+        return new JsonParseException(message,
+                (chars != null) ? pos : consumed + bufferPos);
+    }
+}
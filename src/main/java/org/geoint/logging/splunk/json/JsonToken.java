@@ -0,0 +1,24 @@
+package org.geoint.logging.splunk.json;
+
+/**
+ * Structural and value tokens returned by {@link JsonReader#peek()}.
+ */
+public enum JsonToken {
+
+    BEGIN_OBJECT,
+    END_OBJECT,
+    BEGIN_ARRAY,
+    END_ARRAY,
+    /**
+     * Object member name.
+     */
+    NAME,
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    NULL,
+    /**
+     * No more content is available from the source.
+     */
+    END_DOCUMENT;
+}
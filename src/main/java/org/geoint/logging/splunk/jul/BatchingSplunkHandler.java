@@ -0,0 +1,289 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.io.RollingSplunkFileChannel;
+
+/**
+ * Handler which group-commits formatted events to a
+ * {@link GatheringByteChannel}.
+ *
+ * Records are formatted on the logging (producer) thread and enqueued on a
+ * lock-free queue, so many threads may publish concurrently without
+ * contending on a monitor. A single writer thread drains the queue in batches
+ * of up to the max batch size, waiting up to the max linger time for a batch
+ * to fill, and writes each batch with one vectored (gathering) write.
+ *
+ * When the queue reaches its capacity producers wait for the writer, rather
+ * than drop events. Events published once the handler is closed, or if the
+ * writer thread has stopped, are dropped and reported to the error manager.
+ *
+ * Configured using the following LogManager properties (each prefixed with
+ * the handler class name):
+ * <ul>
+ * <li>file - path of the file to append events to, required if a channel is
+ * not provided</li>
+ * <li>maxBatch - max events per write, defaults to 256</li>
+ * <li>lingerMillis - max time to wait for a batch to fill, defaults to 5</li>
+ * <li>capacity - max events queued, defaults to 65536</li>
+ * <li>level - handler level, defaults to ALL</li>
+ * <li>formatter - defaults to {@link StandardSplunkFormatter}</li>
+ * </ul>
+ */
+public class BatchingSplunkHandler extends Handler {
+
+    private static final String PROPERTY_MAX_BATCH = ".maxBatch";
+    private static final String PROPERTY_LINGER = ".lingerMillis";
+    private static final String PROPERTY_CAPACITY = ".capacity";
+    private static final int DEFAULT_MAX_BATCH = 256;
+    private static final long DEFAULT_LINGER_MILLIS = 5;
+    private static final int DEFAULT_CAPACITY = 65536;
+    private static final long PRODUCER_WAIT_NANOS
+            = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final GatheringByteChannel channel;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final int capacity;
+
+    private final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong enqueued = new AtomicLong();
+    private volatile long written;
+    private volatile boolean flushRequested;
+    private volatile boolean closed;
+    private final Thread writer;
+
+    /**
+     * Create a handler appending to the file configured by the LogManager.
+     *
+     * @throws IOException if the file could not be opened
+     */
+    public BatchingSplunkHandler() throws IOException {
+        this(SplunkHandlers.openConfiguredFile(
+                BatchingSplunkHandler.class.getName()));
+    }
+
+    /**
+     * Create a handler using the LogManager configured batch size and linger
+     * time.
+     *
+     * @param channel
+     */
+    public BatchingSplunkHandler(GatheringByteChannel channel) {
+        this(channel,
+                SplunkHandlers.intProperty(BatchingSplunkHandler.class.getName()
+                        + PROPERTY_MAX_BATCH, DEFAULT_MAX_BATCH),
+                SplunkHandlers.longProperty(BatchingSplunkHandler.class.getName()
+                        + PROPERTY_LINGER, DEFAULT_LINGER_MILLIS),
+                SplunkHandlers.intProperty(BatchingSplunkHandler.class.getName()
+                        + PROPERTY_CAPACITY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     *
+     * @param channel channel to write events to
+     * @param maxBatch max events written with one write
+     * @param maxLingerMillis max time the writer waits for a batch to fill
+     * @param capacity max events queued before producers wait
+     */
+    public BatchingSplunkHandler(GatheringByteChannel channel, int maxBatch,
+            long maxLingerMillis, int capacity) {
+        if (maxBatch < 1 || capacity < maxBatch || maxLingerMillis < 0) {
+            throw new IllegalArgumentException("Invalid batching "
+                    + "configuration; batch " + maxBatch + ", linger "
+                    + maxLingerMillis + "ms, capacity " + capacity);
+        }
+        this.channel = channel;
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.capacity = capacity;
+        SplunkHandlers.configure(this, getClass().getName());
+
+        this.writer = new Thread(this::drain,
+                "splunk-batch-writer-" + System.identityHashCode(this));
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+
+        final ByteBuffer event = SplunkHandlers.encode(this, record);
+        if (event == null) {
+            return;
+        }
+        if (!enqueue(event)) {
+            reportError("Log writer is closed or has stopped, dropping log "
+                    + "record", null, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Enqueue an already formatted event.
+     *
+     * @param event event bytes, must not be modified after being enqueued
+     * @return false if the event was dropped, as the handler is closed or
+     * the writer has stopped
+     */
+    boolean enqueue(ByteBuffer event) {
+        //back-pressure rather than dropping events
+        while (pending.get() >= capacity && !closed) {
+            if (!writer.isAlive()) {
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, PRODUCER_WAIT_NANOS);
+        }
+
+        //reserved before checking closed, so a closing writer waits for the
+        //event and pending never counts fewer events than are queued
+        final int p = pending.incrementAndGet();
+        if (closed || !writer.isAlive()) {
+            pending.decrementAndGet();
+            return false;
+        }
+        queue.offer(event);
+        enqueued.incrementAndGet();
+        if (p == 1 || p == maxBatch) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until all events published before this call have been written.
+     */
+    @Override
+    public void flush() {
+        final long target = enqueued.get();
+        while (written < target && writer.isAlive()) {
+            flushRequested = true;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, PRODUCER_WAIT_NANOS);
+        }
+        try {
+            if (channel instanceof FileChannel) {
+                ((FileChannel) channel).force(false);
+            } else if (channel instanceof RollingSplunkFileChannel) {
+                ((RollingSplunkFileChannel) channel).force();
+            }
+        } catch (IOException ex) {
+            reportError("Unable to flush log channel", ex,
+                    ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    /**
+     * Writes any queued events then closes the channel.
+     */
+    @Override
+    public void close() throws SecurityException {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            reportError("Unable to close log channel", ex,
+                    ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     *
+     * @return number of events queued but not yet written
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Writer thread loop.
+     */
+    private void drain() {
+        final ByteBuffer[] batch = new ByteBuffer[maxBatch];
+        long writtenCount = 0;
+
+        while (true) {
+            if (pending.get() == 0) {
+                //producers reserve before checking closed, so none can
+                //enqueue once this sees no events pending after the close
+                if (closed) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+
+            //linger for the batch to fill
+            final long deadline = System.nanoTime() + lingerNanos;
+            long remaining;
+            while (pending.get() < maxBatch && !flushRequested && !closed
+                    && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            flushRequested = false;
+
+            int size = 0;
+            ByteBuffer event;
+            while (size < maxBatch && (event = queue.poll()) != null) {
+                batch[size++] = event;
+            }
+            pending.addAndGet(-size);
+
+            try {
+                write(batch, size);
+            } catch (Throwable t) {
+                //keep writing; a stopped writer would block producers
+                reportError("Unable to write " + size + " log events",
+                        (t instanceof Exception) ? (Exception) t
+                        : new RuntimeException(t),
+                        ErrorManager.WRITE_FAILURE);
+            }
+            writtenCount += size;
+            written = writtenCount;
+            for (int i = 0; i < size; i++) {
+                batch[i] = null;
+            }
+        }
+    }
+
+    private void write(ByteBuffer[] batch, int size) {
+        int offset = 0;
+        try {
+            while (offset < size) {
+                channel.write(batch, offset, size - offset);
+                //skip completely written buffers (handles partial writes)
+                while (offset < size && !batch[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+        } catch (IOException ex) {
+            reportError("Unable to write " + (size - offset)
+                    + " log events", ex, ErrorManager.WRITE_FAILURE);
+        }
+    }
+}
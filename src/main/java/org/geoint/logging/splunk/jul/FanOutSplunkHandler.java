@@ -0,0 +1,203 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.io.ChannelEventSender;
+import org.geoint.logging.splunk.io.EventSender;
+import org.geoint.logging.splunk.io.FanOutDispatcher;
+import org.geoint.logging.splunk.io.OverflowPolicy;
+import org.geoint.logging.splunk.io.SocketSplunkSender;
+import org.geoint.logging.splunk.io.UnixDomainSockets;
+
+/**
+ * Handler which publishes each record to several destinations, building,
+ * hashing and formatting the event only once.
+ *
+ * Each destination has its own queue and overflow policy (see
+ * {@link FanOutDispatcher}), so one slow destination does not stall the
+ * others as stacked handlers would.
+ *
+ * Configured using the following LogManager properties (each prefixed with
+ * the handler class name):
+ * <ul>
+ * <li>destinations - comma separated destination names, required</li>
+ * <li>[name].type - file, tcp or unix</li>
+ * <li>[name].file - path of the file to append to, for file
+ * destinations</li>
+ * <li>[name].host - defaults to localhost, and [name].port for tcp
+ * destinations</li>
+ * <li>[name].path - socket path for unix destinations, requires Java
+ * 16+</li>
+ * <li>[name].capacity - max events queued, defaults to 65536</li>
+ * <li>[name].maxBatch - max events per write, defaults to 256</li>
+ * <li>[name].overflow - DROP_NEWEST (default), DROP_OLDEST or BLOCK</li>
+ * <li>level - handler level, defaults to ALL</li>
+ * <li>formatter - defaults to {@link StandardSplunkFormatter}</li>
+ * </ul>
+ */
+public class FanOutSplunkHandler extends Handler {
+
+    private static final String PROPERTY_DESTINATIONS = ".destinations";
+    private static final String PROPERTY_TYPE = ".type";
+    private static final String PROPERTY_HOST = ".host";
+    private static final String PROPERTY_PORT = ".port";
+    private static final String PROPERTY_PATH = ".path";
+    private static final String PROPERTY_CAPACITY = ".capacity";
+    private static final String PROPERTY_MAX_BATCH = ".maxBatch";
+    private static final String PROPERTY_OVERFLOW = ".overflow";
+    private static final String DEFAULT_HOST = "localhost";
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+
+    private final FanOutDispatcher dispatcher;
+
+    /**
+     * Create a handler configured by the LogManager.
+     *
+     * @throws IOException if a destination could not be created
+     */
+    public FanOutSplunkHandler() throws IOException {
+        this(new FanOutDispatcher(configuredDestinations()));
+    }
+
+    /**
+     *
+     * @param dispatcher
+     */
+    public FanOutSplunkHandler(FanOutDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+        SplunkHandlers.configure(this, getClass().getName());
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+
+        final ByteBuffer event = SplunkHandlers.encode(this, record);
+        if (event == null) {
+            return;
+        }
+        dispatcher.dispatch(event);
+    }
+
+    /**
+     * Waits (for a limited time) for published records to be delivered to
+     * each destination.
+     */
+    @Override
+    public void flush() {
+        if (!dispatcher.flush(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            reportError("Log events were not delivered to all destinations "
+                    + "within " + FLUSH_TIMEOUT_SECONDS + " seconds", null,
+                    ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        flush();
+        dispatcher.close();
+    }
+
+    /**
+     *
+     * @return the dispatcher, providing per-destination metrics
+     */
+    public FanOutDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    private static Map<String, EventSender> configuredDestinations()
+            throws IOException {
+        final String prefix = FanOutSplunkHandler.class.getName();
+        final String names = SplunkHandlers.property(
+                prefix + PROPERTY_DESTINATIONS);
+        if (names == null) {
+            throw new IOException("Splunk handler destinations property '"
+                    + prefix + PROPERTY_DESTINATIONS + "' was not set");
+        }
+
+        final Map<String, EventSender> destinations = new LinkedHashMap<>();
+        try {
+            for (String name : names.split(",")) {
+                name = name.trim();
+                if (!name.isEmpty()) {
+                    destinations.put(name,
+                            configuredDestination(prefix + "." + name));
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            destinations.values().forEach(EventSender::close);
+            throw ex;
+        }
+        return destinations;
+    }
+
+    private static EventSender configuredDestination(String prefix)
+            throws IOException {
+        final String type = SplunkHandlers.property(prefix + PROPERTY_TYPE);
+        final int capacity = SplunkHandlers.intProperty(
+                prefix + PROPERTY_CAPACITY, ChannelEventSender.DEFAULT_CAPACITY);
+        final int maxBatch = SplunkHandlers.intProperty(
+                prefix + PROPERTY_MAX_BATCH, ChannelEventSender.DEFAULT_MAX_BATCH);
+        final String overflow = SplunkHandlers.property(
+                prefix + PROPERTY_OVERFLOW);
+        final OverflowPolicy policy = (overflow == null)
+                ? OverflowPolicy.DROP_NEWEST
+                : OverflowPolicy.valueOf(overflow.toUpperCase());
+
+        if ("file".equals(type)) {
+            final String file = SplunkHandlers.property(
+                    prefix + SplunkHandlers.PROPERTY_FILE);
+            if (file == null) {
+                throw new IOException("Splunk destination file property '"
+                        + prefix + SplunkHandlers.PROPERTY_FILE
+                        + "' was not set");
+            }
+            return new ChannelEventSender(FileChannel.open(Paths.get(file),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND),
+                    capacity, maxBatch, policy);
+        }
+
+        final SocketAddress address;
+        if ("tcp".equals(type)) {
+            final String host = SplunkHandlers.property(prefix + PROPERTY_HOST);
+            final int port = SplunkHandlers.intProperty(
+                    prefix + PROPERTY_PORT, -1);
+            if (port < 0) {
+                throw new IOException("Splunk destination port property '"
+                        + prefix + PROPERTY_PORT + "' was not set");
+            }
+            address = new InetSocketAddress(
+                    (host == null) ? DEFAULT_HOST : host, port);
+        } else if ("unix".equals(type)) {
+            final String path = SplunkHandlers.property(prefix + PROPERTY_PATH);
+            if (path == null || !UnixDomainSockets.isSupported()) {
+                throw new IOException("Splunk destination path property '"
+                        + prefix + PROPERTY_PATH + "' was not set or unix "
+                        + "domain sockets are not supported");
+            }
+            address = UnixDomainSockets.address(Paths.get(path));
+        } else {
+            throw new IOException("Unknown splunk destination type '" + type
+                    + "' for " + prefix);
+        }
+        return new SocketSplunkSender(address, capacity, maxBatch,
+                SocketSplunkSender.DEFAULT_MIN_BACKOFF_MILLIS,
+                SocketSplunkSender.DEFAULT_MAX_BACKOFF_MILLIS, policy);
+    }
+}
@@ -0,0 +1,43 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.JsonSplunkFormatter;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.Utf8Sink;
+
+/**
+ * Formats a {@link LogRecord} as a single line JSON object, with the same
+ * fields as the {@link StandardSplunkFormatter}, for splunk indexed
+ * extractions (for example the {@code _json} source type).
+ *
+ * Values are escaped rather than substituted, and the exception stack, cause
+ * and suppressed fields are nested JSON rather than strings holding JSON.
+ *
+ * The splunk handlers format with this formatter directly to bytes, as they
+ * do with the standard formatter.
+ *
+ * @see JsonSplunkFormatter
+ */
+public class JsonSplunkLogFormatter extends StandardSplunkFormatter {
+
+    @Override
+    public String format(LogRecord lr) {
+        return SplunkLogUtil.formatJson(lr);
+    }
+
+    @Override
+    public void format(LogRecord lr, Utf8Sink sink) {
+        if (sink instanceof Utf8Buffer) {
+            SplunkLogUtil.formatJson(lr, (Utf8Buffer) sink);
+        } else {
+            final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+            try {
+                SplunkLogUtil.formatJson(lr, buffer);
+                sink.write(buffer.array(), 0, buffer.length());
+            } finally {
+                BufferPool.UTF8.release(buffer);
+            }
+        }
+    }
+}
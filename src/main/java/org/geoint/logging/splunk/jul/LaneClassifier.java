@@ -0,0 +1,137 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Assigns log records to priority lanes.
+ *
+ * A record is assigned, in order of precedence:
+ * <ol>
+ * <li>to the lane named by its marker field, if it is a
+ * {@link SplunkLogRecord} with the marker field set (for example
+ * {@code record.field(LaneClassifier.DEFAULT_MARKER_FIELD, "audit")})</li>
+ * <li>to the lane of the longest matching logger name prefix</li>
+ * <li>to the lane of the highest level rule the record level meets</li>
+ * <li>otherwise to the default lane</li>
+ * </ol>
+ *
+ * Configure before use; not thread-safe to configure.
+ */
+public class LaneClassifier {
+
+    public static final String DEFAULT_MARKER_FIELD = "lane";
+
+    private final String defaultLane;
+    private String markerField = DEFAULT_MARKER_FIELD;
+    private final List<Rule> loggerRules = new ArrayList<>();
+    private final List<Rule> levelRules = new ArrayList<>();
+
+    /**
+     *
+     * @param defaultLane lane of records matching no rule
+     */
+    public LaneClassifier(String defaultLane) {
+        this.defaultLane = defaultLane;
+    }
+
+    /**
+     * Set the marker field name, or null to ignore marker fields.
+     *
+     * @param field
+     * @return fluid interface, returns itself
+     */
+    public LaneClassifier markerField(String field) {
+        this.markerField = field;
+        return this;
+    }
+
+    /**
+     * Assign records from loggers with the name prefix to the lane.
+     *
+     * @param loggerPrefix
+     * @param lane
+     * @return fluid interface, returns itself
+     */
+    public LaneClassifier logger(String loggerPrefix, String lane) {
+        loggerRules.add(new Rule(loggerPrefix, 0, lane));
+        return this;
+    }
+
+    /**
+     * Assign records at or above the level to the lane.
+     *
+     * @param minLevel
+     * @param lane
+     * @return fluid interface, returns itself
+     */
+    public LaneClassifier level(Level minLevel, String lane) {
+        levelRules.add(new Rule(null, minLevel.intValue(), lane));
+        return this;
+    }
+
+    /**
+     *
+     * @param record
+     * @return lane name
+     */
+    public String classify(LogRecord record) {
+        if (markerField != null && record instanceof SplunkLogRecord) {
+            final String marked = ((SplunkLogRecord) record).customFields()
+                    .get(markerField);
+            if (marked != null) {
+                return marked;
+            }
+        }
+
+        final String logger = record.getLoggerName();
+        String lane = null;
+        int matched = -1;
+        if (logger != null) {
+            for (Rule rule : loggerRules) {
+                if (rule.prefix.length() > matched
+                        && logger.startsWith(rule.prefix)) {
+                    matched = rule.prefix.length();
+                    lane = rule.lane;
+                }
+            }
+        }
+        if (lane != null) {
+            return lane;
+        }
+
+        int level = 0;
+        final int recordLevel = record.getLevel().intValue();
+        for (Rule rule : levelRules) {
+            if (recordLevel >= rule.level
+                    && (lane == null || rule.level > level)) {
+                level = rule.level;
+                lane = rule.lane;
+            }
+        }
+        return (lane == null) ? defaultLane : lane;
+    }
+
+    /**
+     *
+     * @return lane of records matching no rule
+     */
+    public String getDefaultLane() {
+        return defaultLane;
+    }
+
+    private static final class Rule {
+
+        private final String prefix;
+        private final int level;
+        private final String lane;
+
+        Rule(String prefix, int level, String lane) {
+            this.prefix = prefix;
+            this.level = level;
+            this.lane = lane;
+        }
+    }
+}
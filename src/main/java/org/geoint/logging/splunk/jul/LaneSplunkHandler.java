@@ -0,0 +1,206 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.io.OverflowPolicy;
+import org.geoint.logging.splunk.io.PriorityLaneWriter;
+import org.geoint.logging.splunk.io.PriorityLaneWriter.Lane;
+
+/**
+ * Handler which queues records in priority lanes, so audit events are never
+ * delayed (or dropped) behind a flood of less important events.
+ *
+ * Records are assigned to a lane by a {@link LaneClassifier} and written by a
+ * {@link PriorityLaneWriter}: the first lane is lossless and always drained
+ * first, the remaining lanes share the writer by weight. Events dropped by a
+ * lane are reported to the error manager.
+ *
+ * Configured using the following LogManager properties (each prefixed with
+ * the handler class name):
+ * <ul>
+ * <li>file - path of the file to append events to, required if a writer is
+ * not provided</li>
+ * <li>lanes - comma separated lane names in priority order, the last being
+ * the default lane; defaults to audit,default</li>
+ * <li>markerField - record field naming the lane, defaults to lane</li>
+ * <li>[lane].minLevel - records at or above the level are assigned to the
+ * lane</li>
+ * <li>[lane].loggers - comma separated logger name prefixes assigned to the
+ * lane</li>
+ * <li>[lane].capacity - max events queued in the lane, defaults to
+ * 65536</li>
+ * <li>[lane].weight - share of each batch, defaults to 1</li>
+ * <li>[lane].overflow - DROP_NEWEST (default), DROP_OLDEST or BLOCK; the
+ * first lane always blocks</li>
+ * <li>maxBatch - max events per write, defaults to 256</li>
+ * <li>level - handler level, defaults to ALL</li>
+ * <li>formatter - defaults to {@link StandardSplunkFormatter}</li>
+ * </ul>
+ */
+public class LaneSplunkHandler extends Handler {
+
+    private static final String PROPERTY_LANES = ".lanes";
+    private static final String PROPERTY_MARKER = ".markerField";
+    private static final String PROPERTY_MIN_LEVEL = ".minLevel";
+    private static final String PROPERTY_LOGGERS = ".loggers";
+    private static final String PROPERTY_CAPACITY = ".capacity";
+    private static final String PROPERTY_WEIGHT = ".weight";
+    private static final String PROPERTY_OVERFLOW = ".overflow";
+    private static final String PROPERTY_MAX_BATCH = ".maxBatch";
+    private static final String DEFAULT_LANES = "audit,default";
+    private static final int DEFAULT_CAPACITY = 65536;
+    private static final int DEFAULT_WEIGHT = 1;
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+
+    private final PriorityLaneWriter writer;
+    private final LaneClassifier classifier;
+
+    /**
+     * Create a handler configured by the LogManager.
+     *
+     * @throws IOException if the file could not be opened
+     */
+    public LaneSplunkHandler() throws IOException {
+        this(configuredWriter(), configuredClassifier());
+    }
+
+    /**
+     * Create a handler writing to the provided lanes; the level and formatter
+     * are configured by the LogManager.
+     *
+     * @param writer lane writer, closed with the handler
+     * @param classifier assigns records to the lanes of the writer
+     */
+    public LaneSplunkHandler(PriorityLaneWriter writer,
+            LaneClassifier classifier) {
+        this.writer = writer;
+        this.classifier = classifier;
+        SplunkHandlers.configure(this, getClass().getName());
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+
+        final ByteBuffer event = SplunkHandlers.encode(this, record);
+        if (event == null) {
+            return;
+        }
+
+        String lane = classifier.classify(record);
+        if (!writer.hasLane(lane)) {
+            lane = classifier.getDefaultLane();
+        }
+        if (!writer.send(lane, event)) {
+            reportError("Log event dropped from the " + lane + " lane", null,
+                    ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Waits (for a limited time) for published records to be written.
+     */
+    @Override
+    public void flush() {
+        if (!writer.flush(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            reportError("Log events were not written within "
+                    + FLUSH_TIMEOUT_SECONDS + " seconds", writer.getLastError(),
+                    ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    /**
+     * Closes the writer, blocking (for a limited time) until the events of
+     * the first lane are written; those still not written are dropped and
+     * reported.
+     */
+    @Override
+    public void close() throws SecurityException {
+        flush();
+        if (!writer.close(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            reportError("Log events of the first lane were dropped on close",
+                    writer.getLastError(), ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     *
+     * @return the lane writer, providing per-lane metrics
+     */
+    public PriorityLaneWriter getWriter() {
+        return writer;
+    }
+
+    private static List<String> configuredLanes() {
+        final String lanes = SplunkHandlers.property(
+                LaneSplunkHandler.class.getName() + PROPERTY_LANES);
+        final List<String> names = new ArrayList<>();
+        for (String name : ((lanes == null) ? DEFAULT_LANES : lanes)
+                .split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim());
+            }
+        }
+        return names;
+    }
+
+    private static PriorityLaneWriter configuredWriter() throws IOException {
+        final String prefix = LaneSplunkHandler.class.getName();
+        final List<Lane> lanes = new ArrayList<>();
+        for (String name : configuredLanes()) {
+            final String overflow = SplunkHandlers.property(
+                    prefix + "." + name + PROPERTY_OVERFLOW);
+            lanes.add(new Lane(name,
+                    SplunkHandlers.intProperty(
+                            prefix + "." + name + PROPERTY_CAPACITY,
+                            DEFAULT_CAPACITY),
+                    SplunkHandlers.intProperty(
+                            prefix + "." + name + PROPERTY_WEIGHT,
+                            DEFAULT_WEIGHT),
+                    (overflow == null) ? OverflowPolicy.DROP_NEWEST
+                            : OverflowPolicy.valueOf(overflow.toUpperCase())));
+        }
+        return new PriorityLaneWriter(
+                SplunkHandlers.openConfiguredFile(prefix), lanes,
+                SplunkHandlers.intProperty(prefix + PROPERTY_MAX_BATCH,
+                        PriorityLaneWriter.DEFAULT_MAX_BATCH));
+    }
+
+    private static LaneClassifier configuredClassifier() {
+        final String prefix = LaneSplunkHandler.class.getName();
+        final List<String> lanes = configuredLanes();
+        final LaneClassifier classifier
+                = new LaneClassifier(lanes.get(lanes.size() - 1));
+
+        final String marker = SplunkHandlers.property(prefix + PROPERTY_MARKER);
+        if (marker != null) {
+            classifier.markerField(marker);
+        }
+        for (String lane : lanes) {
+            final String level = SplunkHandlers.property(
+                    prefix + "." + lane + PROPERTY_MIN_LEVEL);
+            if (level != null) {
+                classifier.level(Level.parse(level), lane);
+            }
+            final String loggers = SplunkHandlers.property(
+                    prefix + "." + lane + PROPERTY_LOGGERS);
+            if (loggers != null) {
+                for (String logger : loggers.split(",")) {
+                    if (!logger.trim().isEmpty()) {
+                        classifier.logger(logger.trim(), lane);
+                    }
+                }
+            }
+        }
+        return classifier;
+    }
+}
@@ -0,0 +1,210 @@
+package org.geoint.logging.splunk.jul;
+
+import java.text.DateFormat;
+import java.text.MessageFormat;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.geoint.logging.splunk.BufferPool;
+
+/**
+ * A log message pattern parsed once, and cached, so rendering a message with
+ * its parameters does not parse a {@link MessageFormat} for every record.
+ *
+ * Messages are rendered as {@link java.util.logging.Formatter#formatMessage}
+ * would: only patterns containing an argument are formatted (on Java 8 only
+ * arguments {0} to {3} are looked for, as JUL does there), and patterns
+ * which are not valid are used as is. Simple arguments ({n}) are rendered
+ * directly; patterns with formatted arguments ({n,number,#.#}) are rendered
+ * with a copy of the parsed MessageFormat.
+ *
+ * The cache holds up to {@value #DEFAULT_CACHE_SIZE} patterns, or the size
+ * set by the JVM property {@value #PROPERTY_CACHE_SIZE}; when full it is
+ * cleared, so messages built by concatenation can't grow it without bound.
+ *
+ * Thread-safe.
+ */
+final class MessageTemplate {
+
+    static final String PROPERTY_CACHE_SIZE
+            = "org.geoint.logging.splunk.template.cacheSize";
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+    private static final int CACHE_SIZE
+            = Integer.getInteger(PROPERTY_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+    private static final ConcurrentMap<String, MessageTemplate> CACHE
+            = new ConcurrentHashMap<>();
+    //Java 8 JUL only formats messages containing {0} to {3}
+    private static final boolean LEGACY_ARGUMENT_CHECK = System.getProperty(
+            "java.specification.version", "").startsWith("1.");
+    private static final ThreadLocal<NumberFormat> NUMBER_FORMAT
+            = ThreadLocal.withInitial(NumberFormat::getInstance);
+    private static final ThreadLocal<DateFormat> DATE_FORMAT
+            = ThreadLocal.withInitial(() -> DateFormat.getDateTimeInstance(
+                    DateFormat.SHORT, DateFormat.SHORT));
+
+    private final String pattern;
+    //literal text before each argument, and after the last
+    private final String[] literals;
+    private final int[] arguments;
+    //set if any argument has a format type
+    private final MessageFormat format;
+
+    private MessageTemplate(String pattern, String[] literals,
+            int[] arguments, MessageFormat format) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.arguments = arguments;
+        this.format = format;
+    }
+
+    /**
+     *
+     * @param pattern message pattern
+     * @return parsed (possibly cached) template
+     */
+    static MessageTemplate of(String pattern) {
+        MessageTemplate template = CACHE.get(pattern);
+        if (template == null) {
+            template = parse(pattern);
+            if (CACHE.size() >= CACHE_SIZE) {
+                CACHE.clear();
+            }
+            CACHE.put(pattern, template);
+        }
+        return template;
+    }
+
+    /**
+     * Renders the message.
+     *
+     * @param params message parameters, may be null
+     * @return message
+     */
+    String render(Object[] params) {
+        if (literals == null || params == null || params.length == 0) {
+            return pattern;
+        }
+        if (format != null) {
+            return ((MessageFormat) format.clone()).format(params);
+        }
+
+        final StringBuilder sb = BufferPool.STRING_BUILDERS.acquire();
+        try {
+            for (int i = 0; i < arguments.length; i++) {
+                sb.append(literals[i]);
+                final int arg = arguments[i];
+                if (arg < params.length) {
+                    appendArgument(sb, params[arg]);
+                } else {
+                    //as MessageFormat, missing arguments are left in place
+                    sb.append('{').append(arg).append('}');
+                }
+            }
+            sb.append(literals[arguments.length]);
+            return sb.toString();
+        } finally {
+            BufferPool.STRING_BUILDERS.release(sb);
+        }
+    }
+
+    private static void appendArgument(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Number) {
+            sb.append(NUMBER_FORMAT.get().format(value));
+        } else if (value instanceof Date) {
+            sb.append(DATE_FORMAT.get().format(value));
+        } else {
+            sb.append(value.toString());
+        }
+    }
+
+    private static MessageTemplate parse(String pattern) {
+        //as Formatter.formatMessage, only format if there are params to use
+        if (!hasArgument(pattern)) {
+            return new MessageTemplate(pattern, null, null, null);
+        }
+
+        final List<String> literals = new ArrayList<>();
+        final List<Integer> arguments = new ArrayList<>();
+        boolean formatted = false;
+        final StringBuilder literal = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i++);
+            if (c == '\'') {
+                if (i < pattern.length() && pattern.charAt(i) == '\'') {
+                    literal.append('\'');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == '{' && !quoted) {
+                final int end = pattern.indexOf('}', i);
+                if (end < 0) {
+                    return invalid(pattern);
+                }
+                final String arg = pattern.substring(i, end).trim();
+                final int comma = arg.indexOf(',');
+                if (comma >= 0) {
+                    //format type (and style) needs MessageFormat
+                    formatted = true;
+                    break;
+                }
+                try {
+                    arguments.add(Integer.parseInt(arg));
+                } catch (NumberFormatException ex) {
+                    return invalid(pattern);
+                }
+                literals.add(literal.toString());
+                literal.setLength(0);
+                i = end + 1;
+            } else {
+                literal.append(c);
+            }
+        }
+
+        if (formatted) {
+            try {
+                return new MessageTemplate(pattern, new String[0], new int[0],
+                        new MessageFormat(pattern));
+            } catch (IllegalArgumentException ex) {
+                return invalid(pattern);
+            }
+        }
+        literals.add(literal.toString());
+        final int[] args = new int[arguments.size()];
+        for (int a = 0; a < args.length; a++) {
+            if (arguments.get(a) < 0) {
+                return invalid(pattern);
+            }
+            args[a] = arguments.get(a);
+        }
+        return new MessageTemplate(pattern,
+                literals.toArray(new String[literals.size()]), args, null);
+    }
+
+    private static boolean hasArgument(String pattern) {
+        if (LEGACY_ARGUMENT_CHECK) {
+            return pattern.indexOf("{0") >= 0 || pattern.indexOf("{1") >= 0
+                    || pattern.indexOf("{2") >= 0 || pattern.indexOf("{3") >= 0;
+        }
+        int index = -1;
+        while ((index = pattern.indexOf('{', index + 1)) >= 0
+                && index < pattern.length() - 1) {
+            final char digit = pattern.charAt(index + 1);
+            if (digit >= '0' && digit <= '9') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MessageTemplate invalid(String pattern) {
+        return new MessageTemplate(pattern, null, null, null);
+    }
+}
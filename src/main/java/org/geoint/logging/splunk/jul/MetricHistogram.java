@@ -0,0 +1,169 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free log-linear histogram of non-negative long values.
+ *
+ * Values below 16 have their own bucket; larger values are counted in one of
+ * 16 linear buckets per power of two, so a value read back from the
+ * histogram (the upper bound of its bucket) is within 1/16 (6.25%) of the
+ * value recorded. Recording is an atomic increment of the bucket and a
+ * striped (LongAdder) sum update; min and max are only compared-and-set when
+ * the value is a new min or max. There are no locks.
+ *
+ * The sum is never reset: LongAdder.sumThenReset() is not atomic, an update
+ * racing with the reset could be lost, so each snapshot takes the sum less
+ * the total already reported.
+ *
+ * Thread-safe.
+ */
+final class MetricHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    //values below 2^SUB_BITS, then each power of two up to 2^62
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong reportedSum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     *
+     * @param value negative values are recorded as 0
+     */
+    void record(long value) {
+        final long v = Math.max(value, 0);
+        buckets.incrementAndGet(bucket(v));
+        sum.add(v);
+        long m;
+        while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+        }
+        while (v < (m = min.get()) && !min.compareAndSet(m, v)) {
+        }
+    }
+
+    /**
+     * Take the values recorded since the last snapshot.
+     *
+     * Values recorded while the snapshot is taken are counted in this
+     * snapshot or the next.
+     *
+     * @return snapshot, with a zero count if nothing was recorded
+     */
+    Snapshot snapshotAndReset() {
+        final long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (buckets.get(i) != 0) {
+                counts[i] = buckets.getAndSet(i, 0);
+                count += counts[i];
+            }
+        }
+        return new Snapshot(counts, count, sumSince(sum, reportedSum),
+                min.getAndSet(Long.MAX_VALUE), max.getAndSet(Long.MIN_VALUE));
+    }
+
+    /**
+     * Take the sum added since the last call, without resetting the adder.
+     *
+     * @param adder
+     * @param reported total already reported, advanced to the current sum
+     * @return sum added since the total was reported
+     */
+    static long sumSince(LongAdder adder, AtomicLong reported) {
+        long total;
+        long previous;
+        do {
+            previous = reported.get();
+            total = adder.sum();
+        } while (total != previous && !reported.compareAndSet(previous, total));
+        return total - previous;
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exp = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     *
+     * @param bucket
+     * @return largest value counted in the bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Values recorded over an interval.
+     */
+    static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long min,
+                long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getSum() {
+            return sum;
+        }
+
+        long getMin() {
+            return min;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         *
+         * @param percentile 0 to 100
+         * @return value at the percentile, or 0 if there are no values
+         */
+        long getPercentile(double percentile) {
+            final long rank = (long) Math.ceil(percentile / 100 * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    //bounded by the values actually recorded, when the
+                    //snapshot did not race with recording them
+                    final long value = upperBound(i);
+                    return (min <= max)
+                            ? Math.max(min, Math.min(value, max)) : value;
+                }
+            }
+            return 0;
+        }
+    }
+}
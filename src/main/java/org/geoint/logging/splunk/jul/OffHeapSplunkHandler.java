@@ -0,0 +1,268 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.SplunkEventFormatter;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.io.OffHeapEventQueue;
+import org.geoint.logging.splunk.io.SplunkEventCodec;
+
+/**
+ * Handler which queues events off-heap for a background writer.
+ *
+ * Each record is converted to a {@link SplunkEvent} on the logging thread and
+ * serialized into an {@link OffHeapEventQueue}; the writer thread decodes
+ * queued events straight into the event formatter and writes them to the
+ * channel. A backlog of events (for example, during a slow down of the
+ * destination) is held in direct memory rather than as records on the heap.
+ *
+ * When the queue is full producers wait for the writer, rather than drop
+ * events. Events are dropped (reported to the error manager and counted, see
+ * {@link #getDropped()}) if the handler is closed or the writer thread has
+ * stopped; records published while the handler closes are either written or
+ * dropped, never lost.
+ *
+ * Events are formatted by the {@link SplunkEventFormatter} given to the
+ * handler, unless a formatter other than the {@link StandardSplunkFormatter}
+ * is set on the handler; records are then formatted by that formatter on the
+ * logging thread and the formatted bytes are queued.
+ *
+ * Configured using the following LogManager properties (each prefixed with
+ * the handler class name):
+ * <ul>
+ * <li>file - path of the file to append events to, required if a channel is
+ * not provided</li>
+ * <li>slotSize - queue slot size in bytes, power of two, defaults to 512</li>
+ * <li>slots - number of queue slots, power of two, defaults to 32768</li>
+ * <li>level - handler level, defaults to ALL</li>
+ * </ul>
+ */
+public class OffHeapSplunkHandler extends Handler {
+
+    private static final String PROPERTY_SLOT_SIZE = ".slotSize";
+    private static final String PROPERTY_SLOTS = ".slots";
+    private static final int DEFAULT_SLOT_SIZE = 512;
+    private static final int DEFAULT_SLOTS = 32768;
+    private static final int MAX_DRAIN = 256;
+    private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    //first byte of each queued record
+    private static final byte EVENT = 0;
+    private static final byte FORMATTED = 1;
+
+    private final WritableByteChannel channel;
+    private final SplunkEventFormatter formatter;
+    private final OffHeapEventQueue queue;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    //producers between checking closed and queuing, drained before closing
+    private final AtomicInteger publishing = new AtomicInteger();
+    private volatile long written;
+    private volatile boolean idle;
+    private volatile boolean closed;
+    private final Thread writer;
+
+    /**
+     * Create a handler appending to the file configured by the LogManager.
+     *
+     * @throws IOException if the file could not be opened
+     */
+    public OffHeapSplunkHandler() throws IOException {
+        this(SplunkHandlers.openConfiguredFile(
+                OffHeapSplunkHandler.class.getName()),
+                new NativeSplunkFormatter(),
+                new OffHeapEventQueue(
+                        SplunkHandlers.intProperty(
+                                OffHeapSplunkHandler.class.getName()
+                                + PROPERTY_SLOT_SIZE, DEFAULT_SLOT_SIZE),
+                        SplunkHandlers.intProperty(
+                                OffHeapSplunkHandler.class.getName()
+                                + PROPERTY_SLOTS, DEFAULT_SLOTS)));
+    }
+
+    public OffHeapSplunkHandler(WritableByteChannel channel,
+            SplunkEventFormatter formatter, OffHeapEventQueue queue) {
+        this.channel = channel;
+        this.formatter = formatter;
+        this.queue = queue;
+        SplunkHandlers.configure(this, getClass().getName());
+
+        this.writer = new Thread(this::drain,
+                "splunk-offheap-writer-" + System.identityHashCode(this));
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+
+        //counted before checking closed, so the writer drains the record
+        publishing.incrementAndGet();
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            if (closed) {
+                drop("Log handler is closed, dropping log record");
+                return;
+            }
+            final Formatter f = getFormatter();
+            if (f.getClass() == StandardSplunkFormatter.class) {
+                buffer.write(EVENT);
+                SplunkEventCodec.encode(SplunkLogUtil.toEvent(record), buffer);
+            } else {
+                buffer.write(FORMATTED);
+                SplunkHandlers.format(f, record, buffer);
+            }
+            while (!queue.offer(buffer.array(), 0, buffer.length())) {
+                if (!writer.isAlive()) {
+                    drop("Log writer has stopped, dropping log record");
+                    return;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(this, WAIT_NANOS);
+            }
+        } catch (RuntimeException ex) {
+            reportError("Unable to queue log record", ex,
+                    ErrorManager.FORMAT_FAILURE);
+            return;
+        } finally {
+            BufferPool.UTF8.release(buffer);
+            publishing.decrementAndGet();
+        }
+        enqueued.incrementAndGet();
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     *
+     * @return number of records dropped as the handler was closed or the
+     * writer had stopped
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until all events published before this call have been written.
+     */
+    @Override
+    public void flush() {
+        final long target = enqueued.get();
+        while (written < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, WAIT_NANOS);
+        }
+        if (channel instanceof FileChannel) {
+            try {
+                ((FileChannel) channel).force(false);
+            } catch (IOException ex) {
+                reportError("Unable to flush log channel", ex,
+                        ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        if (closed) {
+            return;
+        }
+        flush();
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            reportError("Unable to close log channel", ex,
+                    ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    /**
+     * Writer thread loop.
+     */
+    private void drain() {
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        long count = 0;
+        while (true) {
+            buffer.reset();
+            final int drained;
+            try {
+                drained = queue.drain((record) -> append(record, buffer),
+                        MAX_DRAIN);
+            } catch (RuntimeException ex) {
+                //not expected, append reports its own failures
+                reportError("Unable to drain log events", ex,
+                        ErrorManager.GENERIC_FAILURE);
+                continue;
+            }
+            if (drained == 0) {
+                if (closed && publishing.get() == 0 && queue.isEmpty()) {
+                    BufferPool.UTF8.release(buffer);
+                    return;
+                }
+                idle = true;
+                if (queue.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+
+            try {
+                buffer.writeTo(channel);
+            } catch (IOException | RuntimeException ex) {
+                reportError("Unable to write " + drained + " log events", ex,
+                        ErrorManager.WRITE_FAILURE);
+            }
+            count += drained;
+            written = count;
+        }
+    }
+
+    private void drop(String msg) {
+        dropped.incrementAndGet();
+        reportError(msg, null, ErrorManager.WRITE_FAILURE);
+    }
+
+    /**
+     * Append a queued record to the buffer, reporting (and skipping) a record
+     * which can't be formatted.
+     */
+    private void append(ByteBuffer record, Utf8Buffer buffer) {
+        final int mark = buffer.length();
+        try {
+            if (record.get() == FORMATTED) {
+                buffer.write(record);
+            } else {
+                formatter.format(SplunkEventCodec.decode(record), buffer);
+            }
+        } catch (RuntimeException ex) {
+            buffer.truncate(mark);
+            reportError("Unable to format log event", ex,
+                    ErrorManager.FORMAT_FAILURE);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.zip.Deflater;
+import org.geoint.logging.splunk.io.ParallelGzipCompressor;
+import org.geoint.logging.splunk.io.RollingSplunkFileChannel;
+import org.geoint.logging.splunk.io.SegmentIndex;
+import org.geoint.logging.splunk.io.SegmentIndexer;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+
+/**
+ * Batching handler which writes to size-limited segment files, optionally
+ * indexing and gzip compressing each segment in the background once it is
+ * closed.
+ *
+ * Indexed segments have a {@link SegmentIndex} written beside them before they
+ * are compressed, so they can be searched with
+ * {@link org.geoint.logging.splunk.io.SegmentQuery} without reading every
+ * segment. Segments which can't be indexed are reported to the error manager
+ * (and still compressed).
+ *
+ * Segments left unindexed or uncompressed by a previous run (for example, if
+ * the JVM exited during compression) are processed when the handler starts.
+ *
+ * Batch size, linger and capacity are read from the
+ * {@link BatchingSplunkHandler} properties; otherwise configured using the
+ * following LogManager properties (each prefixed with the handler class name):
+ * <ul>
+ * <li>directory - directory segments are written to, required</li>
+ * <li>prefix - segment file name prefix, defaults to splunk</li>
+ * <li>maxSegmentBytes - size at which segments are rolled, defaults to
+ * 64MB</li>
+ * <li>compress - true to gzip closed segments, defaults to true</li>
+ * <li>compressThreads - max cores used for compression, defaults to 1</li>
+ * <li>compressBlockSize - bytes compressed by each parallel block, defaults
+ * to 128K</li>
+ * <li>index - true to index closed segments, defaults to false</li>
+ * <li>indexFields - comma separated names of the fields indexed, defaults to
+ * [prefix_]logger, [prefix_]level, [prefix_]exClass and requestId</li>
+ * <li>level - handler level, defaults to ALL</li>
+ * <li>formatter - defaults to {@link StandardSplunkFormatter}</li>
+ * </ul>
+ */
+public class RollingSplunkHandler extends BatchingSplunkHandler {
+
+    private static final String PROPERTY_DIRECTORY = ".directory";
+    private static final String PROPERTY_PREFIX = ".prefix";
+    private static final String PROPERTY_MAX_SEGMENT = ".maxSegmentBytes";
+    private static final String PROPERTY_COMPRESS = ".compress";
+    private static final String PROPERTY_COMPRESS_THREADS = ".compressThreads";
+    private static final String PROPERTY_BLOCK_SIZE = ".compressBlockSize";
+    private static final String PROPERTY_INDEX = ".index";
+    private static final String PROPERTY_INDEX_FIELDS = ".indexFields";
+    private static final String DEFAULT_INDEX_FIELDS = "requestId";
+    private static final String DEFAULT_PREFIX = "splunk";
+    private static final long DEFAULT_MAX_SEGMENT = 64L * 1024 * 1024;
+    private static final int DEFAULT_COMPRESS_THREADS = 1;
+    private static final long COMPRESS_SHUTDOWN_SECONDS = 30;
+
+    private final SegmentIndexer indexer;
+    private final ParallelGzipCompressor compressor;
+
+    /**
+     * Create a handler configured by the LogManager.
+     *
+     * @throws IOException if the segment directory could not be used
+     */
+    public RollingSplunkHandler() throws IOException {
+        this(configured());
+    }
+
+    private RollingSplunkHandler(Configuration configuration) {
+        this(configuration.channel, configuration.indexer,
+                configuration.compressor);
+    }
+
+    /**
+     *
+     * @param channel segment channel
+     * @param compressor compressor for closed segments, or null to leave
+     * them uncompressed
+     */
+    public RollingSplunkHandler(RollingSplunkFileChannel channel,
+            ParallelGzipCompressor compressor) {
+        this(channel, null, compressor);
+    }
+
+    /**
+     *
+     * @param channel segment channel
+     * @param indexer indexer for closed segments, or null to leave them
+     * unindexed; should pass each segment on to the compressor once indexed
+     * @param compressor compressor for closed segments, or null to leave
+     * them uncompressed
+     */
+    public RollingSplunkHandler(RollingSplunkFileChannel channel,
+            SegmentIndexer indexer, ParallelGzipCompressor compressor) {
+        super(channel);
+        this.indexer = indexer;
+        this.compressor = compressor;
+        try {
+            if (indexer != null) {
+                indexer.setFailureListener((segment, ex) -> reportError(
+                        "Unable to index log segment " + segment, ex,
+                        ErrorManager.WRITE_FAILURE));
+                channel.addSegmentListener(indexer);
+                //found before any are indexed, so none are compressed twice
+                final List<Path> unindexed = channel.closedSegments(
+                        SegmentIndex.INDEX_SUFFIX,
+                        ParallelGzipCompressor.GZIP_SUFFIX);
+                final List<Path> uncompressed = new ArrayList<>();
+                if (compressor != null) {
+                    for (Path s : channel.closedSegments(
+                            ParallelGzipCompressor.GZIP_SUFFIX)) {
+                        if (Files.exists(SegmentIndexer.indexPath(s))) {
+                            uncompressed.add(s);
+                        }
+                    }
+                }
+                unindexed.forEach(indexer);
+                uncompressed.forEach(compressor);
+            } else if (compressor != null) {
+                channel.addSegmentListener(compressor);
+                channel.closedSegments(ParallelGzipCompressor.GZIP_SUFFIX)
+                        .forEach(compressor);
+            }
+        } catch (IOException ex) {
+            reportError("Unable to find unprocessed segments", ex,
+                    ErrorManager.OPEN_FAILURE);
+        }
+    }
+
+    /**
+     * Closes the current segment and waits (for a limited time) for segments
+     * to be indexed and compressed.
+     */
+    @Override
+    public void close() throws SecurityException {
+        super.close();
+        try {
+            if (indexer != null && !indexer.shutdown(COMPRESS_SHUTDOWN_SECONDS,
+                    TimeUnit.SECONDS)) {
+                reportError("Segment indexing did not complete", null,
+                        ErrorManager.CLOSE_FAILURE);
+            }
+            if (compressor != null && !compressor.shutdown(
+                    COMPRESS_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                reportError("Segment compression did not complete", null,
+                        ErrorManager.CLOSE_FAILURE);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The configured segments, and indexer chained to the compressor.
+     */
+    private static Configuration configured() throws IOException {
+        final RollingSplunkFileChannel channel = openConfiguredSegments();
+        final ParallelGzipCompressor compressor = configuredCompressor();
+        return new Configuration(channel, configuredIndexer(compressor),
+                compressor);
+    }
+
+    private static RollingSplunkFileChannel openConfiguredSegments()
+            throws IOException {
+        final String prefix = RollingSplunkHandler.class.getName();
+        final String directory = SplunkHandlers.property(
+                prefix + PROPERTY_DIRECTORY);
+        if (directory == null) {
+            throw new IOException("Splunk handler directory property '"
+                    + prefix + PROPERTY_DIRECTORY + "' was not set");
+        }
+        final String name = SplunkHandlers.property(prefix + PROPERTY_PREFIX);
+        return new RollingSplunkFileChannel(Paths.get(directory),
+                (name == null) ? DEFAULT_PREFIX : name,
+                SplunkHandlers.longProperty(prefix + PROPERTY_MAX_SEGMENT,
+                        DEFAULT_MAX_SEGMENT));
+    }
+
+    private static ParallelGzipCompressor configuredCompressor() {
+        final String prefix = RollingSplunkHandler.class.getName();
+        final String compress = SplunkHandlers.property(
+                prefix + PROPERTY_COMPRESS);
+        if (compress != null && !Boolean.parseBoolean(compress)) {
+            return null;
+        }
+        return new ParallelGzipCompressor(
+                SplunkHandlers.intProperty(prefix + PROPERTY_COMPRESS_THREADS,
+                        DEFAULT_COMPRESS_THREADS),
+                SplunkHandlers.intProperty(prefix + PROPERTY_BLOCK_SIZE,
+                        ParallelGzipCompressor.DEFAULT_BLOCK_SIZE),
+                Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * The configured indexer, passing indexed segments to the compressor.
+     *
+     * @param compressor
+     * @return indexer, or null if indexing is not enabled
+     */
+    private static SegmentIndexer configuredIndexer(
+            ParallelGzipCompressor compressor) {
+        final String prefix = RollingSplunkHandler.class.getName();
+        if (!Boolean.parseBoolean(SplunkHandlers.property(
+                prefix + PROPERTY_INDEX))) {
+            return null;
+        }
+        String names = SplunkHandlers.property(prefix + PROPERTY_INDEX_FIELDS);
+        if (names == null) {
+            names = prefixedFieldName(SplunkLogUtil.KEY_LOGGER) + ","
+                    + prefixedFieldName(SplunkLogUtil.KEY_LEVEL) + ","
+                    + prefixedFieldName(SplunkLogUtil.KEY_EXCEPTION_CLASS) + ","
+                    + DEFAULT_INDEX_FIELDS;
+        }
+        final List<String> fields = new ArrayList<>();
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                fields.add(name);
+            }
+        }
+        return new SegmentIndexer(prefixedFieldName(SplunkLogUtil.KEY_TIME),
+                fields, compressor);
+    }
+
+    /**
+     * Segment processing configured by the LogManager.
+     */
+    private static final class Configuration {
+
+        private final RollingSplunkFileChannel channel;
+        private final SegmentIndexer indexer;
+        private final ParallelGzipCompressor compressor;
+
+        private Configuration(RollingSplunkFileChannel channel,
+                SegmentIndexer indexer, ParallelGzipCompressor compressor) {
+            this.channel = channel;
+            this.indexer = indexer;
+            this.compressor = compressor;
+        }
+    }
+}
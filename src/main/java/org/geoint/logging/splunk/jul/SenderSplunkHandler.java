@@ -0,0 +1,82 @@
+package org.geoint.logging.splunk.jul;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.io.EventSender;
+
+/**
+ * Handler which formats records on the logging thread and passes the bytes to
+ * an {@link EventSender} for asynchronous delivery.
+ *
+ * Publishing never blocks; records the sender could not queue are counted as
+ * dropped.
+ */
+public class SenderSplunkHandler extends Handler {
+
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+
+    private final EventSender sender;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     *
+     * @param sender
+     */
+    public SenderSplunkHandler(EventSender sender) {
+        this.sender = sender;
+        SplunkHandlers.configure(this, getClass().getName());
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+
+        final ByteBuffer event = SplunkHandlers.encode(this, record);
+        if (event == null) {
+            return;
+        }
+        if (!sender.send(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Waits (for a limited time) for published records to be delivered.
+     */
+    @Override
+    public void flush() {
+        if (!sender.flush(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            reportError("Log events were not delivered within "
+                    + FLUSH_TIMEOUT_SECONDS + " seconds", null,
+                    ErrorManager.FLUSH_FAILURE);
+        }
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        flush();
+        sender.close();
+    }
+
+    /**
+     *
+     * @return number of records dropped because the sender was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     *
+     * @return the sender records are delivered with
+     */
+    public EventSender getSender() {
+        return sender;
+    }
+}
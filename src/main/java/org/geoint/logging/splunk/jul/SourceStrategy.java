@@ -0,0 +1,29 @@
+package org.geoint.logging.splunk.jul;
+
+/**
+ * How the [prefix_]source field (calling class and method) of an event is
+ * determined.
+ *
+ * Selected per logger with the {@link SplunkLogUtil#PROPERTY_LOGGER_SOURCE}
+ * LogManager property.
+ */
+public enum SourceStrategy {
+
+    /**
+     * The source of the LogRecord, which (unless set by the caller) is
+     * inferred from a stack trace of the whole thread stack.
+     */
+    JUL,
+    /**
+     * The caller is found with the StackWalker, walking only the frames up to
+     * the first frame calling the logger. Uses {@link #JUL} on Java 8, if the
+     * record is not being logged by the current thread, or if the record
+     * source may have been set by the caller (it was logged with
+     * {@code Logger.log(LogRecord)}, as by the SLF4J JDK14 adapter).
+     */
+    WALKER,
+    /**
+     * No source field is added.
+     */
+    NONE;
+}
@@ -0,0 +1,93 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.Utf8Buffer;
+
+/**
+ * Handler which writes UTF-8 encoded events directly to a
+ * {@link WritableByteChannel} (file, socket, etc).
+ *
+ * When using the {@link StandardSplunkFormatter} (default), records are
+ * formatted directly to bytes on the logging thread, without creating an
+ * intermediate String or going through a {@link java.io.Writer}; only the
+ * channel write itself is synchronized.
+ *
+ * Configured using the following LogManager properties (each prefixed with
+ * the handler class name):
+ * <ul>
+ * <li>file - path of the file to append events to, required if a channel is
+ * not provided</li>
+ * <li>level - handler level, defaults to ALL</li>
+ * <li>formatter - defaults to {@link StandardSplunkFormatter}</li>
+ * </ul>
+ */
+public class SplunkChannelHandler extends Handler {
+
+    private final WritableByteChannel channel;
+
+    /**
+     * Create a handler appending to the file configured by the LogManager.
+     *
+     * @throws IOException if the file could not be opened
+     */
+    public SplunkChannelHandler() throws IOException {
+        this(SplunkHandlers.openConfiguredFile(
+                SplunkChannelHandler.class.getName()));
+    }
+
+    public SplunkChannelHandler(WritableByteChannel channel) {
+        this.channel = channel;
+        SplunkHandlers.configure(this, getClass().getName());
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            SplunkHandlers.format(getFormatter(), record, buffer);
+            synchronized (this) {
+                buffer.writeTo(channel);
+            }
+        } catch (RuntimeException ex) {
+            reportError("Unable to format log record", ex,
+                    ErrorManager.FORMAT_FAILURE);
+        } catch (IOException ex) {
+            reportError("Unable to write log record", ex,
+                    ErrorManager.WRITE_FAILURE);
+        } finally {
+            BufferPool.UTF8.release(buffer);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (channel instanceof FileChannel) {
+            try {
+                ((FileChannel) channel).force(false);
+            } catch (IOException ex) {
+                reportError("Unable to flush log channel", ex,
+                        ErrorManager.FLUSH_FAILURE);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws SecurityException {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            reportError("Unable to close log channel", ex,
+                    ErrorManager.CLOSE_FAILURE);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoint.logging.splunk.NativeSplunkFormatter.PreparedFields;
+
+/**
+ * The constant part of the events logged from one call site: logger, level,
+ * source and static fields.
+ *
+ * The constant fields are rendered, and encoded in their hashed form, once
+ * when the template is created; records created from the template are
+ * formatted by the {@link StandardSplunkFormatter} rendering and hashing only
+ * their variable fields (time, message, parameters, exception and record
+ * fields). The source is given, so it is never inferred from the stack.
+ *
+ * Usage:
+ * <pre>
+ * private static final Logger LOGGER = Logger.getLogger("com.example.auth");
+ * private static final SplunkEventTemplate LOGIN = new SplunkEventTemplate(
+ *         LOGGER, Level.INFO, Auth.class, "login",
+ *         Collections.singletonMap("component", "auth"));
+ * ...
+ * LOGIN.log("User {0} logged in", user);
+ * </pre>
+ *
+ * Changing the level, logger or source of a record created from a template
+ * detaches it from the template; it is then formatted as any other record.
+ *
+ * Thread-safe.
+ */
+public final class SplunkEventTemplate {
+
+    private final Logger logger;
+    private final Level level;
+    private final String sourceClass;
+    private final String sourceMethod;
+    private final Map<String, String> fields;
+    private final PreparedFields prepared;
+
+    /**
+     *
+     * @param logger logger the events are logged to
+     * @param level level of the events
+     * @param sourceClass calling class
+     * @param sourceMethod calling method
+     */
+    public SplunkEventTemplate(Logger logger, Level level, Class<?> sourceClass,
+            String sourceMethod) {
+        this(logger, level, sourceClass, sourceMethod, Collections.emptyMap());
+    }
+
+    /**
+     *
+     * @param logger logger the events are logged to
+     * @param level level of the events
+     * @param sourceClass calling class
+     * @param sourceMethod calling method
+     * @param fields static fields added to each event
+     */
+    public SplunkEventTemplate(Logger logger, Level level, Class<?> sourceClass,
+            String sourceMethod, Map<String, String> fields) {
+        this.logger = logger;
+        this.level = level;
+        this.sourceClass = sourceClass.getName();
+        this.sourceMethod = sourceMethod;
+        this.fields = Collections.unmodifiableMap(new TreeMap<>(fields));
+        this.prepared = SplunkLogUtil.prepare(logger.getName(), level,
+                this.sourceClass, sourceMethod, this.fields);
+    }
+
+    /**
+     *
+     * @return true if the events of the template would be logged
+     */
+    public boolean isLoggable() {
+        return logger.isLoggable(level);
+    }
+
+    /**
+     * Create a record from the template; more fields may be added to the
+     * record before it is logged.
+     *
+     * @param message message pattern
+     * @param params message parameters
+     * @return record
+     */
+    public SplunkLogRecord record(String message, Object... params) {
+        final SplunkLogRecord record = new SplunkLogRecord(level, message);
+        record.setLoggerName(logger.getName());
+        record.setSourceClassName(sourceClass);
+        record.setSourceMethodName(sourceMethod);
+        if (params != null && params.length > 0) {
+            record.setParameters(params);
+        }
+        record.setTemplate(this);
+        return record;
+    }
+
+    /**
+     * Log an event, if loggable.
+     *
+     * @param message message pattern
+     * @param params message parameters
+     */
+    public void log(String message, Object... params) {
+        if (isLoggable()) {
+            logger.log(record(message, params));
+        }
+    }
+
+    /**
+     * Log an event with an exception, if loggable.
+     *
+     * @param thrown
+     * @param message message pattern
+     * @param params message parameters
+     */
+    public void log(Throwable thrown, String message, Object... params) {
+        if (isLoggable()) {
+            final SplunkLogRecord record = record(message, params);
+            record.setThrown(thrown);
+            logger.log(record);
+        }
+    }
+
+    /**
+     *
+     * @return static fields added to each event
+     */
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    /**
+     *
+     * @return constant fields, prepared for the native formatter
+     */
+    PreparedFields getPrepared() {
+        return prepared;
+    }
+}
@@ -0,0 +1,141 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.Utf8Buffer;
+
+/**
+ * LogManager configuration and formatting shared by the splunk handlers.
+ */
+final class SplunkHandlers {
+
+    static final String PROPERTY_FILE = ".file";
+    static final String PROPERTY_LEVEL = ".level";
+    static final String PROPERTY_FORMATTER = ".formatter";
+
+    private SplunkHandlers() {
+    }
+
+    /**
+     * Format the record as UTF-8 bytes, directly if the formatter supports it.
+     *
+     * @param formatter
+     * @param record
+     * @param buffer
+     */
+    static void format(Formatter formatter, LogRecord record,
+            Utf8Buffer buffer) {
+        if (formatter instanceof StandardSplunkFormatter) {
+            ((StandardSplunkFormatter) formatter).format(record, buffer);
+        } else {
+            buffer.append(formatter.format(record));
+        }
+    }
+
+    /**
+     * Formats the record with the handler formatter into a new buffer, to be
+     * queued or sent once the pooled encoding buffer is released.
+     *
+     * @param handler
+     * @param record
+     * @return encoded record, or null if it could not be formatted (the
+     * failure is reported to the handler error manager)
+     */
+    static ByteBuffer encode(Handler handler, LogRecord record) {
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            format(handler.getFormatter(), record, buffer);
+            return ByteBuffer.wrap(buffer.toByteArray());
+        } catch (RuntimeException ex) {
+            handler.getErrorManager().error("Unable to format log record",
+                    ex, ErrorManager.FORMAT_FAILURE);
+            return null;
+        } finally {
+            BufferPool.UTF8.release(buffer);
+        }
+    }
+
+    /**
+     * Applies the level and formatter handler configuration; defaults to level
+     * ALL and the {@link StandardSplunkFormatter}.
+     *
+     * @param handler
+     * @param prefix LogManager property prefix
+     */
+    static void configure(Handler handler, String prefix) {
+        final String level = property(prefix + PROPERTY_LEVEL);
+        handler.setLevel((level == null) ? Level.ALL : Level.parse(level));
+
+        final String formatter = property(prefix + PROPERTY_FORMATTER);
+        Formatter f = null;
+        if (formatter != null) {
+            try {
+                f = (Formatter) ClassLoader.getSystemClassLoader()
+                        .loadClass(formatter).getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | ClassCastException ex) {
+                handler.getErrorManager().error(
+                        "Unable to create formatter " + formatter, ex,
+                        ErrorManager.GENERIC_FAILURE);
+            }
+        }
+        handler.setFormatter((f == null) ? new StandardSplunkFormatter() : f);
+    }
+
+    /**
+     * Opens the file configured by the [prefix].file property for appending.
+     *
+     * @param prefix
+     * @return file channel
+     * @throws IOException if the property is not set or file can't be opened
+     */
+    static FileChannel openConfiguredFile(String prefix) throws IOException {
+        final String file = property(prefix + PROPERTY_FILE);
+        if (file == null) {
+            throw new IOException("Splunk handler file property '"
+                    + prefix + PROPERTY_FILE + "' was not set");
+        }
+        return FileChannel.open(Paths.get(file),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     *
+     * @param name
+     * @return trimmed LogManager property value, or null if not set
+     */
+    static String property(String name) {
+        final String value = LogManager.getLogManager().getProperty(name);
+        return (value == null) ? null : value.trim();
+    }
+
+    static int intProperty(String name, int defaultValue) {
+        final String value = property(name);
+        try {
+            return (value == null) ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+
+    static long longProperty(String name, long defaultValue) {
+        final String value = property(name);
+        try {
+            return (value == null) ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+}
@@ -4,14 +4,19 @@ import org.geoint.logging.splunk.crypto.EventHash;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.time.ZonedDateTime;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.SplunkContext;
 import org.geoint.logging.splunk.SplunkEvent;
 
 /**
@@ -19,13 +24,65 @@ import org.geoint.logging.splunk.SplunkEvent;
  *
  * Adds key/value pair meta on the record to be included in a splunk event
  * record fields, so they are searchable on Splunk.
+ *
+ * The fields of the {@link SplunkContext} current when the record is created
+ * are also included (by reference, they are not copied to the record).
+ *
+ * Records may be taken from a pool with {@link #acquire(Level, String)}, to
+ * avoid allocating a record (and its fields) for each event, and returned by
+ * closing them once logged:
+ * <pre>
+ * try (SplunkLogRecord r = SplunkLogRecord.acquire(Level.INFO, "message")) {
+ *     logger.log(r.field("user", user));
+ * }
+ * </pre>
+ * Pooled records must only be logged to handlers which have finished with
+ * the record when they return from publish, as the splunk handlers (which
+ * format on the logging thread) do; they must not be retained. When
+ * assertions are enabled, or the JVM property {@value #PROPERTY_POOL_DEBUG}
+ * is true, any use of a released record fails, reporting where it was
+ * released.
+ *
+ * The LogRecord sequence can't be advanced without creating a LogRecord, so
+ * pooled records are numbered by a sequence of their own, each time they
+ * are acquired: their sequence numbers increase, but may repeat those of
+ * other records.
  */
-public class SplunkLogRecord extends LogRecord implements SplunkEvent {
+public class SplunkLogRecord extends LogRecord
+        implements SplunkEvent, AutoCloseable {
 
     private static final long serialVersionUID = 2L;
 
+    /**
+     * JVM property enabling use-after-release checks of pooled records.
+     */
+    public static final String PROPERTY_POOL_DEBUG
+            = "org.geoint.logging.splunk.record.debug";
+    private static final boolean POOL_DEBUG
+            = Boolean.getBoolean(PROPERTY_POOL_DEBUG) || assertionsEnabled();
+    //records with more fields are not pooled
+    private static final int MAX_POOLED_FIELDS = 64;
+    private static final int DEFAULT_POOL_SHARED_SIZE = 64;
+    private static final AtomicLong POOLED_SEQUENCE = new AtomicLong();
+    //Java 16+, setThreadID truncates the id
+    private static final Method SET_LONG_THREAD_ID = longThreadIdSetter();
+    private static final BufferPool<SplunkLogRecord> POOL = new BufferPool<>(
+            SplunkLogRecord::new,
+            SplunkLogRecord::recycle,
+            (r) -> r.fields.size(),
+            MAX_POOLED_FIELDS,
+            Integer.getInteger(BufferPool.PROPERTY_SHARED_SIZE,
+                    DEFAULT_POOL_SHARED_SIZE));
+
     private SplunkEvent event;
     private Map<String, String> fields = new HashMap<>();
+    private transient SplunkEventTemplate template;
+    private transient SplunkContext context = SplunkContext.current();
+    private final transient boolean pooled;
+    private transient boolean released;
+    private transient boolean inferSource;
+    private transient boolean sourceSet;
+    private transient Throwable releasedAt;
 
     private static final String CONST_NULL = "null";
 
@@ -34,6 +91,70 @@ public class SplunkLogRecord extends LogRecord implements SplunkEvent {
 
     public SplunkLogRecord(Level level, String msg) {
         super(level, msg);
+        this.pooled = false;
+    }
+
+    /**
+     * Pooled record.
+     */
+    private SplunkLogRecord() {
+        super(Level.INFO, null);
+        this.pooled = true;
+    }
+
+    /**
+     * Take a record from the pool; it should be closed once it has been
+     * logged.
+     *
+     * @param level
+     * @param msg
+     * @return record
+     */
+    public static SplunkLogRecord acquire(Level level, String msg) {
+        final SplunkLogRecord record = POOL.acquire();
+        record.released = false;
+        record.releasedAt = null;
+        record.setLevel(level);
+        record.setMessage(msg);
+        record.setMillis(System.currentTimeMillis());
+        record.setSequenceNumber(POOLED_SEQUENCE.getAndIncrement());
+        record.setCurrentThreadID();
+        record.context = SplunkContext.current();
+        record.inferSource = true;
+        return record;
+    }
+
+    /**
+     * Return a pooled record to the pool; it must not be used after it is
+     * released. Does nothing for records which were not acquired from the
+     * pool.
+     *
+     * @throws IllegalStateException if the record was already released
+     */
+    public void release() {
+        if (!pooled) {
+            return;
+        }
+        if (released) {
+            throw new IllegalStateException("Log record was already "
+                    + "released", releasedAt);
+        }
+        //before the pool, which discards records with too many fields
+        released = true;
+        if (POOL_DEBUG) {
+            releasedAt = new Throwable("Log record released");
+        }
+        POOL.release(this);
+    }
+
+    /**
+     * Releases a pooled record.
+     *
+     * @see #release()
+     */
+    @Override
+    public void close() {
+        release();
     }
 
     /**
@@ -48,6 +169,7 @@ public class SplunkLogRecord extends LogRecord implements SplunkEvent {
      * @return fluid interface, returns itself
      */
     public SplunkLogRecord field(String name, String value) {
+        checkLive();
         if (name == null) {
         }
         fields.put(name, value);
@@ -87,50 +209,121 @@ public class SplunkLogRecord extends LogRecord implements SplunkEvent {
 
     @Override
     public void setSourceMethodName(String sourceMethodName) {
+        checkLive();
         super.setSourceMethodName(sourceMethodName);
+        inferSource = false;
+        sourceSet = true;
+        template = null;
         event = null;
     }
 
     @Override
     public void setSourceClassName(String sourceClassName) {
+        checkLive();
         super.setSourceClassName(sourceClassName);
+        inferSource = false;
+        sourceSet = true;
+        template = null;
         event = null;
     }
 
     @Override
     public void setThrown(Throwable thrown) {
+        checkLive();
         super.setThrown(thrown);
         event = null;
     }
 
     @Override
     public void setMillis(long millis) {
+        checkLive();
         super.setMillis(millis);
         event = null;
     }
 
     @Override
     public void setMessage(String message) {
+        checkLive();
         super.setMessage(message);
         event = null;
     }
 
+    @Override
+    public void setParameters(Object[] parameters) {
+        checkLive();
+        super.setParameters(parameters);
+        event = null;
+    }
+
     @Override
     public void setLevel(Level level) {
+        checkLive();
         super.setLevel(level);
+        template = null;
         event = null;
     }
 
     @Override
     public void setLoggerName(String name) {
+        checkLive();
         super.setLoggerName(name);
+        template = null;
         event = null;
     }
 
+    @Override
+    public Level getLevel() {
+        checkLive();
+        return super.getLevel();
+    }
+
+    @Override
+    public String getMessage() {
+        checkLive();
+        return super.getMessage();
+    }
+
+    @Override
+    public Object[] getParameters() {
+        checkLive();
+        return super.getParameters();
+    }
+
+    @Override
+    public Throwable getThrown() {
+        checkLive();
+        return super.getThrown();
+    }
+
+    @Override
+    public String getLoggerName() {
+        checkLive();
+        return super.getLoggerName();
+    }
+
+    @Override
+    public long getMillis() {
+        checkLive();
+        return super.getMillis();
+    }
+
+    @Override
+    public String getSourceClassName() {
+        checkLive();
+        inferSource();
+        return super.getSourceClassName();
+    }
+
+    @Override
+    public String getSourceMethodName() {
+        checkLive();
+        inferSource();
+        return super.getSourceMethodName();
+    }
+
     @Override
     public String asString() {
-        updateEvent();
-        return StandardSplunkFormatter.DEFAULT.format(this);
+        return SplunkLogUtil.format(this);
     }
 
     @Override
@@ -138,12 +331,127 @@ public class SplunkLogRecord extends LogRecord implements SplunkEvent {
         return asString();
     }
 
+    /**
+     *
+     * @return fields added to this record with {@link #field}
+     */
+    Map<String, String> customFields() {
+        return fields;
+    }
+
+    /**
+     *
+     * @return template the record was created from, or null
+     */
+    SplunkEventTemplate template() {
+        return template;
+    }
+
+    /**
+     *
+     * @return context current when the record was created
+     */
+    SplunkContext context() {
+        return context;
+    }
+
+    /**
+     *
+     * @return true if the source class or method was set on the record
+     */
+    boolean hasSource() {
+        return sourceSet;
+    }
+
+    void setTemplate(SplunkEventTemplate template) {
+        this.template = template;
+        event = null;
+    }
+
+    /**
+     * A recycled record can't use the LogRecord caller inference, it is
+     * disabled once the source has been set.
+     */
+    private void inferSource() {
+        if (!inferSource) {
+            return;
+        }
+        inferSource = false;
+        final String[] caller = StackWalkerCaller.isSupported()
+                ? StackWalkerCaller.caller()
+                : StackWalkerCaller.stackTraceCaller();
+        if (caller != null && caller != StackWalkerCaller.EXPLICIT) {
+            super.setSourceClassName(caller[0]);
+            super.setSourceMethodName(caller[1]);
+        }
+    }
+
+    @SuppressWarnings("AssertWithSideEffects")
+    private static boolean assertionsEnabled() {
+        boolean enabled = false;
+        assert enabled = true;
+        return enabled;
+    }
+
+    private void checkLive() {
+        if (POOL_DEBUG && released) {
+            throw new IllegalStateException("Log record was used after it "
+                    + "was released", releasedAt);
+        }
+    }
+
+    /**
+     * Clears the record as it is returned to the pool.
+     */
+    private void recycle() {
+        fields.clear();
+        super.setParameters(null);
+        super.setThrown(null);
+        super.setMessage(null);
+        super.setLoggerName(null);
+        super.setSourceClassName(null);
+        super.setSourceMethodName(null);
+        setResourceBundle(null);
+        setResourceBundleName(null);
+        event = null;
+        template = null;
+        context = null;
+        inferSource = false;
+        sourceSet = false;
+    }
+
+    /**
+     * setThreadID is deprecated from Java 16, which added setLongThreadID;
+     * it is only used on earlier versions.
+     */
+    @SuppressWarnings("deprecation")
+    private void setCurrentThreadID() {
+        final long id = Thread.currentThread().getId();
+        if (SET_LONG_THREAD_ID != null) {
+            try {
+                SET_LONG_THREAD_ID.invoke(this, id);
+                return;
+            } catch (IllegalAccessException | InvocationTargetException ex) {
+                //fall back to the int id
+            }
+        }
+        setThreadID((int) id);
+    }
+
+    private static Method longThreadIdSetter() {
+        try {
+            return LogRecord.class.getMethod("setLongThreadID", long.class);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
     private void updateEvent() {
+        checkLive();
         if (event != null) {
             return;
         }
         event = SplunkLogUtil.toEvent(this, fields);
-        fields.putAll(event.getFields());
     }
 
 //<code-fold desc="serializable methods" default="collapsed">
@@ -162,8 +470,17 @@ public class SplunkLogRecord extends LogRecord implements SplunkEvent {
         out.writeUTF(getSourceMethodName());
         out.writeInt(getThreadID());
         out.writeObject(getThrown());
-        out.writeInt(fields.size());
-        for (Entry<String, String> e : fields.entrySet()) {
+        //context and template fields are written as record fields
+        final Map<String, String> allFields = new HashMap<>();
+        if (context != null) {
+            allFields.putAll(context.getFields());
+        }
+        if (template != null) {
+            allFields.putAll(template.getFields());
+        }
+        allFields.putAll(fields);
+        out.writeInt(allFields.size());
+        for (Entry<String, String> e : allFields.entrySet()) {
             out.writeUTF(e.getKey());
             out.writeUTF((e.getValue() == null) ? CONST_NULL : e.getValue());
         }
@@ -3,16 +3,36 @@ package org.geoint.logging.splunk.jul;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.Optional;
+import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.JsonSplunkFormatter;
 import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.NativeSplunkFormatter.PreparedFields;
+import org.geoint.logging.splunk.SplunkContext;
 import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.crypto.ByteArrayEventHash;
+import org.geoint.logging.splunk.crypto.EventDigester;
 import org.geoint.logging.splunk.crypto.EventHash;
-import org.geoint.logging.splunk.crypto.MessageDigestRecordHasher;
-import org.geoint.logging.splunk.json.Json;
+import org.geoint.logging.splunk.crypto.EventHashers;
+import org.geoint.logging.splunk.crypto.HmacEventHasher;
+import org.geoint.logging.splunk.crypto.StreamingEventHasher;
+import org.geoint.logging.splunk.json.JsonObjectConverter;
+import org.geoint.logging.splunk.json.JsonObjectParser;
+import org.geoint.logging.splunk.json.JsonReader;
 
 /**
  *
@@ -22,6 +42,11 @@ public class SplunkLogUtil {
     public static final String KEY_LEVEL = "level";
     public static final String KEY_LOGGER = "logger";
     public static final String KEY_MSG = "message";
+    /**
+     * Prefix of the fields holding each message parameter, suffixed with the
+     * parameter index ([prefix_]param0, [prefix_]param1, ...).
+     */
+    public static final String KEY_PARAM = "param";
     public static final String KEY_SOURCE = "source";
     public static final String KEY_TIME = "eventTime";
     public static final String KEY_EXCEPTION_CLASS = "exClass";
@@ -30,7 +55,23 @@ public class SplunkLogUtil {
     public static final String KEY_STACK_CLASS = "class";
     public static final String KEY_STACK_METHOD = "method";
     public static final String KEY_STACK_LINE = "line";
+    /**
+     * Number of frames of the thrown exception not written to the
+     * [prefix_]stack field, beyond the max frames.
+     */
+    public static final String KEY_STACK_OMITTED = "stackOmitted";
+    /**
+     * Cause chain of the thrown exception, as a nested JSON object.
+     */
+    public static final String KEY_CAUSE = "cause";
+    /**
+     * Exceptions suppressed by the thrown exception, as a JSON array of
+     * nested objects.
+     */
+    public static final String KEY_SUPPRESSED = "suppressed";
     public static final String KEY_HASH = "hash";
+    public static final String KEY_HASH_KEY_ID = "hashKeyId";
+    public static final String KEY_HASH_ALGORITHM = "hashAlg";
     public static final char CLASS_METHOD_SEPARATOR = '#';
     /**
      * JVM property name which can be used to override the default field prefix
@@ -41,6 +82,152 @@ public class SplunkLogUtil {
     private static final String DEFAULT_FIELD_PREFIX = "fld_";
     public static final String FIELD_PREFIX
             = System.getProperty(PROPERTY_FIELD_PREFIX, DEFAULT_FIELD_PREFIX);
+    /**
+     * LogManager property, suffixed to a logger name, selecting the
+     * {@link EventHashers registered} hash algorithm for events of the logger
+     * and its children (for example
+     * {@code com.example.access.splunk.hash=CRC32C}).
+     */
+    public static final String PROPERTY_LOGGER_HASH = ".splunk.hash";
+    /**
+     * LogManager property, suffixed to a logger name, selecting the
+     * {@link SourceStrategy} (jul, walker or none) for events of the logger
+     * and its children (for example {@code com.example.splunk.source=none}).
+     */
+    public static final String PROPERTY_LOGGER_SOURCE = ".splunk.source";
+
+    /**
+     * Writes a stack frame as a JSON object of the [prefix_]stack field.
+     */
+    public static final JsonObjectConverter<StackTraceElement> STACK_FRAME_CONVERTER
+            = (json, se) -> {
+                json.element(KEY_STACK_CLASS, se.getClassName());//class name
+                json.element(KEY_STACK_METHOD, se.getMethodName());//method name
+                json.element(KEY_STACK_LINE, String.valueOf(se.getLineNumber())); //line number
+            };
+
+    /**
+     * Reads a stack frame JSON object written by the
+     * {@link #STACK_FRAME_CONVERTER}.
+     *
+     * The source file name is not recorded in the event, so it is always
+     * null.
+     */
+    public static final JsonObjectParser<StackTraceElement> STACK_FRAME_PARSER
+            = (json) -> {
+                String className = null;
+                String methodName = null;
+                int line = -1;
+                json.beginObject();
+                while (json.hasNext()) {
+                    switch (json.nextName()) {
+                        case KEY_STACK_CLASS:
+                            className = json.nextString();
+                            break;
+                        case KEY_STACK_METHOD:
+                            methodName = json.nextString();
+                            break;
+                        case KEY_STACK_LINE:
+                            line = json.nextInt();
+                            break;
+                        default:
+                            json.skipValue();
+                    }
+                }
+                json.endObject();
+                return new StackTraceElement(className, methodName, null, line);
+            };
+
+    private static final NativeSplunkFormatter NATIVE_FORMATTER
+            = new NativeSplunkFormatter();
+    private static final JsonSplunkFormatter JSON_FORMATTER
+            = new JsonSplunkFormatter(Arrays.asList(
+                    prefixedFieldName(KEY_STACK),
+                    prefixedFieldName(KEY_CAUSE),
+                    prefixedFieldName(KEY_SUPPRESSED)));
+    private static final StreamingEventHasher DEFAULT_HASHER
+            = EventHashers.get(EventHashers.SHA_256);
+    private static volatile StreamingEventHasher hasher = DEFAULT_HASHER;
+    private static final ConcurrentMap<String, Optional<StreamingEventHasher>> LOGGER_HASHERS
+            = new ConcurrentHashMap<>();
+    private static volatile SourceStrategy sourceStrategy = SourceStrategy.JUL;
+    private static final ConcurrentMap<String, Optional<SourceStrategy>> LOGGER_SOURCES
+            = new ConcurrentHashMap<>();
+
+    /**
+     * Sets the hasher used for events converted from log records of loggers
+     * without a {@link #PROPERTY_LOGGER_HASH} property, such as a keyed
+     * {@link HmacEventHasher}.
+     *
+     * The logger properties are read once per logger; they are read again
+     * after the hasher is set.
+     *
+     * @param eventHasher hasher, or null to restore the default (SHA-256)
+     */
+    public static void setEventHasher(StreamingEventHasher eventHasher) {
+        hasher = (eventHasher == null) ? DEFAULT_HASHER : eventHasher;
+        LOGGER_HASHERS.clear();
+    }
+
+    /**
+     *
+     * @return hasher used for events converted from log records of loggers
+     * without a hash property
+     */
+    public static StreamingEventHasher getEventHasher() {
+        return hasher;
+    }
+
+    /**
+     * The hasher for events of the logger, selected by the
+     * {@link #PROPERTY_LOGGER_HASH} property of the logger or its nearest
+     * configured parent. Unknown algorithms are ignored.
+     *
+     * @param loggerName logger name, may be null
+     * @return hasher for events of the logger
+     */
+    public static StreamingEventHasher getEventHasher(String loggerName) {
+        if (loggerName == null) {
+            return hasher;
+        }
+        return LOGGER_HASHERS.computeIfAbsent(loggerName,
+                (n) -> loggerProperty(n, PROPERTY_LOGGER_HASH,
+                        EventHashers::isRegistered).map(EventHashers::get))
+                .orElse(hasher);
+    }
+
+    /**
+     * Sets how the source of events is determined for loggers without a
+     * {@link #PROPERTY_LOGGER_SOURCE} property.
+     *
+     * The logger properties are read once per logger; they are read again
+     * after the strategy is set.
+     *
+     * @param strategy strategy, or null to restore the default (JUL)
+     */
+    public static void setSourceStrategy(SourceStrategy strategy) {
+        sourceStrategy = (strategy == null) ? SourceStrategy.JUL : strategy;
+        LOGGER_SOURCES.clear();
+    }
+
+    /**
+     * The source strategy for events of the logger, selected by the
+     * {@link #PROPERTY_LOGGER_SOURCE} property of the logger or its nearest
+     * configured parent. Unknown strategies are ignored.
+     *
+     * @param loggerName logger name, may be null
+     * @return source strategy for events of the logger
+     */
+    public static SourceStrategy getSourceStrategy(String loggerName) {
+        if (loggerName == null) {
+            return sourceStrategy;
+        }
+        return LOGGER_SOURCES.computeIfAbsent(loggerName,
+                (n) -> loggerProperty(n, PROPERTY_LOGGER_SOURCE,
+                        SplunkLogUtil::isSourceStrategy)
+                .map((s) -> SourceStrategy.valueOf(s.toUpperCase())))
+                .orElse(sourceStrategy);
+    }
 
     /**
      * convert to SplunkEvent
@@ -49,23 +236,376 @@ public class SplunkLogUtil {
      * @return splunk event
      */
     public static SplunkEvent toEvent(LogRecord lr) {
-        return SplunkEventImpl.fromLog(lr);
+        if (lr instanceof SplunkEvent) {
+            return (SplunkEvent) lr;
+        }
+        return SplunkEventImpl.fromLog(lr, Collections.emptyMap());
     }
 
+    /**
+     * Convert to a SplunkEvent with additional fields, which are included in
+     * the event hash.
+     *
+     * @param lr
+     * @param addlFields
+     * @return splunk event
+     */
     public static SplunkEvent toEvent(LogRecord lr,
             Map<String, String> addlFields) {
-        if (lr instanceof SplunkEvent) {
-            return (SplunkEvent) lr;
+        return SplunkEventImpl.fromLog(lr, addlFields);
+    }
+
+    /**
+     * Formats the record in the native splunk format, hashing it in the same
+     * pass.
+     *
+     * The record fields are collected and sorted once, then each field is
+     * encoded once into the buffer with the digest fed from the same bytes;
+     * the hash field is back-filled at the end. The output is identical to
+     * formatting {@link #toEvent(LogRecord)} with the
+     * {@link NativeSplunkFormatter}, without building the intermediate event
+     * or walking its fields three times.
+     *
+     * @param lr record to format
+     * @param out buffer the formatted record is appended to
+     * @return hash of the record
+     */
+    public static EventHash format(LogRecord lr, Utf8Buffer out) {
+        final SplunkEventTemplate template = templateOf(lr);
+        final TreeMap<String, String> fields = new TreeMap<>();
+        if (template == null) {
+            collectFields(lr, fields);
+        } else {
+            //constant fields are prepared by the template
+            collectVariableFields(lr, fields);
         }
-        SplunkEventImpl event = SplunkEventImpl.fromLog(lr);
-        event.fields.putAll(addlFields);
-        return event;
+        if (lr instanceof SplunkLogRecord) {
+            fields.putAll(((SplunkLogRecord) lr).customFields());
+        }
+        fields.remove(prefixedFieldName(KEY_HASH));
+
+        final EventDigester digester
+                = getEventHasher(lr.getLoggerName()).newDigester();
+        hashFields(digester, fields);
+        final PreparedFields context = contextOf(lr).getPreparedFields();
+        final byte[] hash = NATIVE_FORMATTER.formatHashed(eventTime(lr),
+                fields, (template == null)
+                        ? new PreparedFields[]{context}
+                        : new PreparedFields[]{context, template.getPrepared()},
+                prefixedFieldName(KEY_HASH), digester, out);
+        return new ByteArrayEventHash(digester.getAlgorithm(), hash);
+    }
+
+    /**
+     * Formats the record in the native splunk format, hashing it in the same
+     * pass.
+     *
+     * @param lr record to format
+     * @return formatted record
+     * @see #format(LogRecord, Utf8Buffer)
+     */
+    public static String format(LogRecord lr) {
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            format(lr, buffer);
+            return buffer.toString();
+        } finally {
+            BufferPool.UTF8.release(buffer);
+        }
+    }
+
+    /**
+     * Formats the record as a single line JSON object, with the same fields
+     * and hash as the native format; the stack, cause and suppressed
+     * exception fields are written as nested JSON.
+     *
+     * As with {@link #format(LogRecord, Utf8Buffer)}, the record fields are
+     * collected and sorted once and each field is hashed from the same bytes
+     * it is encoded to, without building the intermediate event.
+     *
+     * @param lr record to format
+     * @param out buffer the formatted record is appended to
+     * @return hash of the record
+     * @see JsonSplunkFormatter
+     */
+    public static EventHash formatJson(LogRecord lr, Utf8Buffer out) {
+        final TreeMap<String, String> fields
+                = new TreeMap<>(contextOf(lr).getFields());
+        final SplunkEventTemplate template = templateOf(lr);
+        if (template != null) {
+            fields.putAll(template.getFields());
+        }
+        collectFields(lr, fields);
+        if (lr instanceof SplunkLogRecord) {
+            fields.putAll(((SplunkLogRecord) lr).customFields());
+        }
+        fields.remove(prefixedFieldName(KEY_HASH));
+
+        final EventDigester digester
+                = getEventHasher(lr.getLoggerName()).newDigester();
+        hashFields(digester, fields);
+        final byte[] hash = JSON_FORMATTER.formatHashed(eventTime(lr), fields,
+                prefixedFieldName(KEY_HASH), digester, out);
+        return new ByteArrayEventHash(digester.getAlgorithm(), hash);
+    }
+
+    /**
+     * Formats the record as a single line JSON object.
+     *
+     * @param lr record to format
+     * @return formatted record
+     * @see #formatJson(LogRecord, Utf8Buffer)
+     */
+    public static String formatJson(LogRecord lr) {
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            formatJson(lr, buffer);
+            return buffer.toString();
+        } finally {
+            BufferPool.UTF8.release(buffer);
+        }
+    }
+
+    /**
+     * Lazily decodes the value of a [prefix_]stack field back to stack frames.
+     *
+     * Frames are parsed one at a time as they are requested, so reading only
+     * the top frames does not parse the rest of the stack. Both the raw field
+     * value and the single-quoted value found in the native splunk format are
+     * accepted.
+     *
+     * @param stackJson stack field value
+     * @return stack frames, top frame first
+     * @throws org.geoint.logging.splunk.json.JsonParseException if the value
+     * is not a valid stack
+     */
+    public static Iterator<StackTraceElement> parseStack(CharSequence stackJson) {
+        return JsonReader.fromArray(STACK_FRAME_PARSER, stackJson);
     }
 
     static String prefixedFieldName(String fieldName) {
         return FIELD_PREFIX + fieldName;
     }
 
+    /**
+     * Finds the valid value of a logger property, set for the logger or
+     * inherited from its nearest parent (the root logger property being just
+     * the suffix).
+     *
+     * @param loggerName
+     * @param suffix property name suffixed to the logger name
+     * @param valid tests the property value
+     * @return property value
+     */
+    private static Optional<String> loggerProperty(String loggerName,
+            String suffix, Predicate<String> valid) {
+        String name = loggerName;
+        while (true) {
+            final String value = SplunkHandlers.property(name + suffix);
+            if (value != null && valid.test(value)) {
+                return Optional.of(value);
+            }
+            if (name.isEmpty()) {
+                return Optional.empty();
+            }
+            final int parent = name.lastIndexOf('.');
+            name = (parent < 0) ? "" : name.substring(0, parent);
+        }
+    }
+
+    private static boolean isSourceStrategy(String name) {
+        for (SourceStrategy s : SourceStrategy.values()) {
+            if (s.name().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The source (class and method) of the record, as determined by the
+     * source strategy of its logger.
+     *
+     * @param lr
+     * @return source field value, or null if not recorded
+     */
+    private static String source(LogRecord lr) {
+        switch (getSourceStrategy(lr.getLoggerName())) {
+            case NONE:
+                return null;
+            case WALKER:
+                if (StackWalkerCaller.isSupported() && !hasSource(lr)) {
+                    //a SplunkLogRecord is always logged as a record
+                    final String[] caller = (lr instanceof SplunkLogRecord)
+                            ? StackWalkerCaller.caller()
+                            : StackWalkerCaller.recordCaller();
+                    if (caller != null && caller != StackWalkerCaller.EXPLICIT) {
+                        //set on the record so it is not inferred again
+                        lr.setSourceClassName(caller[0]);
+                        lr.setSourceMethodName(caller[1]);
+                        return caller[0] + CLASS_METHOD_SEPARATOR + caller[1];
+                    }
+                }
+                //the record source is set (or explicit)
+                break;
+            default:
+                break;
+        }
+        return lr.getSourceClassName() + CLASS_METHOD_SEPARATOR
+                + lr.getSourceMethodName();
+    }
+
+    /**
+     * A SplunkLogRecord knows whether its source was set; that of other
+     * records can't be read without inferring it, it is found by
+     * {@link StackWalkerCaller#recordCaller()} instead.
+     */
+    private static boolean hasSource(LogRecord lr) {
+        return (lr instanceof SplunkLogRecord)
+                && ((SplunkLogRecord) lr).hasSource();
+    }
+
+    /**
+     * Records the algorithm (unless the default) and the id of the key (if
+     * keyed) used by the digester, both are part of the hashed fields.
+     *
+     * @param digester
+     * @param fields
+     */
+    private static void hashFields(EventDigester digester,
+            Map<String, String> fields) {
+        final String algorithm = digester.getAlgorithm();
+        if (EventHashers.SHA_256.equals(algorithm)) {
+            fields.remove(prefixedFieldName(KEY_HASH_ALGORITHM));
+        } else {
+            fields.put(prefixedFieldName(KEY_HASH_ALGORITHM), algorithm);
+        }
+        final String keyId = digester.getKeyId();
+        if (keyId == null) {
+            fields.remove(prefixedFieldName(KEY_HASH_KEY_ID));
+        } else {
+            fields.put(prefixedFieldName(KEY_HASH_KEY_ID), keyId);
+        }
+    }
+
+    private static ZonedDateTime eventTime(LogRecord lr) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(lr.getMillis()),
+                ZoneOffset.UTC);
+    }
+
+    /**
+     * Prepares the constant fields of a {@link SplunkEventTemplate}.
+     *
+     * @param loggerName
+     * @param level
+     * @param sourceClass
+     * @param sourceMethod
+     * @param templateFields static (unprefixed) fields
+     * @return prepared fields
+     */
+    static PreparedFields prepare(String loggerName, Level level,
+            String sourceClass, String sourceMethod,
+            Map<String, String> templateFields) {
+        final TreeMap<String, String> fields = new TreeMap<>(templateFields);
+        fields.put(prefixedFieldName(KEY_LEVEL), level.getName());
+        fields.put(prefixedFieldName(KEY_LOGGER), loggerName);
+        fields.put(prefixedFieldName(KEY_SOURCE),
+                sourceClass + CLASS_METHOD_SEPARATOR + sourceMethod);
+        fields.remove(prefixedFieldName(KEY_HASH));
+        return NATIVE_FORMATTER.prepare(fields);
+    }
+
+    /**
+     * The context of a {@link SplunkLogRecord} is taken when it is created,
+     * that of other records is the current context (handlers format records
+     * on the logging thread).
+     *
+     * @param lr
+     * @return context fields of the record
+     */
+    private static SplunkContext contextOf(LogRecord lr) {
+        final SplunkContext context = (lr instanceof SplunkLogRecord)
+                ? ((SplunkLogRecord) lr).context() : SplunkContext.current();
+        return (context == null) ? SplunkContext.empty() : context;
+    }
+
+    private static SplunkEventTemplate templateOf(LogRecord lr) {
+        return (lr instanceof SplunkLogRecord)
+                ? ((SplunkLogRecord) lr).template() : null;
+    }
+
+    /**
+     * Adds the standard event fields of the record (all but the hash).
+     *
+     * @param lr
+     * @param fields
+     */
+    private static void collectFields(LogRecord lr,
+            Map<String, String> fields) {
+        fields.put(prefixedFieldName(KEY_LEVEL), lr.getLevel().getName());
+        fields.put(prefixedFieldName(KEY_LOGGER), lr.getLoggerName());
+        final String source = source(lr);
+        if (source != null) {
+            fields.put(prefixedFieldName(KEY_SOURCE), source);
+        }
+        collectVariableFields(lr, fields);
+    }
+
+    /**
+     * Adds the event fields which change with each record from a call site:
+     * time, message and exception.
+     *
+     * @param lr
+     * @param fields
+     */
+    private static void collectVariableFields(LogRecord lr,
+            Map<String, String> fields) {
+        fields.put(prefixedFieldName(KEY_TIME), eventTime(lr).toString());
+        collectMessage(lr, fields);
+        Throwable ex = lr.getThrown();
+        if (ex != null) {
+            fields.put(prefixedFieldName(KEY_EXCEPTION_CLASS),
+                    ex.getClass().getName());
+
+            if (ex.getMessage() != null && !ex.getMessage().isEmpty()) {
+                fields.put(prefixedFieldName(KEY_EXCEPTION_MSG),
+                        ex.getMessage());
+            }
+
+            ThrowableRenderer.collect(ex, fields);
+        }
+    }
+
+    /**
+     * Adds the message, localized and rendered with its parameters as by
+     * {@link java.util.logging.Formatter#formatMessage}, and each parameter
+     * value as its own field.
+     *
+     * @param lr
+     * @param fields
+     */
+    private static void collectMessage(LogRecord lr,
+            Map<String, String> fields) {
+        String message = lr.getMessage();
+        final ResourceBundle bundle = lr.getResourceBundle();
+        if (bundle != null && message != null) {
+            try {
+                message = bundle.getString(message);
+            } catch (MissingResourceException ex) {
+                //not a key, use the message as is
+            }
+        }
+        final Object[] params = lr.getParameters();
+        if (message != null && params != null && params.length > 0) {
+            message = MessageTemplate.of(message).render(params);
+            for (int i = 0; i < params.length; i++) {
+                fields.put(prefixedFieldName(KEY_PARAM + i),
+                        String.valueOf(params[i]));
+            }
+        }
+        fields.put(prefixedFieldName(KEY_MSG), message);
+    }
+
     /**
      * simple wrapper around a LogRecord.
      */
@@ -76,62 +616,28 @@ public class SplunkLogUtil {
         private final Map<String, String> fields;
 
         private SplunkEventImpl(ZonedDateTime eventTime,
-                Map<String, String> fields) {
+                StreamingEventHasher hasher, TreeMap<String, String> fields) {
             this.eventTime = eventTime;
             this.fields = fields;
-            this.eventHash = hash();
+            this.eventHash = hash(hasher, fields);
             this.fields.put(prefixedFieldName(KEY_HASH), eventHash.asHex());
         }
 
-        public static SplunkEventImpl fromLog(LogRecord lr) {
-
-            ZonedDateTime eventTime = ZonedDateTime.ofInstant(
-                    Instant.ofEpochMilli(lr.getMillis()),
-                    ZoneOffset.UTC);
-
+        public static SplunkEventImpl fromLog(LogRecord lr,
+                Map<String, String> addlFields) {
             //set fields
-            Map<String, String> fields = new HashMap<>();
-            fields.put(prefixedFieldName(KEY_TIME), ZonedDateTime.ofInstant(
-                    Instant.ofEpochMilli(lr.getMillis()),
-                    ZoneOffset.UTC).toString());
-            fields.put(prefixedFieldName(KEY_LEVEL), lr.getLevel().getName());
-            fields.put(prefixedFieldName(KEY_LOGGER), lr.getLoggerName());
-            fields.put(prefixedFieldName(KEY_MSG), lr.getMessage());
-            fields.put(prefixedFieldName(KEY_SOURCE), lr.getSourceClassName()
-                    + CLASS_METHOD_SEPARATOR
-                    + lr.getSourceMethodName());
-            Throwable ex = lr.getThrown();
-            if (ex != null) {
-                fields.put(prefixedFieldName(KEY_EXCEPTION_CLASS),
-                        ex.getClass().getName());
-
-                if (ex.getMessage() != null && !ex.getMessage().isEmpty()) {
-                    fields.put(prefixedFieldName(KEY_EXCEPTION_MSG),
-                            ex.getMessage());
-                }
-
-                fields.put(prefixedFieldName(KEY_STACK),
-                        exceptionStack(ex));
+            TreeMap<String, String> fields
+                    = new TreeMap<>(contextOf(lr).getFields());
+            final SplunkEventTemplate template = templateOf(lr);
+            if (template != null) {
+                fields.putAll(template.getFields());
             }
+            collectFields(lr, fields);
+            fields.putAll(addlFields);
+            fields.remove(prefixedFieldName(KEY_HASH));
 
-            return new SplunkEventImpl(eventTime, fields);
-        }
-
-        private static String exceptionStack(Throwable ex) {
-            //exception class type is sometimes all we got
-            //add stack trace as JSON
-            StackTraceElement[] stack = ex.getStackTrace();
-            if (stack != null && stack.length > 0) {
-                final Json stackJson = Json.asArray(
-                        (json, se) -> {
-                            json.element(KEY_STACK_CLASS, se.getClassName());//class name
-                            json.element(KEY_STACK_METHOD, se.getMethodName());//method name
-                            json.element(KEY_STACK_LINE, String.valueOf(se.getLineNumber())); //line number
-                        },
-                        stack);
-                return stackJson.toString();
-            }
-            return "";
+            return new SplunkEventImpl(eventTime(lr),
+                    getEventHasher(lr.getLoggerName()), fields);
         }
 
         @Override
@@ -161,11 +667,15 @@ public class SplunkLogUtil {
 
         @Override
         public String asString() {
-            return new NativeSplunkFormatter().format(this);
+            return NATIVE_FORMATTER.format(this);
         }
 
-        private EventHash hash() {
-            return MessageDigestRecordHasher.sha256(this);
+        private static EventHash hash(StreamingEventHasher hasher,
+                TreeMap<String, String> fields) {
+            final EventDigester digester = hasher.newDigester();
+            hashFields(digester, fields);
+            return new ByteArrayEventHash(digester.getAlgorithm(),
+                    StreamingEventHasher.digest(fields, digester));
         }
     }
 }
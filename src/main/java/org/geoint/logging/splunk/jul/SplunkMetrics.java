@@ -0,0 +1,448 @@
+package org.geoint.logging.splunk.jul;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+
+/**
+ * Counters, gauges and timers aggregated in-process and logged as one event
+ * per metric per interval, rather than an event per occurrence.
+ *
+ * A metric is identified by its name and dimension fields; the same metric
+ * is returned for the same name and dimensions, so callers may keep it
+ * rather than look it up on each update. Updates are lock-free: counters and
+ * timer sums are striped {@link LongAdder}s and timer distributions are
+ * lock-free histograms.
+ *
+ * Each interval, every metric updated during the interval is logged to the
+ * logger as a {@link SplunkLogRecord}, created from a
+ * {@link SplunkEventTemplate} holding the constant fields (metric name, type,
+ * interval and dimensions), so metric events are hashed and formatted by the
+ * logger's handlers as any other event. Dimensions are added as fields named
+ * as given; the metric fields are:
+ * <ul>
+ * <li>[prefix_]metric, [prefix_]metricType and [prefix_]interval (millis)</li>
+ * <li>counters - [prefix_]count</li>
+ * <li>gauges - [prefix_]value, the last value set</li>
+ * <li>timers - [prefix_]count, and [prefix_]sum, min, max, p50, p90 and
+ * p99 in milliseconds</li>
+ * </ul>
+ *
+ * Usage:
+ * <pre>
+ * private static final SplunkMetrics METRICS = new SplunkMetrics(
+ *         Logger.getLogger("com.example.metrics"), Level.INFO, 60000);
+ * private static final SplunkMetrics.Counter MISSES
+ *         = METRICS.counter("cache.miss", "cache", "users");
+ * ...
+ * MISSES.increment();
+ * </pre>
+ *
+ * Dimensions should have few distinct values; each distinct combination is a
+ * metric, and is kept until the metrics are closed.
+ *
+ * Thread-safe.
+ */
+public final class SplunkMetrics implements AutoCloseable {
+
+    public static final String KEY_METRIC = "metric";
+    public static final String KEY_METRIC_TYPE = "metricType";
+    public static final String KEY_INTERVAL = "interval";
+    public static final String KEY_COUNT = "count";
+    public static final String KEY_VALUE = "value";
+    public static final String KEY_SUM = "sum";
+    public static final String KEY_MIN = "min";
+    public static final String KEY_MAX = "max";
+    public static final String KEY_P50 = "p50";
+    public static final String KEY_P90 = "p90";
+    public static final String KEY_P99 = "p99";
+    private static final long DEFAULT_INTERVAL_MILLIS = 60000;
+    private static final int MILLIS_SCALE = 6; //nanos to millis
+    private static final Logger LOGGER
+            = Logger.getLogger("org.geoint.logging.splunk");
+
+    private final Logger logger;
+    private final Level level;
+    private final long intervalMillis;
+    private final ConcurrentMap<String, Metric> metrics
+            = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    /**
+     * Metrics logged every minute at INFO.
+     *
+     * @param logger
+     */
+    public SplunkMetrics(Logger logger) {
+        this(logger, Level.INFO, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    /**
+     *
+     * @param logger logger the metric events are logged to
+     * @param level level of the metric events
+     * @param intervalMillis time between metric events, if zero metrics are
+     * only logged when {@link #flush() flushed}
+     */
+    public SplunkMetrics(Logger logger, Level level, long intervalMillis) {
+        if (intervalMillis < 0) {
+            throw new IllegalArgumentException("Invalid metric interval "
+                    + intervalMillis + "ms");
+        }
+        this.logger = logger;
+        this.level = level;
+        this.intervalMillis = intervalMillis;
+        if (intervalMillis > 0) {
+            this.flusher = new Thread(this::run,
+                    "splunk-metrics-" + System.identityHashCode(this));
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     *
+     * @param name
+     * @param dimensions dimension field names and values, alternating
+     * @return counter
+     */
+    public Counter counter(String name, String... dimensions) {
+        return counter(name, dimensions(dimensions));
+    }
+
+    /**
+     *
+     * @param name
+     * @param dimensions
+     * @return counter
+     */
+    public Counter counter(String name, Map<String, String> dimensions) {
+        return metric(name, dimensions, Counter.class);
+    }
+
+    /**
+     *
+     * @param name
+     * @param dimensions dimension field names and values, alternating
+     * @return gauge
+     */
+    public Gauge gauge(String name, String... dimensions) {
+        return gauge(name, dimensions(dimensions));
+    }
+
+    /**
+     *
+     * @param name
+     * @param dimensions
+     * @return gauge
+     */
+    public Gauge gauge(String name, Map<String, String> dimensions) {
+        return metric(name, dimensions, Gauge.class);
+    }
+
+    /**
+     *
+     * @param name
+     * @param dimensions dimension field names and values, alternating
+     * @return timer
+     */
+    public Timer timer(String name, String... dimensions) {
+        return timer(name, dimensions(dimensions));
+    }
+
+    /**
+     *
+     * @param name
+     * @param dimensions
+     * @return timer
+     */
+    public Timer timer(String name, Map<String, String> dimensions) {
+        return metric(name, dimensions, Timer.class);
+    }
+
+    /**
+     * Log the metrics updated since the last flush.
+     */
+    public void flush() {
+        for (Metric m : metrics.values()) {
+            try {
+                m.flush();
+            } catch (RuntimeException ex) {
+                //a failing handler must not stop the other metrics
+                LOGGER.log(Level.WARNING, "Unable to log metric "
+                        + m.name, ex);
+            }
+        }
+    }
+
+    /**
+     * Logs the metrics updated since the last flush and stops logging
+     * metrics.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            LockSupport.unpark(flusher);
+            try {
+                flusher.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void run() {
+        final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        long next = System.nanoTime() + intervalNanos;
+        while (!closed) {
+            final long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            flush();
+            next += intervalNanos;
+        }
+    }
+
+    private <M extends Metric> M metric(String name,
+            Map<String, String> dimensions, Class<M> type) {
+        if (name == null) {
+            throw new IllegalArgumentException("Metric name is required");
+        }
+        final SortedMap<String, String> sorted = new TreeMap<>(dimensions);
+        final String key = name + sorted;
+        final Metric m = metrics.computeIfAbsent(key,
+                (k) -> newMetric(name, sorted, type));
+        if (!type.isInstance(m)) {
+            throw new IllegalArgumentException("Metric " + key + " is a "
+                    + m.getClass().getSimpleName() + ", not a "
+                    + type.getSimpleName());
+        }
+        return type.cast(m);
+    }
+
+    private Metric newMetric(String name, SortedMap<String, String> dimensions,
+            Class<? extends Metric> type) {
+        final String typeName = type.getSimpleName().toLowerCase(Locale.ROOT);
+        final Map<String, String> fields = new TreeMap<>(dimensions);
+        fields.put(prefixedFieldName(KEY_METRIC), name);
+        fields.put(prefixedFieldName(KEY_METRIC_TYPE), typeName);
+        fields.put(prefixedFieldName(KEY_INTERVAL),
+                String.valueOf(intervalMillis));
+        final SplunkEventTemplate template = new SplunkEventTemplate(logger,
+                level, SplunkMetrics.class, "flush", fields);
+        if (type == Counter.class) {
+            return new Counter(name, logger, template);
+        } else if (type == Gauge.class) {
+            return new Gauge(name, logger, template);
+        }
+        return new Timer(name, logger, template);
+    }
+
+    private static Map<String, String> dimensions(String... dimensions) {
+        if (dimensions == null || dimensions.length == 0) {
+            return Collections.emptyMap();
+        }
+        if (dimensions.length % 2 != 0) {
+            throw new IllegalArgumentException("Metric dimensions must be "
+                    + "name and value pairs");
+        }
+        final Map<String, String> map = new TreeMap<>();
+        for (int i = 0; i < dimensions.length; i += 2) {
+            map.put(dimensions[i], dimensions[i + 1]);
+        }
+        return map;
+    }
+
+    private static String millis(long nanos) {
+        return BigDecimal.valueOf(nanos, MILLIS_SCALE).stripTrailingZeros()
+                .toPlainString();
+    }
+
+    /**
+     * A named metric, logged from its template.
+     */
+    public abstract static class Metric {
+
+        private final String name;
+        private final Logger logger;
+        private final SplunkEventTemplate template;
+
+        private Metric(String name, Logger logger,
+                SplunkEventTemplate template) {
+            this.name = name;
+            this.logger = logger;
+            this.template = template;
+        }
+
+        /**
+         *
+         * @return name of the metric
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         *
+         * @return dimension (and constant metric) fields of the events
+         */
+        public Map<String, String> getFields() {
+            return template.getFields();
+        }
+
+        /**
+         * Takes the values of the interval, logging them if the metric was
+         * updated.
+         */
+        abstract void flush();
+
+        SplunkLogRecord record() {
+            return template.record(name);
+        }
+
+        void log(SplunkLogRecord record) {
+            if (template.isLoggable()) {
+                logger.log(record);
+            }
+        }
+    }
+
+    /**
+     * Counts occurrences over each interval.
+     */
+    public static final class Counter extends Metric {
+
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong reported = new AtomicLong();
+
+        private Counter(String name, Logger logger,
+                SplunkEventTemplate template) {
+            super(name, logger, template);
+        }
+
+        public void increment() {
+            count.increment();
+        }
+
+        /**
+         *
+         * @param n
+         */
+        public void add(long n) {
+            count.add(n);
+        }
+
+        @Override
+        void flush() {
+            final long n = MetricHistogram.sumSince(count, reported);
+            if (n != 0) {
+                log(record().field(prefixedFieldName(KEY_COUNT),
+                        String.valueOf(n)));
+            }
+        }
+    }
+
+    /**
+     * Last value set, logged each interval once set.
+     */
+    public static final class Gauge extends Metric {
+
+        private final AtomicLong value = new AtomicLong();
+        private volatile boolean set;
+
+        private Gauge(String name, Logger logger,
+                SplunkEventTemplate template) {
+            super(name, logger, template);
+        }
+
+        /**
+         *
+         * @param v
+         */
+        public void set(long v) {
+            value.set(v);
+            set = true;
+        }
+
+        @Override
+        void flush() {
+            if (set) {
+                log(record().field(prefixedFieldName(KEY_VALUE),
+                        String.valueOf(value.get())));
+            }
+        }
+    }
+
+    /**
+     * Distribution of durations over each interval.
+     */
+    public static final class Timer extends Metric {
+
+        private final MetricHistogram histogram = new MetricHistogram();
+
+        private Timer(String name, Logger logger,
+                SplunkEventTemplate template) {
+            super(name, logger, template);
+        }
+
+        /**
+         *
+         * @param duration
+         * @param unit
+         */
+        public void record(long duration, TimeUnit unit) {
+            histogram.record(unit.toNanos(duration));
+        }
+
+        /**
+         * Record the time since the start.
+         *
+         * @param startNanos {@link System#nanoTime()} at the start
+         */
+        public void recordSince(long startNanos) {
+            histogram.record(System.nanoTime() - startNanos);
+        }
+
+        @Override
+        void flush() {
+            final MetricHistogram.Snapshot s = histogram.snapshotAndReset();
+            if (s.getCount() == 0) {
+                return;
+            }
+            log(record()
+                    .field(prefixedFieldName(KEY_COUNT),
+                            String.valueOf(s.getCount()))
+                    .field(prefixedFieldName(KEY_SUM), millis(s.getSum()))
+                    .field(prefixedFieldName(KEY_MIN), millis(s.getMin()))
+                    .field(prefixedFieldName(KEY_MAX), millis(s.getMax()))
+                    .field(prefixedFieldName(KEY_P50),
+                            millis(s.getPercentile(50)))
+                    .field(prefixedFieldName(KEY_P90),
+                            millis(s.getPercentile(90)))
+                    .field(prefixedFieldName(KEY_P99),
+                            millis(s.getPercentile(99))));
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.geoint.logging.splunk.jul;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Finds the caller of a logger using the Java 9+ StackWalker, which only
+ * materializes the frames walked (unlike LogRecord caller inference, which
+ * builds the whole stack trace).
+ *
+ * StackWalker is looked up reflectively so this library still runs on Java
+ * 8; check {@link #isSupported()} before walking, otherwise use
+ * {@link #stackTraceCaller()}.
+ */
+final class StackWalkerCaller {
+
+    /**
+     * Returned when the record was logged with an explicit source (such as
+     * {@code Logger.logp}), which should be used as is.
+     */
+    static final String[] EXPLICIT = new String[0];
+
+    private static final String LOGGER_CLASS = "java.util.logging.Logger";
+    private static final String LOG_METHOD = "log";
+    private static final String LOG_RECORD_DESCRIPTOR
+            = "(Ljava/util/logging/LogRecord;)V";
+    //Logger methods which set the source of the record themselves
+    private static final Set<String> EXPLICIT_SOURCE_METHODS
+            = new HashSet<>(Arrays.asList("logp", "logrb", "entering",
+                    "exiting", "throwing"));
+    private static final String[] INFRASTRUCTURE_PACKAGES = {
+        "java.util.logging.", "sun.util.logging.", "jdk.internal.",
+        "java.lang.reflect.", "sun.reflect."};
+
+    private static final Object WALKER;
+    private static final Method WALK;
+    private static final Method CLASS_NAME;
+    private static final Method METHOD_NAME;
+    //Java 10+
+    private static final Method DESCRIPTOR;
+
+    static {
+        Object walker = null;
+        Method walk = null;
+        Method className = null;
+        Method methodName = null;
+        Method descriptor = null;
+        try {
+            final Class<?> walkerClass = Class.forName("java.lang.StackWalker");
+            final Class<?> frameClass
+                    = Class.forName("java.lang.StackWalker$StackFrame");
+            walker = walkerClass.getMethod("getInstance").invoke(null);
+            walk = walkerClass.getMethod("walk", Function.class);
+            className = frameClass.getMethod("getClassName");
+            methodName = frameClass.getMethod("getMethodName");
+            try {
+                descriptor = frameClass.getMethod("getDescriptor");
+            } catch (NoSuchMethodException ex) {
+                descriptor = null;
+            }
+        } catch (ReflectiveOperationException ex) {
+            walker = null;
+        }
+        WALKER = walker;
+        WALK = walk;
+        CLASS_NAME = className;
+        METHOD_NAME = methodName;
+        DESCRIPTOR = descriptor;
+    }
+
+    private StackWalkerCaller() {
+    }
+
+    /**
+     *
+     * @return true if the runtime provides the StackWalker
+     */
+    static boolean isSupported() {
+        return WALKER != null;
+    }
+
+    /**
+     * Walks the current thread stack to the first frame calling a logger.
+     *
+     * @return class and method name of the caller, {@link #EXPLICIT} if the
+     * logger was given the source, or null if the current thread is not
+     * logging
+     */
+    static String[] caller() {
+        return walk(false);
+    }
+
+    /**
+     * As {@link #caller()}, for a record which may have been made by the
+     * caller; a record passed to {@code Logger.log(LogRecord)} (for example
+     * by the SLF4J JDK14 adapter, which sets its source) is treated as
+     * explicit, so its own source, set or inferred, is used.
+     *
+     * @return class and method name of the caller, {@link #EXPLICIT} if the
+     * logger was given the source or the record, or null if the current
+     * thread is not logging
+     */
+    static String[] recordCaller() {
+        return walk(true);
+    }
+
+    private static String[] walk(boolean loggedRecords) {
+        try {
+            return (String[]) WALK.invoke(WALKER,
+                    (Function<Stream<?>, String[]>) (s) -> caller(s,
+                            loggedRecords));
+        } catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        } catch (InvocationTargetException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * Finds the caller of a logger from a stack trace of the current thread,
+     * for runtimes without the StackWalker.
+     *
+     * @return class and method name of the caller, {@link #EXPLICIT} if the
+     * logger was given the source, or null if the current thread is not
+     * logging
+     */
+    static String[] stackTraceCaller() {
+        boolean logging = false;
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            final String className = frame.getClassName();
+            if (LOGGER_CLASS.equals(className)) {
+                if (EXPLICIT_SOURCE_METHODS.contains(frame.getMethodName())) {
+                    return EXPLICIT;
+                }
+                logging = true;
+            } else if (logging && !isInfrastructure(className)) {
+                return new String[]{className, frame.getMethodName()};
+            }
+        }
+        return null;
+    }
+
+    private static String[] caller(Stream<?> frames, boolean loggedRecords) {
+        boolean logging = false;
+        boolean loggedRecord = false;
+        for (Iterator<?> i = frames.iterator(); i.hasNext();) {
+            final Object frame = i.next();
+            final String className = invoke(CLASS_NAME, frame);
+            if (LOGGER_CLASS.equals(className)) {
+                final String method = invoke(METHOD_NAME, frame);
+                if (EXPLICIT_SOURCE_METHODS.contains(method)) {
+                    return EXPLICIT;
+                }
+                logging = true;
+                //the outermost logger frame is the one the caller called
+                loggedRecord = loggedRecords && isLogRecord(method, frame);
+            } else if (logging && !isInfrastructure(className)) {
+                return loggedRecord ? EXPLICIT
+                        : new String[]{className, invoke(METHOD_NAME, frame)};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Without the frame descriptor (Java 9) any log method may have been
+     * passed a record.
+     */
+    private static boolean isLogRecord(String method, Object frame) {
+        return LOG_METHOD.equals(method) && (DESCRIPTOR == null
+                || LOG_RECORD_DESCRIPTOR.equals(invoke(DESCRIPTOR, frame)));
+    }
+
+    private static boolean isInfrastructure(String className) {
+        for (String p : INFRASTRUCTURE_PACKAGES) {
+            if (className.startsWith(p)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String invoke(Method method, Object frame) {
+        try {
+            return (String) method.invoke(frame);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -2,8 +2,9 @@ package org.geoint.logging.splunk.jul;
 
 import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
-import org.geoint.logging.splunk.NativeSplunkFormatter;
-import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.Utf8Sink;
 
 /**
  * Formats a {@link LogRecord} into a basic format Splunk can ingest by default.
@@ -24,15 +25,27 @@ public class StandardSplunkFormatter extends Formatter {
 
     @Override
     public String format(LogRecord lr) {
-        return format(asEvent(lr));
+        return SplunkLogUtil.format(lr);
     }
 
-    private String format(SplunkEvent event) {
-        return new NativeSplunkFormatter().format(event);
-    }
-
-    private SplunkEvent asEvent(LogRecord lr) {
-        return SplunkLogUtil.toEvent(lr);
+    /**
+     * Formats the record directly as UTF-8 bytes.
+     *
+     * @param lr
+     * @param sink
+     */
+    public void format(LogRecord lr, Utf8Sink sink) {
+        if (sink instanceof Utf8Buffer) {
+            SplunkLogUtil.format(lr, (Utf8Buffer) sink);
+        } else {
+            final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+            try {
+                SplunkLogUtil.format(lr, buffer);
+                sink.write(buffer.array(), 0, buffer.length());
+            } finally {
+                BufferPool.UTF8.release(buffer);
+            }
+        }
     }
 
 }
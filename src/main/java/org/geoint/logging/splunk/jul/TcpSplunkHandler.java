@@ -0,0 +1,72 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import org.geoint.logging.splunk.io.SocketSplunkSender;
+
+/**
+ * Handler which streams events to a splunk raw TCP input, without blocking
+ * the logging thread.
+ *
+ * Configured using the following LogManager properties (each prefixed with
+ * the handler class name):
+ * <ul>
+ * <li>host - splunk host, defaults to localhost</li>
+ * <li>port - splunk TCP input port, required</li>
+ * <li>capacity - max events queued before events are dropped, defaults to
+ * 65536</li>
+ * <li>maxBatch - max events per write, defaults to 256</li>
+ * <li>minBackoffMillis - first reconnect delay, defaults to 100</li>
+ * <li>maxBackoffMillis - max reconnect delay, defaults to 30000</li>
+ * <li>level - handler level, defaults to ALL</li>
+ * <li>formatter - defaults to {@link StandardSplunkFormatter}</li>
+ * </ul>
+ */
+public class TcpSplunkHandler extends SenderSplunkHandler {
+
+    private static final String PROPERTY_HOST = ".host";
+    private static final String PROPERTY_PORT = ".port";
+    private static final String PROPERTY_CAPACITY = ".capacity";
+    private static final String PROPERTY_MAX_BATCH = ".maxBatch";
+    private static final String PROPERTY_MIN_BACKOFF = ".minBackoffMillis";
+    private static final String PROPERTY_MAX_BACKOFF = ".maxBackoffMillis";
+    private static final String DEFAULT_HOST = "localhost";
+
+    /**
+     * Create a handler configured by the LogManager.
+     *
+     * @throws IOException if the port is not configured
+     */
+    public TcpSplunkHandler() throws IOException {
+        this(configuredSender());
+    }
+
+    /**
+     *
+     * @param sender
+     */
+    public TcpSplunkHandler(SocketSplunkSender sender) {
+        super(sender);
+    }
+
+    private static SocketSplunkSender configuredSender() throws IOException {
+        final String prefix = TcpSplunkHandler.class.getName();
+        final String host = SplunkHandlers.property(prefix + PROPERTY_HOST);
+        final int port = SplunkHandlers.intProperty(prefix + PROPERTY_PORT, -1);
+        if (port < 0) {
+            throw new IOException("Splunk handler port property '"
+                    + prefix + PROPERTY_PORT + "' was not set");
+        }
+        return new SocketSplunkSender(
+                new InetSocketAddress((host == null) ? DEFAULT_HOST : host,
+                        port),
+                SplunkHandlers.intProperty(prefix + PROPERTY_CAPACITY,
+                        SocketSplunkSender.DEFAULT_CAPACITY),
+                SplunkHandlers.intProperty(prefix + PROPERTY_MAX_BATCH,
+                        SocketSplunkSender.DEFAULT_MAX_BATCH),
+                SplunkHandlers.longProperty(prefix + PROPERTY_MIN_BACKOFF,
+                        SocketSplunkSender.DEFAULT_MIN_BACKOFF_MILLIS),
+                SplunkHandlers.longProperty(prefix + PROPERTY_MAX_BACKOFF,
+                        SocketSplunkSender.DEFAULT_MAX_BACKOFF_MILLIS));
+    }
+}
@@ -0,0 +1,221 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.geoint.logging.splunk.BufferPool;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.json.Json;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.KEY_CAUSE;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.KEY_STACK;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.KEY_STACK_CLASS;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.KEY_STACK_LINE;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.KEY_STACK_METHOD;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.KEY_STACK_OMITTED;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.KEY_SUPPRESSED;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+
+/**
+ * Renders a Throwable, with its causes and suppressed exceptions, as event
+ * fields.
+ *
+ * The frames of the thrown exception are written to the [prefix_]stack field
+ * as a JSON array of frames, readable with
+ * {@link SplunkLogUtil#parseStack(CharSequence)}. Its suppressed exceptions
+ * and cause are written to the [prefix_]suppressed and [prefix_]cause fields
+ * as nested JSON objects:
+ * <pre>
+ * {"class":"...","message":"...","stack":[{frame},...],"more":12,
+ *  "suppressed":[{...}],"cause":{...}}
+ * </pre>
+ *
+ * As with {@link Throwable#printStackTrace()}, frames a cause or suppressed
+ * exception has in common with its enclosing trace are not written, only
+ * counted ("more"). Each trace is limited to
+ * {@value #DEFAULT_MAX_FRAMES} frames (the JVM property
+ * {@value #PROPERTY_MAX_FRAMES}), counting the frames not written
+ * ("omitted"), and causes and suppressed exceptions nested deeper than
+ * {@value #DEFAULT_MAX_DEPTH} (the JVM property {@value #PROPERTY_MAX_DEPTH})
+ * are not written. An exception already written in the chain is written as
+ * its class, marked "circular".
+ */
+final class ThrowableRenderer {
+
+    static final String PROPERTY_MAX_FRAMES
+            = "org.geoint.logging.splunk.stack.maxFrames";
+    static final String PROPERTY_MAX_DEPTH
+            = "org.geoint.logging.splunk.stack.maxDepth";
+    private static final int DEFAULT_MAX_FRAMES = 1024;
+    private static final int DEFAULT_MAX_DEPTH = 8;
+    private static final int MAX_FRAMES
+            = nonNegative(PROPERTY_MAX_FRAMES, DEFAULT_MAX_FRAMES);
+    private static final int MAX_DEPTH
+            = nonNegative(PROPERTY_MAX_DEPTH, DEFAULT_MAX_DEPTH);
+    private static final String KEY_MORE = "more";
+    private static final String KEY_OMITTED = "omitted";
+    private static final String KEY_CIRCULAR = "circular";
+    private static final String KEY_EXCEPTION_MESSAGE = "message";
+
+    private ThrowableRenderer() {
+    }
+
+    /**
+     * Adds the stack, cause and suppressed fields of the exception.
+     *
+     * @param ex
+     * @param fields
+     */
+    static void collect(Throwable ex, Map<String, String> fields) {
+        final StackTraceElement[] stack = ex.getStackTrace();
+        final Throwable[] suppressed = ex.getSuppressed();
+        final Throwable cause = ex.getCause();
+        final Utf8Buffer buffer = BufferPool.UTF8.acquire();
+        try {
+            if (stack.length > 0) {
+                frames(stack, stack.length, buffer);
+                fields.put(prefixedFieldName(KEY_STACK), buffer.toString());
+            } else {
+                //exception class type is sometimes all we got
+                fields.put(prefixedFieldName(KEY_STACK), "");
+            }
+            if (stack.length > MAX_FRAMES) {
+                fields.put(prefixedFieldName(KEY_STACK_OMITTED),
+                        String.valueOf(stack.length - MAX_FRAMES));
+            }
+            if (MAX_DEPTH == 0 || (cause == null && suppressed.length == 0)) {
+                return;
+            }
+
+            final Set<Throwable> seen
+                    = Collections.newSetFromMap(new IdentityHashMap<>());
+            seen.add(ex);
+            if (suppressed.length > 0) {
+                buffer.reset();
+                buffer.append('[');
+                for (int i = 0; i < suppressed.length; i++) {
+                    if (i > 0) {
+                        buffer.append(',');
+                    }
+                    enclosed(suppressed[i], stack, 1, seen, buffer);
+                }
+                buffer.append(']');
+                fields.put(prefixedFieldName(KEY_SUPPRESSED),
+                        buffer.toString());
+            }
+            if (cause != null) {
+                buffer.reset();
+                enclosed(cause, stack, 1, seen, buffer);
+                fields.put(prefixedFieldName(KEY_CAUSE), buffer.toString());
+            }
+        } finally {
+            BufferPool.UTF8.release(buffer);
+        }
+    }
+
+    /**
+     * Writes an exception enclosed by (the cause or suppressed by) another.
+     *
+     * @param ex
+     * @param enclosing trace of the enclosing exception
+     * @param depth of the exception in the chain
+     * @param seen exceptions already written
+     * @param out
+     */
+    private static void enclosed(Throwable ex, StackTraceElement[] enclosing,
+            int depth, Set<Throwable> seen, Utf8Buffer out) {
+        out.append('{');
+        string(KEY_STACK_CLASS, ex.getClass().getName(), out);
+        if (!seen.add(ex)) {
+            out.append(",\"").append(KEY_CIRCULAR).append("\":true}");
+            return;
+        }
+        final String message = ex.getMessage();
+        if (message != null && !message.isEmpty()) {
+            out.append(',');
+            string(KEY_EXCEPTION_MESSAGE, message, out);
+        }
+
+        final StackTraceElement[] stack = ex.getStackTrace();
+        //frames in common with the enclosing trace
+        int m = stack.length - 1;
+        int n = enclosing.length - 1;
+        while (m >= 0 && n >= 0 && stack[m].equals(enclosing[n])) {
+            m--;
+            n--;
+        }
+        final int unique = m + 1;
+        if (unique > 0) {
+            out.append(",\"").append(KEY_STACK).append("\":");
+            frames(stack, unique, out);
+        }
+        number(KEY_MORE, stack.length - unique, out);
+        number(KEY_OMITTED, unique - MAX_FRAMES, out);
+
+        if (depth < MAX_DEPTH) {
+            final Throwable[] suppressed = ex.getSuppressed();
+            if (suppressed.length > 0) {
+                out.append(",\"").append(KEY_SUPPRESSED).append("\":[");
+                for (int i = 0; i < suppressed.length; i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    enclosed(suppressed[i], stack, depth + 1, seen, out);
+                }
+                out.append(']');
+            }
+            final Throwable cause = ex.getCause();
+            if (cause != null) {
+                out.append(",\"").append(KEY_CAUSE).append("\":");
+                enclosed(cause, stack, depth + 1, seen, out);
+            }
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes the top frames as a JSON array, as written by the
+     * {@link SplunkLogUtil#STACK_FRAME_CONVERTER}.
+     *
+     * @param stack
+     * @param count number of top frames to write, limited to the max frames
+     * @param out
+     */
+    private static void frames(StackTraceElement[] stack, int count,
+            Utf8Buffer out) {
+        final int limit = Math.min(count, MAX_FRAMES);
+        out.append('[');
+        for (int i = 0; i < limit; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append('{');
+            string(KEY_STACK_CLASS, stack[i].getClassName(), out);
+            out.append(',');
+            string(KEY_STACK_METHOD, stack[i].getMethodName(), out);
+            out.append(',');
+            string(KEY_STACK_LINE, String.valueOf(stack[i].getLineNumber()),
+                    out);
+            out.append('}');
+        }
+        out.append(']');
+    }
+
+    private static void string(String name, String value, Utf8Buffer out) {
+        out.append('"').append(name).append("\":");
+        Json.quote(value, out);
+    }
+
+    //only written if positive
+    private static void number(String name, int value, Utf8Buffer out) {
+        if (value > 0) {
+            out.append(",\"").append(name).append("\":")
+                    .append(String.valueOf(value));
+        }
+    }
+
+    private static int nonNegative(String property, int defaultValue) {
+        final int value = Integer.getInteger(property, defaultValue);
+        return (value < 0) ? defaultValue : value;
+    }
+}
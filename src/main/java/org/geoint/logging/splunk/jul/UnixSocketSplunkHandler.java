@@ -0,0 +1,174 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.io.SocketSplunkSender;
+import org.geoint.logging.splunk.io.UnixDomainSockets;
+
+/**
+ * Handler which streams events over a unix domain socket to a local
+ * forwarder, falling back to a file when the socket is unavailable.
+ *
+ * Events are batched and written by a {@link SocketSplunkSender}, which
+ * buffers a bounded number of events. Events are written to the fallback
+ * file while the socket is not connected (including when unix domain sockets
+ * are not supported by the runtime, which requires Java 16+) or when the
+ * socket buffer is full. Without a fallback file events are buffered until
+ * the socket connects, and dropped when the buffer is full.
+ *
+ * Configured using the following LogManager properties (each prefixed with
+ * the handler class name):
+ * <ul>
+ * <li>path - path of the forwarder unix domain socket</li>
+ * <li>file - path of the fallback file, events are appended</li>
+ * <li>capacity - max events buffered for the socket, defaults to 65536</li>
+ * <li>maxBatch - max events per write, defaults to 256</li>
+ * <li>level - handler level, defaults to ALL</li>
+ * <li>formatter - defaults to {@link StandardSplunkFormatter}</li>
+ * </ul>
+ * At least one of path and file must be configured. The fallback file is
+ * written with a {@link BatchingSplunkHandler}, configured by its own
+ * properties.
+ */
+public class UnixSocketSplunkHandler extends Handler {
+
+    private static final String PROPERTY_PATH = ".path";
+    private static final String PROPERTY_CAPACITY = ".capacity";
+    private static final String PROPERTY_MAX_BATCH = ".maxBatch";
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+
+    private final SocketSplunkSender sender;
+    private final BatchingSplunkHandler fallback;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Create a handler configured by the LogManager.
+     *
+     * @throws IOException if neither a socket or file are configured
+     */
+    public UnixSocketSplunkHandler() throws IOException {
+        this(configuredSender(), configuredFallback());
+    }
+
+    /**
+     *
+     * @param sender unix domain socket sender, or null if not available
+     * @param fallback handler used while the socket is unavailable, or null
+     */
+    public UnixSocketSplunkHandler(SocketSplunkSender sender,
+            BatchingSplunkHandler fallback) {
+        if (sender == null && fallback == null) {
+            throw new IllegalArgumentException("A unix domain socket sender "
+                    + "or fallback handler is required");
+        }
+        this.sender = sender;
+        this.fallback = fallback;
+        SplunkHandlers.configure(this, getClass().getName());
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+
+        final ByteBuffer event = SplunkHandlers.encode(this, record);
+        if (event == null) {
+            return;
+        }
+
+        if (sender != null && (sender.isConnected() || fallback == null)
+                && sender.send(event)) {
+            return;
+        }
+        if (fallback == null || !fallback.enqueue(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Waits (for a limited time) for published events to be written.
+     */
+    @Override
+    public void flush() {
+        if (sender != null && sender.isConnected()
+                && !sender.flush(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            reportError("Log events were not delivered within "
+                    + FLUSH_TIMEOUT_SECONDS + " seconds", null,
+                    ErrorManager.FLUSH_FAILURE);
+        }
+        if (fallback != null) {
+            fallback.flush();
+        }
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        flush();
+        if (sender != null) {
+            sender.close();
+        }
+        if (fallback != null) {
+            fallback.close();
+        }
+    }
+
+    /**
+     *
+     * @return true if events are currently being sent to the socket
+     */
+    public boolean isSocketConnected() {
+        return sender != null && sender.isConnected();
+    }
+
+    /**
+     *
+     * @return number of events dropped because the socket buffer was full
+     * and no fallback is configured
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private static SocketSplunkSender configuredSender() throws IOException {
+        final String prefix = UnixSocketSplunkHandler.class.getName();
+        final String path = SplunkHandlers.property(prefix + PROPERTY_PATH);
+        if (path == null || !UnixDomainSockets.isSupported()) {
+            return null;
+        }
+        return new SocketSplunkSender(
+                UnixDomainSockets.address(Paths.get(path)),
+                SplunkHandlers.intProperty(prefix + PROPERTY_CAPACITY,
+                        SocketSplunkSender.DEFAULT_CAPACITY),
+                SplunkHandlers.intProperty(prefix + PROPERTY_MAX_BATCH,
+                        SocketSplunkSender.DEFAULT_MAX_BATCH),
+                SocketSplunkSender.DEFAULT_MIN_BACKOFF_MILLIS,
+                SocketSplunkSender.DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    private static BatchingSplunkHandler configuredFallback()
+            throws IOException {
+        final String prefix = UnixSocketSplunkHandler.class.getName();
+        if (SplunkHandlers.property(prefix + SplunkHandlers.PROPERTY_FILE)
+                == null) {
+            if (!UnixDomainSockets.isSupported()) {
+                throw new IOException("Unix domain sockets require Java 16+ "
+                        + "and fallback file property '" + prefix
+                        + SplunkHandlers.PROPERTY_FILE + "' was not set");
+            }
+            if (SplunkHandlers.property(prefix + PROPERTY_PATH) == null) {
+                throw new IOException("Splunk handler path property '"
+                        + prefix + PROPERTY_PATH + "' was not set");
+            }
+            return null;
+        }
+        return new BatchingSplunkHandler(
+                SplunkHandlers.openConfiguredFile(prefix));
+    }
+}
@@ -0,0 +1,69 @@
+package org.geoint.logging.splunk;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class BufferPoolTest {
+
+    private static BufferPool<StringBuilder> newPool(int maxShared) {
+        return new BufferPool<>(StringBuilder::new, (sb) -> sb.setLength(0),
+                StringBuilder::capacity, 1024, maxShared);
+    }
+
+    @Test
+    public void testThreadLocalReuse() {
+        final BufferPool<StringBuilder> pool = newPool(4);
+        final StringBuilder first = pool.acquire();
+        first.append("content");
+        pool.release(first);
+
+        final StringBuilder second = pool.acquire();
+        assertSame(first, second);
+        assertEquals(0, second.length());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.getLocalHits());
+    }
+
+    /**
+     * Nested acquisitions fall back to the shared pool.
+     */
+    @Test
+    public void testSharedFallback() {
+        final BufferPool<StringBuilder> pool = newPool(4);
+        final StringBuilder outer = pool.acquire();
+        final StringBuilder inner = pool.acquire();
+        pool.release(inner); //thread-local slot
+        pool.release(outer); //shared
+
+        assertNotSame(pool.acquire(), pool.acquire());
+        assertEquals(1, pool.getLocalHits());
+        assertEquals(1, pool.getSharedHits());
+        assertEquals(2, pool.getMisses());
+    }
+
+    @Test
+    public void testOversizedBufferDiscarded() {
+        final BufferPool<StringBuilder> pool = newPool(4);
+        final StringBuilder huge = pool.acquire();
+        huge.append(new char[4096]);
+        pool.release(huge);
+
+        assertNotSame(huge, pool.acquire());
+        assertEquals(1, pool.getDiscards());
+    }
+
+    @Test
+    public void testSharedPoolBounded() {
+        final BufferPool<StringBuilder> pool = newPool(1);
+        final StringBuilder a = pool.acquire();
+        final StringBuilder b = pool.acquire();
+        final StringBuilder c = pool.acquire();
+        pool.release(a); //thread-local slot
+        pool.release(b); //shared
+        pool.release(c); //shared pool is full
+        assertEquals(1, pool.getDiscards());
+    }
+}
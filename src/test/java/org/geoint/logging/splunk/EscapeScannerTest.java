@@ -0,0 +1,141 @@
+package org.geoint.logging.splunk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import org.geoint.logging.splunk.json.Json;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class EscapeScannerTest {
+
+    //characters which are escaped, or are next to one which may be
+    private static final char[] CHARS = {'a', 'Z', '"', '\\', '/', '<', '\n',
+        '\t', '\u0001', '\u001f', ' ', '\u007f', '\u0080', 'é', '€',
+        '\ud83d', '\ude00', '\''};
+
+    /**
+     * Escaping scanned a word at a time matches escaping char by char, for
+     * escapes at every position of a word.
+     */
+    @Test
+    public void testAppendJson() {
+        final Random random = new Random(42);
+        final Utf8Buffer buffer = new Utf8Buffer(8);
+        for (int n = 0; n < 5000; n++) {
+            final StringBuilder value = new StringBuilder();
+            final int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                //mostly clean
+                value.append(random.nextInt(4) == 0
+                        ? CHARS[random.nextInt(CHARS.length)]
+                        : (char) ('a' + random.nextInt(26)));
+            }
+            buffer.reset();
+            buffer.append("prefix");
+            Json.quote(value, buffer);
+            //unpaired surrogates are encoded as '?'
+            final String expected = new String(("prefix" + reference(value))
+                    .getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            assertEquals(value.toString(), expected, buffer.toString());
+
+            //and the char path, written to a StringBuilder
+            final Json json = Json.newObject().element("k", value.toString());
+            assertEquals("{\"k\":" + reference(value) + "}", json.toString());
+        }
+        buffer.reset();
+        Json.quote(null, buffer);
+        assertEquals("\"\"", buffer.toString());
+    }
+
+    @Test
+    public void testReplace() {
+        final String value = "0123456\"89\"bcdef\"\"ijklmnopqrstu\"é\"";
+        for (int offset = 0; offset < 8; offset++) {
+            final Utf8Buffer buffer = new Utf8Buffer();
+            buffer.append("\"\"\"\"\"\"\"\"".substring(offset));
+            final int start = buffer.length();
+            buffer.append(value);
+            buffer.replace(start, buffer.length(), '"', '\'');
+            assertEquals("\"\"\"\"\"\"\"\"".substring(offset)
+                    + value.replace('"', '\''), buffer.toString());
+        }
+    }
+
+    @Test
+    public void testIndexOf() {
+        final byte[] bytes = "abcdefgh\"jklmnop\\rstuvwx</z\u0001"
+                .getBytes(StandardCharsets.UTF_8);
+        final Utf8Buffer buffer = new Utf8Buffer();
+        buffer.write(bytes);
+        for (int from = 0; from < bytes.length; from++) {
+            assertEquals(scalarIndexOf(bytes, from, (byte) '"'),
+                    EscapeScanner.indexOf(buffer.words(), from, bytes.length,
+                            (byte) '"'));
+        }
+        assertEquals(8, EscapeScanner.indexOfJson(buffer.words(), 0,
+                bytes.length));
+        assertEquals(16, EscapeScanner.indexOfJson(buffer.words(), 9,
+                bytes.length));
+        assertEquals(24, EscapeScanner.indexOfJson(buffer.words(), 17,
+                bytes.length));
+        assertEquals(27, EscapeScanner.indexOfJson(buffer.words(), 25,
+                bytes.length));
+        assertEquals(-1, EscapeScanner.indexOfJson(buffer.words(), 0, 8));
+    }
+
+    private static int scalarIndexOf(byte[] bytes, int from, byte target) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Char by char escaping, as written by Json before word scanning.
+     */
+    static String reference(CharSequence string) {
+        final StringBuilder out = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+            switch (c) {
+                case '\\':
+                case '"':
+                    out.append('\\').append(c);
+                    break;
+                case '/':
+                    if (i > 0 && string.charAt(i - 1) == '<') {
+                        out.append('\\');
+                    }
+                    out.append(c);
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                default:
+                    if (c < ' ') {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+}
@@ -0,0 +1,103 @@
+package org.geoint.logging.splunk;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import org.geoint.logging.splunk.jul.SplunkLogRecord;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SplunkContextTest {
+
+    @Test
+    public void testPersistent() {
+        final SplunkContext base = SplunkContext.empty().with("a", "1");
+        final SplunkContext child = base.with("b", "2").with("a", "3");
+
+        assertEquals("1", base.get("a"));
+        assertNull(base.get("b"));
+        assertEquals("3", child.get("a"));
+        assertEquals("{a=3, b=2}", child.getFields().toString());
+        assertEquals("{b=2}", child.without("a").getFields().toString());
+        assertNull(child.without("a").get("a"));
+        assertSame(child, child.without("missing"));
+        assertTrue(SplunkContext.empty().isEmpty());
+
+        //long chains are flattened
+        SplunkContext deep = base;
+        for (int i = 0; i < 100; i++) {
+            deep = deep.with("k" + (i % 10), String.valueOf(i));
+        }
+        assertEquals(11, deep.getFields().size());
+        assertEquals("99", deep.get("k9"));
+        assertEquals("1", deep.get("a"));
+    }
+
+    @Test
+    public void testScope() throws Exception {
+        assertTrue(SplunkContext.current().isEmpty());
+        try (SplunkContext.Scope s = SplunkContext.put("requestId", "r1")) {
+            assertEquals("r1", SplunkContext.current().get("requestId"));
+            try (SplunkContext.Scope s2 = SplunkContext.put("user", "u")) {
+                assertEquals(2, SplunkContext.current().getFields().size());
+            }
+            assertNull(SplunkContext.current().get("user"));
+
+            //executor tasks and threads
+            final ExecutorService pool = Executors.newSingleThreadExecutor();
+            try {
+                final Executor executor = SplunkContext.propagating(pool);
+                final AtomicReference<String> seen = new AtomicReference<>();
+                executor.execute(() -> seen.set(
+                        SplunkContext.current().get("requestId")));
+                final Future<String> called = pool.submit(SplunkContext
+                        .current().wrap(() -> SplunkContext.current()
+                                .get("requestId")));
+                assertEquals("r1", called.get(5, TimeUnit.SECONDS));
+                assertEquals("r1", seen.get());
+                assertNull(pool.submit(() -> SplunkContext.current()
+                        .get("requestId")).get(5, TimeUnit.SECONDS));
+            } finally {
+                pool.shutdown();
+            }
+
+            final AtomicReference<String> propagated = new AtomicReference<>();
+            final Thread t = new Thread(SplunkContext.current().wrap(
+                    () -> propagated.set(SplunkContext.current()
+                            .get("requestId"))));
+            t.start();
+            t.join();
+            assertEquals("r1", propagated.get());
+        }
+        assertTrue(SplunkContext.current().isEmpty());
+    }
+
+    /**
+     * Context fields are included in the formatted (and hashed) event, and
+     * replaced by record fields.
+     */
+    @Test
+    public void testEventFields() {
+        final SplunkLogRecord record;
+        try (SplunkContext.Scope s = SplunkContext.current()
+                .with("requestId", "r1").with("tenant", "t \"1\"")
+                .with("zone", "z").attach()) {
+            record = new SplunkLogRecord(Level.INFO, "in context");
+        }
+        record.field("zone", "record");
+
+        assertEquals("r1", record.getFieldValue("requestId"));
+        assertEquals("record", record.getFieldValue("zone"));
+        assertEquals(new NativeSplunkFormatter().format(SplunkLogUtil.toEvent(
+                record, record.getFields())), SplunkLogUtil.format(record));
+        assertTrue(SplunkLogUtil.format(record).contains("tenant=\"t '1'\""));
+    }
+}
@@ -0,0 +1,73 @@
+package org.geoint.logging.splunk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.json.Json;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class Utf8BufferTest {
+
+    private static final String[] SAMPLES = {
+        "",
+        "plain ascii",
+        "café über",
+        "日本語",
+        "emoji 😀 pair",
+        "unpaired \ud83d high and \ude00 low",
+        "trailing high \ud83d"
+    };
+
+    /**
+     * Encoded bytes must be identical to String encoding, hashes depend on it.
+     */
+    @Test
+    public void testEncodingMatchesString() {
+        for (String sample : SAMPLES) {
+            final Utf8Buffer buffer = new Utf8Buffer(1);
+            buffer.append(sample);
+            assertArrayEquals(sample,
+                    sample.getBytes(StandardCharsets.UTF_8),
+                    buffer.toByteArray());
+        }
+    }
+
+    @Test
+    public void testAppendChar() {
+        final Utf8Buffer buffer = new Utf8Buffer();
+        for (char c : SAMPLES[2].toCharArray()) {
+            buffer.append(c);
+        }
+        assertEquals(SAMPLES[2], buffer.toString());
+    }
+
+    @Test
+    public void testJsonQuoteMatchesJson() {
+        final String value = "a \"quoted\" </tag> \\ \n\t\u0001 é";
+        final Utf8Buffer buffer = new Utf8Buffer();
+        Json.quote(value, buffer);
+
+        final String json = Json.newObject().element("k", value).toString();
+        assertEquals(json, "{\"k\":" + buffer.toString() + "}");
+    }
+
+    @Test
+    public void testNativeFormatMatchesString() {
+        final LogRecord lr = new LogRecord(Level.INFO, "café \"quoted\"");
+        lr.setThrown(new RuntimeException());
+        final SplunkEvent event = SplunkLogUtil.toEvent(lr);
+        final NativeSplunkFormatter formatter = new NativeSplunkFormatter();
+
+        final Utf8Buffer buffer = new Utf8Buffer();
+        formatter.format(event, buffer);
+
+        assertArrayEquals(
+                formatter.format(event).getBytes(StandardCharsets.UTF_8),
+                buffer.toByteArray());
+    }
+}
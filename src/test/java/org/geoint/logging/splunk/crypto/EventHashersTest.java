@@ -0,0 +1,103 @@
+package org.geoint.logging.splunk.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class EventHashersTest {
+
+    @After
+    public void resetConfiguration() throws Exception {
+        LogManager.getLogManager().readConfiguration();
+        SplunkLogUtil.setEventHasher(null);
+    }
+
+    @Test
+    public void testCrc32c() {
+        assertEquals("E3069283", hex(EventHashers.CRC32C, "123456789"));
+        assertEquals("00000000", hex(EventHashers.CRC32C, ""));
+
+        //table (8 bytes at a time) and single byte updates agree
+        final byte[] data = new byte[1021];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        assertEquals(hex(EventHashers.CRC32C, data, false),
+                hex(EventHashers.CRC32C, data, true));
+    }
+
+    @Test
+    public void testFnv1a64() {
+        assertEquals("CBF29CE484222325", hex(EventHashers.FNV1A_64, ""));
+        assertEquals("AF63DC4C8601EC8C", hex(EventHashers.FNV1A_64, "a"));
+        assertEquals("85944171F73967E8", hex(EventHashers.FNV1A_64, "foobar"));
+    }
+
+    /**
+     * The hash algorithm is selected by the nearest configured logger and
+     * recorded on the event, unless it is the default.
+     */
+    @Test
+    public void testLoggerHasher() throws Exception {
+        LogManager.getLogManager().readConfiguration(new ByteArrayInputStream(
+                ("com.example" + SplunkLogUtil.PROPERTY_LOGGER_HASH + "=CRC32C\n"
+                + "com.example.audit" + SplunkLogUtil.PROPERTY_LOGGER_HASH
+                + "=SHA-512/256\n"
+                + "com.example.bad" + SplunkLogUtil.PROPERTY_LOGGER_HASH
+                + "=NOPE\n").getBytes(StandardCharsets.UTF_8)));
+        SplunkLogUtil.setEventHasher(null);
+
+        assertHashedWith(null, "com.other");
+        assertHashedWith(EventHashers.CRC32C, "com.example.access");
+        //SHA-512/256 is not a required digest before Java 9
+        assertHashedWith(EventHashers.isRegistered(EventHashers.SHA_512_256)
+                ? EventHashers.SHA_512_256 : EventHashers.CRC32C,
+                "com.example.audit.Login");
+        assertHashedWith(EventHashers.CRC32C, "com.example.bad");
+    }
+
+    private static void assertHashedWith(String algorithm, String logger) {
+        final LogRecord lr = new LogRecord(Level.INFO, "message");
+        lr.setLoggerName(logger);
+        final SplunkEvent event = SplunkLogUtil.toEvent(lr);
+        assertEquals(algorithm, event.getFieldValue(SplunkLogUtil.FIELD_PREFIX
+                + SplunkLogUtil.KEY_HASH_ALGORITHM));
+        assertEquals((algorithm == null) ? EventHashers.SHA_256 : algorithm,
+                event.getHash().getAlgorithmName());
+
+        final Utf8Buffer out = new Utf8Buffer();
+        assertEquals(event.getHash().asHex(),
+                SplunkLogUtil.format(lr, out).asHex());
+        assertEquals(new NativeSplunkFormatter().format(event), out.toString());
+    }
+
+    private static String hex(String algorithm, String value) {
+        return hex(algorithm, value.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    private static String hex(String algorithm, byte[] data,
+            boolean byteAtATime) {
+        final EventDigester digester = EventHashers.get(algorithm)
+                .newDigester();
+        if (byteAtATime) {
+            for (byte b : data) {
+                digester.update(b);
+            }
+        } else {
+            digester.update(data, 0, data.length);
+        }
+        return new ByteArrayEventHash(algorithm, digester.digest()).asHex();
+    }
+}
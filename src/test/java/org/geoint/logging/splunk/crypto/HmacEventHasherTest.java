@@ -0,0 +1,106 @@
+package org.geoint.logging.splunk.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class HmacEventHasherTest {
+
+    private static final byte[] KEY
+            = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    @After
+    public void resetHasher() {
+        SplunkLogUtil.setEventHasher(null);
+    }
+
+    /**
+     * Digest matches the JCE HMAC of the canonical form, including for keys
+     * longer than the digest block size.
+     */
+    @Test
+    public void testMatchesMac() throws Exception {
+        final TreeMap<String, String> fields = new TreeMap<>();
+        fields.put("b", "two");
+        fields.put("a", "one é");
+
+        final byte[] longKey = new byte[200];
+        Arrays.fill(longKey, (byte) 7);
+        for (byte[] key : new byte[][]{KEY, longKey}) {
+            final HmacEventHasher hasher
+                    = new HmacEventHasher("SHA-256", "k1", key);
+            final EventDigester digester = hasher.newDigester();
+            assertEquals("HmacSHA256", digester.getAlgorithm());
+            assertArrayEquals(mac(key, fields),
+                    StreamingEventHasher.digest(fields, digester));
+            //digester is reset for reuse
+            assertArrayEquals(mac(key, fields),
+                    StreamingEventHasher.digest(fields, digester));
+        }
+    }
+
+    @Test
+    public void testRotate() throws Exception {
+        final TreeMap<String, String> fields = new TreeMap<>();
+        fields.put("a", "one");
+
+        final HmacEventHasher hasher = new HmacEventHasher("SHA-256", "k1", KEY);
+        final EventDigester before = hasher.newDigester();
+        final byte[] key2 = "another key".getBytes(StandardCharsets.UTF_8);
+        hasher.rotate("k2", key2);
+
+        assertEquals("k1", before.getKeyId());
+        assertArrayEquals(mac(KEY, fields),
+                StreamingEventHasher.digest(fields, before));
+        assertEquals("k2", hasher.getKeyId());
+        assertArrayEquals(mac(key2, fields),
+                StreamingEventHasher.digest(fields, hasher.newDigester()));
+    }
+
+    /**
+     * Records formatted in a single pass are hashed (and record the key id)
+     * the same as the converted event.
+     */
+    @Test
+    public void testLogRecordHash() throws Exception {
+        SplunkLogUtil.setEventHasher(
+                new HmacEventHasher("SHA-256", "k1", KEY));
+        final LogRecord lr = new LogRecord(Level.INFO, "keyed");
+
+        final SplunkEvent event = SplunkLogUtil.toEvent(lr);
+        assertEquals("k1", event.getFieldValue(SplunkLogUtil.FIELD_PREFIX
+                + SplunkLogUtil.KEY_HASH_KEY_ID));
+        assertEquals("HmacSHA256", event.getHash().getAlgorithmName());
+
+        final Utf8Buffer out = new Utf8Buffer();
+        final EventHash hash = SplunkLogUtil.format(lr, out);
+        assertEquals(event.getHash().asHex(), hash.asHex());
+        assertEquals(new NativeSplunkFormatter().format(event), out.toString());
+    }
+
+    private static byte[] mac(byte[] key, TreeMap<String, String> fields)
+            throws Exception {
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        for (Entry<String, String> e : fields.entrySet()) {
+            mac.update((e.getKey() + MessageDigestRecordHasher.FIELD_KV_GLUE
+                    + e.getValue()).getBytes(StandardCharsets.UTF_8));
+        }
+        return mac.doFinal();
+    }
+}
@@ -0,0 +1,153 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class FanOutDispatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A stalled destination overflows its own queue without holding up the
+     * others.
+     */
+    @Test
+    public void testStalledDestinationIsolated() throws Exception {
+        final Path file = folder.newFile("events.log").toPath();
+        final StalledChannel stalled = new StalledChannel();
+        final Map<String, EventSender> destinations = new LinkedHashMap<>();
+        destinations.put("file", new ChannelEventSender(FileChannel.open(file,
+                StandardOpenOption.WRITE)));
+        destinations.put("stalled", new ChannelEventSender(stalled, 4, 2,
+                OverflowPolicy.DROP_NEWEST));
+
+        final StringBuilder expected = new StringBuilder();
+        final NativeSplunkFormatter formatter = new NativeSplunkFormatter();
+        try (FanOutDispatcher dispatcher = new FanOutDispatcher(destinations)) {
+            for (int i = 0; i < 100; i++) {
+                final SplunkEvent event = SplunkLogUtil.toEvent(
+                        new LogRecord(Level.INFO, "event " + i));
+                expected.append(formatter.format(event));
+                assertTrue(dispatcher.dispatch(event) >= 1);
+            }
+            final EventSender fileSender = dispatcher.getDestinations()
+                    .get("file");
+            assertTrue(fileSender.flush(5, TimeUnit.SECONDS));
+            assertEquals(100, fileSender.getSent());
+            assertEquals(0, fileSender.getDropped());
+            assertTrue(fileSender.isAvailable());
+            assertEquals(expected.toString(), new String(
+                    Files.readAllBytes(file), StandardCharsets.UTF_8));
+
+            final EventSender stalledSender = dispatcher.getDestinations()
+                    .get("stalled");
+            assertEquals(4, stalledSender.getPending());
+            assertEquals(96, stalledSender.getDropped());
+            assertFalse(stalledSender.flush(10, TimeUnit.MILLISECONDS));
+            stalled.release.countDown();
+        }
+    }
+
+    /**
+     * Drop oldest keeps the most recent events.
+     */
+    @Test
+    public void testDropOldest() throws Exception {
+        final StalledChannel stalled = new StalledChannel();
+        try (ChannelEventSender sender = new ChannelEventSender(stalled, 4, 1,
+                OverflowPolicy.DROP_OLDEST)) {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(sender.send(event(i + ",")));
+                if (i == 0) {
+                    //wait for the writer to stall on the first event
+                    stalled.writing.await(5, TimeUnit.SECONDS);
+                }
+            }
+            assertEquals(6, sender.getDropped());
+            stalled.release.countDown();
+            assertTrue(sender.flush(5, TimeUnit.SECONDS));
+            assertEquals("0,7,8,9,", new String(stalled.written.toByteArray(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    private static ByteBuffer event(String event) {
+        return ByteBuffer.wrap(event.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Channel which blocks writes until released.
+     */
+    private static class StalledChannel implements GatheringByteChannel {
+
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length)
+                throws IOException {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                total += write(srcs[i]);
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            final int n = src.remaining();
+            final byte[] b = new byte[n];
+            src.get(b);
+            synchronized (written) {
+                written.write(b, 0, n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            release.countDown();
+        }
+    }
+}
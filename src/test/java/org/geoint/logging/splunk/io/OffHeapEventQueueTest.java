@@ -0,0 +1,153 @@
+package org.geoint.logging.splunk.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class OffHeapEventQueueTest {
+
+    @Test
+    public void testEventRoundTrip() {
+        final LogRecord lr = new LogRecord(Level.SEVERE, "message é");
+        lr.setThrown(new RuntimeException("boom"));
+        final SplunkEvent event = SplunkLogUtil.toEvent(lr);
+
+        final OffHeapEventQueue queue = new OffHeapEventQueue(64, 256);
+        assertTrue(queue.offer(event));
+
+        final List<SplunkEvent> read = new ArrayList<>();
+        assertEquals(1, queue.drainEvents(read::add, 10));
+        assertTrue(queue.isEmpty());
+
+        final SplunkEvent decoded = read.get(0);
+        assertEquals(event.getEventTime(), decoded.getEventTime());
+        assertEquals(event.getHash().asHex(), decoded.getHash().asHex());
+        assertEquals(event.getFields(), decoded.getFields());
+        final NativeSplunkFormatter formatter = new NativeSplunkFormatter();
+        assertEquals(formatter.format(event), formatter.format(decoded));
+    }
+
+    /**
+     * Records of varying size wrap around the ring in order.
+     */
+    @Test
+    public void testWrapAround() {
+        final OffHeapEventQueue queue = new OffHeapEventQueue(16, 8);
+        final List<String> read = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            final byte[] record = record(i, i % 20);
+            assertTrue(queue.offer(record, 0, record.length));
+            queue.drain((b) -> read.add(asString(b)), 1);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(asString(ByteBuffer.wrap(record(i, i % 20))),
+                    read.get(i));
+        }
+    }
+
+    @Test
+    public void testFull() {
+        final OffHeapEventQueue queue = new OffHeapEventQueue(16, 4);
+        final byte[] record = new byte[12]; //one slot with the header
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(record, 0, record.length));
+        }
+        assertFalse(queue.offer(record, 0, record.length));
+        queue.drain((b) -> {
+        }, 1);
+        assertTrue(queue.offer(record, 0, record.length));
+    }
+
+    /**
+     * A record which doesn't fit before the end of the ring, and which with
+     * the padding is larger than the ring, wraps once the ring drains.
+     */
+    @Test
+    public void testWrapLargeRecord() {
+        final OffHeapEventQueue queue = new OffHeapEventQueue(16, 8);
+        final byte[] small = new byte[12]; //one slot with the header
+        for (int i = 0; i < 6; i++) {
+            assertTrue(queue.offer(small, 0, small.length));
+        }
+        assertEquals(5, queue.drain((b) -> {
+        }, 5));
+
+        //7 slots; 2 slots of padding to wrap from slot 6, one slot in use
+        final byte[] large = record(1, 100);
+        assertFalse(queue.offer(large, 0, large.length));
+        assertEquals(1, queue.drain((b) -> {
+        }, 10));
+        assertTrue(queue.isEmpty());
+        assertTrue(queue.offer(large, 0, large.length));
+
+        final List<String> read = new ArrayList<>();
+        assertEquals(1, queue.drain((b) -> read.add(asString(b)), 10));
+        assertEquals(asString(ByteBuffer.wrap(large)), read.get(0));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLargerThanQueue() {
+        final OffHeapEventQueue queue = new OffHeapEventQueue(16, 8);
+        final byte[] record = new byte[16 * 8];
+        queue.offer(record, 0, record.length);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final OffHeapEventQueue queue = new OffHeapEventQueue(32, 64);
+        final int threads = 4;
+        final int perThread = 5000;
+        final Set<String> read = new HashSet<>();
+
+        final Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    final byte[] record = (id + "-" + i)
+                            .getBytes(StandardCharsets.UTF_8);
+                    while (!queue.offer(record, 0, record.length)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            producers[t].start();
+        }
+
+        while (read.size() < threads * perThread) {
+            queue.drain((b) -> assertTrue(read.add(asString(b))), 100);
+        }
+        for (Thread t : producers) {
+            t.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    private static byte[] record(int id, int padding) {
+        final StringBuilder sb = new StringBuilder().append(id).append(':');
+        for (int i = 0; i < padding; i++) {
+            sb.append('x');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String asString(ByteBuffer record) {
+        final byte[] b = new byte[record.remaining()];
+        record.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,128 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class ParallelGzipCompressorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Many parallel blocks decompress as one standard gzip stream.
+     */
+    @Test
+    public void testCompressBlocks() throws Exception {
+        final byte[] content = content(200000);
+        final Path segment = folder.getRoot().toPath().resolve("s-1.log");
+        Files.write(segment, content);
+
+        try (ParallelGzipCompressor compressor
+                = new ParallelGzipCompressor(3, 4096, 6)) {
+            final Path gz = compressor.compress(segment).get();
+            assertFalse(Files.exists(segment));
+            assertArrayEquals(content, gunzip(gz));
+            assertTrue(Files.size(gz) < content.length / 2);
+        }
+    }
+
+    @Test
+    public void testCompressEmpty() throws Exception {
+        final Path segment = folder.getRoot().toPath().resolve("s-1.log");
+        Files.write(segment, new byte[0]);
+
+        try (ParallelGzipCompressor compressor
+                = new ParallelGzipCompressor(1)) {
+            assertArrayEquals(new byte[0],
+                    gunzip(compressor.compressNow(segment)));
+        }
+    }
+
+    /**
+     * Segments roll at the max size, and each closed segment is compressed.
+     */
+    @Test
+    public void testRollAndCompress() throws Exception {
+        final Path dir = folder.getRoot().toPath();
+        final List<Path> closed = new ArrayList<>();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        final ParallelGzipCompressor compressor
+                = new ParallelGzipCompressor(2, 512, 6);
+        try (RollingSplunkFileChannel channel
+                = new RollingSplunkFileChannel(dir, "test", 1000)) {
+            channel.addSegmentListener(closed::add);
+            channel.addSegmentListener(compressor);
+            for (int i = 0; i < 50; i++) {
+                final byte[] event = ("event " + i + " "
+                        + new String(content(90), StandardCharsets.UTF_8)
+                        + "\n").getBytes(StandardCharsets.UTF_8);
+                expected.write(event);
+                channel.write(new ByteBuffer[]{ByteBuffer.wrap(event)});
+            }
+        }
+        assertTrue(compressor.shutdown(10, TimeUnit.SECONDS));
+
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        for (Path segment : closed) {
+            assertFalse(Files.exists(segment));
+            final byte[] decompressed = gunzip(segment.resolveSibling(
+                    segment.getFileName() + ParallelGzipCompressor.GZIP_SUFFIX));
+            assertTrue(decompressed.length < 1100);
+            actual.write(decompressed);
+        }
+        assertTrue(closed.size() > 1);
+        assertEquals("test-000001.log", closed.get(0).getFileName().toString());
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        //sequence continues after existing (compressed) segments
+        try (RollingSplunkFileChannel channel
+                = new RollingSplunkFileChannel(dir, "test", 1000)) {
+            assertEquals(String.format("test-%06d.log", closed.size() + 1),
+                    channel.getCurrentSegment().getFileName().toString());
+            assertTrue(channel.closedSegments(
+                    ParallelGzipCompressor.GZIP_SUFFIX).isEmpty());
+        }
+    }
+
+    private static byte[] content(int length) {
+        final Random random = new Random(length);
+        final String[] words = {"splunk", "event", "logger", "INFO", "fld_",
+            "=", "\"", "2016-01-01", " "};
+        final StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]);
+        }
+        sb.setLength(length);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] b = new byte[8192];
+            int read;
+            while ((read = in.read(b)) != -1) {
+                out.write(b, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
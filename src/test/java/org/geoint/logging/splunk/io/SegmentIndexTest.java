@@ -0,0 +1,234 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+import org.geoint.logging.splunk.jul.SplunkLogRecord;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SegmentIndexTest {
+
+    private static final String TIME = "fld_eventTime";
+    private static final List<String> FIELDS
+            = Arrays.asList("fld_logger", "requestId");
+    private static final Instant START = Instant.parse("2017-03-01T10:00:00Z");
+    private static final int EVENTS = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIndexRoundTrip() throws IOException {
+        final Path segment = segment("test-000001.log");
+        final SegmentIndex built = SegmentIndex.build(segment, TIME, FIELDS,
+                4096);
+        final Path path = SegmentIndexer.indexPath(segment);
+        built.write(path);
+
+        final SegmentIndex index = SegmentIndex.read(path);
+        assertEquals(Files.size(segment), index.getSegmentLength());
+        assertEquals(TIME, index.getTimeField());
+        assertEquals(FIELDS, index.getFields());
+        assertEquals(EVENTS, index.getEventCount());
+        assertEquals(START, index.getMinTime());
+        assertEquals(START.plusSeconds(EVENTS - 1), index.getMaxTime());
+    }
+
+    /**
+     * Only the blocks which may hold the event are read.
+     */
+    @Test
+    public void testFieldCandidates() throws IOException {
+        final Path segment = segment("test-000001.log");
+        final SegmentIndex index = SegmentIndex.build(segment, TIME, FIELDS,
+                4096);
+        final List<SegmentIndex.Region> regions = index.candidates(null,
+                null, Collections.singletonMap("requestId", "req-1234"));
+        assertFalse(regions.isEmpty());
+        assertTrue(read(regions) < Files.size(segment) / 10);
+
+        assertTrue(index.candidates(null, null,
+                Collections.singletonMap("requestId", "missing")).size() <= 1);
+        //fields not indexed don't exclude any region
+        assertEquals(Files.size(segment), read(index.candidates(null, null,
+                Collections.singletonMap("fld_msg", "event 5"))));
+    }
+
+    @Test
+    public void testQuerySegment() throws IOException {
+        final Path segment = segment("test-000001.log");
+        new SegmentIndexer(TIME, FIELDS, 4096, null).indexNow(segment);
+
+        final List<String> found = new ArrayList<>();
+        final Map<String, String> values = new HashMap<>();
+        values.put("requestId", "req-1234");
+        values.put("fld_logger", "org.example.Service" + (1234 % 7));
+        assertEquals(1, new SegmentQuery(null, null, values, TIME)
+                .searchSegment(segment, found::add));
+        assertTrue(found.get(0), found.get(0).contains("msg=\"event 1234\""));
+
+        final SegmentQuery range = new SegmentQuery(START.plusSeconds(100),
+                START.plusSeconds(199), Collections.emptyMap(), TIME);
+        assertEquals(100, range.searchSegment(segment, (e) -> {
+        }));
+        final SegmentIndex index = SegmentIndex.read(
+                SegmentIndexer.indexPath(segment));
+        assertTrue(read(index.candidates(START.plusSeconds(100),
+                START.plusSeconds(199), Collections.emptyMap()))
+                < Files.size(segment) / 4);
+
+        //quotes in values are substituted as in the native format
+        assertEquals(1, new SegmentQuery(null, null,
+                Collections.singletonMap("fld_msg", "say \"hi\" 7"), TIME)
+                .searchSegment(segment, (e) -> {
+                }));
+    }
+
+    /**
+     * Indexed then compressed segments are found by the same query as
+     * uncompressed and unindexed segments.
+     */
+    @Test
+    public void testQueryDirectory() throws Exception {
+        final Path indexed = segment("test-000001.log");
+        final Path unindexed = segment("test-000002.log");
+        final ParallelGzipCompressor compressor
+                = new ParallelGzipCompressor(1);
+        final SegmentIndexer indexer = new SegmentIndexer(TIME, FIELDS,
+                compressor);
+        indexer.index(indexed).get();
+        assertTrue(indexer.shutdown(10, TimeUnit.SECONDS));
+        assertTrue(compressor.shutdown(10, TimeUnit.SECONDS));
+        assertFalse(Files.exists(indexed));
+        assertTrue(Files.exists(SegmentIndexer.indexPath(indexed)));
+
+        final List<String> found = new ArrayList<>();
+        assertEquals(2, new SegmentQuery(null, null,
+                Collections.singletonMap("requestId", "req-42"), TIME)
+                .search(folder.getRoot().toPath(), found::add));
+        assertEquals(found.get(0), found.get(1));
+        assertTrue(Files.exists(unindexed));
+    }
+
+    /**
+     * A segment which can't be indexed is reported to the failure listener,
+     * and still passed on.
+     */
+    @Test
+    public void testIndexFailure() throws Exception {
+        final Path missing = folder.getRoot().toPath().resolve("missing.log");
+        final List<Path> passed = new ArrayList<>();
+        final List<Path> failed = new ArrayList<>();
+        final List<Exception> failures = new ArrayList<>();
+        final SegmentIndexer indexer = new SegmentIndexer(TIME, FIELDS,
+                passed::add);
+        indexer.setFailureListener((segment, ex) -> {
+            failed.add(segment);
+            failures.add(ex);
+        });
+        indexer.accept(missing);
+        assertTrue(indexer.shutdown(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(missing), failed);
+        assertTrue(failures.get(0) instanceof IOException);
+        assertEquals(Collections.singletonList(missing), passed);
+        assertFalse(Files.exists(SegmentIndexer.indexPath(missing)));
+    }
+
+    /**
+     * Events with multi-line messages are indexed and found whole, including
+     * their fields after the message.
+     */
+    @Test
+    public void testMultiLineEvents() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            final SplunkLogRecord lr = new SplunkLogRecord(Level.INFO,
+                    "event " + i + "\nsecond line\n2017-03-01 not an event");
+            lr.setMillis(START.plusSeconds(i).toEpochMilli());
+            lr.field("requestId", "req-" + i);
+            if (i % 10 == 0) {
+                lr.setThrown(new IllegalStateException("failed\n" + i));
+            }
+            sb.append(SplunkLogUtil.format(lr));
+        }
+        final byte[] events = sb.toString().getBytes(StandardCharsets.UTF_8);
+        final Path segment = folder.getRoot().toPath()
+                .resolve("test-000001.log");
+        Files.write(segment, events);
+        final Path compressed = folder.getRoot().toPath()
+                .resolve("test-000002.log.gz");
+        try (OutputStream out = new GZIPOutputStream(
+                Files.newOutputStream(compressed))) {
+            out.write(events);
+        }
+
+        new SegmentIndexer(TIME, FIELDS, 1024, null).indexNow(segment);
+        final SegmentIndex index = SegmentIndex.read(
+                SegmentIndexer.indexPath(segment));
+        assertEquals(200, index.getEventCount());
+        assertEquals(START, index.getMinTime());
+        assertEquals(START.plusSeconds(199), index.getMaxTime());
+
+        for (Path p : Arrays.asList(segment, compressed)) {
+            final List<String> found = new ArrayList<>();
+            assertEquals(1, new SegmentQuery(null, null,
+                    Collections.singletonMap("requestId", "req-150"), TIME)
+                    .searchSegment(p, found::add));
+            assertTrue(found.get(0), found.get(0).startsWith("2017-03-01 "));
+            assertTrue(found.get(0), found.get(0).contains("event 150\n"
+                    + "second line\n2017-03-01 not an event"));
+            assertTrue(found.get(0),
+                    found.get(0).endsWith("requestId=\"req-150\""));
+
+            assertEquals(20, new SegmentQuery(START.plusSeconds(100),
+                    START.plusSeconds(119), Collections.emptyMap(), TIME)
+                    .searchSegment(p, (e) -> {
+                    }));
+        }
+    }
+
+    private static long read(List<SegmentIndex.Region> regions) {
+        long length = 0;
+        for (SegmentIndex.Region r : regions) {
+            length += r.getLength();
+        }
+        return length;
+    }
+
+    private Path segment(String name) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < EVENTS; i++) {
+            final Instant time = START.plusSeconds(i);
+            sb.append("2017-03-01 10:00:00.000 +0000, ")
+                    .append(TIME).append("=\"").append(time).append("\", ")
+                    .append("fld_logger=\"org.example.Service").append(i % 7)
+                    .append("\", requestId=\"req-").append(i).append("\", ")
+                    .append("fld_msg=\"")
+                    .append((i == 7) ? "say 'hi' 7" : "event " + i)
+                    .append('"')
+                    .append(System.lineSeparator());
+        }
+        final Path segment = folder.getRoot().toPath().resolve(name);
+        Files.write(segment, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return segment;
+    }
+}
@@ -0,0 +1,264 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SegmentReplayerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Every event of uncompressed and compressed segments is sent once, as
+     * stored, with events sharing a hash sent once.
+     */
+    @Test
+    public void testReplay() throws Exception {
+        final Path first = segment("test-000001.log", 0, 500);
+        final Path second = segment("test-000002.log", 400, 1000);
+        final Path compressed = new ParallelGzipCompressor(1)
+                .compressNow(segment("test-000003.log", 1000, 1200));
+        final Set<String> expected = new HashSet<>();
+        expected.addAll(lines(first));
+        expected.addAll(lines(second));
+        expected.addAll(events(1000, 1200));
+
+        final CollectingChannel channel = new CollectingChannel(-1);
+        try (ChannelEventSender sender = sender(channel);
+                SegmentReplayer replayer = new SegmentReplayer(sender, null,
+                        SegmentReplayer.DEFAULT_HASH_FIELD, 3, 2048, 0, 0)) {
+            assertEquals(1200, replayer.replay(
+                    Arrays.asList(first, second, compressed)));
+            assertEquals(100, replayer.getSkipped());
+        }
+        assertEquals(1200, channel.events.size());
+        assertEquals(expected, new HashSet<>(channel.events));
+    }
+
+    /**
+     * A replay resumed from its checkpoint does not resend acknowledged
+     * events.
+     */
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        final Path segment = segment("test-000001.log", 0, 5000);
+        final Path checkpoint = folder.getRoot().toPath().resolve("replay");
+
+        final CollectingChannel failing = new CollectingChannel(3000);
+        try (ChannelEventSender sender = sender(failing);
+                SegmentReplayer replayer = new SegmentReplayer(sender,
+                        checkpoint, SegmentReplayer.DEFAULT_HASH_FIELD, 2,
+                        16 * 1024, 0, 0)) {
+            replayer.replay(Arrays.asList(segment));
+            fail("sender failed");
+        } catch (IOException ex) {
+        }
+        final Set<String> acknowledged = new HashSet<>();
+        for (String line : Files.readAllLines(checkpoint)) {
+            if (line.startsWith("H ")) {
+                acknowledged.add(line.substring(2));
+            }
+        }
+        assertFalse(acknowledged.isEmpty());
+
+        final CollectingChannel channel = new CollectingChannel(-1);
+        try (ChannelEventSender sender = sender(channel);
+                SegmentReplayer replayer = new SegmentReplayer(sender,
+                        checkpoint, 2, 0, 0)) {
+            replayer.replay(Arrays.asList(segment));
+        }
+        final Set<String> replayed = new HashSet<>(failing.events);
+        replayed.addAll(channel.events);
+        assertEquals(new HashSet<>(lines(segment)), replayed);
+        for (String event : channel.events) {
+            assertFalse(event, acknowledged.contains(hash(event)));
+        }
+
+        //nothing left to send
+        try (ChannelEventSender sender = sender(channel);
+                SegmentReplayer replayer = new SegmentReplayer(sender,
+                        checkpoint, 2, 0, 0)) {
+            assertEquals(0, replayer.replay(Arrays.asList(segment)));
+        }
+    }
+
+    /**
+     * Events spanning lines are split into chunks, sent, hashed and resumed
+     * whole.
+     */
+    @Test
+    public void testMultiLineEvents() throws Exception {
+        final List<String> events = exceptionEvents(0, 600);
+        final Path segment = segment("test-000001.log",
+                events.subList(0, 400));
+        final Path compressed = new ParallelGzipCompressor(1).compressNow(
+                segment("test-000002.log", events.subList(400, 600)));
+        final List<Path> segments = Arrays.asList(segment, compressed);
+        final Path checkpoint = folder.getRoot().toPath().resolve("replay");
+
+        final CollectingChannel failing = new CollectingChannel(150);
+        try (ChannelEventSender sender = sender(failing);
+                SegmentReplayer replayer = new SegmentReplayer(sender,
+                        checkpoint, SegmentReplayer.DEFAULT_HASH_FIELD, 3,
+                        1024, 0, 0)) {
+            replayer.replay(segments);
+            fail("sender failed");
+        } catch (IOException ex) {
+        }
+
+        final CollectingChannel channel = new CollectingChannel(-1);
+        try (ChannelEventSender sender = sender(channel);
+                SegmentReplayer replayer = new SegmentReplayer(sender,
+                        checkpoint, SegmentReplayer.DEFAULT_HASH_FIELD, 3,
+                        1024, 0, 0)) {
+            replayer.replay(segments);
+        }
+        final Set<String> replayed = new HashSet<>(failing.events);
+        replayed.addAll(channel.events);
+        assertEquals(new HashSet<>(events), replayed);
+        for (String event : channel.events) {
+            assertTrue(event, event.contains("second line"));
+        }
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        final Path segment = segment("test-000001.log", 0, 300);
+        final CollectingChannel channel = new CollectingChannel(-1);
+        final long start = System.nanoTime();
+        try (ChannelEventSender sender = sender(channel);
+                SegmentReplayer replayer = new SegmentReplayer(sender, null,
+                        4, 1000, 0)) {
+            replayer.replay(Arrays.asList(segment));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+                >= 250);
+        assertEquals(300, channel.events.size());
+    }
+
+    private static ChannelEventSender sender(CollectingChannel channel) {
+        return new ChannelEventSender(channel, 1024, 64, OverflowPolicy.BLOCK);
+    }
+
+    private static String hash(String event) {
+        final int start = event.indexOf("fld_hash=\"") + 10;
+        return event.substring(start, event.indexOf('"', start));
+    }
+
+    private static List<String> lines(Path segment) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(segment)) {
+            lines.add(line + "\n");
+        }
+        return lines;
+    }
+
+    private static List<String> events(int from, int to) {
+        final List<String> events = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            events.add("2017-03-01 10:00:00.000 +0000, fld_eventTime=\""
+                    + "2017-03-01T10:00:00Z\", fld_msg=\"event " + i
+                    + "\", fld_hash=\"h" + i + "\"\n");
+        }
+        return events;
+    }
+
+    /**
+     * Events with multi-line messages, some with multi-line exception
+     * messages, as written by the standard formatter.
+     */
+    private static List<String> exceptionEvents(int from, int to) {
+        final List<String> events = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            final LogRecord lr = new LogRecord(Level.WARNING,
+                    "event " + i + "\nsecond line");
+            if (i % 3 == 0) {
+                lr.setThrown(new IllegalStateException("failed\n" + i));
+            }
+            events.add(SplunkLogUtil.format(lr));
+        }
+        return events;
+    }
+
+    private Path segment(String name, int from, int to) throws IOException {
+        return segment(name, events(from, to));
+    }
+
+    private Path segment(String name, List<String> events)
+            throws IOException {
+        final Path segment = folder.getRoot().toPath().resolve(name);
+        final StringBuilder sb = new StringBuilder();
+        events.forEach(sb::append);
+        Files.write(segment, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return segment;
+    }
+
+    /**
+     * Collects written events, failing writes after a number of events.
+     */
+    private static class CollectingChannel
+            implements GatheringByteChannel {
+
+        private final List<String> events = new ArrayList<>();
+        private final int failAfter;
+
+        private CollectingChannel(int failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public synchronized long write(ByteBuffer[] srcs, int offset,
+                int length) throws IOException {
+            if (failAfter >= 0 && events.size() >= failAfter) {
+                throw new IOException("failed");
+            }
+            long written = 0;
+            for (int i = offset; i < offset + length; i++) {
+                final byte[] b = new byte[srcs[i].remaining()];
+                srcs[i].get(b);
+                events.add(new String(b, StandardCharsets.UTF_8));
+                written += b.length;
+            }
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return (int) write(new ByteBuffer[]{src});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
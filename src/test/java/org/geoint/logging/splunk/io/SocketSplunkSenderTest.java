@@ -0,0 +1,116 @@
+package org.geoint.logging.splunk.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.jul.SplunkLogUtil;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the sender against a local server standing in for a splunk TCP input.
+ */
+public class SocketSplunkSenderTest {
+
+    @Test
+    public void testSend() throws Exception {
+        try (ServerSocketChannel server = openServer();
+                SocketSplunkSender sender = new SocketSplunkSender(
+                        server.getLocalAddress())) {
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            for (int i = 0; i < 2000; i++) {
+                final byte[] event = SplunkLogUtil.format(
+                        new LogRecord(Level.INFO, "event " + i))
+                        .getBytes(StandardCharsets.UTF_8);
+                expected.write(event);
+                assertTrue(sender.send(ByteBuffer.wrap(event)));
+            }
+
+            try (SocketChannel client = server.accept()) {
+                assertArrayEquals(expected.toByteArray(),
+                        read(client, expected.size()));
+            }
+            assertTrue(sender.flush(5, TimeUnit.SECONDS));
+            assertEquals(2000, sender.getSent());
+            assertEquals(expected.size(), sender.getBytesSent());
+            assertEquals(0, sender.getDropped());
+        }
+    }
+
+    /**
+     * The sender reconnects after the remote end closes the connection.
+     */
+    @Test
+    public void testReconnect() throws Exception {
+        try (ServerSocketChannel server = openServer();
+                SocketSplunkSender sender = new SocketSplunkSender(
+                        server.getLocalAddress(), 100, 10, 10, 50)) {
+            sender.send(event("first\n"));
+            try (SocketChannel client = server.accept()) {
+                assertEquals("first\n", new String(read(client, 6),
+                        StandardCharsets.UTF_8));
+            }
+
+            final long deadline = System.nanoTime()
+                    + TimeUnit.SECONDS.toNanos(5);
+            while (sender.getReconnects() == 0) {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(5);
+            }
+            try (SocketChannel client = server.accept()) {
+                sender.send(event("second\n"));
+                assertEquals("second\n", new String(read(client, 7),
+                        StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Producers don't block when the destination is unavailable.
+     */
+    @Test
+    public void testDropWhenFull() throws Exception {
+        final InetSocketAddress unused;
+        try (ServerSocketChannel server = openServer()) {
+            unused = (InetSocketAddress) server.getLocalAddress();
+        }
+        try (SocketSplunkSender sender = new SocketSplunkSender(unused,
+                10, 10, 10, 50)) {
+            for (int i = 0; i < 15; i++) {
+                sender.send(event("event\n"));
+            }
+            assertEquals(10, sender.getPending());
+            assertEquals(5, sender.getDropped());
+            assertFalse(sender.flush(10, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static ServerSocketChannel openServer() throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return server;
+    }
+
+    private static ByteBuffer event(String event) {
+        return ByteBuffer.wrap(event.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] read(SocketChannel client, int length)
+            throws IOException {
+        final ByteBuffer b = ByteBuffer.allocate(length);
+        while (b.hasRemaining()) {
+            if (client.read(b) < 0) {
+                break;
+            }
+        }
+        return b.array();
+    }
+}
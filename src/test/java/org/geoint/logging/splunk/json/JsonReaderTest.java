@@ -0,0 +1,112 @@
+package org.geoint.logging.splunk.json;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class JsonReaderTest {
+
+    @Test
+    public void testReadObject() {
+        final JsonReader reader = JsonReader.of(
+                "{\"foo\":\"bar\",\"num\":-1.5e3,\"yes\":true,\"nothing\":null}");
+        reader.beginObject();
+        assertEquals("foo", reader.nextName());
+        assertEquals("bar", reader.nextString());
+        assertEquals("num", reader.nextName());
+        assertEquals(JsonToken.NUMBER, reader.peek());
+        assertEquals("-1.5e3", reader.nextString());
+        assertEquals("yes", reader.nextName());
+        assertTrue(reader.nextBoolean());
+        assertEquals("nothing", reader.nextName());
+        reader.nextNull();
+        assertFalse(reader.hasNext());
+        reader.endObject();
+        assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void testReadEscapes() {
+        final JsonReader reader = JsonReader.of(
+                new StringReader("[\"a\\\"b\\\\c\\/d\\n\\u0041\"]"));
+        reader.beginArray();
+        assertEquals("a\"b\\c/d\nA", reader.nextString());
+        reader.endArray();
+    }
+
+    @Test
+    public void testSkipNestedValue() {
+        final JsonReader reader = JsonReader.of(
+                "{\"skip\":{\"a\":[1,2,{\"b\":[]}]},\"keep\":\"value\"}");
+        reader.beginObject();
+        assertEquals("skip", reader.nextName());
+        reader.skipValue();
+        assertEquals("keep", reader.nextName());
+        assertEquals("value", reader.nextString());
+        reader.endObject();
+    }
+
+    @Test
+    public void testLenientSingleQuotes() {
+        final JsonReader reader = JsonReader.lenient("{'foo':'it\\'s'}");
+        reader.beginObject();
+        assertEquals("foo", reader.nextName());
+        assertEquals("it's", reader.nextString());
+        reader.endObject();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testSingleQuotesRequireLenient() {
+        final JsonReader reader = JsonReader.of("{'foo':'bar'}");
+        reader.beginObject();
+        reader.nextName();
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testInvalidJsonDetected() {
+        final JsonReader reader = JsonReader.of("{\"foo\" \"bar\"}");
+        reader.beginObject();
+        reader.nextName();
+        reader.nextString();
+    }
+
+    /**
+     * Round trip JSON created by Json through the reader.
+     */
+    @Test
+    public void testFromArrayRoundTrip() {
+        final Integer[] values = {1, 2, 3, 4};
+        final Json json = Json.asArray(
+                (j, i) -> j.element("value", i), values);
+
+        final Iterator<Integer> read = JsonReader.fromArray((r) -> {
+            r.beginObject();
+            assertEquals("value", r.nextName());
+            final int value = r.nextInt();
+            r.endObject();
+            return value;
+        }, json);
+
+        for (Integer expected : values) {
+            assertTrue(read.hasNext());
+            assertEquals(expected, read.next());
+        }
+        assertFalse(read.hasNext());
+    }
+
+    /**
+     * Elements after the ones requested are never parsed, so invalid content
+     * there is not detected.
+     */
+    @Test
+    public void testFromArrayIsLazy() {
+        final Iterator<String> read = JsonReader.fromArray(
+                JsonReader::nextString, "[\"first\",\"second\", not json");
+        assertEquals("first", read.next());
+        assertEquals("second", read.next());
+    }
+}
@@ -85,6 +85,34 @@ public class JsonTest {
                 test.toString());
     }
 
+    /**
+     * Test array elements after the second are siblings, not nested.
+     */
+    @Test
+    public void testAsArrayManyElements() {
+        final Json test = Json.asArray(
+                (json, i) -> json.element("i", i),
+                1, 2, 3);
+
+        assertEquals("[{\"i\":\"1\"},{\"i\":\"2\"},{\"i\":\"3\"}]",
+                test.toString());
+    }
+
+    @Test
+    public void testCreateNamedArray() {
+        final Json test = Json.newObject();
+        test.array("foo");
+        test.element("one", "1");
+        test.nextArrayElement();
+        test.element("two", "2");
+        test.close();
+        test.close();
+        test.element("bar", "baz");
+        assertEquals("{\"foo\":[{\"one\":\"1\"},{\"two\":\"2\"}],"
+                + "\"bar\":\"baz\"}",
+                test.toString());
+    }
+
     private static class MockSimpleObject {
 
         private final double value1;
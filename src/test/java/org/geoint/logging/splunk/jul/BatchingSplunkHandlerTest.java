@@ -0,0 +1,170 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.ErrorManager;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class BatchingSplunkHandlerTest {
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final File file = File.createTempFile("splunk-batch", ".log");
+        file.deleteOnExit();
+
+        final int threads = 8;
+        final int perThread = 500;
+        final BatchingSplunkHandler handler = new BatchingSplunkHandler(
+                FileChannel.open(file.toPath(), StandardOpenOption.WRITE),
+                64, 2, 256);
+
+        final Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    handler.publish(new LogRecord(Level.INFO, id + "-" + i));
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread t : producers) {
+            t.join();
+        }
+        handler.close();
+
+        final List<String> lines = Files.readAllLines(file.toPath(),
+                StandardCharsets.UTF_8);
+        assertEquals(threads * perThread, lines.size());
+        final Set<String> messages = new HashSet<>();
+        for (String line : lines) {
+            final int start = line.indexOf("fld_message=\"") + 13;
+            messages.add(line.substring(start, line.indexOf('"', start)));
+        }
+        assertEquals(threads * perThread, messages.size());
+    }
+
+    /**
+     * Queued events are written together with one gathering write.
+     */
+    @Test
+    public void testGroupCommit() throws Exception {
+        final CountingChannel channel = new CountingChannel();
+        final BatchingSplunkHandler handler
+                = new BatchingSplunkHandler(channel, 100, 10000, 100);
+
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            final LogRecord lr = new LogRecord(Level.INFO, "event " + i);
+            expected.append(new StandardSplunkFormatter().format(lr));
+            handler.publish(lr);
+        }
+        handler.flush();
+
+        assertEquals(1, channel.writes);
+        assertEquals(expected.toString(),
+                new String(channel.bytes.toByteArray(), StandardCharsets.UTF_8));
+        handler.close();
+    }
+
+    /**
+     * The writer reports an unexpected failure and keeps writing.
+     */
+    @Test
+    public void testWriterSurvivesFailure() throws Exception {
+        final CountingChannel channel = new CountingChannel();
+        channel.failures = 1;
+        final BatchingSplunkHandler handler
+                = new BatchingSplunkHandler(channel, 10, 0, 10);
+        final List<Exception> errors = new ArrayList<>();
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public synchronized void error(String msg, Exception ex,
+                    int code) {
+                errors.add(ex);
+            }
+        });
+
+        handler.publish(new LogRecord(Level.INFO, "lost"));
+        handler.flush();
+        final LogRecord lr = new LogRecord(Level.INFO, "written");
+        for (int i = 0; i < 20; i++) {
+            handler.publish(lr);
+        }
+        handler.close();
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            expected.append(new StandardSplunkFormatter().format(lr));
+        }
+        assertEquals(expected.toString(),
+                new String(channel.bytes.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(0, handler.getPending());
+    }
+
+    private static class CountingChannel implements GatheringByteChannel {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int writes;
+        private int failures;
+        private boolean open = true;
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length)
+                throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("failed");
+            }
+            writes++;
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                total += write(srcs[i]);
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            final int length = src.remaining();
+            final byte[] b = new byte[length];
+            src.get(b);
+            bytes.write(b);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.geoint.logging.splunk.jul;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.geoint.logging.splunk.JsonSplunkFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.json.JsonReader;
+import org.geoint.logging.splunk.json.JsonToken;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class JsonSplunkLogFormatterTest {
+
+    @Test
+    public void testFormat() {
+        final Logger logger = Logger.getLogger("test.json.formatter");
+        logger.setUseParentHandlers(false);
+        final LogRecordCollector handler = new LogRecordCollector();
+        logger.addHandler(handler);
+
+        final Throwable ex = new IllegalStateException("outer \"failure\"",
+                new RuntimeException("inner"));
+        logger.log(Level.SEVERE, "said \"hi\"\tthen <script>", ex);
+        final LogRecord lr = handler.getRecords().get(0);
+
+        final String formatted = new JsonSplunkLogFormatter().format(lr);
+        assertTrue(formatted, formatted.endsWith("}" + System.lineSeparator()));
+        assertEquals(formatted.trim(), formatted.substring(0,
+                formatted.length() - System.lineSeparator().length()));
+
+        final JsonReader json = JsonReader.of(formatted.trim());
+        json.beginObject();
+        assertEquals(JsonSplunkFormatter.TIME_FIELD, json.nextName());
+        assertEquals(SplunkLogUtil.toEvent(lr).getEventTime().toInstant(),
+                Instant.parse(json.nextString()));
+        final List<String> names = new ArrayList<>();
+        String hash = null;
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            names.add(name);
+            if (name.equals(prefixedFieldName(SplunkLogUtil.KEY_MSG))) {
+                //escaped, not substituted
+                assertEquals("said \"hi\"\tthen <script>", json.nextString());
+            } else if (name.equals(prefixedFieldName(SplunkLogUtil.KEY_HASH))) {
+                hash = json.nextString();
+            } else if (name.equals(prefixedFieldName(SplunkLogUtil.KEY_STACK))) {
+                //nested array, readable as the stack field
+                assertEquals(JsonToken.BEGIN_ARRAY, json.peek());
+                final Iterator<StackTraceElement> frames
+                        = json.elements(SplunkLogUtil.STACK_FRAME_PARSER);
+                assertEquals(ex.getStackTrace()[0].getMethodName(),
+                        frames.next().getMethodName());
+                while (frames.hasNext()) {
+                    frames.next();
+                }
+            } else if (name.equals(prefixedFieldName(SplunkLogUtil.KEY_CAUSE))) {
+                assertEquals(JsonToken.BEGIN_OBJECT, json.peek());
+                json.skipValue();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+
+        //same fields, order and hash as the native format
+        final List<String> sorted = new ArrayList<>(names);
+        sorted.sort(null);
+        assertEquals(sorted, names);
+        assertEquals(SplunkLogUtil.toEvent(lr).getFieldNames().size(),
+                names.size());
+        assertEquals(SplunkLogUtil.toEvent(lr).getHash().asHex(), hash);
+        assertTrue(names.contains(prefixedFieldName(SplunkLogUtil.KEY_STACK)));
+        assertTrue(names.contains(prefixedFieldName(SplunkLogUtil.KEY_CAUSE)));
+    }
+
+    @Test
+    public void testCustomFieldsHash() {
+        final SplunkLogRecord lr = new SplunkLogRecord(Level.INFO, "custom");
+        lr.setLoggerName("test.json.custom");
+        lr.field("requestId", "req-1");
+        lr.field("zone", "a\"b");
+
+        final String formatted = new JsonSplunkLogFormatter().format(lr);
+        final JsonReader json = JsonReader.of(formatted.trim());
+        json.beginObject();
+        String hash = null;
+        String zone = null;
+        while (json.hasNext()) {
+            final String name = json.nextName();
+            if (name.equals(prefixedFieldName(SplunkLogUtil.KEY_HASH))) {
+                hash = json.nextString();
+            } else if (name.equals("zone")) {
+                zone = json.nextString();
+            } else {
+                json.skipValue();
+            }
+        }
+        assertEquals("a\"b", zone);
+        assertEquals(lr.getHash().asHex(), hash);
+    }
+
+    @Test
+    public void testJsonFieldInjection() {
+        final String stack = prefixedFieldName(SplunkLogUtil.KEY_STACK);
+        final JsonSplunkFormatter formatter
+                = new JsonSplunkFormatter(Arrays.asList(stack));
+        for (String value : new String[]{
+            "[1],\"injected\":true,\"x\":[2]",
+            "{\"a\":1}}",
+            "[\"a\",\n\"b\"]",
+            "[unquoted]"}) {
+            final SplunkLogRecord lr = new SplunkLogRecord(Level.INFO, "x");
+            lr.setLoggerName("test.json.injection");
+            lr.field(stack, value);
+            final SplunkEvent event = lr;
+
+            final String formatted = formatter.format(event);
+            assertEquals(formatted, 1, formatted.split("\n").length);
+            final JsonReader json = JsonReader.of(formatted.trim());
+            json.beginObject();
+            while (json.hasNext()) {
+                final String name = json.nextName();
+                assertFalse(formatted, name.equals("injected"));
+                if (name.equals(stack)) {
+                    assertEquals(value, json.nextString());
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            assertEquals(JsonToken.END_DOCUMENT, json.peek());
+        }
+
+        //valid JSON is still nested
+        final SplunkLogRecord lr = new SplunkLogRecord(Level.INFO, "x");
+        lr.setLoggerName("test.json.injection");
+        lr.field(stack, "[{\"line\":1}]");
+        assertTrue(formatter.format(lr).contains("\"" + stack
+                + "\":[{\"line\":1}]"));
+    }
+}
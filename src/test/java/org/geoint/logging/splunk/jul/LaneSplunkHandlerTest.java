@@ -0,0 +1,264 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.io.OverflowPolicy;
+import org.geoint.logging.splunk.io.PriorityLaneWriter;
+import org.geoint.logging.splunk.io.PriorityLaneWriter.Lane;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class LaneSplunkHandlerTest {
+
+    @Test
+    public void testClassify() {
+        final LaneClassifier classifier = new LaneClassifier("default")
+                .level(Level.WARNING, "error")
+                .level(Level.SEVERE, "audit")
+                .logger("com.example.security", "audit")
+                .logger("com.example.security.debug", "default");
+
+        assertEquals("default", classifier.classify(
+                record(Level.INFO, "com.example")));
+        assertEquals("error", classifier.classify(
+                record(Level.WARNING, "com.example")));
+        assertEquals("audit", classifier.classify(
+                record(Level.SEVERE, "com.example")));
+        assertEquals("audit", classifier.classify(
+                record(Level.FINE, "com.example.security.Login")));
+        assertEquals("default", classifier.classify(
+                record(Level.SEVERE, "com.example.security.debug")));
+
+        final SplunkLogRecord marked = new SplunkLogRecord(Level.FINE, "m")
+                .field(LaneClassifier.DEFAULT_MARKER_FIELD, "audit");
+        assertEquals("audit", classifier.classify(marked));
+    }
+
+    /**
+     * Audit events queued behind a flood are written first, and are not
+     * dropped when the other lanes overflow.
+     */
+    @Test
+    public void testAuditDrainedFirst() throws Exception {
+        final GatedChannel channel = new GatedChannel();
+        final PriorityLaneWriter writer = new PriorityLaneWriter(channel,
+                Arrays.asList(
+                        new Lane("audit", 8, 1, OverflowPolicy.DROP_NEWEST),
+                        new Lane("default", 4, 1, OverflowPolicy.DROP_NEWEST)),
+                4);
+        final LaneSplunkHandler handler = new LaneSplunkHandler(writer,
+                new LaneClassifier("default").level(Level.SEVERE, "audit"));
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return record.getMessage() + ",";
+            }
+        });
+
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        channel.writing.await(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 10; i++) {
+            handler.publish(new LogRecord(Level.INFO, "flood" + i));
+        }
+        handler.publish(new LogRecord(Level.SEVERE, "audit0"));
+        handler.publish(new LogRecord(Level.SEVERE, "audit1"));
+        channel.release.countDown();
+        handler.close();
+
+        assertEquals(Arrays.asList("first,", "audit0,audit1,flood0,flood1,",
+                "flood2,"), channel.batches);
+        assertEquals(0, writer.getDropped("audit"));
+        assertEquals(2, writer.getSent("audit"));
+        assertEquals(7, writer.getDropped("default"));
+    }
+
+    /**
+     * Audit events which fail to be written are retried until written, and
+     * close waits for them; events rejected by a lane are reported.
+     */
+    @Test
+    public void testAuditRetried() throws Exception {
+        final FailingChannel channel = new FailingChannel(3);
+        final PriorityLaneWriter writer = new PriorityLaneWriter(channel,
+                Arrays.asList(
+                        new Lane("audit", 2, 1, OverflowPolicy.DROP_NEWEST),
+                        new Lane("default", 2, 1, OverflowPolicy.DROP_NEWEST)),
+                2);
+        final LaneSplunkHandler handler = new LaneSplunkHandler(writer,
+                new LaneClassifier("default").level(Level.SEVERE, "audit"));
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                return record.getMessage() + ",";
+            }
+        });
+        final List<String> errors = new ArrayList<>();
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public synchronized void error(String msg, Exception ex,
+                    int code) {
+                errors.add(msg);
+            }
+        });
+
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            handler.publish(new LogRecord(Level.SEVERE, "audit" + i));
+            expected.append("audit").append(i).append(',');
+        }
+        handler.close();
+        assertEquals(expected.toString(), channel.written.toString());
+        assertEquals(0, writer.getDropped("audit"));
+        assertEquals(10, writer.getSent("audit"));
+        assertTrue(channel.failures.get() >= 3);
+
+        assertTrue(errors.isEmpty());
+        handler.publish(new LogRecord(Level.SEVERE, "closed"));
+        assertEquals(1, errors.size());
+    }
+
+    /**
+     * Close gives up on audit events which can't be written, counting them.
+     */
+    @Test
+    public void testCloseTimeout() throws Exception {
+        final FailingChannel channel = new FailingChannel(Integer.MAX_VALUE);
+        final PriorityLaneWriter writer = new PriorityLaneWriter(channel,
+                Arrays.asList(
+                        new Lane("audit", 4, 1, OverflowPolicy.DROP_NEWEST),
+                        new Lane("default", 4, 1, OverflowPolicy.DROP_NEWEST)),
+                2);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(writer.send("audit", ByteBuffer.wrap(
+                    ("audit" + i).getBytes(StandardCharsets.UTF_8))));
+        }
+        assertFalse(writer.close(100, TimeUnit.MILLISECONDS));
+        assertEquals(3, writer.getDropped("audit"));
+        assertEquals(0, writer.getSent("audit"));
+        assertEquals(0, writer.getPending("audit"));
+        assertNotNull(writer.getLastError());
+    }
+
+    private static LogRecord record(Level level, String logger) {
+        final LogRecord record = new LogRecord(level, "message");
+        record.setLoggerName(logger);
+        return record;
+    }
+
+    /**
+     * Channel which fails a number of writes, after writing part of the
+     * first buffer of each.
+     */
+    private static class FailingChannel implements GatheringByteChannel {
+
+        private final StringBuilder written = new StringBuilder();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final int failAfter;
+
+        private FailingChannel(int failAfter) {
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length)
+                throws IOException {
+            if (failures.get() < failAfter) {
+                written.append((char) srcs[offset].get());
+                failures.incrementAndGet();
+                throw new IOException("failed");
+            }
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                final byte[] b = new byte[srcs[i].remaining()];
+                srcs[i].get(b);
+                total += b.length;
+                written.append(new String(b, StandardCharsets.UTF_8));
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return (int) write(new ByteBuffer[]{src});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Channel which holds the first write until released.
+     */
+    private static class GatedChannel implements GatheringByteChannel {
+
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<String> batches = new ArrayList<>();
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length)
+                throws IOException {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            final StringBuilder sb = new StringBuilder();
+            long total = 0;
+            for (int i = offset; i < offset + length; i++) {
+                final byte[] b = new byte[srcs[i].remaining()];
+                srcs[i].get(b);
+                total += b.length;
+                sb.append(new String(b, StandardCharsets.UTF_8));
+            }
+            batches.add(sb.toString());
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return (int) write(new ByteBuffer[]{src});
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import org.geoint.logging.splunk.SplunkEvent;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class MessageTemplateTest {
+
+    /**
+     * Messages render the same as the JUL formatter.
+     */
+    @Test
+    public void testRenderAsFormatter() {
+        final Object[] params = {"user", 12345, null, new Date(0L), 0.5};
+        final String[] patterns = {
+            "no params",
+            "{0} logged in {1} times",
+            "{1}{0}",
+            "quoted '{0}' and it''s {0}",
+            "missing {0} {7}",
+            "null {2} date {3}",
+            "formatted {1,number,#} {4,number,percent}",
+            "not formatted {4}",
+            "invalid {0",
+            "invalid {x} {0}"
+        };
+
+        final SimpleFormatter formatter = new SimpleFormatter();
+        for (String pattern : patterns) {
+            final LogRecord lr = new LogRecord(Level.INFO, pattern);
+            lr.setParameters(params);
+            assertEquals(pattern, formatter.formatMessage(lr),
+                    MessageTemplate.of(pattern).render(params));
+            //cached
+            assertSame(MessageTemplate.of(pattern), MessageTemplate.of(pattern));
+        }
+    }
+
+    @Test
+    public void testParameterFields() {
+        final LogRecord lr = new LogRecord(Level.INFO, "{0} logged in {1} times");
+        lr.setParameters(new Object[]{"user", 12345});
+
+        final SplunkEvent event = SplunkLogUtil.toEvent(lr);
+        assertEquals(new SimpleFormatter().formatMessage(lr),
+                event.getFieldValue(prefixedFieldName(SplunkLogUtil.KEY_MSG)));
+        assertEquals("user", event.getFieldValue(
+                prefixedFieldName(SplunkLogUtil.KEY_PARAM + 0)));
+        assertEquals("12345", event.getFieldValue(
+                prefixedFieldName(SplunkLogUtil.KEY_PARAM + 1)));
+        assertEquals(SplunkLogUtil.format(lr), event.asString());
+    }
+}
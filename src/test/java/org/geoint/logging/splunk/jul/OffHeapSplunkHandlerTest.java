@@ -0,0 +1,150 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.ErrorManager;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import org.geoint.logging.splunk.io.OffHeapEventQueue;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class OffHeapSplunkHandlerTest {
+
+    @Test
+    public void testWritesQueuedEvents() throws Exception {
+        final File file = File.createTempFile("splunk-offheap", ".log");
+        file.deleteOnExit();
+
+        final OffHeapSplunkHandler handler = new OffHeapSplunkHandler(
+                FileChannel.open(file.toPath(), StandardOpenOption.WRITE),
+                new NativeSplunkFormatter(), new OffHeapEventQueue(64, 16));
+
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            final LogRecord lr = new LogRecord(Level.INFO, "event " + i);
+            expected.append(new StandardSplunkFormatter().format(lr));
+            handler.publish(lr);
+        }
+        handler.close();
+
+        assertEquals(expected.toString(),
+                new String(Files.readAllBytes(file.toPath()),
+                        StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The writer reports an event it can't format and writes the rest.
+     */
+    @Test
+    public void testFormatFailure() throws Exception {
+        final File file = File.createTempFile("splunk-offheap", ".log");
+        file.deleteOnExit();
+
+        final NativeSplunkFormatter nativeFormatter = new NativeSplunkFormatter();
+        final OffHeapSplunkHandler handler = new OffHeapSplunkHandler(
+                FileChannel.open(file.toPath(), StandardOpenOption.WRITE),
+                (event) -> {
+                    if (event.getFields().containsValue("fail")) {
+                        throw new IllegalStateException("bad event");
+                    }
+                    return nativeFormatter.format(event);
+                }, new OffHeapEventQueue(64, 16));
+        final List<Exception> errors = new ArrayList<>();
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public synchronized void error(String msg, Exception ex,
+                    int code) {
+                errors.add(ex);
+            }
+        });
+
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            final LogRecord lr = new LogRecord(Level.INFO,
+                    (i == 5) ? "fail" : "event " + i);
+            if (i != 5) {
+                expected.append(new StandardSplunkFormatter().format(lr));
+            }
+            handler.publish(lr);
+        }
+        handler.close();
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof IllegalStateException);
+        assertEquals(expected.toString(),
+                new String(Files.readAllBytes(file.toPath()),
+                        StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Records published while and after the handler closes are written, or
+     * dropped and reported, never lost.
+     */
+    @Test
+    public void testPublishOnClose() throws Exception {
+        final File file = File.createTempFile("splunk-offheap", ".log");
+        file.deleteOnExit();
+
+        final OffHeapSplunkHandler handler = new OffHeapSplunkHandler(
+                FileChannel.open(file.toPath(), StandardOpenOption.WRITE),
+                new NativeSplunkFormatter(), new OffHeapEventQueue(64, 16));
+        final AtomicInteger errors = new AtomicInteger();
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public void error(String msg, Exception ex, int code) {
+                errors.incrementAndGet();
+            }
+        });
+
+        final int published = 2000;
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < published; i++) {
+                handler.publish(new LogRecord(Level.INFO, "event " + i));
+            }
+        });
+        producer.start();
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        handler.close();
+        producer.join();
+        handler.publish(new LogRecord(Level.INFO, "after close"));
+
+        final long written = Files.readAllLines(file.toPath(),
+                StandardCharsets.UTF_8).size();
+        assertTrue(handler.getDropped() > 0);
+        assertEquals(handler.getDropped(), errors.get());
+        assertEquals(published + 2, written + handler.getDropped());
+    }
+
+    /**
+     * A formatter set on the handler is used rather than the event formatter.
+     */
+    @Test
+    public void testHandlerFormatter() throws Exception {
+        final File file = File.createTempFile("splunk-offheap", ".log");
+        file.deleteOnExit();
+
+        final OffHeapSplunkHandler handler = new OffHeapSplunkHandler(
+                FileChannel.open(file.toPath(), StandardOpenOption.WRITE),
+                new NativeSplunkFormatter(), new OffHeapEventQueue(64, 16));
+        handler.setFormatter(new JsonSplunkLogFormatter());
+
+        final LogRecord lr = new LogRecord(Level.INFO, "json event");
+        handler.publish(lr);
+        handler.close();
+
+        assertEquals(new JsonSplunkLogFormatter().format(lr),
+                new String(Files.readAllBytes(file.toPath()),
+                        StandardCharsets.UTF_8));
+    }
+}
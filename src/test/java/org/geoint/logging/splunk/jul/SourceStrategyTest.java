@@ -0,0 +1,142 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.geoint.logging.splunk.SplunkEvent;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SourceStrategyTest {
+
+    private static final String SOURCE = prefixedFieldName(
+            SplunkLogUtil.KEY_SOURCE);
+
+    @After
+    public void resetConfiguration() throws Exception {
+        LogManager.getLogManager().readConfiguration();
+        SplunkLogUtil.setSourceStrategy(null);
+    }
+
+    @Test
+    public void testWalker() throws Exception {
+        configure("walker");
+        final EventCollector events = collect("test.source.walker");
+
+        Logger.getLogger("test.source.walker").info("walked");
+        Logger.getLogger("test.source.walker")
+                .logp(Level.INFO, "Explicit", "method", "explicit");
+
+        assertEquals(SourceStrategyTest.class.getName() + "#testWalker",
+                events.events.get(0).getFieldValue(SOURCE));
+        assertEquals("Explicit#method",
+                events.events.get(1).getFieldValue(SOURCE));
+    }
+
+    /**
+     * The source set on a record by the caller (as the SLF4J JDK14 adapter
+     * does) is not replaced by the walked caller.
+     */
+    @Test
+    public void testWalkerRecordSource() throws Exception {
+        configure("walker");
+        final EventCollector events = collect("test.source.walker.record");
+        final Logger logger = Logger.getLogger("test.source.walker.record");
+
+        final LogRecord adapted = new LogRecord(Level.INFO, "adapted");
+        adapted.setLoggerName(logger.getName());
+        adapted.setSourceClassName("Adapted");
+        adapted.setSourceMethodName("method");
+        logger.log(adapted);
+
+        final LogRecord inferred = new LogRecord(Level.INFO, "inferred");
+        inferred.setLoggerName(logger.getName());
+        logger.log(inferred);
+
+        final SplunkLogRecord splunk = new SplunkLogRecord(Level.INFO, "set");
+        splunk.setLoggerName(logger.getName());
+        splunk.setSourceClassName("Splunk");
+        splunk.setSourceMethodName("method");
+        logger.log(splunk);
+
+        try (SplunkLogRecord pooled
+                = SplunkLogRecord.acquire(Level.INFO, "pooled")) {
+            pooled.setLoggerName(logger.getName());
+            logger.log(pooled);
+            assertEquals(SourceStrategyTest.class.getName()
+                    + "#testWalkerRecordSource",
+                    events.events.get(3).getFieldValue(SOURCE));
+        }
+
+        assertEquals("Adapted#method",
+                events.events.get(0).getFieldValue(SOURCE));
+        assertEquals(SourceStrategyTest.class.getName()
+                + "#testWalkerRecordSource",
+                events.events.get(1).getFieldValue(SOURCE));
+        assertEquals("Splunk#method",
+                events.events.get(2).getFieldValue(SOURCE));
+    }
+
+    @Test
+    public void testNone() throws Exception {
+        configure("walker");
+        final EventCollector events = collect("test.source.none");
+
+        Logger.getLogger("test.source.none").info("no source");
+
+        assertNull(events.events.get(0).getFieldValue(SOURCE));
+        assertNotNull(events.events.get(0).getHash());
+    }
+
+    private static void configure(String strategy) throws Exception {
+        LogManager.getLogManager().readConfiguration(new ByteArrayInputStream(
+                ("test.source" + SplunkLogUtil.PROPERTY_LOGGER_SOURCE + "="
+                + strategy + "\n"
+                + "test.source.none" + SplunkLogUtil.PROPERTY_LOGGER_SOURCE
+                + "=none\n").getBytes(StandardCharsets.UTF_8)));
+        SplunkLogUtil.setSourceStrategy(null);
+    }
+
+    private static EventCollector collect(String loggerName) {
+        final Logger logger = Logger.getLogger(loggerName);
+        logger.setUseParentHandlers(false);
+        final EventCollector handler = new EventCollector();
+        logger.addHandler(handler);
+        return handler;
+    }
+
+    /**
+     * Converts records to events as they are published, while the logging
+     * thread is still within the logger.
+     */
+    private static class EventCollector extends Handler {
+
+        private final List<SplunkEvent> events = new ArrayList<>();
+
+        @Override
+        public void publish(LogRecord record) {
+            final SplunkEvent event = SplunkLogUtil.toEvent(record);
+            event.getFields(); //a SplunkLogRecord is its own (lazy) event
+            events.add(event);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
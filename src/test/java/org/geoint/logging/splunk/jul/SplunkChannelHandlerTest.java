@@ -0,0 +1,37 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SplunkChannelHandlerTest {
+
+    @Test
+    public void testWritesFormattedRecords() throws Exception {
+        final File file = File.createTempFile("splunk-channel", ".log");
+        file.deleteOnExit();
+
+        final LogRecord first = new LogRecord(Level.INFO, "first é");
+        final LogRecord second = new LogRecord(Level.WARNING, "second");
+
+        final SplunkChannelHandler handler = new SplunkChannelHandler(
+                FileChannel.open(file.toPath(), StandardOpenOption.WRITE));
+        handler.publish(first);
+        handler.publish(second);
+        handler.close();
+
+        final StandardSplunkFormatter formatter = new StandardSplunkFormatter();
+        assertEquals(formatter.format(first) + formatter.format(second),
+                new String(Files.readAllBytes(file.toPath()),
+                        StandardCharsets.UTF_8));
+    }
+}
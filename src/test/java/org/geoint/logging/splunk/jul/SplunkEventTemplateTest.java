@@ -0,0 +1,96 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SplunkEventTemplateTest {
+
+    private static final Logger LOGGER
+            = Logger.getLogger("test.template");
+    private static final SplunkEventTemplate LOGIN = new SplunkEventTemplate(
+            LOGGER, Level.INFO, SplunkEventTemplateTest.class, "login",
+            Collections.singletonMap("component", "auth \"svc\""));
+
+    /**
+     * Records formatted with the prepared template fields are identical to
+     * formatting the full event.
+     */
+    @Test
+    public void testFormatMatchesEvent() {
+        final SplunkLogRecord record = LOGIN.record("User {0} logged in", "bob")
+                .field("session", "s1")
+                .field("zzz", "last");
+        record.setThrown(new IllegalStateException("test"));
+
+        final String formatted = SplunkLogUtil.format(record);
+        assertEquals(new NativeSplunkFormatter().format(record), formatted);
+        assertEquals(SplunkEventTemplateTest.class.getName() + "#login",
+                record.getFieldValue(prefixedFieldName(SplunkLogUtil.KEY_SOURCE)));
+        assertEquals("auth \"svc\"", record.getFieldValue("component"));
+        assertTrue(formatted.contains("component=\"auth 'svc'\""));
+
+        //same as an equivalent record without a template
+        final SplunkLogRecord plain = new SplunkLogRecord(Level.INFO,
+                "User {0} logged in");
+        plain.setMillis(record.getMillis());
+        plain.setLoggerName(LOGGER.getName());
+        plain.setSourceClassName(SplunkEventTemplateTest.class.getName());
+        plain.setSourceMethodName("login");
+        plain.setParameters(new Object[]{"bob"});
+        plain.setThrown(record.getThrown());
+        plain.field("component", "auth \"svc\"").field("session", "s1")
+                .field("zzz", "last");
+        assertEquals(SplunkLogUtil.format(plain), formatted);
+    }
+
+    @Test
+    public void testDetach() {
+        final SplunkLogRecord record = LOGIN.record("detached");
+        record.setLevel(Level.WARNING);
+        assertNull(record.template());
+        assertEquals(new NativeSplunkFormatter().format(SplunkLogUtil.toEvent(
+                record, Collections.emptyMap())), SplunkLogUtil.format(record));
+    }
+
+    @Test
+    public void testLog() {
+        final List<LogRecord> records = new ArrayList<>();
+        LOGGER.setUseParentHandlers(false);
+        LOGGER.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        LOGGER.setLevel(Level.INFO);
+
+        LOGIN.log("User {0} logged in", "bob");
+        assertEquals(1, records.size());
+        assertEquals("User bob logged in", ((SplunkLogRecord) records.get(0))
+                .getFieldValue(prefixedFieldName(SplunkLogUtil.KEY_MSG)));
+
+        LOGGER.setLevel(Level.WARNING);
+        LOGIN.log("not logged");
+        assertEquals(1, records.size());
+    }
+}
@@ -0,0 +1,150 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SplunkLogRecordPoolTest {
+
+    /**
+     * A released record is reused, cleared of its previous event.
+     */
+    @Test
+    public void testReuse() {
+        final SplunkLogRecord first;
+        try (SplunkLogRecord r = SplunkLogRecord.acquire(Level.INFO, "first")) {
+            r.field("user", "u1");
+            r.setParameters(new Object[]{"p"});
+            r.setThrown(new IllegalStateException());
+            r.setSourceClassName("Source");
+            r.setSourceMethodName("method");
+            r.setLoggerName("test.pool");
+            assertEquals("u1", r.getFieldValue("user"));
+            first = r;
+        }
+
+        try (SplunkLogRecord r = SplunkLogRecord.acquire(Level.FINE, "second")) {
+            assertSame(first, r);
+            assertEquals(Level.FINE, r.getLevel());
+            assertEquals("second", r.getMessage());
+            assertNull(r.getFieldValue("user"));
+            assertNull(r.getParameters());
+            assertNull(r.getThrown());
+            assertNull(r.getLoggerName());
+            assertNull(r.getFieldValue(prefixedFieldName(
+                    SplunkLogUtil.KEY_EXCEPTION_CLASS)));
+        }
+    }
+
+    /**
+     * Use (including a second release) of a released record fails when
+     * assertions are enabled.
+     */
+    @Test
+    public void testUseAfterRelease() {
+        final SplunkLogRecord r = SplunkLogRecord.acquire(Level.INFO, "m");
+        r.release();
+        try {
+            r.getMessage();
+            fail("used after release");
+        } catch (IllegalStateException ex) {
+            assertNotNull(ex.getCause());
+        }
+        try {
+            r.field("a", "b");
+            fail("used after release");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            r.release();
+            fail("released twice");
+        } catch (IllegalStateException ex) {
+        }
+
+        //records which are not pooled are not affected
+        final SplunkLogRecord unpooled = new SplunkLogRecord(Level.INFO, "m");
+        unpooled.close();
+        assertEquals("m", unpooled.getMessage());
+    }
+
+    /**
+     * A record with too many fields to be pooled is still released.
+     */
+    @Test
+    public void testReleaseNotPooled() {
+        final SplunkLogRecord r = SplunkLogRecord.acquire(Level.INFO, "m");
+        for (int i = 0; i <= 64; i++) {
+            r.field("f" + i, "v");
+        }
+        r.release();
+        try {
+            r.getMessage();
+            fail("used after release");
+        } catch (IllegalStateException ex) {
+        }
+        try {
+            r.release();
+            fail("released twice");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    /**
+     * Reused records are numbered again each time they are acquired.
+     */
+    @Test
+    public void testSequenceNumber() {
+        long last = -1;
+        for (int i = 0; i < 3; i++) {
+            try (SplunkLogRecord r = SplunkLogRecord.acquire(Level.INFO, "m")) {
+                assertTrue(r.getSequenceNumber() > last);
+                last = r.getSequenceNumber();
+            }
+        }
+    }
+
+    /**
+     * The source of a recycled record is inferred when logged.
+     */
+    @Test
+    public void testSource() {
+        final Logger logger = Logger.getLogger("test.pool.source");
+        logger.setUseParentHandlers(false);
+        final List<String> sources = new ArrayList<>();
+        logger.addHandler(new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                sources.add(((SplunkLogRecord) record).getFieldValue(
+                        prefixedFieldName(SplunkLogUtil.KEY_SOURCE)));
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        for (int i = 0; i < 2; i++) {
+            try (SplunkLogRecord r = SplunkLogRecord.acquire(Level.INFO, "m")) {
+                r.setLoggerName(logger.getName());
+                logger.log(r);
+            }
+        }
+        final String expected = SplunkLogRecordPoolTest.class.getName()
+                + "#testSource";
+        assertEquals(expected, sources.get(0));
+        assertEquals(expected, sources.get(1));
+    }
+}
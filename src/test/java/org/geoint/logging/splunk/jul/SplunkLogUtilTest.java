@@ -3,11 +3,16 @@ package org.geoint.logging.splunk.jul;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
 import org.geoint.logging.splunk.SplunkEvent;
+import org.geoint.logging.splunk.Utf8Buffer;
+import org.geoint.logging.splunk.crypto.EventHash;
 import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -59,4 +64,68 @@ public class SplunkLogUtilTest {
                 fields.get(prefixedFieldName(SplunkLogUtil.KEY_EXCEPTION_MSG)));
     }
 
+    /**
+     * Test the stack field can be read back, including after the native
+     * format quote substitution.
+     */
+    @Test
+    public void testParseStack() {
+        final Throwable ex = new RuntimeException("test exception");
+        final LogRecord lr = new LogRecord(Level.SEVERE, "test message");
+        lr.setThrown(ex);
+
+        final String stack = SplunkLogUtil.toEvent(lr)
+                .getFieldValue(prefixedFieldName(SplunkLogUtil.KEY_STACK));
+
+        for (String value : new String[]{stack, stack.replace('"', '\'')}) {
+            Iterator<StackTraceElement> frames = SplunkLogUtil.parseStack(value);
+            for (StackTraceElement expected : ex.getStackTrace()) {
+                assertTrue(frames.hasNext());
+                StackTraceElement frame = frames.next();
+                assertEquals(expected.getClassName(), frame.getClassName());
+                assertEquals(expected.getMethodName(), frame.getMethodName());
+                assertEquals(expected.getLineNumber(), frame.getLineNumber());
+            }
+            assertFalse(frames.hasNext());
+        }
+    }
+
+    /**
+     * The single pass pipeline must produce the same output and hash as
+     * building, hashing and then formatting the event.
+     */
+    @Test
+    public void testFormatMatchesEvent() {
+        final LogRecord lr = new LogRecord(Level.WARNING,
+                "message with \"quotes\" and é");
+        lr.setLoggerName("test.\"logger\"");
+        lr.setThrown(new IllegalStateException("bad \"state\""));
+
+        final SplunkEvent se = SplunkLogUtil.toEvent(lr);
+        final Utf8Buffer buffer = new Utf8Buffer();
+        final EventHash hash = SplunkLogUtil.format(lr, buffer);
+
+        assertEquals(new NativeSplunkFormatter().format(se), buffer.toString());
+        assertEquals(se.getHash().asHex(), hash.asHex());
+        assertEquals(se.getHash().getAlgorithmName(), hash.getAlgorithmName());
+    }
+
+    /**
+     * Custom record fields are formatted and included in the hash.
+     */
+    @Test
+    public void testFormatSplunkLogRecord() {
+        final SplunkLogRecord record = new SplunkLogRecord(Level.INFO, "msg");
+        record.field("zzz", "last").field("aaa", "first");
+
+        final SplunkEvent plain = SplunkLogUtil.toEvent(record,
+                Collections.emptyMap());
+        final String formatted = record.asString();
+
+        assertEquals(new NativeSplunkFormatter().format(record), formatted);
+        assertTrue(formatted.contains(", aaa=\"first\""));
+        assertTrue(formatted.endsWith("zzz=\"last\"" + System.lineSeparator()));
+        assertFalse(plain.getHash().asHex().equals(record.getHash().asHex()));
+    }
+
 }
@@ -0,0 +1,164 @@
+package org.geoint.logging.splunk.jul;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.geoint.logging.splunk.NativeSplunkFormatter;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class SplunkMetricsTest {
+
+    @Test
+    public void testCounter() throws InterruptedException {
+        final Logger logger = Logger.getLogger("test.metrics.counter");
+        final LogRecordCollector collector = collector(logger);
+        try (SplunkMetrics metrics = new SplunkMetrics(logger, Level.INFO, 0)) {
+            final SplunkMetrics.Counter misses
+                    = metrics.counter("cache.miss", "cache", "users");
+            assertSame(misses, metrics.counter("cache.miss", "cache", "users"));
+
+            final List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final Thread thread = new Thread(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        misses.increment();
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            metrics.counter("cache.miss", "cache", "roles").add(3);
+            metrics.counter("idle");
+
+            metrics.flush();
+            //only updated metrics are logged
+            assertEquals(2, collector.getRecords().size());
+            SplunkLogRecord users = find(collector, "users");
+            assertEquals("40000", users.getFieldValue(
+                    prefixedFieldName(SplunkMetrics.KEY_COUNT)));
+            assertEquals("cache.miss", users.getFieldValue(
+                    prefixedFieldName(SplunkMetrics.KEY_METRIC)));
+            assertEquals("counter", users.getFieldValue(
+                    prefixedFieldName(SplunkMetrics.KEY_METRIC_TYPE)));
+            assertEquals("3", find(collector, "roles").getFieldValue(
+                    prefixedFieldName(SplunkMetrics.KEY_COUNT)));
+            //formatted as any other record
+            assertEquals(new NativeSplunkFormatter().format(users),
+                    SplunkLogUtil.format(users));
+
+            //reset each interval
+            collector.getRecords().clear();
+            metrics.flush();
+            assertTrue(collector.getRecords().isEmpty());
+
+            try {
+                metrics.timer("cache.miss", "cache", "users");
+                fail("metric type changed");
+            } catch (IllegalArgumentException ex) {
+            }
+        }
+    }
+
+    /**
+     * Increments racing with a flush are counted in this interval or the
+     * next, never lost.
+     */
+    @Test
+    public void testCounterFlushRace() throws InterruptedException {
+        final Logger logger = Logger.getLogger("test.metrics.race");
+        final LogRecordCollector collector = collector(logger);
+        try (SplunkMetrics metrics = new SplunkMetrics(logger, Level.INFO, 0)) {
+            final SplunkMetrics.Counter counter = metrics.counter("race");
+            final Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    counter.increment();
+                }
+            });
+            thread.start();
+            while (thread.isAlive()) {
+                metrics.flush();
+            }
+            metrics.flush();
+
+            long total = 0;
+            for (LogRecord r : collector.getRecords()) {
+                total += Long.parseLong(field((SplunkLogRecord) r,
+                        SplunkMetrics.KEY_COUNT));
+            }
+            assertEquals(100000, total);
+        }
+    }
+
+    @Test
+    public void testTimerAndGauge() {
+        final Logger logger = Logger.getLogger("test.metrics.timer");
+        final LogRecordCollector collector = collector(logger);
+        try (SplunkMetrics metrics = new SplunkMetrics(logger, Level.INFO, 0)) {
+            final SplunkMetrics.Timer timer = metrics.timer("query");
+            for (int i = 1; i <= 100; i++) {
+                timer.record(i, TimeUnit.MILLISECONDS);
+            }
+            metrics.gauge("queue.depth").set(42);
+            metrics.flush();
+
+            final SplunkLogRecord t = find(collector, "query");
+            assertEquals("100", field(t, SplunkMetrics.KEY_COUNT));
+            assertEquals("5050", field(t, SplunkMetrics.KEY_SUM));
+            assertEquals("1", field(t, SplunkMetrics.KEY_MIN));
+            assertEquals("100", field(t, SplunkMetrics.KEY_MAX));
+            assertWithin(50, field(t, SplunkMetrics.KEY_P50));
+            assertWithin(90, field(t, SplunkMetrics.KEY_P90));
+            assertWithin(99, field(t, SplunkMetrics.KEY_P99));
+            assertEquals("42", field(find(collector, "queue.depth"),
+                    SplunkMetrics.KEY_VALUE));
+        }
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long v : new long[]{0, 1, 15, 16, 17, 31, 32, 33, 1000,
+            123456789, Long.MAX_VALUE}) {
+            final long upper = MetricHistogram.upperBound(
+                    MetricHistogram.bucket(v));
+            assertTrue(v + " " + upper, upper >= v);
+            assertTrue(v + " " + upper, upper - v <= v / 16);
+        }
+    }
+
+    private static void assertWithin(double expected, String actual) {
+        final double value = Double.parseDouble(actual);
+        assertTrue(actual, value >= expected && value <= expected * 1.0625);
+    }
+
+    private static String field(SplunkLogRecord record, String key) {
+        return record.getFieldValue(prefixedFieldName(key));
+    }
+
+    private static SplunkLogRecord find(LogRecordCollector collector,
+            String value) {
+        for (LogRecord r : collector.getRecords()) {
+            if (((SplunkLogRecord) r).getFields().containsValue(value)) {
+                return (SplunkLogRecord) r;
+            }
+        }
+        throw new AssertionError("no metric event with " + value);
+    }
+
+    private static LogRecordCollector collector(Logger logger) {
+        logger.setUseParentHandlers(false);
+        final LogRecordCollector collector = new LogRecordCollector();
+        logger.addHandler(collector);
+        return collector;
+    }
+}
@@ -0,0 +1,88 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import org.geoint.logging.splunk.json.Json;
+import org.geoint.logging.splunk.json.JsonReader;
+import static org.geoint.logging.splunk.jul.SplunkLogUtil.prefixedFieldName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class ThrowableRendererTest {
+
+    @Test
+    public void testStackUnchanged() {
+        final Throwable ex = new IllegalStateException("top");
+        final Map<String, String> fields = render(ex);
+        final Json expected = Json.asArray(
+                SplunkLogUtil.STACK_FRAME_CONVERTER, ex.getStackTrace());
+        assertEquals(expected.toString(),
+                fields.get(prefixedFieldName(SplunkLogUtil.KEY_STACK)));
+        assertNull(fields.get(prefixedFieldName(SplunkLogUtil.KEY_CAUSE)));
+        assertNull(fields.get(prefixedFieldName(SplunkLogUtil.KEY_SUPPRESSED)));
+    }
+
+    /**
+     * Causes and suppressed exceptions are written without the frames shared
+     * with the enclosing trace.
+     */
+    @Test
+    public void testChain() throws IOException {
+        final IOException root = new IOException("root \"cause\"");
+        final RuntimeException wrapped = wrap(root);
+        wrapped.addSuppressed(new IllegalArgumentException("suppressed"));
+        final Map<String, String> fields = render(wrapped);
+
+        try (JsonReader json = JsonReader.of(
+                fields.get(prefixedFieldName(SplunkLogUtil.KEY_CAUSE)))) {
+            json.beginObject();
+            assertEquals("class", json.nextName());
+            assertEquals(IOException.class.getName(), json.nextString());
+            assertEquals("message", json.nextName());
+            assertEquals("root \"cause\"", json.nextString());
+            assertEquals("stack", json.nextName());
+            //only the frames below wrap() differ from the enclosing trace
+            final Iterator<StackTraceElement> frames
+                    = json.elements(SplunkLogUtil.STACK_FRAME_PARSER);
+            assertEquals("testChain", frames.next().getMethodName());
+            assertFalse(frames.hasNext());
+            assertEquals("more", json.nextName());
+            assertEquals(root.getStackTrace().length - 1, json.nextInt());
+            assertFalse(json.hasNext());
+            json.endObject();
+        }
+
+        final String suppressed
+                = fields.get(prefixedFieldName(SplunkLogUtil.KEY_SUPPRESSED));
+        assertTrue(suppressed, suppressed.startsWith("[{\"class\":\""
+                + IllegalArgumentException.class.getName()
+                + "\",\"message\":\"suppressed\",\"stack\":["));
+    }
+
+    @Test
+    public void testCircular() {
+        final IllegalStateException a = new IllegalStateException("a");
+        final IllegalStateException b = new IllegalStateException("b", a);
+        a.initCause(b);
+        final String cause = render(a)
+                .get(prefixedFieldName(SplunkLogUtil.KEY_CAUSE));
+        assertTrue(cause, cause.endsWith("\"cause\":{\"class\":\""
+                + IllegalStateException.class.getName()
+                + "\",\"circular\":true}}"));
+    }
+
+    private static RuntimeException wrap(Throwable cause) {
+        return new RuntimeException("wrapped", cause);
+    }
+
+    private static Map<String, String> render(Throwable ex) {
+        final Map<String, String> fields = new HashMap<>();
+        ThrowableRenderer.collect(ex, fields);
+        return fields;
+    }
+}
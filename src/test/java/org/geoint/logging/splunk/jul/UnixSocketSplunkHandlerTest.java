@@ -0,0 +1,75 @@
+package org.geoint.logging.splunk.jul;
+
+import java.io.File;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.geoint.logging.splunk.io.SocketSplunkSender;
+import org.geoint.logging.splunk.io.UnixDomainSockets;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class UnixSocketSplunkHandlerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFallbackToFile() throws Exception {
+        final File file = folder.newFile("fallback.log");
+        final UnixSocketSplunkHandler handler = new UnixSocketSplunkHandler(
+                null, new BatchingSplunkHandler(FileChannel.open(
+                        file.toPath(), StandardOpenOption.WRITE)));
+        final LogRecord record = new LogRecord(Level.INFO, "fallback");
+        handler.publish(record);
+        handler.close();
+
+        assertFalse(handler.isSocketConnected());
+        assertEquals(new StandardSplunkFormatter().format(record),
+                new String(Files.readAllBytes(file.toPath()),
+                        StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Only runs on Java 16+.
+     */
+    @Test
+    public void testUnixSocket() throws Exception {
+        Assume.assumeTrue(UnixDomainSockets.isSupported());
+
+        final SocketAddress address = UnixDomainSockets.address(
+                folder.getRoot().toPath().resolve("forwarder.sock"));
+        try (ServerSocketChannel server = UnixDomainSockets.openServer()) {
+            server.bind(address);
+            final UnixSocketSplunkHandler handler
+                    = new UnixSocketSplunkHandler(
+                            new SocketSplunkSender(address), null);
+            final LogRecord record = new LogRecord(Level.INFO, "socket é");
+            handler.publish(record);
+
+            final byte[] expected = new StandardSplunkFormatter()
+                    .format(record).getBytes(StandardCharsets.UTF_8);
+            try (SocketChannel client = server.accept()) {
+                final ByteBuffer b = ByteBuffer.allocate(expected.length);
+                while (b.hasRemaining() && client.read(b) >= 0) {
+                }
+                assertArrayEquals(expected, b.array());
+                assertTrue(handler.isSocketConnected());
+            }
+            handler.close();
+        }
+    }
+}